@@ -0,0 +1,162 @@
+package com.sb.elsinore;
+
+/**
+ * Cleans up a noisy analogue input, like a level sensor or a pH probe.
+ *
+ * Each update takes the mean of the samples since the last one
+ * (oversampling), then the median of the last {@link #MEDIAN} means, which
+ * throws away a spike, then smooths the medians with an exponential moving
+ * average weighted {@link #SMOOTHING} to the newest. The defaults pass the
+ * input straight through.
+ *
+ * The settings are shared by every filter, set from the web threads, and
+ * take effect on the next update. The history is kept in a fixed ring, so an update doesn't
+ * allocate.
+ */
+public final class AnalogFilter {
+
+    public static final String FILTER_OVERSAMPLE = "filter_oversample";
+    public static final String FILTER_MEDIAN = "filter_median";
+    public static final String FILTER_SMOOTHING = "filter_smoothing";
+
+    /**
+     * The number of samples read for each update.
+     */
+    public static volatile int OVERSAMPLE = 1;
+    /**
+     * The number of updates the median is taken over.
+     */
+    public static volatile int MEDIAN = 1;
+    /**
+     * The weight of the newest median in the average, between 0 and 1,
+     * 1 for no smoothing.
+     */
+    public static volatile double SMOOTHING = 1;
+
+    /**
+     * The longest median.
+     */
+    public static final int MAX_MEDIAN = 15;
+
+    private final double[] history = new double[MAX_MEDIAN];
+    private final double[] sorted = new double[MAX_MEDIAN];
+    private int head = 0;
+    private int count = 0;
+
+    private double sum = 0;
+    private int samples = 0;
+
+    private double raw = Double.NaN;
+    private double filtered = Double.NaN;
+
+    /**
+     * @return True if an update is just the mean of its samples, with no
+     *  median or smoothing.
+     */
+    public static boolean isPassThrough() {
+        double weight = SMOOTHING;
+        return MEDIAN <= 1 && (!(weight > 0) || weight >= 1);
+    }
+
+    /**
+     * Add a sample to the next update.
+     * @param value The sample, NaN is ignored.
+     */
+    public synchronized void sample(final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        sum += value;
+        samples++;
+    }
+
+    /**
+     * Filter the samples since the last update.
+     * @return The filtered value, unchanged if there were no samples, NaN
+     *  if there never have been.
+     */
+    public synchronized double update() {
+        if (samples == 0) {
+            return filtered;
+        }
+        raw = sum / samples;
+        sum = 0;
+        samples = 0;
+
+        history[head] = raw;
+        head = (head + 1) % MAX_MEDIAN;
+        if (count < MAX_MEDIAN) {
+            count++;
+        }
+        double median = median(Math.min(count,
+                Math.max(1, Math.min(MEDIAN, MAX_MEDIAN))));
+
+        double weight = SMOOTHING;
+        if (Double.isNaN(filtered) || !(weight > 0) || weight >= 1) {
+            filtered = median;
+        } else {
+            filtered += weight * (median - filtered);
+        }
+        return filtered;
+    }
+
+    /**
+     * Sample and update.
+     * @param value The sample.
+     * @return The filtered value.
+     */
+    public double add(final double value) {
+        sample(value);
+        return update();
+    }
+
+    /**
+     * @param size The number of the latest updates to take it over.
+     * @return The median of the latest updates.
+     */
+    private double median(final int size) {
+        // The latest first, sorted as they're copied
+        for (int i = 0; i < size; i++) {
+            double value = history[(head - 1 - i + MAX_MEDIAN) % MAX_MEDIAN];
+            int j = i;
+            while (j > 0 && sorted[j - 1] > value) {
+                sorted[j] = sorted[j - 1];
+                j--;
+            }
+            sorted[j] = value;
+        }
+        int middle = size / 2;
+        if (size % 2 == 1) {
+            return sorted[middle];
+        }
+        return (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * Forget the history, after the input has changed.
+     */
+    public synchronized void reset() {
+        head = 0;
+        count = 0;
+        sum = 0;
+        samples = 0;
+        raw = Double.NaN;
+        filtered = Double.NaN;
+    }
+
+    /**
+     * @return The mean of the samples at the last update, NaN if there
+     *  hasn't been one.
+     */
+    public synchronized double getRaw() {
+        return raw;
+    }
+
+    /**
+     * @return The filtered value at the last update, NaN if there hasn't
+     *  been one.
+     */
+    public synchronized double getFiltered() {
+        return filtered;
+    }
+}
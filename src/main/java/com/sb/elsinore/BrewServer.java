@@ -2,14 +2,12 @@ package com.sb.elsinore;
 
 import ca.strangebrew.recipe.Recipe;
 import com.sb.elsinore.NanoHTTPD.Response.Status;
-import com.sb.elsinore.annotations.UrlEndpoint;
 import org.json.simple.JSONObject;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -30,6 +28,27 @@ import java.util.logging.Logger;
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public class BrewServer extends NanoHTTPD {
 
+    public static final String SERVER_THREADS = "serverThreads";
+    public static final String SERVER_QUEUE = "serverQueue";
+    public static final String SERVER_STREAMS = "serverStreams";
+
+    /**
+     * The maximum number of request threads.
+     */
+    public static int THREADS = 16;
+    /**
+     * The number of connections that can wait for a request thread before
+     * new ones are turned away.
+     */
+    public static int QUEUE_SIZE = 64;
+    /**
+     * The maximum number of open event streams. Each one has its own thread
+     * outside the request threads, further streams are turned away.
+     */
+    public static int STREAMS = 8;
+    private static BoundedAsyncRunner workers = null;
+    private static BoundedAsyncRunner streamers = null;
+
     private static Recipe currentRecipe;
     /**
      * The Root Directory of the files to be served.
@@ -82,6 +101,11 @@ public class BrewServer extends NanoHTTPD {
     };
     private static ArrayList<String> recipeList;
 
+    /**
+     * The route table for the {@link UrlEndpoints}, built once at startup.
+     */
+    private static final UrlRouter ROUTER = new UrlRouter(UrlEndpoints.class);
+
     /**
      * Constructor to create the HTTP Server.
      *
@@ -93,6 +117,11 @@ public class BrewServer extends NanoHTTPD {
     public BrewServer(final int port) throws IOException {
 
         super(port);
+        workers = new BoundedAsyncRunner(Math.max(1, THREADS),
+                Math.max(0, QUEUE_SIZE));
+        setAsyncRunner(workers);
+        streamers = new BoundedAsyncRunner(Math.max(1, STREAMS), 0);
+        setStreamRunner(streamers);
         // default level, this can be changed
         initializeLogger(BrewServer.LOG);
 
@@ -124,6 +153,20 @@ public class BrewServer extends NanoHTTPD {
         }
     }
 
+    /**
+     * @return The request threads, null if the server isn't running.
+     */
+    public static BoundedAsyncRunner getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return The event stream threads, null if the server isn't running.
+     */
+    public static BoundedAsyncRunner getStreamers() {
+        return streamers;
+    }
+
     public static void setRecipeList(ArrayList<String> recipeList) {
         BrewServer.recipeList = recipeList;
     }
@@ -183,134 +226,25 @@ public class BrewServer extends NanoHTTPD {
 
         BrewServer.LOG.info("URL : " + uri + " method: " + method);
 
-        if (uri.equalsIgnoreCase("/clearStatus")) {
-            LaunchControl.setMessage("");
-            return new NanoHTTPD.Response(Status.OK, MIME_HTML,
-                    "Status Cleared");
-        }
-
-        if (uri.equalsIgnoreCase("/addsystem")) {
-            LaunchControl.addSystemTemp();
-            return new NanoHTTPD.Response(Status.OK, MIME_HTML,
-                    "Added system temperature");
-        }
-
-        if (uri.equalsIgnoreCase("/delsystem")) {
-            LaunchControl.delSystemTemp();
-            return new NanoHTTPD.Response(Status.OK, MIME_HTML,
-                    "Deleted system temperature");
-        }
-        
-        if (uri.equalsIgnoreCase("/getstatus")) {
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    LaunchControl.getJSONStatus());
-        }
-
-        if (uri.equalsIgnoreCase("/getsystemsettings")) {
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    LaunchControl.getSystemStatus());
-        }
-
-        if (uri.equalsIgnoreCase("/graph")) {
-            return serveFile("/templates/static/graph/graph.html", header,
-                    rootDir);
-        }
-
-        if (uri.equalsIgnoreCase("/checkgit")) {
-            LaunchControl.checkForUpdates();
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    "{Status:'OK'}");
-        }
-
-        if (uri.equalsIgnoreCase("/restartupdate")) {
-            LaunchControl.updateFromGit();
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    "{Status:'OK'}");
-        }
-
-        if (uri.equalsIgnoreCase("/settheme")) {
-            String newTheme = parms.get("name");
-
-            if (newTheme == null) {
-                return new NanoHTTPD.Response(Status.BAD_REQUEST,
-                        MIME_TYPES.get("json"),
-                        "{Status:'No name provided'}");
-            }
-
-            String fileName = "/logos/" + newTheme + ".ico";
-            if (!(new File(rootDir, fileName).exists())) {
-                // It doesn't exist
-                LaunchControl.setMessage("Favicon for the new theme: "
-                        + newTheme + ", doesn't exist."
-                        + " Please add: " + fileName + " and try again");
-                return new NanoHTTPD.Response(Status.BAD_REQUEST,
-                        MIME_TYPES.get("json"),
-                        "{Status:'Favicon doesn\'t exist'}");
-            }
-
-            fileName = "/logos/" + newTheme + ".gif";
-            if (!(new File(rootDir, fileName).exists())) {
-                // It doesn't exist
-                LaunchControl.setMessage("Brewry image for the new theme: "
-                        + newTheme + ", doesn't exist."
-                        + " Please add: " + fileName + " and try again");
-                return new NanoHTTPD.Response(Status.BAD_REQUEST,
-                        MIME_TYPES.get("json"),
-                        "{Status:'Brewery Image doesn\'t exist'}");
-            }
-
-            LaunchControl.theme = newTheme;
-            return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
-                    "{Status:'OK'}");
-
-        }
-
-        if (uri.equalsIgnoreCase("/favicon.ico")) {
-            // Has the favicon been overridden?
-            // Check to see if there's a theme set.
-            if (LaunchControl.theme != null
-                    && !LaunchControl.theme.equals("")) {
-                if (new File(rootDir,
-                        "/logos/" + LaunchControl.theme + ".ico").exists()) {
-                    return serveFile("/logos/" + LaunchControl.theme + ".ico",
-                            header, rootDir);
-                }
-            }
-
-            if (new File(rootDir, uri).exists()) {
-                return serveFile(uri, header, rootDir);
-            }
-
-        }
-
         // NLS Support
         if (uri.startsWith("/nls/")) {
             return serveFile(uri.replace("/nls/", "/src/main/java/com/sb/elsinore/nls/"),
                 header, rootDir);
         }
 
-        if (uri.equalsIgnoreCase("/stop")) {
-            System.exit(128);
-        }
-
-        for (java.lang.reflect.Method m
-                : UrlEndpoints.class.getDeclaredMethods()) {
-           UrlEndpoint urlMethod = m.getAnnotation(UrlEndpoint.class);
-           if (urlMethod != null) {
-               if (urlMethod.url().equalsIgnoreCase(uri)) {
-                   try {
-                       UrlEndpoints urlEndpoints = new UrlEndpoints();
-                       urlEndpoints.parameters = parms;
-                       urlEndpoints.files = files;
-                       urlEndpoints.header = header;
-                       urlEndpoints.rootDir = rootDir;
-                       return (Response) m.invoke(urlEndpoints);
-                   } catch (Exception e) {
-                       LOG.warning("Couldn't access URL: " + uri);
-                       e.printStackTrace();
-                   }
-               }
-           }
+        if (ROUTER.hasRoute(uri)) {
+            UrlEndpoints urlEndpoints = new UrlEndpoints();
+            urlEndpoints.parameters = parms;
+            urlEndpoints.files = files;
+            urlEndpoints.header = header;
+            urlEndpoints.rootDir = rootDir;
+            Response response = ROUTER.route(uri, urlEndpoints);
+            if (ROUTER.changesStatus(uri)) {
+                LaunchControl.statusChanged();
+            }
+            if (response != null) {
+                return response;
+            }
         }
 
         if (!uri.equals("") && new File(rootDir, uri).exists()) {
@@ -323,6 +257,7 @@ public class BrewServer extends NanoHTTPD {
         JSONObject usage = new JSONObject();
         usage.put("controller", "Get the main controller page");
         usage.put("getstatus", "Get the current status as a JSON object");
+        usage.put("events", "Stream status changes as Server-Sent Events");
         usage.put("timers", "Get the current timer status");
 
         usage.put("addswitch", "Add a new switch");
@@ -0,0 +1,290 @@
+package com.sb.elsinore;
+
+import Cosm.CosmException;
+import Cosm.Datastream;
+import Cosm.Unit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes datastream values to Cosm (Pachube) on its own thread.
+ * Values are handed over through a bounded queue so the caller never waits
+ * on the network, if the queue is full the value is dropped. The uploader
+ * keeps the latest value for each datastream and pushes them every
+ * push interval. When a push fails the remaining values are kept and the
+ * interval is doubled up to the maximum backoff.
+ */
+public final class CosmUploader implements Runnable {
+
+    /**
+     * Default number of values that can be waiting in the queue.
+     */
+    public static final int QUEUE_SIZE = 256;
+    /**
+     * Default time between pushes in milliseconds.
+     */
+    public static final long PUSH_INTERVAL = 5000;
+    /**
+     * Default maximum time between pushes when the uploads are failing.
+     */
+    public static final long MAX_BACKOFF = 300000;
+
+    /**
+     * Sends a single datastream value.
+     */
+    public interface Transport {
+        /**
+         * Push the value to the datastream.
+         * @param datastream The datastream ID.
+         * @param value The current value.
+         * @param scale The temperature scale of the value.
+         * @throws Exception If the value couldn't be pushed.
+         */
+        void push(String datastream, String value, String scale)
+                throws Exception;
+    }
+
+    /**
+     * A value waiting to be pushed.
+     */
+    private static final class Update {
+        private final String datastream;
+        private final String value;
+        private final String scale;
+
+        private Update(final String datastream, final String value,
+                final String scale) {
+            this.datastream = datastream;
+            this.value = value;
+            this.scale = scale;
+        }
+    }
+
+    private final Transport transport;
+    private final BlockingQueue<Update> queue;
+    private final long pushInterval;
+    private final long maxBackoff;
+    /**
+     * The latest value for each datastream, only used by the upload thread.
+     */
+    private final Map<String, Update> pending = new LinkedHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile boolean running = false;
+    private volatile long currentBackoff;
+    private Thread thread = null;
+
+    /**
+     * Create an uploader with the default queue size and intervals.
+     * @param transport The transport to push values with.
+     */
+    public CosmUploader(final Transport transport) {
+        this(transport, QUEUE_SIZE, PUSH_INTERVAL, MAX_BACKOFF);
+    }
+
+    /**
+     * Create an uploader.
+     * @param transport The transport to push values with.
+     * @param queueSize The number of values that can be waiting.
+     * @param pushInterval The time between pushes in milliseconds.
+     * @param maxBackoff The longest time between pushes when failing.
+     */
+    public CosmUploader(final Transport transport, final int queueSize,
+            final long pushInterval, final long maxBackoff) {
+        this.transport = transport;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.pushInterval = pushInterval;
+        this.maxBackoff = Math.max(pushInterval, maxBackoff);
+        this.currentBackoff = pushInterval;
+    }
+
+    /**
+     * Start the upload thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this);
+        thread.setName("Cosm Uploader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the upload thread, anything not pushed yet is discarded.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Queue a value for the datastream. This never blocks.
+     * @param datastream The datastream ID.
+     * @param value The current value.
+     * @param scale The temperature scale of the value.
+     * @return False if the queue was full and the value was dropped.
+     */
+    public boolean submit(final String datastream, final String value,
+            final String scale) {
+        if (queue.offer(new Update(datastream, value, scale))) {
+            submitted.incrementAndGet();
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public void run() {
+        long nextPush = System.currentTimeMillis() + pushInterval;
+
+        while (running) {
+            try {
+                long wait = nextPush - System.currentTimeMillis();
+                if (wait > 0) {
+                    Update update = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (update != null) {
+                        merge(update);
+                    }
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            drain();
+            if (pushPending()) {
+                currentBackoff = pushInterval;
+            } else {
+                currentBackoff = Math.min(currentBackoff * 2, maxBackoff);
+                BrewServer.LOG.info("Cosm upload failed, retrying in "
+                        + currentBackoff + "ms");
+            }
+            nextPush = System.currentTimeMillis() + currentBackoff;
+        }
+    }
+
+    /**
+     * Move everything waiting in the queue into the pending map.
+     */
+    private void drain() {
+        List<Update> updates = new ArrayList<>();
+        queue.drainTo(updates);
+        for (Update update : updates) {
+            merge(update);
+        }
+    }
+
+    /**
+     * Replace the pending value for the datastream.
+     * @param update The new value.
+     */
+    private void merge(final Update update) {
+        // remove first so the datastream moves to the end of the order
+        pending.remove(update.datastream);
+        pending.put(update.datastream, update);
+    }
+
+    /**
+     * Push every pending value, stopping at the first failure.
+     * @return True if everything was pushed.
+     */
+    private boolean pushPending() {
+        Iterator<Update> iterator = pending.values().iterator();
+        while (iterator.hasNext() && running) {
+            Update update = iterator.next();
+            try {
+                transport.push(update.datastream, update.value, update.scale);
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                BrewServer.LOG.info("Failed to update datastream "
+                        + update.datastream + ": " + e.getMessage());
+                return false;
+            }
+            iterator.remove();
+            uploaded.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of values accepted by {@link #submit}.
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * @return The number of values dropped because the queue was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of values pushed.
+     */
+    public long getUploaded() {
+        return uploaded.get();
+    }
+
+    /**
+     * @return The number of failed pushes.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return The current time between pushes in milliseconds.
+     */
+    public long getCurrentBackoff() {
+        return currentBackoff;
+    }
+
+    /**
+     * Pushes values to the Cosm feed in {@link LaunchControl}, creating
+     * the datastream if needed.
+     */
+    public static final class CosmTransport implements Transport {
+        @Override
+        public void push(final String datastream, final String value,
+                final String scale) throws CosmException {
+            if (LaunchControl.cosm == null || LaunchControl.cosmFeed == null) {
+                throw new CosmException("No Cosm feed available");
+            }
+
+            Datastream tData = LaunchControl.findDatastream(datastream);
+            if (tData == null) {
+                throw new CosmException("Couldn't find datastream "
+                        + datastream);
+            }
+            tData.setCurrentValue(value);
+            Unit tUnit = new Unit();
+            tUnit.setType("temp");
+            tUnit.setSymbol(scale);
+            tUnit.setLabel("temperature");
+            tData.setUnit(tUnit);
+            LaunchControl.cosm.updateDatastream(
+                    LaunchControl.cosmFeed.getId(), datastream, tData);
+        }
+    }
+}
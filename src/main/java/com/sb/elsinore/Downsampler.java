@@ -0,0 +1,199 @@
+package com.sb.elsinore;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reduces a range of a {@link SeriesFile} to a bounded number of points
+ * for graphing. Both methods pick existing records, so the result is a list
+ * of record indices in time order, and both make a single pass over the
+ * range.
+ */
+public final class Downsampler {
+
+    /**
+     * The downsampling methods.
+     */
+    public enum Method {
+        /**
+         * Largest triangle three buckets, keeps the visual shape.
+         */
+        LTTB,
+        /**
+         * The minimum and maximum of each bucket, keeps the peaks.
+         */
+        MINMAX;
+
+        /**
+         * Find the method by name.
+         * @param name The method name, case insensitive.
+         * @return The method, LTTB if the name is null or unknown.
+         */
+        public static Method fromString(final String name) {
+            if (name != null
+                    && name.toUpperCase(Locale.ENGLISH).equals("MINMAX")) {
+                return MINMAX;
+            }
+            return LTTB;
+        }
+    }
+
+    /**
+     * The fewest points a downsampled range has, the first and the last.
+     */
+    public static final int MIN_POINTS = 2;
+
+    private Downsampler() {
+    }
+
+    /**
+     * Work out how many points to ask for so each bucket is resolution
+     * wide. LTTB picks one point per bucket, min/max picks two.
+     * @param span The time covered by the range, in milliseconds.
+     * @param resolution The bucket width, in milliseconds.
+     * @param method The downsampling method.
+     * @return The number of points to pass to
+     *  {@link #downsample(SeriesFile, int, int, int, Method)}.
+     */
+    public static int pointsFor(final long span, final long resolution,
+            final Method method) {
+        long buckets = Math.max(0, span) / Math.max(1, resolution) + 1;
+        buckets = Math.min(buckets, Integer.MAX_VALUE / 2);
+        if (method == Method.MINMAX) {
+            return (int) buckets * 2;
+        }
+        return (int) buckets;
+    }
+
+    /**
+     * Pick at most maxPoints records from the range.
+     * @param series The series to read.
+     * @param start The first record index, inclusive.
+     * @param end The last record index, exclusive.
+     * @param maxPoints The maximum number of points to return, raised to
+     *                  {@link #MIN_POINTS} if it's lower.
+     * @param method The downsampling method.
+     * @return The selected record indices in time order.
+     */
+    public static int[] downsample(final SeriesFile series, final int start,
+            final int end, final int maxPoints, final Method method) {
+        int count = end - start;
+        if (count <= 0) {
+            return new int[0];
+        }
+        int points = Math.max(maxPoints, MIN_POINTS);
+        if (count <= points) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) {
+                all[i] = start + i;
+            }
+            return all;
+        }
+
+        if (method == Method.MINMAX) {
+            return minMax(series, start, end, points);
+        }
+        if (points < 3) {
+            // No buckets between the ends
+            return new int[] {start, end - 1};
+        }
+        return lttb(series, start, end, points);
+    }
+
+    /**
+     * Largest triangle three buckets. The first and last points are always
+     * kept, then one point is chosen from each bucket in between, the one
+     * that forms the largest triangle with the previous choice and the
+     * average of the next bucket.
+     */
+    private static int[] lttb(final SeriesFile series, final int start,
+            final int end, final int maxPoints) {
+        int[] result = new int[maxPoints];
+        int count = end - start;
+        // Use times relative to the start to keep the doubles accurate
+        long origin = series.getTime(start);
+        double bucketSize = (double) (count - 2) / (maxPoints - 2);
+
+        int selected = start;
+        result[0] = start;
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            // The average of the next bucket
+            int avgStart = start + (int) ((bucket + 1) * bucketSize) + 1;
+            int avgEnd = Math.min(
+                    start + (int) ((bucket + 2) * bucketSize) + 1, end);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = avgStart; i < avgEnd; i++) {
+                avgX += series.getTime(i) - origin;
+                avgY += series.getValue(i);
+            }
+            int avgCount = avgEnd - avgStart;
+            avgX /= avgCount;
+            avgY /= avgCount;
+
+            // The point in this bucket with the largest triangle
+            int rangeStart = start + (int) (bucket * bucketSize) + 1;
+            int rangeEnd = start + (int) ((bucket + 1) * bucketSize) + 1;
+            double aX = series.getTime(selected) - origin;
+            double aY = series.getValue(selected);
+            double maxArea = -1;
+            int maxIndex = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                double area = Math.abs(
+                        (aX - avgX) * (series.getValue(i) - aY)
+                        - (aX - (series.getTime(i) - origin)) * (avgY - aY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            result[bucket + 1] = maxIndex;
+            selected = maxIndex;
+        }
+        result[maxPoints - 1] = end - 1;
+        return result;
+    }
+
+    /**
+     * Split the range into maxPoints / 2 buckets and keep the lowest and
+     * highest point of each one, in time order.
+     */
+    private static int[] minMax(final SeriesFile series, final int start,
+            final int end, final int maxPoints) {
+        int buckets = maxPoints / 2;
+        int[] result = new int[buckets * 2];
+        int size = 0;
+        int count = end - start;
+        double bucketSize = (double) count / buckets;
+
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int rangeStart = start + (int) (bucket * bucketSize);
+            int rangeEnd = Math.min(
+                    start + (int) ((bucket + 1) * bucketSize), end);
+            if (rangeStart >= rangeEnd) {
+                continue;
+            }
+
+            int minIndex = rangeStart;
+            int maxIndex = rangeStart;
+            float min = series.getValue(rangeStart);
+            float max = min;
+            for (int i = rangeStart + 1; i < rangeEnd; i++) {
+                float value = series.getValue(i);
+                if (value < min) {
+                    min = value;
+                    minIndex = i;
+                } else if (value > max) {
+                    max = value;
+                    maxIndex = i;
+                }
+            }
+
+            result[size++] = Math.min(minIndex, maxIndex);
+            if (minIndex != maxIndex) {
+                result[size++] = Math.max(minIndex, maxIndex);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
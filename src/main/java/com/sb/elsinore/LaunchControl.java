@@ -3,6 +3,9 @@ package com.sb.elsinore;
 import Cosm.*;
 import com.sb.common.CollectionsUtil;
 import com.sb.elsinore.devices.I2CDevice;
+import com.sb.elsinore.devices.I2CScanner;
+import com.sb.elsinore.hardware.Hardware;
+import com.sb.elsinore.hardware.SimulatedBrewery;
 import com.sb.elsinore.inputs.PhSensor;
 import com.sb.elsinore.notificiations.Notifications;
 import jGPIO.GPIO;
@@ -11,10 +14,7 @@ import org.apache.commons.cli.*;
 import org.ini4j.ConfigParser;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.owfs.jowfsclient.Enums.OwPersistence;
 import org.owfs.jowfsclient.OwfsConnection;
-import org.owfs.jowfsclient.OwfsConnectionConfig;
-import org.owfs.jowfsclient.OwfsConnectionFactory;
 import org.owfs.jowfsclient.OwfsException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -43,6 +43,7 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
@@ -113,10 +114,6 @@ public final class LaunchControl {
      */
     public static final CopyOnWriteArrayList<PhSensor> phSensorList = new CopyOnWriteArrayList<>();
     public static final HashMap<String, I2CDevice> i2cDeviceList = new HashMap<>();
-    /**
-     * Temperature Thread list.
-     */
-    public static List<Thread> tempThreads = new ArrayList<>();
     /**
      * PID Thread List.
      */
@@ -160,6 +157,10 @@ public final class LaunchControl {
      * The list of available datastreams from COSM.
      */
     public static Datastream[] cosmStreams = null;
+    /**
+     * Pushes the temperature values to COSM in the background.
+     */
+    public static CosmUploader cosmUploader = null;
 
     /**
      * The Default scale to be used.
@@ -170,10 +171,6 @@ public final class LaunchControl {
      * The BrewDay object to manage timers.
      */
     public static BrewDay brewDay = null;
-    /**
-     * One Wire File System Connection.
-     */
-    public static OwfsConnection owfsConnection = null;
     /**
      * Flag whether the user has selected OWFS.
      */
@@ -210,6 +207,19 @@ public final class LaunchControl {
      */
     public static XPathExpression expr = null;
     public static String message = "";
+    /**
+     * The maximum age of a status snapshot in milliseconds, this covers
+     * any status value that changes without calling statusChanged(), like
+     * the timer and trigger countdowns. It matches the web UI's one second
+     * poll, so a countdown is never served more than a tick late.
+     */
+    public static long STATUS_MAX_AGE = 1000;
+    /**
+     * Incremented whenever something in the status changes.
+     */
+    private static final AtomicLong statusVersion = new AtomicLong();
+    private static final Object statusLock = new Object();
+    private static volatile StatusSnapshot statusSnapshot = null;
     public static double recorderDiff = .15d;
     public static boolean recorderEnabled = false;
     public static String recorderDirectory = StatusRecorder.defaultDirectory;
@@ -308,6 +318,16 @@ public final class LaunchControl {
                     }
                 }
 
+                if (startupCommand.hasOption("simulate")) {
+                    double speed = 1;
+                    if (startupCommand.hasOption("simspeed")) {
+                        speed = Double.parseDouble(startupCommand
+                                .getOptionValue("simspeed"));
+                    }
+                    simulate(Integer.parseInt(startupCommand
+                            .getOptionValue("simulate")), speed);
+                }
+
             } catch (ParseException e) {
                 BrewServer.LOG.info("Error when parsing the command line");
                 e.printStackTrace();
@@ -365,6 +385,40 @@ public final class LaunchControl {
         startupOptions.addOption("rdirectory",
                 StatusRecorder.DIRECTORY_PROPERTY, true,
                 "Set the recorder directory output, default: graph-data/");
+        startupOptions.addOption("simulate", true,
+                "Run against a simulated brewery with this many vessels"
+                        + " instead of the GPIOs and probes");
+        startupOptions.addOption("simspeed", true,
+                "How many times faster than real time the simulated"
+                        + " vessels heat and cool, default: 1");
+    }
+
+    /**
+     * Switch to a simulated brewery, each vessel has a probe listed as a
+     * One Wire device and a heater on GPIO1 onwards.
+     * @param vessels The number of vessels.
+     * @param speed How many times faster than real time the vessels change.
+     * @return The simulated brewery, started.
+     */
+    public static SimulatedBrewery simulate(final int vessels,
+            final double speed) {
+        try {
+            SimulatedBrewery brewery = new SimulatedBrewery(
+                    Files.createTempDirectory("elsinore-w1").toFile(), speed);
+            for (int i = 1; i <= vessels; i++) {
+                brewery.addVessel("Vessel " + i);
+            }
+            brewery.start();
+            Hardware.setInstance(brewery);
+            BrewServer.LOG.warning("Simulating " + vessels + " vessels in "
+                    + brewery.getOneWireDevices());
+            return brewery;
+        } catch (IOException e) {
+            BrewServer.LOG.log(Level.SEVERE,
+                    "Couldn't set up the simulated brewery", e);
+            System.exit(-1);
+            return null;
+        }
     }
 
     /**
@@ -387,7 +441,7 @@ public final class LaunchControl {
         /**
          * Check to make sure we have a valid folder for one wire straight away.
          */
-        File w1Folder = new File("/sys/bus/w1/devices/");
+        File w1Folder = new File(Hardware.getInstance().getOneWireDevices());
         if (!w1Folder.exists()) {
             BrewServer.LOG.info("Couldn't read the one wire devices directory!");
             BrewServer.LOG.info("Did you set up One Wire?");
@@ -449,6 +503,11 @@ public final class LaunchControl {
 
         // get the list of feeds
         cosmStreams = cosmFeed.getDatastreams();
+
+        if (cosmUploader == null) {
+            cosmUploader = new CosmUploader(new CosmUploader.CosmTransport());
+            cosmUploader.start();
+        }
     }
 
     /*****
@@ -517,14 +576,59 @@ public final class LaunchControl {
         return "Grabbed images";
     }
 
+    /**
+     * Mark the system status as changed, the next call to
+     * {@link #getStatusSnapshot()} will rebuild the status.
+     */
+    public static void statusChanged() {
+        statusVersion.incrementAndGet();
+        StatusEvents.getInstance().statusChanged();
+    }
+
+    /**
+     * Get the current status snapshot. The snapshot is only rebuilt when the
+     * status has changed since it was built, or it is older than
+     * {@link #STATUS_MAX_AGE}, so concurrent callers share one copy.
+     *
+     * @return The current status snapshot.
+     */
+    public static StatusSnapshot getStatusSnapshot() {
+        StatusSnapshot snapshot = statusSnapshot;
+        if (snapshot != null
+                && snapshot.isCurrent(statusVersion.get(), STATUS_MAX_AGE)) {
+            return snapshot;
+        }
+
+        synchronized (statusLock) {
+            // Another thread may have rebuilt it while we waited
+            long version = statusVersion.get();
+            snapshot = statusSnapshot;
+            if (snapshot == null
+                    || !snapshot.isCurrent(version, STATUS_MAX_AGE)) {
+                snapshot = new StatusSnapshot(version, buildJSONStatus());
+                statusSnapshot = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
     /******
      * Get the JSON Output String. This is the current Status of the PIDs,
      * Temps, Switches, etc...
      *
      * @return The JSON String of the current status.
      */
-    @SuppressWarnings("unchecked")
     public static String getJSONStatus() {
+        return getStatusSnapshot().getJSON();
+    }
+
+    /**
+     * Build the JSON status from the current state of the system.
+     *
+     * @return The JSON object of the current status.
+     */
+    @SuppressWarnings("unchecked")
+    private static JSONObject buildJSONStatus() {
 
         // get each setting add it to the JSON
         JSONObject rObj = new JSONObject();
@@ -576,27 +680,6 @@ public final class LaunchControl {
             // Add the JSON object with the PID Name
             vesselJSON.add(tJSON);
 
-            // update COSM
-            if (cosmFeed != null) {
-                Datastream tData = findDatastream(t.getName());
-                if (tData != null) {
-                    tData.setCurrentValue(t.getTemp().toString());
-                    Unit tUnit = new Unit();
-                    tUnit.setType("temp");
-                    tUnit.setSymbol(t.getScale());
-                    tUnit.setLabel("temperature");
-                    tData.setUnit(tUnit);
-                    try {
-                        cosm.updateDatastream(cosmFeed.getId(), t.getName(),
-                                tData);
-                    } catch (CosmException e) {
-                        BrewServer.LOG.info("Failed to update datastream: "
-                                + e.getMessage());
-                    }
-                }
-
-            }
-
             if (t.getTriggerControl() != null
                     && t.getTriggerControl().triggerCount() > 0) {
                 triggerJSON.put(t.getProbe(),
@@ -638,7 +721,7 @@ public final class LaunchControl {
 
         // Add the notifications information
         rObj.put("notifications", Notifications.getInstance().getNotificationStatus());
-        return rObj.toString();
+        return rObj;
     }
 
     /**
@@ -651,6 +734,50 @@ public final class LaunchControl {
         retVal.put(StatusRecorder.RECORDER, LaunchControl.recorder != null);
         retVal.put(StatusRecorder.RECORDER_TIME, StatusRecorder.SLEEP);
         retVal.put(StatusRecorder.RECORDER_DIFF, StatusRecorder.THRESHOLD);
+        retVal.put(StatusRecorder.RECORDER_FLUSH, StatusRecorder.FLUSH_INTERVAL);
+        retVal.put(StatusRecorder.RECORDER_SYNC, StatusRecorder.SYNC_ON_FLUSH);
+        retVal.put(BrewServer.SERVER_THREADS, BrewServer.THREADS);
+        retVal.put(BrewServer.SERVER_QUEUE, BrewServer.QUEUE_SIZE);
+        retVal.put(BrewServer.SERVER_STREAMS, BrewServer.STREAMS);
+        retVal.put(SensorScheduler.SENSOR_THREADS, SensorScheduler.THREADS);
+        retVal.put(OutputScheduler.OUTPUT_STAGGER, OutputScheduler.STAGGER);
+        retVal.put(OwfsBus.OWFS_UNCACHED, OwfsBus.UNCACHED);
+        retVal.put(OwfsBus.OWFS_SIMULTANEOUS, OwfsBus.SIMULTANEOUS);
+        retVal.put(I2CScanner.I2C_SCAN_INTERVAL, I2CScanner.SCAN_INTERVAL);
+        retVal.put(I2CScanner.I2C_CONTINUOUS, I2CScanner.CONTINUOUS);
+        retVal.put(AnalogFilter.FILTER_OVERSAMPLE, AnalogFilter.OVERSAMPLE);
+        retVal.put(AnalogFilter.FILTER_MEDIAN, AnalogFilter.MEDIAN);
+        retVal.put(AnalogFilter.FILTER_SMOOTHING, AnalogFilter.SMOOTHING);
+        if (useOWFS) {
+            OwfsPool owfsPool = OwfsPool.getInstance();
+            JSONObject owfsStatus = new JSONObject();
+            owfsStatus.put("available", owfsPool.isAvailable());
+            owfsStatus.put("open", owfsPool.getOpen());
+            owfsStatus.put("idle", owfsPool.getIdle());
+            owfsStatus.put("inUse", owfsPool.getInUse());
+            owfsStatus.put("acquired", owfsPool.getAcquired());
+            owfsStatus.put("connects", owfsPool.getConnects());
+            owfsStatus.put("failures", owfsPool.getFailures());
+            owfsStatus.put("consecutiveFailures",
+                    owfsPool.getConsecutiveFailures());
+            owfsStatus.put("refused", owfsPool.getRefused());
+            owfsStatus.put("retryIn", owfsPool.getRetryIn());
+            retVal.put("owfsPool", owfsStatus);
+        }
+        NanoHTTPD.BoundedAsyncRunner workers = BrewServer.getWorkers();
+        if (workers != null) {
+            JSONObject workerStatus = new JSONObject();
+            workerStatus.put("threads", workers.getThreads());
+            workerStatus.put("active", workers.getActive());
+            workerStatus.put("queued", workers.getQueued());
+            workerStatus.put("rejected", workers.getRejected());
+            NanoHTTPD.BoundedAsyncRunner streamers = BrewServer.getStreamers();
+            if (streamers != null) {
+                workerStatus.put("streams", streamers.getActive());
+                workerStatus.put("rejectedStreams", streamers.getRejected());
+            }
+            retVal.put("serverPool", workerStatus);
+        }
         retVal.put(LaunchControl.RESTORE, LaunchControl.m_restore);
         return retVal.toJSONString();
     }
@@ -712,6 +839,21 @@ public final class LaunchControl {
 
             scale = getTextForElement(config, LaunchControl.SCALE, "F");
 
+            StatusRecorder.FLUSH_INTERVAL = Long.parseLong(getTextForElement(config, StatusRecorder.RECORDER_FLUSH, "30000"));
+            StatusRecorder.SYNC_ON_FLUSH = Boolean.parseBoolean(getTextForElement(config, StatusRecorder.RECORDER_SYNC, "false"));
+            BrewServer.THREADS = Integer.parseInt(getTextForElement(config, BrewServer.SERVER_THREADS, "16"));
+            BrewServer.QUEUE_SIZE = Integer.parseInt(getTextForElement(config, BrewServer.SERVER_QUEUE, "64"));
+            BrewServer.STREAMS = Integer.parseInt(getTextForElement(config, BrewServer.SERVER_STREAMS, "8"));
+            SensorScheduler.THREADS = Integer.parseInt(getTextForElement(config, SensorScheduler.SENSOR_THREADS, "1"));
+            OutputScheduler.STAGGER = Boolean.parseBoolean(getTextForElement(config, OutputScheduler.OUTPUT_STAGGER, "false"));
+            OwfsBus.UNCACHED = Boolean.parseBoolean(getTextForElement(config, OwfsBus.OWFS_UNCACHED, "false"));
+            OwfsBus.SIMULTANEOUS = Boolean.parseBoolean(getTextForElement(config, OwfsBus.OWFS_SIMULTANEOUS, "false"));
+            I2CScanner.SCAN_INTERVAL = Long.parseLong(getTextForElement(config, I2CScanner.I2C_SCAN_INTERVAL, "1000"));
+            I2CScanner.CONTINUOUS = Boolean.parseBoolean(getTextForElement(config, I2CScanner.I2C_CONTINUOUS, "false"));
+            AnalogFilter.OVERSAMPLE = Integer.parseInt(getTextForElement(config, AnalogFilter.FILTER_OVERSAMPLE, "1"));
+            AnalogFilter.MEDIAN = Integer.parseInt(getTextForElement(config, AnalogFilter.FILTER_MEDIAN, "1"));
+            AnalogFilter.SMOOTHING = Double.parseDouble(getTextForElement(config, AnalogFilter.FILTER_SMOOTHING, "1"));
+
             if (Boolean.parseBoolean(getTextForElement(config, StatusRecorder.RECORDER, "false"))) {
                 LaunchControl.enableRecorder();
             } else {
@@ -898,6 +1040,7 @@ public final class LaunchControl {
             }
 
             phSensorList.add(temp);
+            SensorScheduler.getInstance().add(temp);
         }
     }
 
@@ -911,13 +1054,20 @@ public final class LaunchControl {
     public static I2CDevice getI2CDevice(String devNumber, String devAddress, String devType)
     {
         String devKey = String.format("%s_%s", devNumber, devAddress);
-        I2CDevice i2CDevice = i2cDeviceList.get(devKey);
-        if (i2CDevice == null)
-        {
-            i2CDevice = I2CDevice.create(devNumber, devAddress, devType);
-        }
+        synchronized (i2cDeviceList) {
+            // One instance per converter, so its channels are scanned together
+            I2CDevice i2CDevice = i2cDeviceList.get(devKey);
+            if (i2CDevice == null)
+            {
+                i2CDevice = Hardware.getInstance().getI2CDevice(devNumber,
+                        devAddress, devType);
+                if (i2CDevice != null) {
+                    i2cDeviceList.put(devKey, i2CDevice);
+                }
+            }
 
-        return  i2CDevice;
+            return  i2CDevice;
+        }
     }
 
     /**
@@ -950,6 +1100,24 @@ public final class LaunchControl {
 
     }
 
+    /**
+     * Start reading the probe. Probes on the kernel One Wire bus are read
+     * together by the {@link OneWireBus}, probes on the OWFS server by the
+     * {@link OwfsBus}, the rest are polled on their own.
+     * @param temp The probe to read.
+     */
+    public static void startPolling(final Temp temp) {
+        if (OneWireBus.BUS.equals(temp.getBus())) {
+            OneWireBus.getInstance().add(temp);
+            SensorScheduler.getInstance().add(OneWireBus.getInstance());
+        } else if (OwfsBus.BUS.equals(temp.getBus())) {
+            OwfsBus.getInstance().add(temp);
+            SensorScheduler.getInstance().add(OwfsBus.getInstance());
+        } else {
+            SensorScheduler.getInstance().add(temp);
+        }
+    }
+
     // Add the system temperature
     public static void addSystemTemp() {
         Temp tTemp = new Temp("System", "System");
@@ -957,11 +1125,8 @@ public final class LaunchControl {
         BrewServer.LOG.info("Adding " + tTemp.getName());
         // setup the scale for each temp probe
         tTemp.setScale(scale);
-        // setup the threads
-        Thread tThread = new Thread(tTemp);
-        tThread.setName("Temp_system");
-        tempThreads.add(tThread);
-        tThread.start();
+        // start polling the probe
+        startPolling(tTemp);
     }
 
     public static void delSystemTemp() {
@@ -1047,11 +1212,8 @@ public final class LaunchControl {
         // setup the scale for each temp probe
         tTemp.setScale(scale);
 
-        // setup the threads
-        Thread tThread = new Thread(tTemp);
-        tThread.setName("Temp_" + tTemp.getName());
-        tempThreads.add(tThread);
-        tThread.start();
+        // start polling the probe
+        startPolling(tTemp);
 
         if ((heatgpio != null && !heatgpio.equals("")) || (coolgpio != null && !coolgpio.equals(""))) {
 
@@ -1256,14 +1418,15 @@ public final class LaunchControl {
     }
 
     /**
-     * List the one wire devices in /sys/bus/w1/devices.
+     * List the one wire devices in /sys/bus/w1/devices, or wherever the
+     * {@link Hardware} lists them.
      *
      * @param prompt
      *            Prompt to select OWFS if needed
      */
     public static void listOneWireSys(final boolean prompt) {
         // try to access the list of 1-wire devices
-        File w1Folder = new File("/sys/bus/w1/devices/");
+        File w1Folder = new File(Hardware.getInstance().getOneWireDevices());
         if (!w1Folder.exists()) {
             BrewServer.LOG.warning("Couldn't read the one wire devices directory!");
             BrewServer.LOG.warning("Did you set up One Wire?");
@@ -1292,7 +1455,7 @@ public final class LaunchControl {
                                 + "Do you want to setup OWFS? [y/N]");
                         String t = readInput();
                         if (t.toLowerCase().startsWith("y")) {
-                            if (owfsConnection == null) {
+                            if (!OwfsPool.getInstance().isConfigured()) {
                                 createOWFS();
                             }
 
@@ -1314,11 +1477,8 @@ public final class LaunchControl {
                 tempList.add(currentTemp);
                 // setup the scale for each temp probe
                 currentTemp.setScale(scale);
-                // setup the threads
-                Thread tThread = new Thread(currentTemp);
-                tThread.setName("Temp_" + currentTemp.getName());
-                tempThreads.add(tThread);
-                tThread.start();
+                // start polling the probe
+                startPolling(currentTemp);
             }
         }
     }
@@ -1433,6 +1593,102 @@ public final class LaunchControl {
 
         tempElement.setTextContent(Long.toString(StatusRecorder.SLEEP));
 
+        tempElement = getFirstElement(generalElement, StatusRecorder.RECORDER_FLUSH);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, StatusRecorder.RECORDER_FLUSH);
+        }
+
+        tempElement.setTextContent(Long.toString(StatusRecorder.FLUSH_INTERVAL));
+
+        tempElement = getFirstElement(generalElement, StatusRecorder.RECORDER_SYNC);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, StatusRecorder.RECORDER_SYNC);
+        }
+
+        tempElement.setTextContent(Boolean.toString(StatusRecorder.SYNC_ON_FLUSH));
+
+        tempElement = getFirstElement(generalElement, BrewServer.SERVER_THREADS);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, BrewServer.SERVER_THREADS);
+        }
+
+        tempElement.setTextContent(Integer.toString(BrewServer.THREADS));
+
+        tempElement = getFirstElement(generalElement, BrewServer.SERVER_QUEUE);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, BrewServer.SERVER_QUEUE);
+        }
+
+        tempElement.setTextContent(Integer.toString(BrewServer.QUEUE_SIZE));
+
+        tempElement = getFirstElement(generalElement, BrewServer.SERVER_STREAMS);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, BrewServer.SERVER_STREAMS);
+        }
+
+        tempElement.setTextContent(Integer.toString(BrewServer.STREAMS));
+
+        tempElement = getFirstElement(generalElement, SensorScheduler.SENSOR_THREADS);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, SensorScheduler.SENSOR_THREADS);
+        }
+
+        tempElement.setTextContent(Integer.toString(SensorScheduler.THREADS));
+
+        tempElement = getFirstElement(generalElement, OutputScheduler.OUTPUT_STAGGER);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, OutputScheduler.OUTPUT_STAGGER);
+        }
+
+        tempElement.setTextContent(Boolean.toString(OutputScheduler.STAGGER));
+
+        tempElement = getFirstElement(generalElement, I2CScanner.I2C_SCAN_INTERVAL);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, I2CScanner.I2C_SCAN_INTERVAL);
+        }
+
+        tempElement.setTextContent(Long.toString(I2CScanner.SCAN_INTERVAL));
+
+        tempElement = getFirstElement(generalElement, I2CScanner.I2C_CONTINUOUS);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, I2CScanner.I2C_CONTINUOUS);
+        }
+
+        tempElement.setTextContent(Boolean.toString(I2CScanner.CONTINUOUS));
+
+        tempElement = getFirstElement(generalElement, AnalogFilter.FILTER_OVERSAMPLE);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, AnalogFilter.FILTER_OVERSAMPLE);
+        }
+
+        tempElement.setTextContent(Integer.toString(AnalogFilter.OVERSAMPLE));
+
+        tempElement = getFirstElement(generalElement, AnalogFilter.FILTER_MEDIAN);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, AnalogFilter.FILTER_MEDIAN);
+        }
+
+        tempElement.setTextContent(Integer.toString(AnalogFilter.MEDIAN));
+
+        tempElement = getFirstElement(generalElement, AnalogFilter.FILTER_SMOOTHING);
+
+        if (tempElement == null) {
+            tempElement = addNewElement(generalElement, AnalogFilter.FILTER_SMOOTHING);
+        }
+
+        tempElement.setTextContent(Double.toString(AnalogFilter.SMOOTHING));
+
         if (breweryName != null && !breweryName.equals("")) {
             tempElement = getFirstElement(generalElement, LaunchControl.BREWERY_NAME);
 
@@ -1463,6 +1719,22 @@ public final class LaunchControl {
 
                 tempElement.setTextContent(Integer.toString(owfsPort));
             }
+
+            tempElement = getFirstElement(generalElement, OwfsBus.OWFS_UNCACHED);
+
+            if (tempElement == null) {
+                tempElement = addNewElement(generalElement, OwfsBus.OWFS_UNCACHED);
+            }
+
+            tempElement.setTextContent(Boolean.toString(OwfsBus.UNCACHED));
+
+            tempElement = getFirstElement(generalElement, OwfsBus.OWFS_SIMULTANEOUS);
+
+            if (tempElement == null) {
+                tempElement = addNewElement(generalElement, OwfsBus.OWFS_SIMULTANEOUS);
+            }
+
+            tempElement.setTextContent(Boolean.toString(OwfsBus.SIMULTANEOUS));
         }
 
         tempElement = getFirstElement(generalElement, LaunchControl.RESTORE);
@@ -1510,26 +1782,15 @@ public final class LaunchControl {
      * Create the OWFSConnection configuration in a thread safe manner.
      */
     public static void setupOWFS() {
-        if (owfsConnection != null) {
-            try {
-                owfsConnection.disconnect();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        if (owfsServer == null || owfsPort == null) {
+            BrewServer.LOG.warning("OWFS is not able to be setup. You may need to rerun setup.");
+            return;
         }
 
-        // Use the thread safe mechanism
+        // The connections are pooled, the ones in use are closed when done
         BrewServer.LOG.info("Connecting to " + owfsServer + ":" + owfsPort);
-        try {
-            OwfsConnectionConfig owConfig = new OwfsConnectionConfig(owfsServer,
-                    owfsPort);
-            owConfig.setPersistence(OwPersistence.ON);
-            owfsConnection = OwfsConnectionFactory
-                    .newOwfsClientThreadSafe(owConfig);
-            useOWFS = true;
-        } catch (NullPointerException npe) {
-            BrewServer.LOG.warning("OWFS is not able to be setup. You may need to rerun setup.");
-        }
+        OwfsPool.getInstance().configure(owfsServer, owfsPort);
+        useOWFS = true;
     }
 
     /**
@@ -1606,26 +1867,7 @@ public final class LaunchControl {
      */
     public static String readOWFSPath(final String path) throws OwfsException,
             IOException {
-        String result = "";
-        if (owfsConnection == null) {
-            setupOWFS();
-            if (owfsConnection == null) {
-                BrewServer.LOG.info("no OWFS connection");
-                return "";
-            }
-        }
-        try {
-            if (owfsConnection.exists(path)) {
-                result = owfsConnection.read(path);
-            }
-        } catch (OwfsException e) {
-            // Error -1 is file not found, exists should bloody catch this
-            if (!e.getMessage().equals("Error -1")) {
-                throw e;
-            }
-        }
-
-        return result.trim();
+        return OwfsBus.getInstance().read(path);
     }
 
     /*******
@@ -1925,6 +2167,7 @@ public final class LaunchControl {
             setElementText(heatElement, PID.DERIVATIVE, pid.getHeatD().toString());
             setElementText(heatElement, PID.GPIO, pid.getHeatGPIO());
             setElementText(heatElement, PID.DELAY, pid.getHeatDelay().toString());
+            setElementText(heatElement, PID.SLOT_TIME, pid.getHeatSlot().toString());
             setElementText(heatElement, PID.INVERT, Boolean.toString(pid.getHeatInverted()));
 
         }
@@ -2000,6 +2243,7 @@ public final class LaunchControl {
         setElementText(device, PID.CALIBRATION, temp.getCalibration());
         setElementText(device, PID.HIDDEN, Boolean.toString(temp.isHidden()));
         addNewElement(device, Temp.PROBE_SIZE).setTextContent(Integer.toString(temp.getSize()));
+        setElementText(device, Temp.POLL_INTERVAL, Long.toString(temp.getPollInterval()));
 
         BrewServer.LOG.info("Checking for volume");
         if (temp.hasVolume()) {
@@ -2269,7 +2513,7 @@ public final class LaunchControl {
         BigDecimal duty = new BigDecimal(0), heatCycle = new BigDecimal(0.0),
                 setpoint = new BigDecimal(0.0), heatP = new BigDecimal(0.0),
                 heatI = new BigDecimal(0.0), heatD = new BigDecimal(0.0),
-                heatDelay = new BigDecimal(0),
+                heatDelay = new BigDecimal(0), heatSlot = new BigDecimal(0),
                 min = new BigDecimal(0.0), max = new BigDecimal(0.0),
                 time = new BigDecimal(0.0), coolP = new BigDecimal(0.0),
                 coolI = new BigDecimal(0.0), coolD = new BigDecimal(0.0),
@@ -2277,6 +2521,7 @@ public final class LaunchControl {
                 coolDelay = new BigDecimal(0.0);
         boolean coolInvert = false, heatInvert = false, hidden = false;
         int analoguePin = -1, position = -1;
+        long pollInterval = Temp.DEFAULT_POLL_INTERVAL;
         Element i2cElement = null;
 
         String deviceName = config.getAttribute("id");
@@ -2307,6 +2552,7 @@ public final class LaunchControl {
             heatI = new BigDecimal(getTextForElement(heatElement, PID.INTEGRAL, "0.0"));
             heatD = new BigDecimal(getTextForElement(heatElement, PID.DERIVATIVE, "0.0"));
             heatDelay = new BigDecimal(getTextForElement(heatElement, PID.DELAY, "0.0"));
+            heatSlot = new BigDecimal(getTextForElement(heatElement, PID.SLOT_TIME, "0.0"));
             heatInvert = Boolean.parseBoolean(getTextForElement(heatElement, PID.INVERT, "false"));
 
             Element coolElement = getFirstElement(config, "cool");
@@ -2358,6 +2604,7 @@ public final class LaunchControl {
             dsOffset = getTextForElement(config, VolumeUnits.VOLUME_OFFSET, null);
 
             probeSize = Integer.parseInt(getTextForElement(config, Temp.PROBE_SIZE, Integer.toString(Temp.SIZE_LARGE)));
+            pollInterval = Long.parseLong(getTextForElement(config, Temp.POLL_INTERVAL, Long.toString(Temp.DEFAULT_POLL_INTERVAL)));
 
             i2cElement = getFirstElement(config, I2CDevice.I2C_NODE);
 
@@ -2410,6 +2657,7 @@ public final class LaunchControl {
                 tPID.updateValues(mode, duty, heatCycle, setpoint, heatP,
                         heatI, heatD);
                 tPID.setHeatDelay(heatDelay);
+                tPID.setHeatSlot(heatSlot);
                 tPID.setCoolDelay(coolDelay);
                 tPID.setCoolCycle(coolCycle);
                 tPID.setCoolP(coolP);
@@ -2434,6 +2682,7 @@ public final class LaunchControl {
         }
 
         newTemp.setSize(probeSize);
+        newTemp.setPollInterval(pollInterval);
 
         if (analoguePin != -1) {
             try {
@@ -2791,15 +3040,6 @@ public final class LaunchControl {
         return  null;
     }
 
-    /**
-     * Get the current OWFS connection.
-     *
-     * @return The current OWFS Connection object
-     */
-    public static OwfsConnection getOWFS() {
-        return owfsConnection;
-    }
-
     /**
      * Helper to get the current list of timers.
      *
@@ -2980,6 +3220,7 @@ public final class LaunchControl {
      */
     public static void setMessage(final String newMessage) {
         LaunchControl.message = newMessage;
+        statusChanged();
     }
 
     /**
@@ -2988,6 +3229,7 @@ public final class LaunchControl {
      */
     public static void addMessage(final String newMessage) {
         LaunchControl.message += "\n" + newMessage;
+        statusChanged();
     }
 
     /**
@@ -3141,12 +3383,19 @@ public final class LaunchControl {
     public static List<String> getOneWireDevices(String prefix) {
         List<String> devices;
         devices = new ArrayList<>();
-        if (owfsConnection == null) {
+        OwfsPool pool = OwfsPool.getInstance();
+        if (!pool.isConfigured()) {
             LaunchControl.setMessage("OWFS is not setup,"
                     + " please delete your configuration file and start again");
             return devices;
         }
+        OwfsConnection owfsConnection = null;
+        boolean failed = false;
         try {
+            owfsConnection = pool.acquire();
+            if (owfsConnection == null) {
+                return devices;
+            }
             List<String> owfsDirs = owfsConnection.listDirectory("/");
             if (owfsDirs.size() > 0) {
                 BrewServer.LOG.info("Listing OWFS devices on " + owfsServer
@@ -3161,8 +3410,13 @@ public final class LaunchControl {
                     devices.add(dir);
                 }
             }
-        } catch (OwfsException | IOException e) {
+        } catch (OwfsException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            failed = owfsConnection != null;
             e.printStackTrace();
+        } finally {
+            pool.release(owfsConnection, failed);
         }
 
         return devices;
@@ -3192,7 +3446,11 @@ public final class LaunchControl {
         // search based on the input name
         String realName = name.replace(" ", "_");
         PhSensor tSensor = findPhSensor(realName);
-        return tSensor != null && phSensorList.remove(tSensor);
+        if (tSensor == null) {
+            return false;
+        }
+        SensorScheduler.getInstance().remove(tSensor);
+        return phSensorList.remove(tSensor);
 
     }
 
@@ -3210,6 +3468,9 @@ public final class LaunchControl {
         BrewServer.LOG.warning("Configuration saved.");
 
         BrewServer.LOG.warning("Shutting down temperature probe threads.");
+        SensorScheduler.getInstance().shutdown();
+        OneWireBus.getInstance().shutdown();
+        I2CScanner.shutdownAll();
         for (Temp t : tempList) {
             if (t != null) {
                 t.save();
@@ -3222,6 +3483,7 @@ public final class LaunchControl {
                 n.shutdown();
             }
         }
+        OutputScheduler.getInstance().shutdown();
 
         if (triggerControlList.size() > 0) {
             BrewServer.LOG.warning("Shutting down MashControl threads.");
@@ -3242,6 +3504,9 @@ public final class LaunchControl {
             BrewServer.LOG.warning("Shutting down recorder threads.");
             recorder.stop();
         }
+        if (cosmUploader != null) {
+            cosmUploader.stop();
+        }
         ServerRunner.running = false;
         BrewServer.LOG.warning("Goodbye!");
     }
@@ -36,6 +36,7 @@ public class Messages extends NLS {
     public static String SET_POINT;
     public static String DUTY_CYCLE;
     public static String DUTY_TIME;
+    public static String BURST_SLOT;
     public static String SECS;
     public static String MIN;
     public static String MAX;
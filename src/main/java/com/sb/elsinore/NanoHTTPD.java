@@ -1,5 +1,6 @@
 package com.sb.elsinore;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
@@ -36,6 +37,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A simple, tiny, nicely embeddable HTTP server in Java
@@ -88,6 +97,11 @@ public abstract class NanoHTTPD {
      * block the socket reading thread forever (or as long the browser is open).
      */
     public static final int SOCKET_READ_TIMEOUT = 5000;
+    /**
+     * How often a kept alive connection waiting for its next request checks
+     * whether other connections are waiting for a thread (in milliseconds).
+     */
+    public static final int IDLE_POLL_TIME = 250;
     /**
      * Common mime type for dynamic content: plain text
      */
@@ -109,6 +123,11 @@ public abstract class NanoHTTPD {
      * Pluggable strategy for asynchronously executing requests.
      */
     private AsyncRunner asyncRunner;
+    /**
+     * Pluggable strategy for sending streaming responses, null to send them
+     * from the request thread.
+     */
+    private AsyncRunner streamRunner;
     /**
      * Pluggable strategy for creating and cleaning up temporary files.
      */
@@ -180,17 +199,25 @@ public abstract class NanoHTTPD {
                             safeClose(finalAccept);
                             unRegisterConnection(finalAccept);
                         } else {
-                            asyncRunner.exec(new Runnable() {
+                            Runnable handler = new Runnable() {
                                 @Override
                                 public void run() {
                                     OutputStream outputStream = null;
+                                    boolean handedOff = false;
                                     try {
                                         outputStream = finalAccept.getOutputStream();
                                         TempFileManager tempFileManager = tempFileManagerFactory.create();
                                         HTTPSession session = new HTTPSession(tempFileManager, inputStream, outputStream, finalAccept.getInetAddress());
-                                        while (!finalAccept.isClosed()) {
+                                        do {
                                             session.execute();
-                                        }
+                                            Response stream = session.takeStream();
+                                            if (stream != null) {
+                                                handedOff = sendStream(finalAccept, stream);
+                                                return;
+                                            }
+                                        } while (!finalAccept.isClosed() && session.awaitRequest(finalAccept));
+                                    } catch (SocketTimeoutException e) {
+                                        // An idle keep alive connection, nothing more to do
                                     } catch (Exception e) {
                                         // When the socket is closed by the client, we throw our own SocketException
                                         // to break the  "keep alive" loop above.
@@ -198,13 +225,21 @@ public abstract class NanoHTTPD {
                                             e.printStackTrace();
                                         }
                                     } finally {
-                                        safeClose(outputStream);
-                                        safeClose(inputStream);
-                                        safeClose(finalAccept);
-                                        unRegisterConnection(finalAccept);
+                                        if (!handedOff) {
+                                            safeClose(outputStream);
+                                            safeClose(inputStream);
+                                            safeClose(finalAccept);
+                                            unRegisterConnection(finalAccept);
+                                        }
                                     }
                                 }
-                            });
+                            };
+                            try {
+                                asyncRunner.exec(handler);
+                            } catch (RejectedExecutionException e) {
+                                // Too busy, turn the connection away rather than let it wait
+                                rejectConnection(finalAccept);
+                            }
                         }
                     } catch (IOException e) {
                     }
@@ -224,11 +259,83 @@ public abstract class NanoHTTPD {
             safeClose(myServerSocket);
             closeAllConnections();
             myThread.join();
+            if (asyncRunner instanceof BoundedAsyncRunner) {
+                ((BoundedAsyncRunner) asyncRunner).shutdown();
+            }
+            if (streamRunner instanceof BoundedAsyncRunner) {
+                ((BoundedAsyncRunner) streamRunner).shutdown();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Answer a connection the async runner couldn't take with a 503 and
+     * close it.
+     *
+     * @param socket
+     *            the {@link Socket} for the connection.
+     */
+    private void rejectConnection(Socket socket) {
+        try {
+            Response r = new Response(Response.Status.SERVICE_UNAVAILABLE, MIME_PLAINTEXT, "SERVICE UNAVAILABLE: Server busy, try again.");
+            r.setKeepAlive(false);
+            r.addHeader("Retry-After", "1");
+            r.send(socket.getOutputStream());
+        } catch (IOException e) {
+            // Nothing more we can do with it
+        } finally {
+            safeClose(socket);
+            unRegisterConnection(socket);
+        }
+    }
+
+    /**
+     * Send a streaming response from the stream runner, so it doesn't hold
+     * a request thread for as long as the client stays connected. The
+     * stream runner closes the connection when the response ends.
+     *
+     * @param socket
+     *            the {@link Socket} for the connection.
+     * @param response
+     *            the streaming response.
+     * @return True if the stream runner took the connection, false if it
+     *  was answered with a 503 instead.
+     */
+    private boolean sendStream(final Socket socket, final Response response) {
+        Runnable sender = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.send(socket.getOutputStream());
+                } catch (IOException e) {
+                    safeClose(response.getData());
+                } finally {
+                    safeClose(socket);
+                    unRegisterConnection(socket);
+                }
+            }
+        };
+        try {
+            streamRunner.exec(sender);
+            return true;
+        } catch (RejectedExecutionException e) {
+            safeClose(response.getData());
+            rejectConnection(socket);
+            return false;
+        }
+    }
+
+    /**
+     * @return True if there are connections waiting for a worker, in which
+     *  case keep alive connections are closed to let them in.
+     */
+    protected boolean hasWaitingConnections() {
+        return asyncRunner instanceof BoundedAsyncRunner
+                && ((BoundedAsyncRunner) asyncRunner).getQueued() > 0;
+    }
+
     /**
      * Registers that a new connection has been set up.
      *
@@ -385,6 +492,17 @@ public abstract class NanoHTTPD {
         this.asyncRunner = asyncRunner;
     }
 
+    /**
+     * Pluggable strategy for sending streaming responses, such as
+     * Server-Sent Events, off the request threads.
+     *
+     * @param streamRunner new strategy for the streams, null to send them
+     *                     from the request thread.
+     */
+    public void setStreamRunner(AsyncRunner streamRunner) {
+        this.streamRunner = streamRunner;
+    }
+
     // ------------------------------------------------------------------------------- //
     //
     // Temp file handling strategy.
@@ -478,6 +596,91 @@ public abstract class NanoHTTPD {
         }
     }
 
+    /**
+     * Bounded threading strategy.
+     * <p/>
+     * <p>Requests are run on a fixed number of daemon threads, connections
+     * that arrive while they are all busy wait in a bounded queue. Once the
+     * queue is full further connections are rejected, and the server
+     * answers them with a 503, so a burst of requests can't start an
+     * unbounded number of threads. Threads exit after a minute idle.</p>
+     */
+    public static class BoundedAsyncRunner implements AsyncRunner {
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        /**
+         * @param threads The maximum number of request threads.
+         * @param queueSize The number of connections that can wait for a
+         *                  thread, zero to reject as soon as they are all
+         *                  busy.
+         */
+        public BoundedAsyncRunner(int threads, int queueSize) {
+            BlockingQueue<Runnable> queue;
+            if (queueSize > 0) {
+                queue = new ArrayBlockingQueue<Runnable>(queueSize);
+            } else {
+                queue = new SynchronousQueue<Runnable>();
+            }
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable code) {
+                    Thread t = new Thread(code);
+                    t.setDaemon(true);
+                    t.setName("NanoHttpd Request Processor (#" + requestCount.incrementAndGet() + ")");
+                    return t;
+                }
+            }, new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void exec(Runnable code) {
+            try {
+                executor.execute(code);
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+
+        /**
+         * @return The number of threads handling a connection.
+         */
+        public int getActive() {
+            return executor.getActiveCount();
+        }
+
+        /**
+         * @return The number of connections waiting for a thread.
+         */
+        public int getQueued() {
+            return executor.getQueue().size();
+        }
+
+        /**
+         * @return The number of connections rejected since startup.
+         */
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        /**
+         * @return The number of threads currently running.
+         */
+        public int getThreads() {
+            return executor.getPoolSize();
+        }
+
+        /**
+         * Stop the threads, interrupting any running requests.
+         */
+        public void shutdown() {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Default strategy for creating and cleaning up temporary files.
      * <p/>
@@ -575,6 +778,14 @@ public abstract class NanoHTTPD {
          * Use chunkedTransfer
          */
         private boolean chunkedTransfer;
+        /**
+         * Keep the connection open for the next request.
+         */
+        private boolean keepAlive = true;
+        /**
+         * The body is a long lived stream, sent from the stream runner.
+         */
+        private boolean streaming;
 
         /**
          * Default constructor: response = HTTP_OK, mime = MIME_HTML and your supplied message
@@ -605,6 +816,16 @@ public abstract class NanoHTTPD {
             }
         }
 
+        /**
+         * Convenience method that makes an InputStream out of given bytes.
+         * The array is not copied, so it must not be modified afterwards.
+         */
+        public Response(Status status, String mimeType, byte[] bytes) {
+            this.status = status;
+            this.mimeType = mimeType;
+            this.data = bytes != null ? new ByteArrayInputStream(bytes) : null;
+        }
+
         /**
          * Adds given line to the header.
          */
@@ -651,7 +872,12 @@ public abstract class NanoHTTPD {
                     }
                 }
 
-                pw.print("Connection: keep-alive\r\n");
+                if (keepAlive) {
+                    pw.print("Connection: keep-alive\r\n");
+                    pw.print("Keep-Alive: timeout=" + (SOCKET_READ_TIMEOUT / 1000) + "\r\n");
+                } else {
+                    pw.print("Connection: close\r\n");
+                }
 
                 if (requestMethod != Method.HEAD && chunkedTransfer) {
                     sendAsChunked(outputStream, pw);
@@ -659,9 +885,10 @@ public abstract class NanoHTTPD {
                     sendAsFixedLength(outputStream, pw);
                 }
                 outputStream.flush();
-                safeClose(data);
             } catch (IOException ioe) {
                 // Couldn't write? No can do.
+            } finally {
+                safeClose(data);
             }
         }
 
@@ -739,6 +966,26 @@ public abstract class NanoHTTPD {
             this.chunkedTransfer = chunkedTransfer;
         }
 
+        public boolean isKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public boolean isStreaming() {
+            return streaming;
+        }
+
+        /**
+         * Mark the body as a long lived stream, like Server-Sent Events. The
+         * connection is closed when it ends.
+         */
+        public void setStreaming(boolean streaming) {
+            this.streaming = streaming;
+        }
+
         /**
          * Some HTTP response status codes
          */
@@ -746,7 +993,8 @@ public abstract class NanoHTTPD {
             OK(200, "OK"), CREATED(201, "Created"), ACCEPTED(202, "Accepted"), NO_CONTENT(204, "No Content"), PARTIAL_CONTENT(206, "Partial Content"), REDIRECT(301,
                 "Moved Permanently"), NOT_MODIFIED(304, "Not Modified"), BAD_REQUEST(400, "Bad Request"), UNAUTHORIZED(401,
                 "Unauthorized"), FORBIDDEN(403, "Forbidden"), NOT_FOUND(404, "Not Found"), METHOD_NOT_ALLOWED(405, "Method Not Allowed"), RANGE_NOT_SATISFIABLE(416,
-                "Requested Range Not Satisfiable"), INTERNAL_ERROR(500, "Internal Server Error");
+                "Requested Range Not Satisfiable"), INTERNAL_ERROR(500, "Internal Server Error"), SERVICE_UNAVAILABLE(503,
+                "Service Unavailable");
             private final int requestStatus;
             private final String description;
 
@@ -837,6 +1085,7 @@ public abstract class NanoHTTPD {
         private Map<String, String> headers;
         private CookieHandler cookies;
         private String queryParameterString;
+        private Response stream;
 
         public HTTPSession(TempFileManager tempFileManager, InputStream inputStream, OutputStream outputStream) {
             this.tempFileManager = tempFileManager;
@@ -898,6 +1147,14 @@ public abstract class NanoHTTPD {
                 parms = new HashMap<String, String>();
                 if(null == headers) {
                     headers = new HashMap<String, String>();
+                } else {
+                    // Don't let the last request's headers leak into this one
+                    String remoteIp = headers.get("remote-addr");
+                    headers.clear();
+                    if (remoteIp != null) {
+                        headers.put("remote-addr", remoteIp);
+                        headers.put("http-client-ip", remoteIp);
+                    }
                 }
 
                 // Create a BufferedReader for parsing the header.
@@ -923,7 +1180,20 @@ public abstract class NanoHTTPD {
                 } else {
                     cookies.unloadQueue(r);
                     r.setRequestMethod(method);
+                    boolean keepAlive = r.isKeepAlive() && isKeepAlive(pre.get("protocol"));
+                    r.setKeepAlive(keepAlive);
+                    if (r.isStreaming() && streamRunner != null) {
+                        // Left for the stream runner to send
+                        r.setKeepAlive(false);
+                        stream = r;
+                        return;
+                    }
                     r.send(outputStream);
+                    if (!keepAlive) {
+                        safeClose(inputStream);
+                        safeClose(outputStream);
+                        throw new SocketException("NanoHttpd Shutdown");
+                    }
                 }
             } catch (SocketException e) {
                 // throw it out to close socket object (finalAccept)
@@ -932,10 +1202,12 @@ public abstract class NanoHTTPD {
                 throw ste;
             } catch (IOException ioe) {
                 Response r = new Response(Response.Status.INTERNAL_ERROR, MIME_PLAINTEXT, "SERVER INTERNAL ERROR: IOException: " + ioe.getMessage());
+                r.setKeepAlive(false);
                 r.send(outputStream);
                 safeClose(outputStream);
             } catch (ResponseException re) {
                 Response r = new Response(re.getStatus(), MIME_PLAINTEXT, re.getMessage());
+                r.setKeepAlive(false);
                 r.send(outputStream);
                 safeClose(outputStream);
             } finally {
@@ -943,6 +1215,80 @@ public abstract class NanoHTTPD {
             }
         }
 
+        /**
+         * @return The streaming response from the last request, which the
+         *  caller has to send, or null.
+         */
+        public Response takeStream() {
+            Response r = stream;
+            stream = null;
+            return r;
+        }
+
+        /**
+         * Wait for the next request on a connection that was kept open. The
+         * wait is done in short slices, so the connection is let go as soon
+         * as others are waiting for a request thread, rather than holding the
+         * thread for the whole keep alive timeout.
+         *
+         * @param socket the {@link Socket} for the connection.
+         * @return True once the next request starts to arrive, false if the
+         *  connection should be closed instead.
+         */
+        public boolean awaitRequest(Socket socket) throws IOException {
+            if (!inputStream.markSupported()) {
+                inputStream = new BufferedInputStream(inputStream);
+            }
+            long idleEnd = System.currentTimeMillis() + SOCKET_READ_TIMEOUT;
+            socket.setSoTimeout(IDLE_POLL_TIME);
+            try {
+                while (true) {
+                    inputStream.mark(1);
+                    try {
+                        if (inputStream.read() == -1) {
+                            return false;
+                        }
+                        inputStream.reset();
+                        return true;
+                    } catch (SocketTimeoutException e) {
+                        if (hasWaitingConnections()
+                                || System.currentTimeMillis() >= idleEnd) {
+                            return false;
+                        }
+                    }
+                }
+            } finally {
+                if (!socket.isClosed()) {
+                    socket.setSoTimeout(SOCKET_READ_TIMEOUT);
+                }
+            }
+        }
+
+        /**
+         * Decide if the connection can be kept open after this request.
+         * HTTP/1.1 connections are kept open unless the client asks to
+         * close, HTTP/1.0 ones only if the client asks to keep them. A
+         * request body that wasn't read, or connections waiting for a
+         * worker, close the connection.
+         */
+        private boolean isKeepAlive(String protocol) {
+            String connection = headers.get("connection");
+            boolean keepAlive;
+            if ("HTTP/1.1".equalsIgnoreCase(protocol)) {
+                keepAlive = connection == null || !connection.equalsIgnoreCase("close");
+            } else {
+                keepAlive = connection != null && connection.equalsIgnoreCase("keep-alive");
+            }
+
+            if (keepAlive && !Method.POST.equals(method) && !Method.PUT.equals(method)) {
+                String length = headers.get("content-length");
+                if (length != null && !length.trim().equals("0")) {
+                    keepAlive = false;
+                }
+            }
+            return keepAlive && !hasWaitingConnections();
+        }
+
         @Override
         public void parseBody(Map<String, String> files) throws IOException, ResponseException {
             RandomAccessFile randomAccessFile = null;
@@ -1062,10 +1408,11 @@ public abstract class NanoHTTPD {
                 }
 
                 // If there's another token, it's protocol version,
-                // followed by HTTP headers. Ignore version but parse headers.
+                // followed by HTTP headers.
                 // NOTE: this now forces header names lowercase since they are
                 // case insensitive and vary by client.
                 if (st.hasMoreTokens()) {
+                    pre.put("protocol", st.nextToken());
                     String line = in.readLine();
                     while (line != null && line.trim().length() > 0) {
                         int p = line.indexOf(':');
@@ -0,0 +1,242 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.hardware.Hardware;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Reads every probe on the kernel One Wire bus together, so a refresh takes
+ * one conversion time instead of one per probe.
+ *
+ * Where the bus master has a therm_bulk_read file, all the probes are told
+ * to convert at once and the reads that follow just collect the results.
+ * Otherwise the probes are read concurrently, each doing its own
+ * conversion.
+ */
+public final class OneWireBus implements SensorScheduler.Sensor {
+
+    /**
+     * The name of the bus, matches {@link Temp#getBus()}.
+     */
+    public static final String BUS = "w1";
+    /**
+     * How long a DS18B20 takes to convert at 12 bits, in milliseconds.
+     */
+    public static final long CONVERSION_TIME = 750;
+    /**
+     * The bus master file that starts a conversion on every probe.
+     */
+    public static final String BULK_READ = "therm_bulk_read";
+
+    private static final long CHECK_TIME = 50;
+    private static OneWireBus instance = null;
+
+    private final File devices;
+    private final long conversionTime;
+    private final List<SensorScheduler.Sensor> probes =
+            new CopyOnWriteArrayList<>();
+    private final ExecutorService readers;
+
+    /**
+     * Create a new bus reader.
+     * @param devices The directory the kernel lists the devices and bus
+     *                masters in.
+     * @param conversionTime The conversion time, in milliseconds.
+     */
+    public OneWireBus(final File devices, final long conversionTime) {
+        this.devices = devices;
+        this.conversionTime = conversionTime;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.readers = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setName("One Wire Reader #"
+                        + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return The reader for the system One Wire bus.
+     */
+    public static synchronized OneWireBus getInstance() {
+        if (instance == null) {
+            instance = new OneWireBus(
+                    new File(Hardware.getInstance().getOneWireDevices()),
+                    CONVERSION_TIME);
+        }
+        return instance;
+    }
+
+    /**
+     * Read the probe with the rest of the bus.
+     * @param probe The probe to add.
+     */
+    public void add(final SensorScheduler.Sensor probe) {
+        if (!probes.contains(probe)) {
+            probes.add(probe);
+        }
+    }
+
+    /**
+     * Stop reading the probe.
+     * @param probe The probe to remove.
+     */
+    public void remove(final SensorScheduler.Sensor probe) {
+        probes.remove(probe);
+    }
+
+    /**
+     * @param probe The probe to check.
+     * @return True if the probe is read with the bus.
+     */
+    public boolean contains(final SensorScheduler.Sensor probe) {
+        return probes.contains(probe);
+    }
+
+    @Override
+    public String getBus() {
+        return BUS;
+    }
+
+    /**
+     * @return The shortest interval of the probes on the bus.
+     */
+    @Override
+    public long getPollInterval() {
+        long interval = Long.MAX_VALUE;
+        for (SensorScheduler.Sensor probe : probes) {
+            interval = Math.min(interval, probe.getPollInterval());
+        }
+        if (interval == Long.MAX_VALUE) {
+            return Temp.DEFAULT_POLL_INTERVAL;
+        }
+        return interval;
+    }
+
+    /**
+     * Convert and read every probe on the bus.
+     * @return True unless every probe failed.
+     */
+    @Override
+    public boolean poll() {
+        if (probes.isEmpty()) {
+            return true;
+        }
+        convertAll();
+
+        List<Callable<Boolean>> reads = new ArrayList<>();
+        for (final SensorScheduler.Sensor probe : probes) {
+            reads.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return probe.poll();
+                }
+            });
+        }
+
+        // Allow for the kernel doing the reads one at a time
+        long timeout = conversionTime * (reads.size() + 1);
+        boolean ok = false;
+        try {
+            for (Future<Boolean> read : readers.invokeAll(reads,
+                    timeout, TimeUnit.MILLISECONDS)) {
+                try {
+                    ok |= read.get();
+                } catch (CancellationException e) {
+                    BrewServer.LOG.warning(
+                            "Timed out reading a One Wire probe");
+                } catch (ExecutionException e) {
+                    BrewServer.LOG.log(Level.WARNING,
+                            "Failed to read a One Wire probe", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return ok;
+    }
+
+    /**
+     * Start a conversion on every probe on each bus master that supports
+     * it, and wait for them to finish.
+     * @return True if a bulk conversion was done.
+     */
+    boolean convertAll() {
+        File[] masters = devices.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(final File file) {
+                return file.getName().startsWith("w1_bus_master")
+                        && new File(file, BULK_READ).exists();
+            }
+        });
+        if (masters == null || masters.length == 0) {
+            return false;
+        }
+
+        List<File> started = new ArrayList<>();
+        for (File master : masters) {
+            File bulkRead = new File(master, BULK_READ);
+            try (FileWriter out = new FileWriter(bulkRead)) {
+                out.write("trigger\n");
+                started.add(bulkRead);
+            } catch (IOException e) {
+                BrewServer.LOG.info("Couldn't start a bulk conversion on "
+                        + master.getName() + ": " + e.getMessage());
+            }
+        }
+
+        // -1 while converting, 1 once done, 0 if there's nothing pending
+        long end = System.currentTimeMillis() + conversionTime * 2;
+        try {
+            for (File bulkRead : started) {
+                String state = readState(bulkRead);
+                while (!"1".equals(state) && !"0".equals(state)
+                        && System.currentTimeMillis() < end) {
+                    Thread.sleep(CHECK_TIME);
+                    state = readState(bulkRead);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !started.isEmpty();
+    }
+
+    private static String readState(final File bulkRead) {
+        try (BufferedReader in = new BufferedReader(new FileReader(bulkRead))) {
+            String line = in.readLine();
+            return line == null ? null : line.trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stop the reader threads.
+     */
+    public void shutdown() {
+        readers.shutdownNow();
+    }
+}
@@ -1,6 +1,7 @@
 package com.sb.elsinore;
 import com.sb.elsinore.devices.CompressorDevice;
 import com.sb.elsinore.devices.OutputDevice;
+import com.sb.util.MathUtil;
 
 import java.math.BigDecimal;
 
@@ -10,12 +11,19 @@ import jGPIO.InvalidGPIOException;
  * OutputControl controls multiple output GPIOs.
  * Heat_SSR is a GPIO pin that represents a heating output.
  * Cool_SSR is a GPIO pin that represents a cooling output.
+ * The outputs are switched by the {@link OutputScheduler}, the heater for
+ * a positive duty and the cooler for a negative one.
  * @author Doug Edey
  *
  */
-public final class OutputControl implements Runnable {
+public final class OutputControl implements OutputScheduler.Output {
 
-    public boolean shuttingDown = false;
+    /**
+     * The cycle time when neither output is running, in milliseconds.
+     */
+    public static final long IDLE_CYCLE = 1000;
+
+    private OutputScheduler scheduler = null;
     private OutputDevice cooler = null;
     private OutputDevice heater = null;
 
@@ -23,9 +31,13 @@ public final class OutputControl implements Runnable {
      * The Duty cycle.
      * Initialized to ZERO to prevent use of duty before it is set.
      */
-    private BigDecimal fDuty = BigDecimal.ZERO;
+    private double fDuty = 0;
+    /**
+     * The duty cycle for the status, only made when the duty changes.
+     */
+    private BigDecimal dutyValue = BigDecimal.ZERO;
 
-    private String status = "off";
+    private volatile String status = "off";
 
     public OutputControl() {
     }
@@ -69,75 +81,95 @@ public final class OutputControl implements Runnable {
 
 
    /**
-    * The main loop that checks and activates the outputs.
-    * Based on the duty cycle and time.
+    * Start switching the outputs.
+    * @param outputScheduler The scheduler to switch the outputs with.
     */
-   @Override
-   public void run() {
-        try {
-             while (true) {
-
-                 try {
-                     BrewServer.LOG.info("Fduty: " + this.fDuty);
-                     if (fDuty.compareTo(BigDecimal.ZERO) == 0) {
-                         status = "off";
-                         if (getHeater() != null) {
-                             getHeater().turnOff();
-                         }
-                         if (getCooler() != null) {
-                             getCooler().turnOff();
-                         }
-                         //Need to sleep because we're not running a cycle
-                         Thread.sleep(1000);
-                     } else if (fDuty.compareTo(BigDecimal.ZERO) < 0) {
-                         status = "cooling";
-                         if (getHeater() != null) {
-                             getHeater().turnOff();
-                         }
-                         if (getCooler() != null) {
-                             getCooler().runCycle(fDuty.abs());
-                         }
-                     } else {
-                         status = "heating";
-                         if (getCooler() != null) {
-                             getCooler().turnOff();
-                         }
-                         if (getHeater() != null) {
-                             getHeater().runCycle(fDuty);
-                         }
-                     }
-                 } catch (InterruptedException e) {
-                     // Sleep interrupted, why did we wakeup
-                     if (this.shuttingDown) {
-                         return;
-                     }
-                 }
-             } // end the while loop
-
-         } catch (RuntimeException e) {
-             BrewServer.LOG.warning(
-                 "Could not control the GPIO Pin during loop."
-                 + " Did you start as root?");
-             e.printStackTrace();
-        } catch (InvalidGPIOException e1) {
-             BrewServer.LOG.warning(e1.getMessage());
-             e1.printStackTrace();
-         } finally {
-             BrewServer.LOG.warning("Output Control turning off outputs");
-             if (getHeater() != null) {
-                 getHeater().turnOff();
-             }
-             if (getCooler() != null) {
-                 getCooler().turnOff();
-             }
-        }
-    }
-
-    /**
-     * Shutdown the thread.
+   public void start(final OutputScheduler outputScheduler) {
+        this.scheduler = outputScheduler;
+        outputScheduler.add(this);
+   }
+
+    /**
+     * @return The output running at the current duty, null when off.
+     */
+    private OutputDevice getActive() {
+        double duty = getDutyCycle();
+        if (duty > 0) {
+            return getHeater();
+        }
+        if (duty < 0) {
+            return getCooler();
+        }
+        return null;
+    }
+
+    @Override
+    public long getCycleMillis() {
+        OutputDevice device = getActive();
+        if (device == null) {
+            return IDLE_CYCLE;
+        }
+        return device.getCycleMillis();
+    }
+
+    @Override
+    public long getOnMillis(final long cycleMillis) {
+        OutputDevice device = getActive();
+        if (device == null) {
+            return 0;
+        }
+        return device.getOnMillis(Math.abs(getDutyCycle()), cycleMillis);
+    }
+
+    @Override
+    public long getSlotMillis() {
+        OutputDevice device = getActive();
+        if (device == null) {
+            return 0;
+        }
+        return device.getSlotMillis();
+    }
+
+    /**
+     * Turn on the output for the current duty, and the other one off.
+     */
+    @Override
+    public void turnOn() {
+        OutputDevice device = getActive();
+        OutputDevice other = device == getHeater() ? getCooler() : getHeater();
+        if (other != null) {
+            other.turnOff();
+        }
+        if (device != null) {
+            try {
+                device.turnOn();
+            } catch (InvalidGPIOException e) {
+                BrewServer.LOG.warning(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Turn off both outputs.
+     */
+    @Override
+    public void turnOff() {
+        if (getHeater() != null) {
+            getHeater().turnOff();
+        }
+        if (getCooler() != null) {
+            getCooler().turnOff();
+        }
+    }
+
+    /**
+     * Stop switching the outputs and turn them off.
      */
     public void shutdown() {
         BrewServer.LOG.info("Shutting down OC");
+        if (scheduler != null) {
+            scheduler.remove(this);
+        }
         if (getHeater() != null) {
             getHeater().turnOff();
             getHeater().disable();
@@ -155,23 +187,58 @@ public final class OutputControl implements Runnable {
         return status;
    }
 
+    /**
+     * Update the status, and flag the system status if it changed.
+     * @param newStatus The new status string.
+     */
+    private void setStatus(final String newStatus) {
+        if (!newStatus.equals(this.status)) {
+            this.status = newStatus;
+            LaunchControl.statusChanged();
+        }
+    }
+
    /**
     * @param duty The duty to set this control with.
+    * @return True if the duty changed.
     */
-    public synchronized boolean setDuty(BigDecimal duty) {
-        // Fix Defect #28: Cap the duty as positive or negative.
-        if (this.cooler == null && duty.compareTo(BigDecimal.ZERO) < 0) {
-            duty = BigDecimal.ZERO;
-        }
+    public boolean setDuty(final BigDecimal duty) {
+        return setDuty(duty.doubleValue());
+    }
 
-        if (this.heater == null && duty.compareTo(BigDecimal.ZERO) > 0) {
-            duty = BigDecimal.ZERO;
+   /**
+    * @param duty The duty to set this control with, in percent.
+    * @return True if the duty changed.
+    */
+    public boolean setDuty(double duty) {
+        synchronized (this) {
+            // Fix Defect #28: Cap the duty as positive or negative.
+            if (this.cooler == null && duty < 0) {
+                duty = 0;
+            }
+
+            if (this.heater == null && duty > 0) {
+                duty = 0;
+            }
+            if (fDuty == duty) {
+                return false;
+            }
+            this.fDuty = duty;
+            this.dutyValue = MathUtil.valueOf(duty);
+        }
+        if (duty > 0) {
+            setStatus("heating");
+        } else if (duty < 0) {
+            setStatus("cooling");
+        } else {
+            setStatus("off");
         }
-        if (fDuty.compareTo(duty) == 0) {
-            return false;
+        LaunchControl.statusChanged();
+        BrewServer.LOG.info("Duty: " + duty);
+        // Outside the lock, the scheduler calls back in
+        if (scheduler != null) {
+            scheduler.dutyChanged(this);
         }
-        this.fDuty = duty;
-        BrewServer.LOG.info("IN: " + duty + " OUT: " + fDuty);
         return true;
     }
 
@@ -179,6 +246,13 @@ public final class OutputControl implements Runnable {
      * @return The current duty cycle
      */
     public synchronized BigDecimal getDuty() {
+        return dutyValue;
+    }
+
+    /**
+     * @return The current duty cycle in percent.
+     */
+    public synchronized double getDutyCycle() {
         return fDuty;
     }
 
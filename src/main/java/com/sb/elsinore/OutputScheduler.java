@@ -0,0 +1,487 @@
+package com.sb.elsinore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+/**
+ * Switches every heating and cooling output from one thread, instead of a
+ * sleeping thread per PID.
+ *
+ * Each output is time proportioned: it's switched on at the start of a
+ * cycle and off once its share of the cycle has passed. The edges are
+ * planned against a monotonic clock and each cycle starts exactly one
+ * cycle after the last, so late wake ups don't add up. When the duty
+ * changes the output is set to what it would be had the cycle started
+ * with the new duty, a lower duty switches off straight away and a higher
+ * one stays on for longer, without waiting for the cycle to end.
+ *
+ * An output with a burst fire slot is switched a whole slot at a time
+ * instead, for a zero cross SSR on an electric element. Each slot adds the
+ * on time for the cycle to an error, and the slot is on when that makes up
+ * a whole cycle, so the on time is spread over the cycle as evenly as whole
+ * slots allow (Bresenham's line algorithm, or a first order sigma-delta).
+ *
+ * With {@link #STAGGER} on, the cycles of different outputs are offset so
+ * they don't all switch on at once.
+ *
+ * The time and the timer come from a {@link Clock}, a single thread against
+ * {@link System#nanoTime()} unless another is given.
+ */
+public final class OutputScheduler {
+
+    public static final String OUTPUT_STAGGER = "outputStagger";
+
+    /**
+     * Offset the cycles of each output, used when the scheduler is created.
+     */
+    public static boolean STAGGER = false;
+    /**
+     * The golden ratio conjugate, successive multiples of it are evenly
+     * spread over [0, 1) however many there are.
+     */
+    private static final double SPREAD = 0.6180339887498949;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long NANOS_PER_MICRO = 1000L;
+    /**
+     * Bucket n of the lateness histogram counts the edges late by less
+     * than 2^n microseconds, the last takes everything later.
+     */
+    private static final int LATENESS_BUCKETS = 32;
+
+    /**
+     * A time proportioned output.
+     */
+    public interface Output {
+        /**
+         * @return The length of the next cycle, in milliseconds.
+         */
+        long getCycleMillis();
+
+        /**
+         * @param cycleMillis The length of the cycle.
+         * @return How long to be on for in the cycle at the current duty,
+         *  in milliseconds.
+         */
+        long getOnMillis(long cycleMillis);
+
+        /**
+         * @return The length of a burst fire slot in milliseconds, 0 to
+         *  switch once per cycle.
+         */
+        long getSlotMillis();
+
+        /**
+         * Switch the output on.
+         */
+        void turnOn();
+
+        /**
+         * Switch the output off.
+         */
+        void turnOff();
+    }
+
+    /**
+     * The time the edges are planned against, and the timer that runs them.
+     */
+    public interface Clock {
+        /**
+         * @return The current time in nanoseconds, only the differences
+         *  between times mean anything.
+         */
+        long nanoTime();
+
+        /**
+         * Run a task once, after a delay.
+         * @param task The task.
+         * @param delayNanos The delay in nanoseconds.
+         * @return The scheduled task, to cancel it.
+         * @throws RejectedExecutionException If the clock has been shut
+         *  down.
+         */
+        Future<?> schedule(Runnable task, long delayNanos);
+
+        /**
+         * Stop running tasks.
+         */
+        void shutdown();
+    }
+
+    /**
+     * Runs the edges on one thread against {@link System#nanoTime()}.
+     */
+    private static final class ExecutorClock implements Clock {
+        private final ScheduledThreadPoolExecutor executor;
+
+        private ExecutorClock() {
+            executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        Thread thread = new Thread(runnable);
+                        thread.setName("Output Scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            executor.setRemoveOnCancelPolicy(true);
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public Future<?> schedule(final Runnable task,
+                final long delayNanos) {
+            return executor.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdownNow();
+        }
+    }
+
+    private static OutputScheduler instance = null;
+
+    private final boolean stagger;
+    private final Clock clock;
+    private volatile boolean shutdown = false;
+    private final Map<Output, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> cycleSlots = new HashMap<>();
+    private final AtomicLong edges = new AtomicLong();
+    private final AtomicLong maxLateness = new AtomicLong();
+    private final AtomicLongArray lateness =
+            new AtomicLongArray(LATENESS_BUCKETS);
+
+    /**
+     * Create a new scheduler.
+     * @param stagger True to offset the cycles of each output.
+     */
+    public OutputScheduler(final boolean stagger) {
+        this(stagger, new ExecutorClock());
+    }
+
+    /**
+     * Create a new scheduler.
+     * @param stagger True to offset the cycles of each output.
+     * @param clock The time and timer to switch the outputs with.
+     */
+    public OutputScheduler(final boolean stagger, final Clock clock) {
+        this.stagger = stagger;
+        this.clock = clock;
+    }
+
+    /**
+     * @return The scheduler for the system outputs.
+     */
+    public static synchronized OutputScheduler getInstance() {
+        if (instance == null) {
+            instance = new OutputScheduler(STAGGER);
+        }
+        return instance;
+    }
+
+    /**
+     * Start switching the output, does nothing if it's already switched.
+     * @param output The output to switch.
+     */
+    public void add(final Output output) {
+        synchronized (this) {
+            if (tasks.containsKey(output) || shutdown) {
+                return;
+            }
+            long now = clock.nanoTime();
+            long start = now;
+            if (stagger) {
+                long cycle = Math.max(1, output.getCycleMillis());
+                start += (long) (nextSlot(cycle) * cycle * NANOS_PER_MILLI);
+            }
+            Task task = new Task(output, start);
+            tasks.put(output, task);
+            task.begin(now);
+        }
+    }
+
+    /**
+     * @return The offset of the next output with the cycle time, as a
+     *  fraction of the cycle.
+     */
+    private double nextSlot(final long cycle) {
+        Integer slot = cycleSlots.get(cycle);
+        if (slot == null) {
+            slot = 0;
+        }
+        cycleSlots.put(cycle, slot + 1);
+        double offset = slot * SPREAD;
+        return offset - Math.floor(offset);
+    }
+
+    /**
+     * Stop switching the output and switch it off.
+     * @param output The output to stop.
+     */
+    public void remove(final Output output) {
+        Task task = tasks.remove(output);
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * @param output The output to check.
+     * @return True if the output is switched by the scheduler.
+     */
+    public boolean contains(final Output output) {
+        return tasks.containsKey(output);
+    }
+
+    /**
+     * Apply a new duty to the current cycle of the output.
+     * @param output The output whose duty changed.
+     */
+    public void dutyChanged(final Output output) {
+        Task task = tasks.get(output);
+        if (task != null) {
+            task.dutyChanged();
+        }
+    }
+
+    /**
+     * @return The number of edges run, each switches an output on or off.
+     */
+    public long getEdgeCount() {
+        return edges.get();
+    }
+
+    /**
+     * @return The latest an edge has run after it was due, in nanoseconds.
+     */
+    public long getMaxLateness() {
+        return maxLateness.get();
+    }
+
+    /**
+     * @param fraction The fraction of edges, 0.99 for the 99th percentile.
+     * @return The lateness that fraction of edges ran within, rounded up to
+     *  a power of two microseconds, in nanoseconds.
+     */
+    public long getLatenessPercentile(final double fraction) {
+        long[] counts = new long[LATENESS_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < LATENESS_BUCKETS; i++) {
+            counts[i] = lateness.get(i);
+            total += counts[i];
+        }
+        long wanted = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < LATENESS_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= wanted && seen > 0) {
+                return (1L << i) * NANOS_PER_MICRO;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stop switching every output and switch them off.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        for (Output output : tasks.keySet()) {
+            remove(output);
+        }
+        clock.shutdown();
+    }
+
+    /**
+     * Switches one output, rescheduling itself for the next edge.
+     */
+    private final class Task {
+        private final Output output;
+        private long cycleStart;
+        private long cycleLength = 0;
+        private long due;
+        private long owed = 0;
+        private Future<?> future = null;
+        private long generation = 0;
+        private boolean cancelled = false;
+
+        /**
+         * @param start When the first cycle starts.
+         */
+        private Task(final Output output, final long start) {
+            this.output = output;
+            this.cycleStart = start;
+            this.due = start;
+        }
+
+        private synchronized void begin(final long now) {
+            switchOff();
+            schedule(now, cycleStart);
+        }
+
+        private synchronized void schedule(final long now, final long edge) {
+            if (cancelled) {
+                return;
+            }
+            due = edge;
+            // An edge that already fired waits for the lock, so it has to
+            // know it's been replaced
+            final long scheduled = ++generation;
+            try {
+                future = clock.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        edge(scheduled);
+                    }
+                }, Math.max(0, edge - now));
+            } catch (RejectedExecutionException e) {
+                // Shut down while scheduling
+                cancelled = true;
+            }
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            switchOff();
+        }
+
+        private synchronized void dutyChanged() {
+            if (cancelled || cycleLength == 0
+                    || output.getSlotMillis() > 0) {
+                // Not started yet, or in slots, the next one will use the
+                // new duty
+                return;
+            }
+            if (future != null) {
+                future.cancel(false);
+            }
+            apply(clock.nanoTime());
+        }
+
+        private synchronized void edge(final long scheduled) {
+            if (cancelled || scheduled != generation) {
+                return;
+            }
+            long now = clock.nanoTime();
+            long late = now - due;
+            if (late > maxLateness.get()) {
+                maxLateness.set(late);
+            }
+            lateness.incrementAndGet(Math.min(LATENESS_BUCKETS - 1,
+                    64 - Long.numberOfLeadingZeros(
+                            Math.max(0, late) / NANOS_PER_MICRO)));
+
+            long slot = output.getSlotMillis() * NANOS_PER_MILLI;
+            if (slot > 0) {
+                burst(now, slot);
+                return;
+            }
+
+            long cycleEnd = cycleStart + cycleLength;
+            if (now >= cycleEnd) {
+                // Start the next cycle where the last one ended, unless
+                // it's so late the whole cycle would be missed
+                cycleStart = cycleEnd;
+                if (now - cycleStart >= cycleLength) {
+                    cycleStart = now;
+                }
+                cycleLength = Math.max(1, output.getCycleMillis())
+                        * NANOS_PER_MILLI;
+            }
+            apply(now);
+        }
+
+        /**
+         * Set the output for the current duty and schedule the next edge.
+         */
+        private void apply(final long now) {
+            long cycleEnd = cycleStart + cycleLength;
+            long offAt = cycleEnd;
+            boolean on;
+            try {
+                long onLength = output.getOnMillis(cycleLength
+                        / NANOS_PER_MILLI) * NANOS_PER_MILLI;
+                offAt = cycleStart + Math.max(0, Math.min(onLength,
+                        cycleLength));
+                on = now < offAt;
+                if (on) {
+                    output.turnOn();
+                } else {
+                    output.turnOff();
+                }
+                edges.incrementAndGet();
+            } catch (RuntimeException e) {
+                BrewServer.LOG.log(Level.WARNING,
+                        "Could not control the output " + output, e);
+                switchOff();
+                on = false;
+            }
+
+            if (on && offAt < cycleEnd) {
+                schedule(now, offAt);
+            } else {
+                schedule(now, cycleEnd);
+            }
+        }
+
+        /**
+         * Start the next burst fire slot, on for all of it if enough on time
+         * is owed and off otherwise.
+         */
+        private void burst(final long now, final long slot) {
+            // Follow on from the last slot, unless it's late or switching
+            // from part way through a cycle
+            cycleStart += cycleLength;
+            if (cycleStart > now || now - cycleStart >= slot) {
+                cycleStart = now;
+            }
+            cycleLength = slot;
+            try {
+                long cycle = Math.max(1, output.getCycleMillis());
+                long onMillis = Math.max(0, Math.min(
+                        output.getOnMillis(cycle), cycle));
+                // Each slot owes its share of the on time, and pays back a
+                // whole cycle's worth when it's on
+                owed = Math.min(owed, cycle) + onMillis;
+                if (owed >= cycle) {
+                    owed -= cycle;
+                    output.turnOn();
+                } else {
+                    output.turnOff();
+                }
+                edges.incrementAndGet();
+            } catch (RuntimeException e) {
+                BrewServer.LOG.log(Level.WARNING,
+                        "Could not control the output " + output, e);
+                switchOff();
+            }
+            schedule(now, cycleStart + cycleLength);
+        }
+
+        private void switchOff() {
+            try {
+                output.turnOff();
+            } catch (RuntimeException e) {
+                BrewServer.LOG.log(Level.WARNING,
+                        "Could not turn off the output " + output, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.sb.elsinore;
+
+import org.owfs.jowfsclient.OwfsConnection;
+import org.owfs.jowfsclient.OwfsException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the probes on the OWFS server together, in one pass over the
+ * connection each polling cycle.
+ *
+ * The probes are still polled one by one, but first every path they read
+ * in the last cycle is read in one go, and their reads are answered from
+ * that. The server's device directory is listed and kept, so a read of a
+ * device that isn't there doesn't go to the server, and paths aren't
+ * checked with exists before they're read. The connections are borrowed
+ * from the {@link OwfsPool}, and one that fails is handed back as failed
+ * instead of being torn down under everyone else.
+ *
+ * With {@link #UNCACHED} the reads go through the server's uncached tree,
+ * with {@link #SIMULTANEOUS} the temperature probes are all converted at
+ * once through simultaneous/temperature before they're read.
+ */
+public final class OwfsBus implements SensorScheduler.Sensor {
+
+    public static final String OWFS_UNCACHED = "owfs_uncached";
+    public static final String OWFS_SIMULTANEOUS = "owfs_simultaneous";
+
+    /**
+     * Read through the uncached tree, so every read is a fresh reading from
+     * the device instead of the server's cached value.
+     */
+    public static boolean UNCACHED = false;
+    /**
+     * Convert every temperature probe at once before reading them.
+     */
+    public static boolean SIMULTANEOUS = false;
+
+    /**
+     * The name of the bus, matches {@link Temp#getBus()}.
+     */
+    public static final String BUS = "owfs";
+    /**
+     * How often the device directory is listed again, in milliseconds.
+     */
+    public static final long RESCAN_INTERVAL = 60000;
+    /**
+     * How long after a listing a read of a device that isn't in it lists
+     * the directory again, in milliseconds.
+     */
+    public static final long MISSING_RESCAN = 10000;
+
+    static final String TEMPERATURE = "/temperature";
+    static final String LATEST_TEMPERATURE = "/latesttemp";
+    static final String SIMULTANEOUS_TEMPERATURE = "/simultaneous/temperature";
+    static final String UNCACHED_TREE = "/uncached/";
+    /**
+     * The OWFS error for a path that doesn't exist.
+     */
+    private static final int NOT_FOUND = -1;
+    /**
+     * A device directory, the family code and a 48 bit serial number.
+     */
+    private static final Pattern DEVICE =
+            Pattern.compile("[0-9A-F]{2}\\.?[0-9A-F]{12}");
+
+    /**
+     * Lends out connections to the server.
+     */
+    public interface Connector {
+        /**
+         * @return A connection for the caller alone, or null if OWFS isn't
+         *  set up.
+         * @throws IOException If no connection can be had.
+         */
+        OwfsConnection acquire() throws IOException;
+
+        /**
+         * Hand back a connection.
+         * @param connection The connection from {@link #acquire()}.
+         * @param failed True if the connection failed.
+         */
+        void release(OwfsConnection connection, boolean failed);
+    }
+
+    private static OwfsBus instance = null;
+
+    private final Connector connector;
+    private final long conversionTime;
+    private final List<SensorScheduler.Sensor> probes =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * The devices in the directory, null until it's been listed.
+     */
+    private volatile Set<String> devices = null;
+    private volatile long listedAt = 0;
+    /**
+     * The values read at the start of the cycle, only set while the probes
+     * are being polled.
+     */
+    private volatile Map<String, String> cycle = null;
+    /**
+     * The paths read by the probes this cycle, to be read in one go next.
+     */
+    private Set<String> wanted = newPathSet();
+    private volatile Thread pollingThread = null;
+
+    /**
+     * Create a new bus reader.
+     * @param connector Supplies the connection.
+     * @param conversionTime How long a simultaneous conversion takes, in
+     *                       milliseconds.
+     */
+    public OwfsBus(final Connector connector, final long conversionTime) {
+        this.connector = connector;
+        this.conversionTime = conversionTime;
+    }
+
+    /**
+     * @return The reader for the configured OWFS server.
+     */
+    public static synchronized OwfsBus getInstance() {
+        if (instance == null) {
+            instance = new OwfsBus(OwfsPool.getInstance(),
+                    OneWireBus.CONVERSION_TIME);
+        }
+        return instance;
+    }
+
+    private static Set<String> newPathSet() {
+        return Collections.newSetFromMap(
+                new ConcurrentHashMap<String, Boolean>());
+    }
+
+    /**
+     * Read the probe with the rest of the bus.
+     * @param probe The probe to add.
+     */
+    public void add(final SensorScheduler.Sensor probe) {
+        if (!probes.contains(probe)) {
+            probes.add(probe);
+        }
+    }
+
+    /**
+     * Stop reading the probe.
+     * @param probe The probe to remove.
+     */
+    public void remove(final SensorScheduler.Sensor probe) {
+        probes.remove(probe);
+    }
+
+    /**
+     * @param probe The probe to check.
+     * @return True if the probe is read with the bus.
+     */
+    public boolean contains(final SensorScheduler.Sensor probe) {
+        return probes.contains(probe);
+    }
+
+    @Override
+    public String getBus() {
+        return BUS;
+    }
+
+    /**
+     * @return The shortest interval of the probes on the bus.
+     */
+    @Override
+    public long getPollInterval() {
+        long interval = Long.MAX_VALUE;
+        for (SensorScheduler.Sensor probe : probes) {
+            interval = Math.min(interval, probe.getPollInterval());
+        }
+        if (interval == Long.MAX_VALUE) {
+            return Temp.DEFAULT_POLL_INTERVAL;
+        }
+        return interval;
+    }
+
+    /**
+     * Read every path the probes wanted last cycle, then poll the probes.
+     * @return True unless every probe failed.
+     */
+    @Override
+    public boolean poll() {
+        if (probes.isEmpty()) {
+            return true;
+        }
+        Set<String> paths = wanted;
+        wanted = newPathSet();
+        if (!paths.isEmpty()) {
+            cycle = readAll(paths);
+        }
+
+        boolean ok = false;
+        pollingThread = Thread.currentThread();
+        try {
+            for (SensorScheduler.Sensor probe : probes) {
+                ok |= probe.poll();
+            }
+        } finally {
+            pollingThread = null;
+            cycle = null;
+        }
+        return ok;
+    }
+
+    /**
+     * Read the paths in one pass on one connection, stopping if it fails.
+     * @param paths The paths to read.
+     * @return The value of each path read.
+     */
+    Map<String, String> readAll(final Set<String> paths) {
+        Map<String, String> values = new HashMap<>();
+        OwfsConnection connection;
+        try {
+            connection = connector.acquire();
+        } catch (IOException e) {
+            BrewServer.LOG.info("Not reading OWFS: " + e.getMessage());
+            return values;
+        }
+        if (connection == null) {
+            return values;
+        }
+
+        boolean failed = false;
+        try {
+            readAll(connection, paths, values);
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Failed to read from OWFS: "
+                    + e.getMessage());
+            failed = true;
+        } finally {
+            connector.release(connection, failed);
+        }
+        return values;
+    }
+
+    private void readAll(final OwfsConnection connection,
+            final Set<String> paths, final Map<String, String> values)
+            throws IOException {
+        boolean converted = false;
+        if (SIMULTANEOUS) {
+            for (String path : paths) {
+                if (path.endsWith(TEMPERATURE)) {
+                    converted = convertAll(connection);
+                    break;
+                }
+            }
+        }
+
+        for (String path : paths) {
+            if (!isListed(connection, path)) {
+                values.put(path, "");
+                continue;
+            }
+            String read = path;
+            if (converted && path.endsWith(TEMPERATURE)) {
+                // The result of the conversion, without starting another
+                read = path.substring(0, path.length() - TEMPERATURE.length())
+                        + LATEST_TEMPERATURE;
+            }
+            try {
+                values.put(path, readFrom(connection, read));
+            } catch (OwfsException e) {
+                // The probe gets the error when it reads the path itself
+                BrewServer.LOG.warning("Failed to read " + path
+                        + " from OWFS: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Start a conversion on every temperature probe and wait for it.
+     * @param connection The connection to the server.
+     * @return True if the conversion was started.
+     */
+    private boolean convertAll(final OwfsConnection connection)
+            throws IOException {
+        try {
+            connection.write(SIMULTANEOUS_TEMPERATURE, "1");
+        } catch (OwfsException e) {
+            BrewServer.LOG.info("Couldn't start a simultaneous conversion: "
+                    + e.getMessage());
+            return false;
+        }
+        try {
+            Thread.sleep(conversionTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * Read a path, from this cycle's reads if it was read at the start of
+     * the cycle.
+     * @param path The path to read, relative to the root.
+     * @return The value, trimmed, or an empty string if there's no such
+     *  path or no connection.
+     * @throws OwfsException If the server returned an error.
+     * @throws IOException If the server couldn't be reached, or is down.
+     */
+    public String read(final String path) throws OwfsException, IOException {
+        String key = trim(path);
+        if (Thread.currentThread() == pollingThread) {
+            wanted.add(key);
+        }
+        Map<String, String> values = cycle;
+        if (values != null) {
+            String value = values.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        OwfsConnection connection = connector.acquire();
+        if (connection == null) {
+            BrewServer.LOG.info("no OWFS connection");
+            return "";
+        }
+        boolean failed = true;
+        try {
+            String value = "";
+            if (isListed(connection, key)) {
+                value = readFrom(connection, key);
+            }
+            failed = false;
+            return value;
+        } catch (OwfsException e) {
+            // The server answered, the connection is fine
+            failed = false;
+            throw e;
+        } finally {
+            connector.release(connection, failed);
+        }
+    }
+
+    /**
+     * Read a path from the server.
+     */
+    private String readFrom(final OwfsConnection connection,
+            final String key) throws OwfsException, IOException {
+        try {
+            return connection.read((UNCACHED ? UNCACHED_TREE : "/") + key)
+                    .trim();
+        } catch (OwfsException e) {
+            if (e.getErrorCode() == NOT_FOUND) {
+                return "";
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param connection The connection to list the directory with.
+     * @param key The path to check.
+     * @return False if the path is on a device that isn't in the directory.
+     * @throws IOException If the directory couldn't be listed.
+     */
+    private boolean isListed(final OwfsConnection connection,
+            final String key) throws IOException {
+        int slash = key.indexOf('/');
+        String device = (slash < 0 ? key : key.substring(0, slash))
+                .toUpperCase(Locale.ROOT);
+        if (!DEVICE.matcher(device).matches()) {
+            // Not a device, like simultaneous or settings
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        Set<String> listed = devices;
+        if (listed == null || now - listedAt > RESCAN_INTERVAL) {
+            listed = list(connection, now);
+        }
+        if (listed == null || listed.contains(device)) {
+            return true;
+        }
+        if (now - listedAt > MISSING_RESCAN) {
+            // It may have been plugged in since
+            listed = list(connection, now);
+            return listed == null || listed.contains(device);
+        }
+        return false;
+    }
+
+    /**
+     * List the devices in the directory.
+     * @return The devices, or null if the server wouldn't list them.
+     * @throws IOException If the server couldn't be reached.
+     */
+    private Set<String> list(final OwfsConnection connection,
+            final long now) throws IOException {
+        try {
+            Set<String> listed = new HashSet<>();
+            for (String entry : connection.listDirectory("/")) {
+                listed.add(trim(entry).toUpperCase(Locale.ROOT));
+            }
+            devices = listed;
+            listedAt = now;
+            return listed;
+        } catch (OwfsException e) {
+            BrewServer.LOG.warning("Couldn't list the OWFS devices: "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param path An OWFS path.
+     * @return The path without slashes at either end.
+     */
+    private static String trim(final String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+}
@@ -0,0 +1,343 @@
+package com.sb.elsinore;
+
+import org.owfs.jowfsclient.Enums.OwPersistence;
+import org.owfs.jowfsclient.OwfsConnection;
+import org.owfs.jowfsclient.OwfsConnectionConfig;
+import org.owfs.jowfsclient.OwfsConnectionFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A small pool of connections to the OWFS server.
+ *
+ * Each connection is lent to one reader at a time and handed back when it's
+ * done. A reader whose connection fails hands it back as failed, and only
+ * that connection is closed, along with the idle ones that were opened
+ * before the failure. Nobody else's connection is torn down under them.
+ *
+ * After a failure the server isn't connected to again until a backoff has
+ * passed, doubling with each failure in a row up to {@link #MAX_BACKOFF}.
+ * Then a single reader gets a new connection to try. Until that reader
+ * hands it back the rest are refused with an IOException straight away,
+ * rather than each opening a connection of their own.
+ */
+public final class OwfsPool implements OwfsBus.Connector {
+
+    /**
+     * The number of connections open at most.
+     */
+    public static final int DEFAULT_SIZE = 2;
+    /**
+     * The backoff after the first failure, in milliseconds.
+     */
+    public static final long MIN_BACKOFF = 500;
+    /**
+     * The longest backoff, in milliseconds.
+     */
+    public static final long MAX_BACKOFF = 60000;
+    /**
+     * How long a reader waits for a connection when they're all lent out,
+     * in milliseconds.
+     */
+    public static final long ACQUIRE_TIMEOUT = 5000;
+
+    /**
+     * Opens a connection to the server.
+     */
+    public interface Factory {
+        /**
+         * @param server The server's host name.
+         * @param port The server's port.
+         * @return A new connection, which connects when it's first used.
+         */
+        OwfsConnection connect(String server, int port);
+    }
+
+    private static OwfsPool instance = null;
+
+    private final Factory factory;
+    private final int size;
+    private final long minBackoff;
+    private final long maxBackoff;
+
+    private String server = null;
+    private int port = 0;
+    /**
+     * The connections waiting to be lent out, the most recently used first.
+     */
+    private final Deque<OwfsConnection> idle = new ArrayDeque<>();
+    /**
+     * Every connection opened since the pool was last configured, lent out
+     * or not.
+     */
+    private final Set<OwfsConnection> open = Collections.newSetFromMap(
+            new IdentityHashMap<OwfsConnection, Boolean>());
+    /**
+     * The connection lent out to try the server again, if there is one.
+     */
+    private OwfsConnection trial = null;
+    private int consecutiveFailures = 0;
+    private long retryAt = 0;
+
+    private long acquired = 0;
+    private long failures = 0;
+    private long connects = 0;
+    private long refused = 0;
+
+    /**
+     * Create a new pool.
+     * @param factory Opens the connections.
+     * @param size The number of connections open at most.
+     * @param minBackoff The backoff after the first failure, in
+     *                   milliseconds.
+     * @param maxBackoff The longest backoff, in milliseconds.
+     */
+    public OwfsPool(final Factory factory, final int size,
+            final long minBackoff, final long maxBackoff) {
+        this.factory = factory;
+        this.size = Math.max(1, size);
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @return The pool for the configured OWFS server.
+     */
+    public static synchronized OwfsPool getInstance() {
+        if (instance == null) {
+            instance = new OwfsPool(new Factory() {
+                @Override
+                public OwfsConnection connect(final String server,
+                        final int port) {
+                    OwfsConnectionConfig config =
+                            new OwfsConnectionConfig(server, port);
+                    config.setPersistence(OwPersistence.ON);
+                    return OwfsConnectionFactory.newOwfsClient(config);
+                }
+            }, DEFAULT_SIZE, MIN_BACKOFF, MAX_BACKOFF);
+        }
+        return instance;
+    }
+
+    /**
+     * Connect to a server, closing the connections to the last one. Any
+     * that are lent out are closed when they're handed back.
+     * @param newServer The server's host name.
+     * @param newPort The server's port.
+     */
+    public synchronized void configure(final String newServer,
+            final int newPort) {
+        closeIdle();
+        open.clear();
+        trial = null;
+        consecutiveFailures = 0;
+        retryAt = 0;
+        server = newServer;
+        port = newPort;
+        notifyAll();
+    }
+
+    /**
+     * @return True if there is a server to connect to.
+     */
+    public synchronized boolean isConfigured() {
+        return server != null;
+    }
+
+    /**
+     * Borrow a connection, to be handed back with
+     * {@link #release(OwfsConnection, boolean)}.
+     * @return The connection, or null if there is no server configured.
+     * @throws IOException If the server is down, or every connection is
+     *  still lent out after {@link #ACQUIRE_TIMEOUT}.
+     */
+    @Override
+    public synchronized OwfsConnection acquire() throws IOException {
+        long deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT;
+        while (true) {
+            if (server == null) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            if (consecutiveFailures > 0) {
+                if (now < retryAt || trial != null) {
+                    refused++;
+                    throw new IOException("OWFS is unavailable, retrying in "
+                            + Math.max(0, retryAt - now) + "ms");
+                }
+                // Let one reader try the server again
+                trial = connect();
+                acquired++;
+                return trial;
+            }
+            if (!idle.isEmpty()) {
+                acquired++;
+                return idle.pop();
+            }
+            if (open.size() < size) {
+                acquired++;
+                return connect();
+            }
+            if (now >= deadline) {
+                refused++;
+                throw new IOException("No OWFS connection free after "
+                        + ACQUIRE_TIMEOUT + "ms");
+            }
+            try {
+                wait(deadline - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for OWFS", e);
+            }
+        }
+    }
+
+    private OwfsConnection connect() {
+        OwfsConnection connection = factory.connect(server, port);
+        open.add(connection);
+        connects++;
+        return connection;
+    }
+
+    /**
+     * Hand back a borrowed connection.
+     * @param connection The connection.
+     * @param failed True if the connection failed, so it's closed.
+     */
+    @Override
+    public synchronized void release(final OwfsConnection connection,
+            final boolean failed) {
+        if (connection == null) {
+            return;
+        }
+        if (connection == trial) {
+            trial = null;
+        }
+        if (!open.contains(connection)) {
+            // Opened before the pool was configured again
+            disconnect(connection);
+        } else if (failed) {
+            failures++;
+            consecutiveFailures = Math.min(consecutiveFailures + 1, 30);
+            long backoff = Math.min(maxBackoff,
+                    minBackoff << (consecutiveFailures - 1));
+            retryAt = System.currentTimeMillis() + backoff;
+            BrewServer.LOG.warning("OWFS connection to " + server + ":" + port
+                    + " failed, retrying in " + backoff + "ms");
+            open.remove(connection);
+            disconnect(connection);
+            // The idle ones were connected to the same server
+            closeIdle();
+        } else {
+            if (consecutiveFailures > 0) {
+                BrewServer.LOG.info("Reconnected to OWFS at " + server + ":"
+                        + port);
+                consecutiveFailures = 0;
+                retryAt = 0;
+            }
+            idle.push(connection);
+        }
+        notifyAll();
+    }
+
+    private void closeIdle() {
+        for (OwfsConnection connection : idle) {
+            open.remove(connection);
+            disconnect(connection);
+        }
+        idle.clear();
+    }
+
+    private static void disconnect(final OwfsConnection connection) {
+        try {
+            connection.disconnect();
+        } catch (IOException e) {
+            BrewServer.LOG.fine("Couldn't close an OWFS connection: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * @return True unless the server is down.
+     */
+    public synchronized boolean isAvailable() {
+        return server != null && consecutiveFailures == 0;
+    }
+
+    /**
+     * @return The number of connections open, lent out or idle.
+     */
+    public synchronized int getOpen() {
+        return open.size();
+    }
+
+    /**
+     * @return The number of connections waiting to be lent out.
+     */
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return The number of connections lent out now, not counting any
+     *  opened before the pool was last configured.
+     */
+    public synchronized int getInUse() {
+        return open.size() - idle.size();
+    }
+
+    /**
+     * @return The number of failures since a connection last worked.
+     */
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return The number of milliseconds until the server is tried again,
+     *  0 if it isn't down.
+     */
+    public synchronized long getRetryIn() {
+        if (consecutiveFailures == 0) {
+            return 0;
+        }
+        return Math.max(0, retryAt - System.currentTimeMillis());
+    }
+
+    /**
+     * @return The number of times a connection has been lent out, since the
+     *  pool was created.
+     */
+    public synchronized long getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * @return The number of connections that have failed, since the pool
+     *  was created.
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The number of connections opened, since the pool was
+     *  created.
+     */
+    public synchronized long getConnects() {
+        return connects;
+    }
+
+    /**
+     * @return The number of times a reader has been refused a connection,
+     *  since the pool was created.
+     */
+    public synchronized long getRefused() {
+        return refused;
+    }
+}
@@ -1,13 +1,11 @@
 package com.sb.elsinore;
 import com.sb.elsinore.devices.OutputDevice;
+import com.sb.elsinore.hardware.Hardware;
 import com.sb.util.MathUtil;
 import jGPIO.InvalidGPIOException;
-import jGPIO.OutPin;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
@@ -18,7 +16,7 @@ import java.util.regex.Pattern;
  * @author Doug Edey
  *
  */
-public final class PID implements Runnable {
+public final class PID implements Runnable, Sampled {
 
     public static final String DUTY_CYCLE = "duty_cycle";
     public static final String DUTY_TIME = "duty_time";
@@ -26,6 +24,7 @@ public final class PID implements Runnable {
     public static final String GPIO = "gpio";
     public static final String MODE = "mode";
     public static final String CYCLE_TIME = "cycle_time";
+    public static final String SLOT_TIME = "slot_time";
     public static final String PROPORTIONAL = "proportional";
     public static final String INTEGRAL = "integral";
     public static final String DERIVATIVE = "derivative";
@@ -43,18 +42,16 @@ public final class PID implements Runnable {
     public static final String COOL = "cool";
 
     /**
-     * Thousand BigDecimal multiplier.
+     * The longest to wait for a new reading before checking the mode again,
+     * in milliseconds.
      */
-    private BigDecimal THOUSAND = new BigDecimal(1000);
+    public static final long SAMPLE_TIMEOUT = 1000;
 
-    /**
-     * The Output control thread.
-     */
-    private Thread outputThread = null;
     private boolean invertOutput = false;
     private BigDecimal duty_cycle = new BigDecimal(0);
-    private BigDecimal calculatedDuty = new BigDecimal(0);
+    private volatile double calculatedDuty = 0;
     private BigDecimal set_point = new BigDecimal(0);
+    private double setPointValue = 0;
     private BigDecimal manual_duty = new BigDecimal(0);
     private BigDecimal manual_time = new BigDecimal(0);
     
@@ -84,7 +81,8 @@ public final class PID implements Runnable {
             proportional = new BigDecimal(0),
             integral = new BigDecimal(0),
             derivative = new BigDecimal(0),
-            delay = new BigDecimal(0);
+            delay = new BigDecimal(0),
+            slot_time = new BigDecimal(0);
         boolean inverted = false;
 
         /**
@@ -198,11 +196,13 @@ public final class PID implements Runnable {
         }
         this.heatSetting.cycle_time = cycle;
         this.set_point = setpoint;
+        this.setPointValue = setpoint.doubleValue();
         BrewServer.LOG.info(heatSetting.proportional + ": "
             + heatSetting.integral + ": " + heatSetting.derivative);
         this.heatSetting.proportional = p;
         this.heatSetting.integral = i;
         this.heatSetting.derivative = d;
+        updateGains();
         BrewServer.LOG.info("Mode " + this.mode + " " + this.heatSetting.proportional + ": "
             + heatSetting.integral + ": " + this.heatSetting.derivative);
         LaunchControl.savePID(this);
@@ -253,12 +253,11 @@ public final class PID implements Runnable {
      */
     public void run() {
         BrewServer.LOG.info("Running " + this.fName + " PID.");
-        // setup the first time
-        this.previousTime = new BigDecimal(System.currentTimeMillis());
         // create the Output if needed
         if (this.heatGPIO != null && !this.heatGPIO.equals("")) {
             this.outputControl =
                     new OutputControl(fName, heatGPIO, heatSetting.cycle_time);
+            this.outputControl.getHeater().setSlotTime(heatSetting.slot_time);
         }
         if (this.coolGPIO != null ) {
             if (this.outputControl == null) {
@@ -269,14 +268,13 @@ public final class PID implements Runnable {
         if (this.outputControl == null) {
             return;
         } else {
-            this.outputThread = new Thread(outputControl);
-            outputThread.start();
+            this.outputControl.start(OutputScheduler.getInstance());
         }
 
         // Detect an Auxilliary output
         if (this.auxGPIO != null && !this.auxGPIO.equals("")) {
             try {
-                this.auxPin = new OutPin(this.auxGPIO);
+                this.auxPin = Hardware.getInstance().getOutput(this.auxGPIO);
             } catch (InvalidGPIOException e) {
                 BrewServer.LOG.log(Level.SEVERE,
                     "Couldn't parse " + this.auxGPIO + " as a valid GPIO");
@@ -288,64 +286,64 @@ public final class PID implements Runnable {
             }
         }
 
-        // Main loop
+        // Main loop, runs for each new reading
+        long seen = this.fTemp.getSampleCount();
         while (running) {
             try {
-                synchronized (this.fTemp) {
-                    // do the bulk of the work here
-                    this.fTempC = this.fTemp.getTempC();
-                    this.fTempF = this.fTemp.getTempF();
-                    this.currentTime = new BigDecimal(this.fTemp.getTime());
-
-                    // if the GPIO is blank we do not need to do any of this;
-                    if (this.hasValidHeater()
-                            || this.hasValidCooler()) {
-                        if (this.tempList.size() >= 5) {
-                            tempList.remove(0);
-                        }
-                        tempList.add(fTemp.getTemp());
-                        BigDecimal tempAvg = calcAverage();
-                        // we have the current temperature
-                        BrewServer.LOG.info(mode);
-                        switch (mode) {
-                            case "auto":
-                                this.calculatedDuty =
-                                        calculate(tempAvg);
-                                BrewServer.LOG.info(
-                                        "Calculated: " + calculatedDuty);
-                                if (this.outputControl.setDuty(calculatedDuty)) {
-                                    this.outputControl.getHeater().setCycleTime(
-                                            heatSetting.cycle_time);
-                                    this.outputThread.interrupt();
-                                }
-                                break;
-                            case "manual":
-                                if (this.outputControl.setDuty(this.manual_duty)) {
-                                    this.outputControl.getHeater().setCycleTime(
-                                            this.manual_time);
-                                    this.outputThread.interrupt();
-                                }
+                long latest = this.fTemp.awaitSample(seen, SAMPLE_TIMEOUT);
+                boolean fresh = latest != seen;
+                seen = latest;
+
+                this.fTempC = this.fTemp.getTempC();
+                this.fTempF = this.fTemp.getTempF();
+                this.currentTime = this.fTemp.getTime();
+
+                // if the GPIO is blank we do not need to do any of this;
+                if (this.hasValidHeater()
+                        || this.hasValidCooler()) {
+                    if (fresh) {
+                        core.addSample(this.fTemp.getLastSample());
+                    }
+                    // we have the current temperature
+                    BrewServer.LOG.info(mode);
+                    switch (mode) {
+                        case "auto":
+                            // Only calculate once per reading
+                            if (!fresh) {
                                 break;
-                            case "off":
-                                this.outputControl.setDuty(BigDecimal.ZERO);
+                            }
+                            double newDuty = calculate(core.getAverage(),
+                                    this.fTemp.getLastSampleTime());
+                            if (newDuty != this.calculatedDuty) {
+                                LaunchControl.statusChanged();
+                            }
+                            this.calculatedDuty = newDuty;
+                            BrewServer.LOG.info(
+                                    "Calculated: " + calculatedDuty);
+                            if (this.outputControl.setDuty(calculatedDuty)) {
                                 this.outputControl.getHeater().setCycleTime(
                                         heatSetting.cycle_time);
-                                this.outputThread.interrupt();
-                                break;
-                            case "hysteria":
-                                setHysteria();
-                                this.outputThread.interrupt();
-                                break;
-                        }
-                        BrewServer.LOG.info(mode + ": " + fName + " status: "
-                            + fTempF + " duty cycle: "
-                            + this.outputControl.getDuty());
+                            }
+                            break;
+                        case "manual":
+                            if (this.outputControl.setDuty(this.manual_duty)) {
+                                this.outputControl.getHeater().setCycleTime(
+                                        this.manual_time);
+                            }
+                            break;
+                        case "off":
+                            this.outputControl.setDuty(BigDecimal.ZERO);
+                            this.outputControl.getHeater().setCycleTime(
+                                    heatSetting.cycle_time);
+                            break;
+                        case "hysteria":
+                            setHysteria();
+                            break;
                     }
-                    //notify all waiters of the change of state
+                    BrewServer.LOG.info(mode + ": " + fName + " status: "
+                        + fTempF + " duty cycle: "
+                        + this.outputControl.getDuty());
                 }
-
-                //pause execution for a second
-                Thread.sleep(1000);
             } catch (InterruptedException ex) {
                 BrewServer.LOG.warning("PID " + getName() + " Interrupted.");
                 ex.printStackTrace();
@@ -396,6 +394,7 @@ public final class PID implements Runnable {
             temp = BigDecimal.ZERO;
         }
         this.set_point = temp.setScale(2, BigDecimal.ROUND_CEILING);
+        this.setPointValue = this.set_point.doubleValue();
     }
 
     /*******
@@ -469,6 +468,7 @@ public final class PID implements Runnable {
      */
     public void setHeatP(final BigDecimal p) {
         heatSetting.proportional = p;
+        updateGains();
     }
 
     /******
@@ -477,6 +477,7 @@ public final class PID implements Runnable {
      */
     public void setHeatI(final BigDecimal i) {
         heatSetting.integral = i;
+        updateGains();
     }
 
     /******
@@ -485,6 +486,7 @@ public final class PID implements Runnable {
      */
     public void setHeatD(final BigDecimal d) {
         heatSetting.derivative = d;
+        updateGains();
     }
 
     /*******
@@ -527,6 +529,31 @@ public final class PID implements Runnable {
         return auxGPIO;
     }
 
+    @Override
+    public String getSeriesName() {
+        return fTemp.getProbe();
+    }
+
+    @Override
+    public String getSeriesType() {
+        return Sampled.DUTY;
+    }
+
+    /**
+     * @return The calculated duty in auto mode, the set duty in the other
+     *  modes and zero when off.
+     */
+    @Override
+    public double getSampleValue() {
+        if (mode.contains("auto")) {
+            return calculatedDuty;
+        }
+        if (mode.equals("off")) {
+            return 0;
+        }
+        return duty_cycle.doubleValue();
+    }
+
     /**
      * @return Get the current duty cycle percentage
      */
@@ -573,6 +600,13 @@ public final class PID implements Runnable {
         return heatSetting.delay;
     }
 
+    /**
+     * @return The burst fire slot time for the heater, 0 when off.
+     */
+    public BigDecimal getHeatSlot() {
+        return heatSetting.slot_time;
+    }
+
     /**
      * @return true if the heating output is inverted.
      */
@@ -650,30 +684,6 @@ public final class PID implements Runnable {
     }
 
   //PRIVATE ///
-    /**
-     * Store the previous timestamp for the update.
-     */
-    private BigDecimal previousTime = new BigDecimal(0);
-
-    /**
-     * @return Calculate the average of the current temp list
-     */
-    private BigDecimal calcAverage() {
-        int size = tempList.size();
-
-        if (size == 0)
-        {
-            return new BigDecimal(-999.0);
-        }
-
-        BigDecimal total = new BigDecimal(0.0);
-        for (BigDecimal t : tempList) {
-            total = total.add(t);
-        }
-
-        return MathUtil.divide(total, size);
-    }
-
     /**
      * The current temperature Object.
      */
@@ -687,9 +697,9 @@ public final class PID implements Runnable {
      */
     private String heatGPIO, auxGPIO, coolGPIO = null;
     /**
-     * The previous five temperature readings.
+     * The moving average and PID state.
      */
-    private List<BigDecimal> tempList = new ArrayList<>();
+    private final PIDCore core = new PIDCore();
 
     /**
      * Various strings.
@@ -698,8 +708,7 @@ public final class PID implements Runnable {
     /**
      * The current timestamp.
      */
-    private BigDecimal currentTime, hysteriaStartTime
-        = new BigDecimal(System.currentTimeMillis());
+    private long currentTime, hysteriaStartTime = System.currentTimeMillis();
     private BigDecimal timeDiff = BigDecimal.ZERO;
     /**
      * Settings for the heating and cooling.
@@ -709,22 +718,7 @@ public final class PID implements Runnable {
     /**
      * The aux output pin.
      */
-    private OutPin auxPin = null;
-
-    private BigDecimal totalError = new BigDecimal(0.0);
-    private BigDecimal errorFactor = new BigDecimal(0.0);
-    /**
-     *  Temp values for PID calculation.
-     */
-    private BigDecimal previousError = new BigDecimal(0.0);
-    /**
-     *  Temp values for PID calculation.
-     */
-    private BigDecimal integralFactor = new BigDecimal(0.0);
-    /**
-     *  Temp values for PID calculation.
-     */
-    private BigDecimal derivativeFactor = new BigDecimal(0.0);
+    private Hardware.OutputPin auxPin = null;
 
     /**
      * @return Get the current temp probe (for saving)
@@ -736,76 +730,30 @@ public final class PID implements Runnable {
     /*****
      * Calculate the current PID Duty.
      * @param avgTemp The current average temperature
-     * @return  A Double of the duty cycle %
-     */
-    private BigDecimal calculate(BigDecimal avgTemp) {
-        this.currentTime = new BigDecimal(System.currentTimeMillis());
-        if (previousTime.compareTo(BigDecimal.ZERO) == 0) {
-            previousTime = currentTime;
-        }
-        BigDecimal dt = MathUtil.divide(
-                currentTime.subtract(previousTime),THOUSAND);
-        if (dt.compareTo(BigDecimal.ZERO) == 0) {
-            return outputControl.getDuty();
-        }
-
-        // Calculate the error
-        /*
-       Temp values for PID calculation.
+     * @param sampleTime When the latest reading was taken, from
+     *  {@link System#nanoTime()}.
+     * @return  The duty cycle %
      */
-        BigDecimal error = this.set_point.subtract(avgTemp);
-
-        if ((this.totalError.add(error).multiply(
-                this.integralFactor).compareTo(new BigDecimal(100)) < 0)
-                && (this.totalError.add(error).multiply(
-                        this.integralFactor).compareTo(new BigDecimal(0)) > 0))
-        {
-            this.totalError = this.totalError.add(error);
-        }
-
-        this.heatSetting.proportional.multiply(error).add(
-                heatSetting.integral.multiply(this.totalError)).add(
-                        heatSetting.derivative.multiply(
-                                error.subtract(this.previousError)));
-
-        BrewServer.LOG.info("DT: " + dt + " Error: " + errorFactor
-            + " integral: " + integralFactor
-            + " derivative: " + derivativeFactor);
+    private double calculate(final double avgTemp, final long sampleTime) {
+        return core.calculate(this.setPointValue, avgTemp, sampleTime,
+                this.heatGPIO != null && !this.heatGPIO.equals(""),
+                this.coolGPIO != null && !this.coolGPIO.equals(""));
+    }
 
-        /*
-       Temp values for PID calculation.
+    /**
+     * Copy the heat settings into the PID core.
      */
-        BigDecimal output = heatSetting.proportional.multiply(error)
-                .add(heatSetting.integral.multiply(integralFactor))
-                .add(heatSetting.derivative.multiply(derivativeFactor));
-
-        previousError = error;
-
-        if (output.compareTo(BigDecimal.ZERO) < 0
-                && (this.coolGPIO == null || this.coolGPIO.equals(""))) {
-            output = BigDecimal.ZERO;
-        } else if (output.compareTo(BigDecimal.ZERO) > 0
-                && (this.heatGPIO == null || this.heatGPIO.equals(""))) {
-            output = BigDecimal.ZERO;
-        }
-
-        if (output.compareTo(new BigDecimal(100)) > 0) {
-            output = new BigDecimal(100);
-        } else if (output.compareTo(new BigDecimal(-100)) < 0) {
-            output = new BigDecimal(-100);
-        }
-
-        this.previousTime = currentTime;
-        return output;
+    private void updateGains() {
+        core.setGains(heatSetting.proportional.doubleValue(),
+                heatSetting.integral.doubleValue(),
+                heatSetting.derivative.doubleValue());
     }
 
     /**
      * Used as a shutdown hook to close off everything.
      */
     public void shutdown() {
-        if (outputControl != null && outputThread != null) {
-            this.outputControl.shuttingDown = true;
-            this.outputThread.interrupt();
+        if (outputControl != null) {
             this.outputControl.shutdown();
         }
 
@@ -859,7 +807,7 @@ public final class PID implements Runnable {
         statusMap.put("mode", getMode());
         // hack to get the real duty out
         if (getMode().contains("auto")) {
-            statusMap.put("actualduty", calculatedDuty);
+            statusMap.put("actualduty", MathUtil.valueOf(calculatedDuty));
         }
 
         // The Heat settings
@@ -869,6 +817,7 @@ public final class PID implements Runnable {
         heatMap.put("i", getHeatI());
         heatMap.put("d", getHeatD());
         heatMap.put("delay", getHeatDelay());
+        heatMap.put("slot", getHeatSlot());
         heatMap.put("gpio", getHeatGPIO());
         heatMap.put("inverted", getHeatInverted());
         statusMap.put("heat", heatMap);
@@ -932,8 +881,10 @@ public final class PID implements Runnable {
         }
 
         if (this.heatGPIO != null) {
-            this.outputControl.setHeater(new OutputDevice(
-                this.getName(), heatGPIO, this.heatSetting.cycle_time));
+            OutputDevice heater = new OutputDevice(
+                this.getName(), heatGPIO, this.heatSetting.cycle_time);
+            heater.setSlotTime(this.heatSetting.slot_time);
+            this.outputControl.setHeater(heater);
         } else {
             this.outputControl.setHeater(null);
         }
@@ -994,6 +945,21 @@ public final class PID implements Runnable {
     public void setHeatCycle(BigDecimal heatCycle) {
         this.heatSetting.cycle_time = heatCycle;
     }
+
+    /**
+     * Switch the heater in burst fire slots, for a zero cross SSR.
+     * @param heatSlot The slot time in seconds, 0 to switch the heater once
+     *  per cycle.
+     */
+    public void setHeatSlot(BigDecimal heatSlot) {
+        if (heatSlot == null || heatSlot.compareTo(BigDecimal.ZERO) < 0) {
+            heatSlot = BigDecimal.ZERO;
+        }
+        this.heatSetting.slot_time = heatSlot;
+        if (this.hasValidHeater()) {
+            this.outputControl.getHeater().setSlotTime(heatSlot);
+        }
+    }
     
     public void setManualDuty(BigDecimal duty) {
         this.manual_duty = duty;
@@ -1020,8 +986,8 @@ public final class PID implements Runnable {
         // Set the duty cycle to be 100, we can wake it up when we want to
         BrewServer.LOG.info("Checking current temp against " + this.min + " and " + this.max);
         try {
-            this.timeDiff = this.currentTime.subtract(this.hysteriaStartTime);
-            this.timeDiff = MathUtil.divide(MathUtil.divide(timeDiff, THOUSAND), 60);
+            this.timeDiff = MathUtil.divide(BigDecimal.valueOf(
+                    this.currentTime - this.hysteriaStartTime), 60000);
         } catch (ArithmeticException e) {
             BrewServer.LOG.warning(e.getMessage());
         }
@@ -1038,43 +1004,35 @@ public final class PID implements Runnable {
             if (this.hasValidHeater()
                     && this.duty_cycle.compareTo(new BigDecimal(100)) != 0) {
                 BrewServer.LOG.info("Current temp is less than the minimum temp, turning on 100");
-                this.hysteriaStartTime = new BigDecimal(System.currentTimeMillis());
+                this.hysteriaStartTime = System.currentTimeMillis();
                 this.duty_cycle = new BigDecimal(100);
                 this.outputControl.setDuty(this.duty_cycle);
                 this.outputControl.getHeater().setCycleTime(this.minTime.multiply(new BigDecimal(60)));
             } else if (this.hasValidCooler()
                     && this.duty_cycle.compareTo(new BigDecimal(100)) < 0) {
                 BrewServer.LOG.info("Slept for long enough, turning off");
-                // Make sure the thread wakes up for the new settings
-                this.hysteriaStartTime = new BigDecimal(System.currentTimeMillis());
+                this.hysteriaStartTime = System.currentTimeMillis();
                 this.duty_cycle = new BigDecimal(0);
                 this.outputControl.setDuty(this.duty_cycle);
-                this.outputThread.interrupt();
             }
-
-            // Make sure the thread wakes up for the new settings
-            this.outputThread.interrupt();
         } else if (this.minTimePassed() && this.getTempF().compareTo(maxTempF) >= 0) {
             // TimeDiff is now in minutes
             // Is the cooling output on?
             if (this.hasValidCooler()
                     && this.duty_cycle.compareTo(new BigDecimal(-100)) != 0) {
                 BrewServer.LOG.info("Current temp is greater than the max temp, turning on -100");
-                this.hysteriaStartTime = new BigDecimal(System.currentTimeMillis());
+                this.hysteriaStartTime = System.currentTimeMillis();
                 this.duty_cycle = new BigDecimal(-100);
                 this.outputControl.setDuty(this.duty_cycle);
                 this.outputControl.getCooler().setCycleTime(this.minTime.multiply(new BigDecimal(60)));
-                this.outputThread.interrupt();
 
             } else if(this.hasValidHeater()
                     && this.duty_cycle.compareTo(new BigDecimal(-100)) > 0) {
                 BrewServer.LOG.info("Current temp is more than the max temp");
                 BrewServer.LOG.info("Slept for long enough, turning off");
-                // Make sure the thread wakes up for the new settings
-                this.hysteriaStartTime = new BigDecimal(System.currentTimeMillis());
+                this.hysteriaStartTime = System.currentTimeMillis();
                 this.duty_cycle = BigDecimal.ZERO;
                 this.outputControl.setDuty(this.duty_cycle);
-                this.outputThread.interrupt();
             }
         } else {
             BrewServer.LOG.info("Min: " + minTempF + " (" + getTempF() + ") " + maxTempF);
@@ -0,0 +1,175 @@
+package com.sb.elsinore;
+
+/**
+ * The PID arithmetic in primitives, so a control step doesn't allocate.
+ *
+ * The gains are copied in from the BigDecimal settings when they change.
+ * The moving average is a fixed ring of the last few samples and time is
+ * the monotonic {@link System#nanoTime()}.
+ */
+public final class PIDCore {
+
+    /**
+     * The number of samples in the moving average.
+     */
+    public static final int AVERAGE_SIZE = 5;
+    /**
+     * The largest duty either way, in percent.
+     */
+    public static final double MAX_DUTY = 100;
+    /**
+     * The average when there are no samples, as Temp reports a bad reading.
+     */
+    public static final double NO_AVERAGE = -999;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final double[] samples;
+    private int sampleCount = 0;
+    private int nextSample = 0;
+
+    // Set from the web threads
+    private volatile double proportional = 0;
+    private volatile double integral = 0;
+    private volatile double derivative = 0;
+
+    private double totalError = 0;
+    private double previousError = 0;
+    private long previousTime = 0;
+    private boolean started = false;
+    private double output = 0;
+
+    /**
+     * Create a new core averaging the last {@link #AVERAGE_SIZE} samples.
+     */
+    public PIDCore() {
+        this(AVERAGE_SIZE);
+    }
+
+    /**
+     * Create a new core.
+     * @param averageSize The number of samples in the moving average.
+     */
+    public PIDCore(final int averageSize) {
+        this.samples = new double[Math.max(1, averageSize)];
+    }
+
+    /**
+     * Set the gains. The integrated error is brought back within the output
+     * range of a new integral gain on the next step.
+     * @param p The proportional gain.
+     * @param i The integral gain, per second.
+     * @param d The derivative gain, in seconds.
+     */
+    public void setGains(final double p, final double i, final double d) {
+        this.proportional = p;
+        this.integral = i;
+        this.derivative = d;
+    }
+
+    /**
+     * Add a sample to the moving average, replacing the oldest once the
+     * ring is full.
+     * @param sample The new temperature.
+     */
+    public void addSample(final double sample) {
+        samples[nextSample] = sample;
+        nextSample = (nextSample + 1) % samples.length;
+        if (sampleCount < samples.length) {
+            sampleCount++;
+        }
+    }
+
+    /**
+     * @return The average of the samples, {@link #NO_AVERAGE} if there are
+     *  none.
+     */
+    public double getAverage() {
+        if (sampleCount == 0) {
+            return NO_AVERAGE;
+        }
+        double total = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            total += samples[i];
+        }
+        return total / sampleCount;
+    }
+
+    /**
+     * @return The number of samples in the average.
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Calculate the duty for the next step. The error is integrated and
+     * differentiated over the real time since the last step, the first step
+     * is proportional only.
+     * @param setPoint The target temperature.
+     * @param average The current average temperature.
+     * @param nanoTime The time of the step, from {@link System#nanoTime()}.
+     * @param canHeat False to stop the duty going positive.
+     * @param canCool False to stop the duty going negative.
+     * @return The duty, between -{@link #MAX_DUTY} and {@link #MAX_DUTY}.
+     */
+    public double calculate(final double setPoint, final double average,
+            final long nanoTime, final boolean canHeat,
+            final boolean canCool) {
+        double dt = 0;
+        if (started) {
+            dt = (nanoTime - previousTime) / NANOS_PER_SECOND;
+            if (dt <= 0) {
+                return output;
+            }
+        }
+
+        double error = setPoint - average;
+        double rate = 0;
+        double i = integral;
+        if (i != 0) {
+            // The gain may have gone up since the last step
+            double limit = MAX_DUTY / Math.abs(i);
+            totalError = Math.max(-limit, Math.min(limit, totalError));
+        }
+        if (dt > 0) {
+            // Only wind up the integral while it's within the output range,
+            // and not at all without an integral gain, but always unwind
+            double newTotal = totalError + error * dt;
+            if (i != 0 && (Math.abs(i * newTotal) <= MAX_DUTY
+                    || Math.abs(newTotal) < Math.abs(totalError))) {
+                totalError = newTotal;
+            }
+            rate = (error - previousError) / dt;
+        }
+
+        double duty = proportional * error + i * totalError
+                + derivative * rate;
+
+        if ((duty < 0 && !canCool) || (duty > 0 && !canHeat)
+                || Double.isNaN(duty)) {
+            duty = 0;
+        }
+        duty = Math.max(-MAX_DUTY, Math.min(MAX_DUTY, duty));
+
+        previousError = error;
+        previousTime = nanoTime;
+        started = true;
+        output = duty;
+        return duty;
+    }
+
+    /**
+     * @return The duty from the last step.
+     */
+    public double getOutput() {
+        return output;
+    }
+
+    /**
+     * @return The integrated error, in degree seconds.
+     */
+    public double getTotalError() {
+        return totalError;
+    }
+}
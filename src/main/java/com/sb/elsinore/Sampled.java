@@ -0,0 +1,52 @@
+package com.sb.elsinore;
+
+/**
+ * A single value that the {@link StatusRecorder} can sample directly from
+ * the device, without going through the JSON status.
+ */
+public interface Sampled {
+
+    /**
+     * Series type for temperature values.
+     */
+    String TEMP = "temp";
+    /**
+     * Series type for duty cycle values.
+     */
+    String DUTY = "duty";
+    /**
+     * Series type for filtered volume values.
+     */
+    String VOLUME = "volume";
+    /**
+     * Series type for unfiltered volume values.
+     */
+    String VOLUME_RAW = "volumeraw";
+    /**
+     * Series type for filtered pH values.
+     */
+    String PH = "ph";
+    /**
+     * Series type for unfiltered pH values.
+     */
+    String PH_RAW = "phraw";
+
+    /**
+     * Get the name used for the series files, this is the probe address.
+     * @return The series name.
+     */
+    String getSeriesName();
+
+    /**
+     * Get the type of value in this series, {@link #TEMP}, {@link #DUTY},
+     * or one of the volume and pH types.
+     * @return The series type.
+     */
+    String getSeriesType();
+
+    /**
+     * Get the current value.
+     * @return The current value, or NaN if there isn't a valid value.
+     */
+    double getSampleValue();
+}
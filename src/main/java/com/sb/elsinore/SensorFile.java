@@ -0,0 +1,192 @@
+package com.sb.elsinore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a kernel temperature file, either a One Wire w1_slave or a
+ * thermal zone, without allocating.
+ *
+ * The file is kept open and read again from the start into the same
+ * direct buffer, which makes sysfs produce a fresh value. The reading is
+ * parsed straight from the bytes as whole milli-degrees. A w1_slave looks
+ * like:
+ * <pre>
+ * 4b 01 4b 46 7f ff 05 10 e1 : crc=e1 YES
+ * 4b 01 4b 46 7f ff 05 10 e1 t=20687
+ * </pre>
+ * and a thermal zone is just the milli-degrees.
+ */
+public final class SensorFile {
+
+    /**
+     * More than enough for a w1_slave file.
+     */
+    private static final int BUFFER_SIZE = 256;
+
+    private final String path;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel = null;
+    private int milliDegrees = 0;
+
+    /**
+     * @param path The file to read.
+     */
+    public SensorFile(final String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return The file being read.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Read the file.
+     * @return False if a w1_slave reported a bad CRC, in which case
+     *  {@link #getMilliDegrees()} is unchanged.
+     * @throws IOException If the file couldn't be read, it's opened again
+     *  on the next read.
+     * @throws NumberFormatException If there's no reading in the file.
+     */
+    public synchronized boolean read() throws IOException {
+        int length = fill();
+        int lineEnd = indexOf((byte) '\n', 0, length);
+        if (lineEnd < 0) {
+            lineEnd = length;
+        }
+        int end = trimEnd(0, lineEnd);
+
+        if (endsWith(end, "NO")) {
+            return false;
+        }
+        if (endsWith(end, "YES")) {
+            // The reading is after t= on the next line
+            int t = indexOf((byte) 't', lineEnd, length);
+            while (t >= 0 && (t + 1 >= length || buffer.get(t + 1) != '=')) {
+                t = indexOf((byte) 't', t + 1, length);
+            }
+            if (t < 0) {
+                throw new NumberFormatException("No t= in " + path);
+            }
+            milliDegrees = parseInt(t + 2, length);
+        } else {
+            // System temperature
+            milliDegrees = parseInt(0, end);
+        }
+        return true;
+    }
+
+    /**
+     * @return The last good reading in thousandths of a degree celsius.
+     */
+    public synchronized int getMilliDegrees() {
+        return milliDegrees;
+    }
+
+    /**
+     * Close the file, it's opened again on the next read.
+     */
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                BrewServer.LOG.warning("Couldn't close " + path);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Read the whole file into the buffer from the start.
+     * @return The number of bytes read.
+     */
+    private int fill() throws IOException {
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(Paths.get(path),
+                        StandardOpenOption.READ);
+            }
+            buffer.clear();
+            long position = 0;
+            int read;
+            while (buffer.hasRemaining()
+                    && (read = channel.read(buffer, position)) > 0) {
+                position += read;
+            }
+            return buffer.position();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private int indexOf(final byte value, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The end of the range without trailing white space.
+     */
+    private int trimEnd(final int start, final int end) {
+        int i = end;
+        while (i > start && buffer.get(i - 1) <= ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    private boolean endsWith(final int end, final String token) {
+        int start = end - token.length();
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (buffer.get(start + i) != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse an optionally negative integer, skipping leading white space
+     * and stopping at the first non digit.
+     */
+    private int parseInt(final int from, final int to) {
+        int i = from;
+        while (i < to && buffer.get(i) <= ' ') {
+            i++;
+        }
+        boolean negative = false;
+        if (i < to && buffer.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        int start = i;
+        int value = 0;
+        while (i < to) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            i++;
+        }
+        if (i == start) {
+            throw new NumberFormatException("No reading in " + path);
+        }
+        return negative ? -value : value;
+    }
+}
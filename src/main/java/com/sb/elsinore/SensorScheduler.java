@@ -0,0 +1,308 @@
+package com.sb.elsinore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Polls every probe, volume and pH sensor from a small shared pool of
+ * threads, instead of a sleeping thread per device.
+ *
+ * Each bus has its own lane of {@link #THREADS} threads, so a slow bus,
+ * like a One Wire conversion or an OWFS server timing out, only delays the
+ * other sensors on that bus.
+ *
+ * Each sensor is read at its own interval, plus a little random jitter so
+ * devices drift apart instead of lining up. A failed read backs off,
+ * doubling the delay up to {@link #MAX_BACKOFF}, and the first good read
+ * goes straight back to the normal interval. The first read of each
+ * sensor is offset within its interval so sensors on the same bus are
+ * spread evenly rather than all read at once.
+ */
+public final class SensorScheduler {
+
+    public static final String SENSOR_THREADS = "sensorThreads";
+
+    /**
+     * The number of polling threads for each bus, used when the scheduler
+     * is created.
+     */
+    public static int THREADS = 1;
+    /**
+     * The longest a failing sensor waits between reads, in milliseconds.
+     */
+    public static final long MAX_BACKOFF = 60000;
+    /**
+     * The largest random delay added to each read, as a fraction of the
+     * interval.
+     */
+    public static final double JITTER = 0.1;
+    /**
+     * The golden ratio conjugate, successive multiples of it are evenly
+     * spread over [0, 1) however many there are.
+     */
+    private static final double SPREAD = 0.6180339887498949;
+
+    /**
+     * A device the scheduler reads.
+     */
+    public interface Sensor {
+        /**
+         * @return The name of the bus the sensor is on, sensors on the same
+         *  bus have their reads spread out.
+         */
+        String getBus();
+
+        /**
+         * @return How often to read the sensor, in milliseconds.
+         */
+        long getPollInterval();
+
+        /**
+         * Read the sensor.
+         * @return True if the read succeeded.
+         */
+        boolean poll();
+    }
+
+    private static SensorScheduler instance = null;
+
+    private final int threads;
+    private final Map<String, ScheduledThreadPoolExecutor> lanes =
+            new HashMap<>();
+    private volatile boolean shutdown = false;
+    private final long maxBackoff;
+    private final double jitter;
+    private final Map<Sensor, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<String, Integer> busSlots = new HashMap<>();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong failedReads = new AtomicLong();
+
+    /**
+     * Create a new scheduler.
+     * @param threads The number of polling threads for each bus.
+     * @param maxBackoff The longest delay for a failing sensor.
+     * @param jitter The largest random delay, as a fraction of the interval.
+     */
+    public SensorScheduler(final int threads, final long maxBackoff,
+            final double jitter) {
+        this.threads = Math.max(1, threads);
+        this.maxBackoff = maxBackoff;
+        this.jitter = jitter;
+    }
+
+    /**
+     * @return The scheduler for the system sensors.
+     */
+    public static synchronized SensorScheduler getInstance() {
+        if (instance == null) {
+            instance = new SensorScheduler(THREADS, MAX_BACKOFF, JITTER);
+        }
+        return instance;
+    }
+
+    /**
+     * @return The threads for the bus, started the first time it's used.
+     */
+    private ScheduledThreadPoolExecutor lane(final String bus) {
+        ScheduledThreadPoolExecutor lane = lanes.get(bus);
+        if (lane == null) {
+            final String name = "Sensor Poller " + bus + " #";
+            final AtomicInteger threadCount = new AtomicInteger();
+            lane = new ScheduledThreadPoolExecutor(threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        Thread thread = new Thread(runnable);
+                        thread.setName(name + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            lane.setRemoveOnCancelPolicy(true);
+            lanes.put(bus, lane);
+        }
+        return lane;
+    }
+
+    /**
+     * Start polling the sensor, does nothing if it's already polled.
+     * @param sensor The sensor to poll.
+     */
+    public void add(final Sensor sensor) {
+        long interval = Math.max(1, sensor.getPollInterval());
+        synchronized (this) {
+            if (tasks.containsKey(sensor) || shutdown) {
+                return;
+            }
+            Task task = new Task(sensor, lane(sensor.getBus()));
+            tasks.put(sensor, task);
+            task.schedule((long) (nextSlot(sensor.getBus()) * interval));
+        }
+    }
+
+    /**
+     * @return The offset of the next sensor on the bus, as a fraction of its
+     *  interval.
+     */
+    private double nextSlot(final String bus) {
+        Integer slot = busSlots.get(bus);
+        if (slot == null) {
+            slot = 0;
+        }
+        busSlots.put(bus, slot + 1);
+        double offset = slot * SPREAD;
+        return offset - Math.floor(offset);
+    }
+
+    /**
+     * Stop polling the sensor. A read in progress is allowed to finish.
+     * @param sensor The sensor to stop polling.
+     */
+    public void remove(final Sensor sensor) {
+        Task task = tasks.remove(sensor);
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * @param sensor The sensor to check.
+     * @return True if the sensor is polled.
+     */
+    public boolean contains(final Sensor sensor) {
+        return tasks.containsKey(sensor);
+    }
+
+    /**
+     * @param sensor The sensor to check.
+     * @return The number of reads that have failed in a row, zero if the
+     *  sensor isn't polled.
+     */
+    public int getFailures(final Sensor sensor) {
+        Task task = tasks.get(sensor);
+        return task == null ? 0 : task.failures;
+    }
+
+    /**
+     * @return The number of reads since startup.
+     */
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    /**
+     * @return The number of failed reads since startup.
+     */
+    public long getFailureCount() {
+        return failedReads.get();
+    }
+
+    /**
+     * @return The number of buses with their own polling threads.
+     */
+    public synchronized int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Stop polling every sensor.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        tasks.clear();
+        for (ScheduledThreadPoolExecutor lane : lanes.values()) {
+            lane.shutdownNow();
+        }
+    }
+
+    /**
+     * The delay before the next read.
+     * @param interval The sensor interval.
+     * @param failed The number of reads that have failed in a row.
+     * @return The delay in milliseconds.
+     */
+    long nextDelay(final long interval, final int failed) {
+        long delay = interval;
+        if (failed > 0) {
+            delay = Math.min(interval << Math.min(failed, 20), maxBackoff);
+            delay = Math.max(delay, interval);
+        }
+        if (jitter > 0) {
+            delay += (long) (ThreadLocalRandom.current().nextDouble()
+                    * jitter * delay);
+        }
+        return delay;
+    }
+
+    /**
+     * Reads one sensor, rescheduling itself after each read.
+     */
+    private final class Task implements Runnable {
+        private final Sensor sensor;
+        private final ScheduledThreadPoolExecutor executor;
+        private volatile ScheduledFuture<?> future = null;
+        private volatile boolean cancelled = false;
+        private volatile int failures = 0;
+
+        private Task(final Sensor sensor,
+                final ScheduledThreadPoolExecutor executor) {
+            this.sensor = sensor;
+            this.executor = executor;
+        }
+
+        private synchronized void schedule(final long delay) {
+            if (cancelled || executor.isShutdown()) {
+                return;
+            }
+            try {
+                future = executor.schedule(this, delay,
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down while scheduling
+                cancelled = true;
+            }
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            boolean ok;
+            try {
+                ok = sensor.poll();
+            } catch (RuntimeException e) {
+                BrewServer.LOG.log(Level.WARNING, "Failed to read " + sensor,
+                        e);
+                ok = false;
+            }
+
+            reads.incrementAndGet();
+            if (ok) {
+                failures = 0;
+            } else {
+                failures++;
+                failedReads.incrementAndGet();
+            }
+            schedule(nextDelay(Math.max(1, sensor.getPollInterval()),
+                    failures));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.sb.elsinore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only view of a binary graph data series.
+ *
+ * A series file is a list of fixed width records, each one a big endian
+ * long timestamp in milliseconds followed by a float value. Records are
+ * only ever appended in time order, so the file is its own time index and
+ * a time is found with a binary search over the memory mapped records.
+ */
+public final class SeriesFile {
+
+    /**
+     * The file extension for binary series.
+     */
+    public static final String EXTENSION = ".dat";
+    /**
+     * The size of a single record in bytes.
+     */
+    public static final int RECORD_SIZE = 12;
+
+    private static final SeriesFile EMPTY =
+            new SeriesFile(ByteBuffer.allocate(0));
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    private SeriesFile(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.limit() / RECORD_SIZE;
+    }
+
+    /**
+     * Memory map the records currently in the file. Records appended after
+     * this is opened are not visible, a partly written record at the end of
+     * the file is ignored.
+     * @param file The series file.
+     * @return The series, empty if the file doesn't exist.
+     * @throws IOException If the file couldn't be mapped.
+     */
+    public static SeriesFile open(final File file) throws IOException {
+        if (!file.exists()) {
+            return EMPTY;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long length = channel.size() - channel.size() % RECORD_SIZE;
+            if (length == 0) {
+                return EMPTY;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new SeriesFile(mapped);
+        }
+    }
+
+    /**
+     * Encode a record into the buffer.
+     * @param record The buffer to write to, at least RECORD_SIZE long.
+     * @param timestamp The time of the sample in milliseconds.
+     * @param value The sample value.
+     */
+    public static void encode(final byte[] record, final long timestamp,
+            final float value) {
+        int bits = Float.floatToIntBits(value);
+        for (int i = 7; i >= 0; i--) {
+            record[7 - i] = (byte) (timestamp >>> (i * 8));
+        }
+        record[8] = (byte) (bits >>> 24);
+        record[9] = (byte) (bits >>> 16);
+        record[10] = (byte) (bits >>> 8);
+        record[11] = (byte) bits;
+    }
+
+    /**
+     * @return The number of records.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The record index.
+     * @return The timestamp of the record.
+     */
+    public long getTime(final int index) {
+        return buffer.getLong(index * RECORD_SIZE);
+    }
+
+    /**
+     * @param index The record index.
+     * @return The value of the record.
+     */
+    public float getValue(final int index) {
+        return buffer.getFloat(index * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Find the first record at or after the time.
+     * @param timestamp The time to search for in milliseconds.
+     * @return The index of the first record at or after the time, or
+     *  {@link #size()} if every record is before it.
+     */
+    public int indexOf(final long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getTime(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
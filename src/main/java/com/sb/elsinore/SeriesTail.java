@@ -0,0 +1,82 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONArray;
+
+/**
+ * Ring buffer holding the most recent samples of a graph data series, so
+ * graph updates can be answered without touching the series files.
+ */
+public final class SeriesTail {
+
+    private final long[] times;
+    private final float[] values;
+    /**
+     * The index the next sample is written to.
+     */
+    private int head = 0;
+    private int count = 0;
+    /**
+     * The time of the newest sample that has been overwritten.
+     */
+    private long lastDropped = Long.MIN_VALUE;
+
+    /**
+     * Create a new tail.
+     * @param capacity The number of samples to keep.
+     */
+    public SeriesTail(final int capacity) {
+        this.times = new long[capacity];
+        this.values = new float[capacity];
+    }
+
+    /**
+     * Add a sample, overwriting the oldest one when full.
+     * @param timestamp The sample time in milliseconds.
+     * @param value The sample value.
+     */
+    public synchronized void add(final long timestamp, final float value) {
+        if (count < times.length) {
+            count++;
+        } else {
+            lastDropped = times[head];
+        }
+        times[head] = timestamp;
+        values[head] = value;
+        head = (head + 1) % times.length;
+    }
+
+    /**
+     * @return The number of samples held.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Add every sample after since, up to and including limit, to the
+     * arrays.
+     * @param since Only samples after this time are added.
+     * @param limit Only samples up to this time are added.
+     * @param xArray The array to add the timestamps to.
+     * @param dataArray The array to add the values to.
+     * @return False if samples after since have already been dropped, in
+     *  which case nothing is added.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean addSince(final long since, final long limit,
+            final JSONArray xArray, final JSONArray dataArray) {
+        if (lastDropped > since) {
+            return false;
+        }
+
+        int oldest = (head - count + times.length) % times.length;
+        for (int i = 0; i < count; i++) {
+            int index = (oldest + i) % times.length;
+            if (times[index] > since && times[index] <= limit) {
+                xArray.add(times[index]);
+                dataArray.add(values[index]);
+            }
+        }
+        return true;
+    }
+}
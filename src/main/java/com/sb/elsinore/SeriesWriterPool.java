@@ -0,0 +1,189 @@
+package com.sb.elsinore;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps one open, buffered, appending writer per series file so the
+ * recorder doesn't open and close a file for every data point. Text lines
+ * are used for the CSV files and fixed width records for the binary
+ * {@link SeriesFile} series.
+ *
+ * Data is written out when a writer's buffer fills, or by
+ * {@link #flushIfDue()} once the flush interval has passed. When sync on
+ * flush is set every flush is also forced to disk, otherwise the files are
+ * only forced to disk when the pool is closed.
+ */
+public final class SeriesWriterPool {
+
+    /**
+     * Default buffer size for each writer.
+     */
+    public static final int BUFFER_SIZE = 8192;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * An open series file.
+     */
+    private static final class SeriesWriter {
+        private final FileChannel channel;
+        private final BufferedOutputStream writer;
+
+        private SeriesWriter(final File file, final int bufferSize)
+                throws IOException {
+            FileOutputStream out = new FileOutputStream(file, true);
+            this.channel = out.getChannel();
+            this.writer = new BufferedOutputStream(out, bufferSize);
+        }
+    }
+
+    private final Map<File, SeriesWriter> writers = new HashMap<>();
+    private final byte[] record = new byte[SeriesFile.RECORD_SIZE];
+    private final long flushInterval;
+    private final boolean syncOnFlush;
+    private final int bufferSize;
+    private long lastFlush = System.currentTimeMillis();
+    private boolean closed = false;
+
+    /**
+     * Create a new pool.
+     * @param flushInterval How often to flush the writers in milliseconds,
+     *                      zero flushes after every write.
+     * @param syncOnFlush True to force the files to disk on every flush.
+     */
+    public SeriesWriterPool(final long flushInterval,
+            final boolean syncOnFlush) {
+        this(flushInterval, syncOnFlush, BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new pool.
+     * @param flushInterval How often to flush the writers in milliseconds,
+     *                      zero flushes after every write.
+     * @param syncOnFlush True to force the files to disk on every flush.
+     * @param bufferSize The buffer size for each writer.
+     */
+    public SeriesWriterPool(final long flushInterval,
+            final boolean syncOnFlush, final int bufferSize) {
+        this.flushInterval = flushInterval;
+        this.syncOnFlush = syncOnFlush;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Append the string to the file, opening the file if needed.
+     * @param file The series file.
+     * @param toAppend The string to append.
+     * @throws IOException If the file couldn't be opened or written.
+     */
+    public synchronized void append(final File file, final String toAppend)
+            throws IOException {
+        getWriter(file).writer.write(toAppend.getBytes(UTF8));
+        flushIfDue();
+    }
+
+    /**
+     * Append a binary record to the series file, opening the file if
+     * needed.
+     * @param file The {@link SeriesFile} to append to.
+     * @param timestamp The time of the sample in milliseconds.
+     * @param value The sample value.
+     * @throws IOException If the file couldn't be opened or written.
+     */
+    public synchronized void appendSample(final File file,
+            final long timestamp, final float value) throws IOException {
+        SeriesWriter seriesWriter = getWriter(file);
+        SeriesFile.encode(record, timestamp, value);
+        seriesWriter.writer.write(record);
+        flushIfDue();
+    }
+
+    private SeriesWriter getWriter(final File file) throws IOException {
+        if (closed) {
+            throw new IOException("Writer pool is closed");
+        }
+        SeriesWriter seriesWriter = writers.get(file);
+        if (seriesWriter == null) {
+            seriesWriter = new SeriesWriter(file, bufferSize);
+            writers.put(file, seriesWriter);
+        }
+        return seriesWriter;
+    }
+
+    /**
+     * Flush the writers if the flush interval has passed.
+     */
+    public synchronized void flushIfDue() {
+        if (System.currentTimeMillis() - lastFlush >= flushInterval) {
+            flush();
+        }
+    }
+
+    /**
+     * Flush every writer so readers of the files see all the data.
+     */
+    public synchronized void flush() {
+        lastFlush = System.currentTimeMillis();
+        Iterator<Map.Entry<File, SeriesWriter>> iterator =
+                writers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<File, SeriesWriter> entry = iterator.next();
+            try {
+                entry.getValue().writer.flush();
+                if (syncOnFlush) {
+                    entry.getValue().channel.force(false);
+                }
+            } catch (IOException e) {
+                BrewServer.LOG.warning("Could not flush file: "
+                        + entry.getKey().getAbsolutePath());
+                close(entry.getKey(), entry.getValue(), false);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The number of open series files.
+     */
+    public synchronized int size() {
+        return writers.size();
+    }
+
+    /**
+     * Flush, force to disk and close every writer.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Map.Entry<File, SeriesWriter> entry : writers.entrySet()) {
+            close(entry.getKey(), entry.getValue(), true);
+        }
+        writers.clear();
+    }
+
+    private void close(final File file, final SeriesWriter seriesWriter,
+            final boolean sync) {
+        try {
+            seriesWriter.writer.flush();
+            if (sync) {
+                seriesWriter.channel.force(false);
+            }
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Could not flush file: "
+                    + file.getAbsolutePath());
+        }
+        try {
+            seriesWriter.writer.close();
+        } catch (IOException e) {
+            BrewServer.LOG.warning("Could not close file: "
+                    + file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the live status to the browsers as Server-Sent Events, so they
+ * don't have to poll /getstatus.
+ *
+ * Each subscriber gets the full status as a "status" event when it
+ * connects. After that, status changes are coalesced over
+ * {@link #COALESCE_TIME} and sent as a single "delta" event holding only
+ * what changed. The hub thread only runs while there are subscribers.
+ */
+public final class StatusEvents implements Runnable {
+
+    /**
+     * How long to wait for further changes before sending a delta.
+     */
+    public static final long COALESCE_TIME = 250;
+    /**
+     * How many events can be waiting for a slow subscriber before it is
+     * resent the full status instead.
+     */
+    public static final int QUEUE_SIZE = 32;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] KEEP_ALIVE = ":\n\n".getBytes(UTF8);
+
+    /**
+     * Where the hub gets the current status from.
+     */
+    public interface Source {
+        /**
+         * @return The current status snapshot.
+         */
+        StatusSnapshot getSnapshot();
+    }
+
+    private static final StatusEvents INSTANCE = new StatusEvents(
+        new Source() {
+            @Override
+            public StatusSnapshot getSnapshot() {
+                return LaunchControl.getStatusSnapshot();
+            }
+        }, COALESCE_TIME, LaunchControl.STATUS_MAX_AGE);
+
+    private final Source source;
+    private final long coalesceTime;
+    private final long keepAliveTime;
+    private final List<EventStream> streams =
+            new CopyOnWriteArrayList<>();
+    private final Object signal = new Object();
+    private boolean changed = false;
+    private Thread thread = null;
+    private JSONObject lastStatus = null;
+
+    /**
+     * Create a new hub.
+     * @param source Where to get the status from.
+     * @param coalesceTime How long to collect changes for before sending a
+     *                     delta, in milliseconds.
+     * @param keepAliveTime How long to wait without a change before checking
+     *                      the status anyway, in milliseconds.
+     */
+    public StatusEvents(final Source source, final long coalesceTime,
+            final long keepAliveTime) {
+        this.source = source;
+        this.coalesceTime = coalesceTime;
+        this.keepAliveTime = keepAliveTime;
+    }
+
+    /**
+     * @return The hub for the system status.
+     */
+    public static StatusEvents getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Signal that the status has changed. This is cheap and does nothing
+     * when nobody is subscribed.
+     */
+    public void statusChanged() {
+        if (streams.isEmpty()) {
+            return;
+        }
+        synchronized (signal) {
+            changed = true;
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * @return The number of connected subscribers.
+     */
+    public int getSubscriberCount() {
+        return streams.size();
+    }
+
+    /**
+     * Subscribe to the status events.
+     * @return The event stream, starting with the full status. Close it to
+     *  unsubscribe.
+     */
+    public synchronized EventStream subscribe() {
+        EventStream stream = new EventStream(this);
+        StatusSnapshot snapshot = source.getSnapshot();
+        stream.offer(statusFrame(snapshot));
+        streams.add(stream);
+        if (thread == null) {
+            lastStatus = snapshot.getStatus();
+            thread = new Thread(this);
+            thread.setName("Status Events");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return stream;
+    }
+
+    private void unsubscribe(final EventStream stream) {
+        streams.remove(stream);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                synchronized (signal) {
+                    if (!changed) {
+                        signal.wait(keepAliveTime);
+                    }
+                }
+                // Let a burst of changes settle into one delta
+                Thread.sleep(coalesceTime);
+                synchronized (signal) {
+                    changed = false;
+                }
+                synchronized (this) {
+                    if (streams.isEmpty()) {
+                        thread = null;
+                        lastStatus = null;
+                        return;
+                    }
+                    publish();
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                thread = null;
+                lastStatus = null;
+            }
+        }
+    }
+
+    /**
+     * Send the changes since the last publish to every subscriber, or a
+     * keep alive if nothing changed.
+     */
+    private void publish() {
+        StatusSnapshot snapshot = source.getSnapshot();
+        JSONObject current = snapshot.getStatus();
+        JSONObject delta = delta(lastStatus, current);
+        lastStatus = current;
+
+        byte[] frame = KEEP_ALIVE;
+        if (delta != null) {
+            frame = frame("delta", delta.toJSONString());
+        }
+        byte[] full = null;
+        for (EventStream stream : streams) {
+            if (!stream.offer(frame)) {
+                // Too far behind for the deltas to be useful, start again
+                if (full == null) {
+                    full = statusFrame(snapshot);
+                }
+                stream.resync(full);
+            }
+        }
+    }
+
+    private static byte[] statusFrame(final StatusSnapshot snapshot) {
+        return frame("status", snapshot.getJSON());
+    }
+
+    private static byte[] frame(final String event, final String data) {
+        return ("event: " + event + "\ndata: " + data + "\n\n").getBytes(UTF8);
+    }
+
+    /**
+     * Work out what changed between two status objects. Changed top level
+     * values are in "set", missing keys in "remove". When the vessel list
+     * has the same names in the same order, only the changed vessels are
+     * sent, in "vessels", otherwise the whole list is in "set".
+     * @param previous The previous status, null to send everything.
+     * @param current The current status.
+     * @return The delta, or null if nothing changed.
+     */
+    @SuppressWarnings("unchecked")
+    public static JSONObject delta(final JSONObject previous,
+            final JSONObject current) {
+        JSONObject set = new JSONObject();
+        JSONArray remove = new JSONArray();
+        JSONArray vessels = new JSONArray();
+
+        for (Object entryObject : current.entrySet()) {
+            Map.Entry<Object, Object> entry =
+                    (Map.Entry<Object, Object>) entryObject;
+            Object old = previous == null ? null : previous.get(entry.getKey());
+            Object value = entry.getValue();
+            if (value == null ? old == null : value.equals(old)) {
+                continue;
+            }
+            if ("vessels".equals(entry.getKey())
+                    && sameVessels(old, value)) {
+                JSONArray oldList = (JSONArray) old;
+                JSONArray newList = (JSONArray) value;
+                for (int i = 0; i < newList.size(); i++) {
+                    if (!newList.get(i).equals(oldList.get(i))) {
+                        vessels.add(newList.get(i));
+                    }
+                }
+            } else {
+                set.put(entry.getKey(), value);
+            }
+        }
+
+        if (previous != null) {
+            for (Object key : previous.keySet()) {
+                if (!current.containsKey(key)) {
+                    remove.add(key);
+                }
+            }
+        }
+
+        if (set.isEmpty() && remove.isEmpty() && vessels.isEmpty()) {
+            return null;
+        }
+        JSONObject delta = new JSONObject();
+        delta.put("set", set);
+        delta.put("remove", remove);
+        delta.put("vessels", vessels);
+        return delta;
+    }
+
+    /**
+     * @return True if both are vessel lists with the same names in the same
+     *  order.
+     */
+    private static boolean sameVessels(final Object old, final Object value) {
+        if (!(old instanceof JSONArray) || !(value instanceof JSONArray)) {
+            return false;
+        }
+        JSONArray oldList = (JSONArray) old;
+        JSONArray newList = (JSONArray) value;
+        if (oldList.size() != newList.size()) {
+            return false;
+        }
+        for (int i = 0; i < newList.size(); i++) {
+            Object oldVessel = oldList.get(i);
+            Object newVessel = newList.get(i);
+            if (!(oldVessel instanceof JSONObject)
+                    || !(newVessel instanceof JSONObject)) {
+                return false;
+            }
+            Object name = ((JSONObject) newVessel).get("name");
+            if (name == null
+                    || !name.equals(((JSONObject) oldVessel).get("name"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The events for one subscriber, read by the web server as the body of
+     * a chunked response. Reads block until an event is available and
+     * return the end of the stream once it's closed.
+     */
+    public static final class EventStream extends InputStream {
+
+        private final StatusEvents hub;
+        private final BlockingQueue<byte[]> queue =
+                new LinkedBlockingQueue<>(QUEUE_SIZE);
+        private volatile boolean closed = false;
+        private byte[] current = null;
+        private int position = 0;
+
+        private EventStream(final StatusEvents hub) {
+            this.hub = hub;
+        }
+
+        private boolean offer(final byte[] frame) {
+            return queue.offer(frame);
+        }
+
+        private void resync(final byte[] full) {
+            queue.clear();
+            queue.offer(full);
+        }
+
+        /**
+         * @return The number of events waiting to be read.
+         */
+        int pending() {
+            return queue.size();
+        }
+
+        /**
+         * @return False if the stream is closed.
+         */
+        private boolean nextFrame() throws IOException {
+            while (current == null || position >= current.length) {
+                if (closed) {
+                    return false;
+                }
+                try {
+                    current = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted waiting for events");
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextFrame()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset,
+                final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextFrame()) {
+                return -1;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            hub.unsubscribe(this);
+        }
+    }
+}
@@ -1,17 +1,17 @@
 package com.sb.elsinore;
 
 import com.sb.common.SBStringUtils;
+import com.sb.elsinore.inputs.PhSensor;
 import org.apache.commons.codec.binary.StringUtils;
-import org.apache.commons.io.input.ReversedLinesFileReader;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
 import org.rendersnake.internal.StringEscapeUtils;
 
 import java.io.*;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -22,15 +22,42 @@ public class StatusRecorder implements Runnable {
     public static final String RECORDER = "recorder";
     public static final String RECORDER_TIME = "recorderTime";
     public static final String RECORDER_DIFF = "recorderDiff";
+    public static final String RECORDER_FLUSH = "recorderFlush";
+    public static final String RECORDER_SYNC = "recorderSync";
 
     public static double THRESHOLD = .15d;
     public static long SLEEP = 1000 * 5; // 5 seconds - is this too fast?
-    private JSONObject lastStatus = null;
+    /**
+     * How often the graph data files are flushed, in milliseconds.
+     */
+    public static long FLUSH_INTERVAL = 1000 * 30;
+    /**
+     * Force the graph data to disk on every flush, otherwise it's only
+     * forced to disk when the recorder stops.
+     */
+    public static boolean SYNC_ON_FLUSH = false;
+    /**
+     * The number of recent samples kept in memory for each series.
+     */
+    public static int TAIL_SIZE = 720;
+    private volatile SeriesWriterPool writerPool = null;
+    /**
+     * The recent samples for each series, keyed by the series file name.
+     */
+    private final Map<String, SeriesTail> tails = new ConcurrentHashMap<>();
+    /**
+     * The time of the last completed sampling pass.
+     */
+    private volatile long tailCursor = 0;
     private String logFile = null;
     private Thread thread;
     private String recorderDirectory = StatusRecorder.defaultDirectory;
     private HashMap<String, Status> temperatureMap;
     private HashMap<String, Status> dutyMap;
+    private HashMap<String, Status> volumeMap;
+    private HashMap<String, Status> rawVolumeMap;
+    private HashMap<String, Status> phMap;
+    private HashMap<String, Status> rawPhMap;
     boolean writeRawLog = false;
     public static String defaultDirectory = "graph-data/";
     public static String DIRECTORY_PROPERTY = "recorder_directory";
@@ -46,8 +73,12 @@ public class StatusRecorder implements Runnable {
      */
     public final void start() {
         if (thread == null || !thread.isAlive()) {
-            temperatureMap = new HashMap();
-            dutyMap = new HashMap();
+            temperatureMap = new HashMap<>();
+            dutyMap = new HashMap<>();
+            volumeMap = new HashMap<>();
+            rawVolumeMap = new HashMap<>();
+            phMap = new HashMap<>();
+            rawPhMap = new HashMap<>();
             thread = new Thread(this);
             thread.setName("Status recorder");
             thread.start();
@@ -101,6 +132,7 @@ public class StatusRecorder implements Runnable {
 
             //Generate a new log file under the current directory
             logFile = currentDirectory + "raw.log";
+            writerPool = new SeriesWriterPool(FLUSH_INTERVAL, SYNC_ON_FLUSH);
 
             File file = new File(this.logFile);
             boolean fileExists = file.exists();
@@ -110,104 +142,125 @@ public class StatusRecorder implements Runnable {
             while (continueRunning) {
                 //Just going to record when something changes
                 try {
-                    String status = LaunchControl.getJSONStatus();
-                    JSONObject newStatus = (JSONObject) JSONValue.parse(status);
-                    if (lastStatus == null || isDifferent(lastStatus, newStatus)) {
-                        //For now just log the whole status
-                        //Eventually we may want multiple logs, etc.
-                        if (writeRawLog) {
-                            writeToLog(newStatus, fileExists);
-                        }
-
-                        Date now = new Date();
-                        printJsonToCsv(now, newStatus, currentDirectory);
-                        lastStatus = newStatus;
+                    if (writeRawLog) {
+                        writeToLog(LaunchControl.getJSONStatus(), fileExists);
                         fileExists = true;
                     }
-                } catch (Exception ioe) {
-                    if (ioe instanceof InterruptedException) {
-                        continueRunning = false;
-                    }
-                    continue;
+                    recordSamples(System.currentTimeMillis(), currentDirectory);
+                    writerPool.flushIfDue();
+                } catch (Exception e) {
+                    BrewServer.LOG.warning("Failed to record status: "
+                            + e.getMessage());
                 }
                 Thread.sleep(SLEEP);
             }
         } catch (InterruptedException ex) {
             BrewServer.LOG.warning("Status Recorder shutting down");
+        } finally {
+            if (writerPool != null) {
+                writerPool.close();
+            }
         }
 
     }
     
+    /**
+     * Record into the pool from the caller's thread, without starting the
+     * recorder, for the benchmarks.
+     *
+     * @param pool The pool to write the series with.
+     */
+    final void setWriterPool(final SeriesWriterPool pool) {
+        temperatureMap = new HashMap<>();
+        dutyMap = new HashMap<>();
+        volumeMap = new HashMap<>();
+        rawVolumeMap = new HashMap<>();
+        phMap = new HashMap<>();
+        rawPhMap = new HashMap<>();
+        writerPool = pool;
+    }
+
     protected boolean checkInitialized()
     {
         return LaunchControl.isInitialized();
     }
 
     /**
-     * Save the status to the directory.
+     * Sample every temperature probe, PID, volume and pH sensor and save any
+     * changed values. The volumes and pH are saved filtered and unfiltered.
      *
-     * @param nowDate The current date to save the datapoint for.
-     * @param newStatus The JSON Status object to dump
+     * @param now The timestamp to save the samples with.
      * @param directory The graph data directory.
      */
-    protected final void printJsonToCsv(final Date nowDate,
-            final JSONObject newStatus, final String directory) {
-        //Now look for differences in the temperature and duty
-        long now = nowDate.getTime();
-        JSONArray vessels = (JSONArray) newStatus.get("vessels");
-        for (Object vessel1 : vessels) {
-            JSONObject vessel = (JSONObject) vessel1;
-            if (vessel.containsKey("name")) {
-                String name = vessel.get("name").toString();
-                if (LaunchControl.findTemp(name) != null) {
-                    name = LaunchControl.findTemp(name).getProbe();
-                }
-                if (vessel.containsKey("tempprobe")) {
-                    String temp = ((JSONObject) vessel.get("tempprobe"))
-                            .get("temp").toString();
-
-
-                    Status lastStatus = temperatureMap.get(name);
-                    if (lastStatus == null) {
-                        lastStatus = new Status("-999", now);
-                    }
-
-                    if (lastStatus.isDifferentEnough(temp)) {
-                        File tempFile = new File(directory + name + "-temp.csv");
-                        if (now - lastStatus.timestamp > SLEEP * 1.5) {
-                            appendToLog(tempFile, now - SLEEP + "," + lastStatus.value + "\r\n");
-                        }
-                        appendToLog(tempFile, now + "," + temp + "\r\n");
+    protected final void recordSamples(final long now,
+            final String directory) {
+        for (Temp t : LaunchControl.tempList) {
+            if (LaunchControl.pageLock && t.isHidden()) {
+                continue;
+            }
+            recordSample(now, t, temperatureMap, THRESHOLD, directory);
 
-                        temperatureMap.put(name, new Status(temp, now));
-                    }
-                }
+            PID pid = LaunchControl.findPID(t.getName());
+            if (pid != null) {
+                recordSample(now, pid, dutyMap, 0, directory);
+            }
 
-                if (vessel.containsKey("pidstatus")) {
-                    JSONObject pid = (JSONObject) vessel.get("pidstatus");
-                    String duty = "0";
-                    if (pid.containsKey("actualduty")) {
-                        duty = pid.get("actualduty").toString();
-                    } else if (!pid.get("mode").equals("off")) {
-                        duty = pid.get("duty").toString();
-                    }
+            recordSample(now, t.getVolumeSeries(), volumeMap, 0, directory);
+            recordSample(now, t.getRawVolumeSeries(), rawVolumeMap, 0,
+                    directory);
+        }
+        for (PhSensor sensor : LaunchControl.phSensorList) {
+            recordSample(now, sensor.getPhSeries(), phMap, 0, directory);
+            recordSample(now, sensor.getRawPhSeries(), rawPhMap, 0,
+                    directory);
+        }
+        // Every sample up to now is in the tails
+        tailCursor = now;
+    }
 
-                    Status lastStatus = dutyMap.get(name);
-                    if (lastStatus == null) {
-                        lastStatus = new Status("-999", now);
-                    }
+    /**
+     * Save the sampled value if it has moved more than the threshold.
+     *
+     * @param now The timestamp to save the sample with.
+     * @param sampled The device to sample.
+     * @param lastValues The last saved value for each series of this type.
+     * @param threshold The change needed before the value is saved.
+     * @param directory The graph data directory.
+     */
+    private void recordSample(final long now, final Sampled sampled,
+            final Map<String, Status> lastValues, final double threshold,
+            final String directory) {
+        double value = sampled.getSampleValue();
+        if (Double.isNaN(value)) {
+            return;
+        }
 
-                    if (!duty.equals(lastStatus.value)) {
-                        File dutyFile = new File(directory + name + "-duty.csv");
-                        if (now - lastStatus.timestamp > SLEEP * 1.5) {
-                            appendToLog(dutyFile, now - SLEEP + "," + lastStatus.value + "\r\n");
-                        }
-                        appendToLog(dutyFile, now + "," + duty + "\r\n");
-                        dutyMap.put(name, new Status(duty, now));
-                    }
-                }
+        String name = sampled.getSeriesName();
+        Status lastStatus = lastValues.get(name);
+        if (lastStatus == null) {
+            lastStatus = new Status(-999, now);
+            lastValues.put(name, lastStatus);
+        }
 
+        if (Math.abs(lastStatus.value - value) > threshold) {
+            String series = name + "-" + sampled.getSeriesType();
+            File file = new File(directory + series + ".csv");
+            File seriesFile = new File(directory + series + SeriesFile.EXTENSION);
+            SeriesTail tail = tails.get(series);
+            if (tail == null) {
+                tail = new SeriesTail(TAIL_SIZE);
+                tails.put(series, tail);
+            }
+            if (now - lastStatus.timestamp > SLEEP * 1.5) {
+                appendToLog(file, now - SLEEP + "," + lastStatus.value + "\r\n");
+                appendSample(seriesFile, now - SLEEP, lastStatus.value);
+                tail.add(now - SLEEP, (float) lastStatus.value);
             }
+            appendToLog(file, now + "," + value + "\r\n");
+            appendSample(seriesFile, now, value);
+            tail.add(now, (float) value);
+            lastStatus.value = value;
+            lastStatus.timestamp = now;
         }
     }
 
@@ -218,151 +271,56 @@ public class StatusRecorder implements Runnable {
      * @param toAppend The string to add to the file
      */
     protected final void appendToLog(final File file, final String toAppend) {
-        FileWriter fileWriter = null;
         try {
-            fileWriter = new FileWriter(file, true);
-            fileWriter.write(toAppend);
+            writerPool.append(file, toAppend);
         } catch (IOException ex) {
             BrewServer.LOG.warning("Could not save to file: "
                     + file.getAbsolutePath());
-        } finally {
-            try {
-                if (fileWriter != null) {
-                    fileWriter.close();
-                }
-            } catch (IOException ex) {
-                BrewServer.LOG.warning("Could not close filewriter: "
-                        + file.getAbsolutePath());
-            }
         }
     }
 
     /**
-     * Write a JSON object to the log file.
-     *
-     * @param status The JSON Object to log
-     * @param fileExists If the file exists, prepend a "," otherwise an open
-     * brace "["
-     */
-    protected final void writeToLog(final JSONObject status,
-            final boolean fileExists) {
-        String append = fileExists ? "," : "[" + status.toJSONString();
-        appendToLog(new File(this.logFile), append);
-    }
-
-    /**
-     * Check to see if the objects are different.
+     * Save the sample to the binary series file.
      *
-     * @param previous The first object to check.
-     * @param current The second object to check
-     * @return True if the objects are different
+     * @param file The series file to save to
+     * @param timestamp The time of the sample
+     * @param value The sample value
      */
-    protected final boolean isDifferent(final JSONObject previous,
-            final JSONObject current) {
-        if (previous.size() != current.size()) {
-            return true;
-        }
-
-        for (Object key : previous.keySet()) {
-            if (!"elapsed".equals(key)) {
-                Object previousValue = previous.get(key);
-                Object currentValue = current.get(key);
-
-                if (compare(previousValue, currentValue)) {
-                    return true;
-                }
-            }
+    protected final void appendSample(final File file, final long timestamp,
+            final double value) {
+        try {
+            writerPool.appendSample(file, timestamp, (float) value);
+        } catch (IOException ex) {
+            BrewServer.LOG.warning("Could not save to file: "
+                    + file.getAbsolutePath());
         }
-        return false;
     }
 
     /**
-     * Check to see if the JSONArrays are different.
+     * Write the JSON status to the log file.
      *
-     * @param previous The first JSONArray to check
-     * @param current The second JSONArray to check.
-     * @return True if the JSONArrays are different
+     * @param status The JSON status string to log
+     * @param fileExists If the file exists, prepend a "," otherwise an open
+     * brace "["
      */
-    protected final boolean isDifferent(final JSONArray previous,
-            final JSONArray current) {
-
-        if (previous.size() != current.size()) {
-            return true;
-        }
-
-        for (int x = 0; x < previous.size(); x++) {
-            Object previousValue = previous.get(x);
-            Object currentValue = current.get(x);
-
-            if (compare(previousValue, currentValue)) {
-                return true;
-            }
-        }
-        return false;
+    protected final void writeToLog(final String status,
+            final boolean fileExists) {
+        String append = (fileExists ? "," : "[") + status;
+        appendToLog(new File(this.logFile), append);
     }
 
     /**
-     * Compare two generic objects.
-     *
-     * @param previousValue First object to check
-     * @param currentValue Second object to check
-     * @return True if the objects are different, false if the same.
+     * The last value saved for a series.
      */
-    protected final boolean compare(final Object previousValue,
-            final Object currentValue) {
-        if (previousValue == null && currentValue == null) {
-            return true;
-        }
-
-        if (previousValue == null || currentValue == null) {
-            return false;
-        }
-
-        if (previousValue instanceof JSONObject
-                && currentValue instanceof JSONObject) {
-            if (isDifferent((JSONObject) previousValue,
-                    (JSONObject) currentValue)) {
-                return true;
-            }
-        } else if (previousValue instanceof JSONArray
-                && currentValue instanceof JSONArray) {
-            if (isDifferent((JSONArray) previousValue,
-                    (JSONArray) currentValue)) {
-                return true;
-            }
-        } else {
-            if (!previousValue.equals(currentValue)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private class Status {
+    private static final class Status {
 
         public long timestamp;
-        public String value;
-        public int count = 0;
+        public double value;
 
-        public Status(String value, long timestamp) {
+        public Status(final double value, final long timestamp) {
             this.value = value;
             this.timestamp = timestamp;
         }
-
-        public boolean isDifferentEnough(String newValue) {
-            boolean retVal = false;
-
-            try {
-                double oldVal = Double.valueOf(value);
-                double newVal = Double.valueOf(newValue);
-                retVal = Math.abs(oldVal - newVal) > THRESHOLD;
-            } catch (Throwable ignored) {
-            }
-
-            return retVal;
-
-        }
     }
 
     /**
@@ -411,6 +369,28 @@ public class StatusRecorder implements Runnable {
             }
         }
 
+        // Optional time window in milliseconds
+        Long from = parseTime(params.get("from"));
+        Long to = parseTime(params.get("to"));
+
+        // Optional downsampling, either a point count or a bucket size in ms
+        int maxPoints = 0;
+        Long resolution = parseTime(params.get("resolution"));
+        if (params.containsKey("maxPoints")) {
+            try {
+                maxPoints = Integer.parseInt(params.get("maxPoints"));
+            } catch (NumberFormatException nfe) {
+                maxPoints = 0;
+            }
+        }
+        Downsampler.Method method =
+                Downsampler.Method.fromString(params.get("downsample"));
+        if ((maxPoints > 0 || resolution != null)
+                && !params.containsKey("size")) {
+            // Downsample the whole window rather than the last points
+            size = Integer.MAX_VALUE;
+        }
+
         String vessel = "";
         if (params.containsKey("vessel")) {
             vessel = params.get("vessel");
@@ -421,6 +401,15 @@ public class StatusRecorder implements Runnable {
             vesselName = temp.getProbe();
         }
 
+        // Incremental updates come from the tails
+        Long since = parseTime(params.get("since"));
+        if (since != null) {
+            return getDataSince(since, vesselName, params);
+        }
+
+        // Make sure everything recorded so far is in the files
+        flushSeries();
+
         File[] contents = new File(getCurrentDir()).listFiles();
         JSONObject xsData = new JSONObject();
         JSONObject axes = new JSONObject();
@@ -475,34 +464,18 @@ public class StatusRecorder implements Runnable {
         }
         boolean dutyVisible = false;
         for (File content : contents) {
-            if (content.getName().endsWith(".csv")
+            if (content.getName().endsWith(SeriesFile.EXTENSION)
                     && content.getName().toLowerCase()
                     .startsWith(vesselName.toLowerCase())) {
                 String name = content.getName();
-                String localName = null;
-
-                // Strip off .csv
-                name = name.substring(0, name.length() - 4);
-                localName = name.substring(0, name.lastIndexOf("-"));
-                String type = name.substring(name.lastIndexOf("-") + 1);
-                Temp localTemp = LaunchControl.findTemp(localName);
-                if (localTemp != null) {
-                    localName = localTemp.getName();
-                } else {
-                    localName = name;
-                }
-                localName = org.apache.commons.lang3.StringEscapeUtils.unescapeJson(localName);
-                if (params.containsKey("bindto")
-                        && (params.get("bindto"))
-                        .endsWith("-graph_body")) {
-                    localName = type;
-                }
-
-                // Work out the real axis name and reuse it.
-                String axisName = type.toUpperCase();
-                if (!localName.equals(type)) {
-                    axisName = localName + " " + type;
+                // Strip off the extension
+                name = name.substring(0,
+                        name.length() - SeriesFile.EXTENSION.length());
+                if (!isCharted(name)) {
+                    continue;
                 }
+                String type = name.substring(name.lastIndexOf("-") + 1);
+                String axisName = getAxisName(name, params);
 
                 xsData.put(axisName, "x" + axisName);
                 if (type.equalsIgnoreCase("duty")) {
@@ -519,55 +492,14 @@ public class StatusRecorder implements Runnable {
                 xArray.add("x" + axisName);
                 dataArray.add(axisName);
 
-                ReversedLinesFileReader reader = null;
                 try {
-                    reader = new ReversedLinesFileReader(content);
-                    String line;
-                    String[] lArray = null;
-
-                    int count = 0;
-                    try {
-                        while ((line = reader.readLine()) != null && count < size) {
-                            // Each line contains the timestamp and the value
-                            lArray = line.split(",");
-                            BrewServer.LOG.info("Line: " + line + ". Split: " + lArray.length);
-                            if (lArray.length != 2) {
-                                continue;
-                            }
-                            long timestamp = Long.parseLong(lArray[0]);
-                            // If this is the first element, add an extra one on.
-                            if (count == 0 && timestamp != currentTime) {
-                                xArray.add(BrewDay.mFormat
-                                        .format(new Date(currentTime)));
-                                dataArray.add(lArray[1].trim());
-                            }
-                            xArray.add(BrewDay.mFormat
-                                            .format(new Date(timestamp))
-                            );
-                            dataArray.add(lArray[1].trim());
-                            count++;
-                        }
-                    } catch (Exception e) {
-                        // Do nothing. File doesn't have any data.
-                        BrewServer.LOG.info("Error when reading for temperature: " + content.getAbsolutePath());
-                    }
-
-
-
+                    readSeries(content, from, to, size, maxPoints, resolution,
+                            method, currentTime, xArray, dataArray);
                     dataBuffer.add(xArray);
                     dataBuffer.add(dataArray);
-                    BrewServer.LOG.info("Read: " + count);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                } finally {
-                    if (reader != null) {
-                        try {
-                            reader.close();
-                        } catch (Exception e) {
-                            BrewServer.LOG.warning("Couldn't close file: "
-                                    + content.getAbsolutePath());
-                        }
-                    }
+                } catch (IOException e) {
+                    BrewServer.LOG.warning("Couldn't read file: "
+                            + content.getAbsolutePath());
                 }
 
             }
@@ -575,6 +507,8 @@ public class StatusRecorder implements Runnable {
 
         JSONObject dataContent = new JSONObject();
         dataContent.put("columns", dataBuffer);
+        dataContent.put("cursor", tailCursor);
+        dataContent.put("now", currentTime);
         if (params.containsKey("updates")
                 && Boolean.parseBoolean(params.get("updates"))) {
             return new NanoHTTPD.Response(NanoHTTPD.Response.Status.OK, BrewServer.MIME_TYPES.get("json"),
@@ -657,6 +591,195 @@ public class StatusRecorder implements Runnable {
                 finalJSON.toJSONString());
     }
 
+    /**
+     * Flush the series writers so the files hold every sample.
+     */
+    private void flushSeries() {
+        SeriesWriterPool pool = writerPool;
+        if (pool != null) {
+            pool.flush();
+        }
+    }
+
+    /**
+     * The vessel charts only plot the temperatures and duty cycles, the
+     * volume and pH series are in the downloads.
+     *
+     * @param series The series file name without the extension.
+     * @return True if the series is charted.
+     */
+    private static boolean isCharted(final String series) {
+        String type = series.substring(series.lastIndexOf("-") + 1);
+        return type.equalsIgnoreCase(Sampled.TEMP)
+                || type.equalsIgnoreCase(Sampled.DUTY);
+    }
+
+    /**
+     * Work out the graph axis name for a series.
+     *
+     * @param series The series file name without the extension.
+     * @param params The incoming parameters.
+     * @return The axis name.
+     */
+    private String getAxisName(final String series,
+            final Map<String, String> params) {
+        String localName = series.substring(0, series.lastIndexOf("-"));
+        String type = series.substring(series.lastIndexOf("-") + 1);
+        Temp localTemp = LaunchControl.findTemp(localName);
+        if (localTemp != null) {
+            localName = localTemp.getName();
+        } else {
+            localName = series;
+        }
+        localName = org.apache.commons.lang3.StringEscapeUtils.unescapeJson(localName);
+        if (params.containsKey("bindto")
+                && (params.get("bindto"))
+                .endsWith("-graph_body")) {
+            localName = type;
+        }
+
+        // Work out the real axis name and reuse it.
+        String axisName = type.toUpperCase();
+        if (!localName.equals(type)) {
+            axisName = localName + " " + type;
+        }
+        return axisName;
+    }
+
+    /**
+     * Read the points of a series file into the arrays.
+     *
+     * @param content The series file.
+     * @param from The earliest time to read, or null.
+     * @param to The latest time to read, or null.
+     * @param size The maximum number of most recent points to read.
+     * @param maxPoints Downsample to this many points if more than zero.
+     * @param resolution Downsample to this bucket size in ms, or null.
+     * @param method The downsampling method.
+     * @param currentTime The current time, the latest value is carried on to
+     * this time when reading up to now.
+     * @param xArray The array to add the timestamps to.
+     * @param dataArray The array to add the values to.
+     * @throws IOException If the file couldn't be read.
+     */
+    private void readSeries(final File content, final Long from,
+            final Long to, final int size, final int maxPoints,
+            final Long resolution, final Downsampler.Method method,
+            final long currentTime, final JSONArray xArray,
+            final JSONArray dataArray) throws IOException {
+        SeriesFile series = SeriesFile.open(content);
+        int start = 0;
+        int end = series.size();
+        if (from != null) {
+            start = series.indexOf(from);
+        }
+        if (to != null) {
+            end = series.indexOf(to + 1);
+        }
+        start = Math.max(start, end - size);
+
+        int points = maxPoints;
+        if (resolution != null && resolution > 0 && end > start) {
+            long span = series.getTime(end - 1) - series.getTime(start);
+            points = Downsampler.pointsFor(span, resolution, method);
+        }
+
+        if (points > 0) {
+            for (int i : Downsampler.downsample(
+                    series, start, end, points, method)) {
+                xArray.add(series.getTime(i));
+                dataArray.add(series.getValue(i));
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                xArray.add(series.getTime(i));
+                dataArray.add(series.getValue(i));
+            }
+        }
+
+        // Carry the latest value on to now.
+        if (to == null && end > start
+                && series.getTime(end - 1) < currentTime) {
+            xArray.add(currentTime);
+            dataArray.add(series.getValue(end - 1));
+        }
+    }
+
+    /**
+     * Get the samples recorded after since. These come from the in memory
+     * tails, the series file is only read if a tail has already dropped
+     * some of the samples. The response has the new points for each series
+     * that has any, "cursor" to pass as since on the next request and
+     * "now", the current time.
+     *
+     * @param since The cursor from the last response, in milliseconds.
+     * @param vesselName The probe to get the series for, empty for all.
+     * @param params The incoming parameters.
+     * @return The new samples as JSON columns.
+     */
+    private NanoHTTPD.Response getDataSince(final long since,
+            final String vesselName, final Map<String, String> params) {
+        long limit = tailCursor;
+        JSONArray dataBuffer = new JSONArray();
+
+        for (Map.Entry<String, SeriesTail> entry : tails.entrySet()) {
+            String series = entry.getKey();
+            if (!series.toLowerCase().startsWith(vesselName.toLowerCase())
+                    || !isCharted(series)) {
+                continue;
+            }
+
+            String axisName = getAxisName(series, params);
+            JSONArray xArray = new JSONArray();
+            JSONArray dataArray = new JSONArray();
+            xArray.add("x" + axisName);
+            dataArray.add(axisName);
+
+            if (!entry.getValue().addSince(since, limit, xArray, dataArray)) {
+                // The client is too far behind, read the file instead
+                flushSeries();
+                try {
+                    readSeries(new File(currentDirectory + series
+                            + SeriesFile.EXTENSION), since + 1, limit,
+                            Integer.MAX_VALUE, 0, null, null, limit,
+                            xArray, dataArray);
+                } catch (IOException e) {
+                    BrewServer.LOG.warning("Couldn't read series: " + series);
+                }
+            }
+
+            if (xArray.size() > 1) {
+                dataBuffer.add(xArray);
+                dataBuffer.add(dataArray);
+            }
+        }
+
+        JSONObject dataContent = new JSONObject();
+        dataContent.put("columns", dataBuffer);
+        dataContent.put("cursor", Math.max(since, limit));
+        dataContent.put("now", System.currentTimeMillis());
+        return new NanoHTTPD.Response(NanoHTTPD.Response.Status.OK,
+                BrewServer.MIME_TYPES.get("json"), dataContent.toJSONString());
+    }
+
+    /**
+     * Parse a timestamp parameter.
+     *
+     * @param value The parameter value, may be null.
+     * @return The timestamp in milliseconds, or null if it isn't set or
+     * isn't a number.
+     */
+    private static Long parseTime(final String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
     public NanoHTTPD.Response deleteAllData() {
         File graphDir = new File(this.recorderDirectory);
         for (File directory: graphDir.listFiles()) {
@@ -0,0 +1,90 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONObject;
+
+import java.nio.charset.Charset;
+
+/**
+ * An immutable copy of the system status as served by /getstatus.
+ * A snapshot is built by {@link LaunchControl#getStatusSnapshot()} when the
+ * status version changes, and is then shared by every caller until the next
+ * change. The JSON and its UTF-8 bytes are kept so the web server can write
+ * the cached bytes straight out. The JSON object is kept so the status
+ * events can work out what changed, it must not be modified.
+ */
+public final class StatusSnapshot {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The status version this snapshot was built from.
+     */
+    private final long version;
+    /**
+     * When this snapshot was built.
+     */
+    private final long timestamp;
+    private final JSONObject status;
+    private final String json;
+    private final byte[] bytes;
+
+    /**
+     * Create a new snapshot.
+     * @param version The status version the JSON was built from.
+     * @param status The JSON status.
+     */
+    public StatusSnapshot(final long version, final JSONObject status) {
+        this.version = version;
+        this.timestamp = System.currentTimeMillis();
+        this.status = status;
+        this.json = status.toJSONString();
+        this.bytes = json.getBytes(UTF8);
+    }
+
+    /**
+     * @return The status version this snapshot was built from.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The time this snapshot was built, in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The JSON status object, shared so it must not be modified.
+     */
+    public JSONObject getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The JSON status string.
+     */
+    public String getJSON() {
+        return json;
+    }
+
+    /**
+     * @return The UTF-8 encoded JSON. Do not modify the returned array, it is
+     *  shared between every request that uses this snapshot.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Check to see if this snapshot is still current.
+     * @param currentVersion The latest status version.
+     * @param maxAge The maximum age in milliseconds.
+     * @return True if the snapshot matches the version and isn't too old.
+     */
+    public boolean isCurrent(final long currentVersion, final long maxAge) {
+        return this.version == currentVersion
+                && System.currentTimeMillis() - this.timestamp < maxAge;
+    }
+}
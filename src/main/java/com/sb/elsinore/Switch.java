@@ -1,7 +1,7 @@
 package com.sb.elsinore;
 
+import com.sb.elsinore.hardware.Hardware;
 import jGPIO.InvalidGPIOException;
-import jGPIO.OutPin;
 
 /**
  * A helper class for switch control. not very complex. Designed to control a
@@ -21,7 +21,7 @@ public class Switch implements Comparable<Switch> {
     /**
      * the outpin for the switch.
      */
-    private OutPin output = null;
+    private Hardware.OutputPin output = null;
     private boolean invertOutput = false;
     private int position = -1;
 
@@ -53,7 +53,7 @@ public class Switch implements Comparable<Switch> {
         }
 
         try {
-            this.output = new OutPin(pinName);
+            this.output = Hardware.getInstance().getOutput(pinName);
             this.turnOff();
         } catch (InvalidGPIOException e) {
             throw e;
@@ -87,6 +87,7 @@ public class Switch implements Comparable<Switch> {
         } else {
             output.setValue(true);
         }
+        LaunchControl.statusChanged();
     }
 
     /**
@@ -98,6 +99,7 @@ public class Switch implements Comparable<Switch> {
         } else {
             output.setValue(false);
         }
+        LaunchControl.statusChanged();
     }
 
     /**
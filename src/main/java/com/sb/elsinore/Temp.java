@@ -1,27 +1,21 @@
 package com.sb.elsinore;
 import com.sb.elsinore.devices.I2CDevice;
+import com.sb.elsinore.devices.I2CScanner;
+import com.sb.elsinore.hardware.Hardware;
 import com.sb.util.MathUtil;
 import javax.annotation.Nonnull;
-import jGPIO.GPIO.Direction;
-import jGPIO.InPin;
 import jGPIO.InvalidGPIOException;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.NoSuchElementException;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
@@ -34,7 +28,8 @@ import org.owfs.jowfsclient.OwfsException;
  * @author Doug Edey
  *
  */
-public final class Temp implements Runnable, Comparable<Temp> {
+public final class Temp implements SensorScheduler.Sensor, Comparable<Temp>,
+        Sampled {
 
     /**
      * Strings for the Nodes.
@@ -42,6 +37,12 @@ public final class Temp implements Runnable, Comparable<Temp> {
     public static final String PROBE_SIZE = "ProbeSize";
     public static final String PROBE_ELEMENT = "probe";
     public static final String POSITION = "position";
+    public static final String POLL_INTERVAL = "pollInterval";
+
+    /**
+     * The default time between reads, in milliseconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 500;
 
     /**
      * Valid sizes for the probes
@@ -60,8 +61,11 @@ public final class Temp implements Runnable, Comparable<Temp> {
     public static BigDecimal FREEZING = new BigDecimal(32);
     public static BigDecimal ERROR_TEMP = new BigDecimal(-999);
     private boolean badTemp = false;
-    private boolean keepalive = true;
     private boolean hidden = false;
+    private volatile long pollInterval = DEFAULT_POLL_INTERVAL;
+    private SensorFile sensorFile = null;
+    private int fileMilliDegrees = 0;
+    private BigDecimal fileTemp = null;
     /**
      * Base path for BBB System Temp.
      */
@@ -116,8 +120,9 @@ public final class Temp implements Runnable, Comparable<Temp> {
             }
         } else {
 
+            String w1Devices = Hardware.getInstance().getOneWireDevices();
             File probePath =
-                new File("/sys/bus/w1/devices/" + aName + "/w1_slave");
+                new File(w1Devices + aName + "/w1_slave");
 
             // Lets assume that OWFS has "." separated names
             if (!probePath.exists() && aName.contains(".")) {
@@ -142,7 +147,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
                     aName = fixedAddress;
                 }
             }
-            this.fProbe = "/sys/bus/w1/devices/" + aName + "/w1_slave";
+            this.fProbe = w1Devices + aName + "/w1_slave";
         }
 
         this.probeName = aName;
@@ -151,31 +156,49 @@ public final class Temp implements Runnable, Comparable<Temp> {
     }
 
     /**
-     * The Runnable loop.
+     * Read the temperature and volume, called by the {@link SensorScheduler}.
+     * @return True if the temperature was read.
      */
-    public void run() {
+    @Override
+    public boolean poll() {
+        boolean ok = !updateTemp().equals(ERROR_TEMP);
+        // Uh oh no file found, disable output to prevent logging floods
+        loggingOn = ok;
 
-        while (keepalive) {
-            if (updateTemp().equals(ERROR_TEMP)) {
-                if (fProbe != null && fProbe.equals(
-                        "/sys/class/thermal/thermal_zone0/temp")) {
-                    return;
-                }
-                // Uh(oh no file found, disable output to prevent logging floods
-                loggingOn = false;
-            } else {
-                loggingOn = true;
-            }
+        if (volumeMeasurement) {
+            updateVolume();
+        }
+        return ok;
+    }
 
-            if (volumeMeasurement) {
-                updateVolume();
-            }
+    /**
+     * @return The bus this probe is read from.
+     */
+    @Override
+    public String getBus() {
+        if (fProbe == null) {
+            return "owfs";
+        }
+        if (fProbe.endsWith("/w1_slave")) {
+            return "w1";
+        }
+        return "system";
+    }
 
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    /**
+     * @return The time between reads, in milliseconds.
+     */
+    @Override
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * @param interval The time between reads, in milliseconds.
+     */
+    public void setPollInterval(final long interval) {
+        if (interval > 0) {
+            this.pollInterval = interval;
         }
     }
 
@@ -269,6 +292,18 @@ public final class Temp implements Runnable, Comparable<Temp> {
      * The current timestamp.
      */
     private long currentTime = 0;
+    /**
+     * The readings published to the PIDs and triggers, see
+     * {@link #awaitSample(long, long)}.
+     */
+    private final Object sampleLock = new Object();
+    private long sampleCount = 0;
+    private volatile double lastSample = 0;
+    private volatile long lastSampleTime = 0;
+    /**
+     * Set when a file read gave back the previous temperature.
+     */
+    private boolean repeatedReading = false;
     /**
      * Other strings, obviously named.
      */
@@ -287,11 +322,68 @@ public final class Temp implements Runnable, Comparable<Temp> {
      * The baselist of volume measurements.
      */
     private ConcurrentHashMap<BigDecimal, BigDecimal> volumeBase = null;
+    /**
+     * The volume base compiled for reading, rebuilt when a point is added.
+     */
+    private volatile VolumeCalibration volumeCalibration = null;
+    /**
+     * The current volume, to tell if a new reading has changed it.
+     */
+    private volatile double currentVolumeValue = 0;
+    /**
+     * The volume at the unfiltered reading.
+     */
+    private volatile double rawVolumeValue = Double.NaN;
+    /**
+     * Filters the volume input readings.
+     */
+    private final AnalogFilter volumeFilter = new AnalogFilter();
+    /**
+     * The unfiltered volume, for the recorder.
+     */
+    private final Sampled rawVolumeSeries = new Sampled() {
+        @Override
+        public String getSeriesName() {
+            return getProbe();
+        }
+
+        @Override
+        public String getSeriesType() {
+            return Sampled.VOLUME_RAW;
+        }
+
+        @Override
+        public double getSampleValue() {
+            return getRawVolume();
+        }
+    };
+    /**
+     * The filtered volume, for the recorder.
+     */
+    private final Sampled volumeSeries = new Sampled() {
+        @Override
+        public String getSeriesName() {
+            return getProbe();
+        }
+
+        @Override
+        public String getSeriesType() {
+            return Sampled.VOLUME;
+        }
+
+        @Override
+        public double getSampleValue() {
+            if (!volumeMeasurement || Double.isNaN(rawVolumeValue)) {
+                return Double.NaN;
+            }
+            return currentVolumeValue;
+        }
+    };
 
     /**
      * The input pin to read.
      */
-    private InPin volumePin = null;
+    private Hardware.AnalogueInput volumePin = null;
     private boolean stopVolumeLogging;
     private BigDecimal calibration = BigDecimal.ZERO;
     private TriggerControl triggerControl = null;
@@ -408,6 +500,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
         if (badTemp && this.currentError.equals("")) {
             BrewServer.LOG.warning("Trying to recover " + this.getName());
         }
+        repeatedReading = false;
         if (fProbe == null) {
             result = updateTempFromOWFS();
         } else {
@@ -415,6 +508,9 @@ public final class Temp implements Runnable, Comparable<Temp> {
         }
 
         if (result.equals(ERROR_TEMP)) {
+            if (!badTemp) {
+                LaunchControl.statusChanged();
+            }
             badTemp = true;
             return result;
         }
@@ -423,6 +519,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
             badTemp = false;
             BrewServer.LOG.warning("Recovered temperature reading for " + this.getName());
             this.currentError = "";
+            LaunchControl.statusChanged();
         }
 
         // OWFS/One wire always uses Celsius
@@ -430,10 +527,19 @@ public final class Temp implements Runnable, Comparable<Temp> {
             result = cToF(result);
         }
 
+        boolean changed = currentTemp.compareTo(result) != 0;
         currentTemp = result;
         currentTime = System.currentTimeMillis();
         currentError = null;
 
+        if (changed) {
+            LaunchControl.statusChanged();
+            CosmUploader uploader = LaunchControl.cosmUploader;
+            if (uploader != null) {
+                uploader.submit(getName(), getTemp().toString(), getScale());
+            }
+        }
+
         if (!cutoffTemp.equals(ERROR_TEMP)
                 && currentTemp.compareTo(cutoffTemp) >= 0) {
             BrewServer.LOG.log(Level.SEVERE,
@@ -441,9 +547,70 @@ public final class Temp implements Runnable, Comparable<Temp> {
                 + cutoffTemp + ") EXCEEDED *****");
             System.exit(-1);
         }
+        if (!repeatedReading) {
+            publishSample();
+        }
         return result;
     }
 
+    /**
+     * Wake everything waiting for a reading.
+     */
+    private void publishSample() {
+        double sample = getTemp().doubleValue();
+        synchronized (sampleLock) {
+            lastSample = sample;
+            lastSampleTime = System.nanoTime();
+            sampleCount++;
+            sampleLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return The number of good readings, it goes up by one with each.
+     */
+    public long getSampleCount() {
+        synchronized (sampleLock) {
+            return sampleCount;
+        }
+    }
+
+    /**
+     * Wait for a reading newer than the one already seen.
+     * @param seen The sample count when the last reading was used.
+     * @param timeout The longest to wait, in milliseconds.
+     * @return The current sample count, the same as seen if there was no
+     *  new reading before the timeout.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public long awaitSample(final long seen, final long timeout)
+            throws InterruptedException {
+        long end = System.nanoTime() + timeout * 1000000L;
+        synchronized (sampleLock) {
+            long remaining = timeout;
+            while (sampleCount == seen && remaining > 0) {
+                sampleLock.wait(remaining);
+                remaining = (end - System.nanoTime()) / 1000000L;
+            }
+            return sampleCount;
+        }
+    }
+
+    /**
+     * @return The last good reading in the probe scale.
+     */
+    public double getLastSample() {
+        return lastSample;
+    }
+
+    /**
+     * @return When the last good reading was taken, from
+     *  {@link System#nanoTime()}.
+     */
+    public long getLastSampleTime() {
+        return lastSampleTime;
+    }
+
     /**
      * @return Get the current temperature from the OWFS server
      */
@@ -456,7 +623,6 @@ public final class Temp implements Runnable, Comparable<Temp> {
             if (rawTemp == null || rawTemp.equals("")) {
                 BrewServer.LOG.severe(
                     "Couldn't find the probe " + probeName + " for " + name);
-                LaunchControl.setupOWFS();
             } else {
                 temp = new BigDecimal(rawTemp);
             }
@@ -466,7 +632,6 @@ public final class Temp implements Runnable, Comparable<Temp> {
         } catch (OwfsException e) {
             currentError = "Couldn't read " + probeName;
             BrewServer.LOG.log(Level.SEVERE, currentError, e);
-            LaunchControl.setupOWFS();
         } catch (NumberFormatException e) {
             currentError = "Couldn't parse" + rawTemp;
             BrewServer.LOG.log(Level.SEVERE, currentError, e);
@@ -479,33 +644,22 @@ public final class Temp implements Runnable, Comparable<Temp> {
      * @return The current temperature read directly from the file system.
      */
     public BigDecimal updateTempFromFile() {
-        BufferedReader br = null;
-        String temp = null;
-        
-        BigDecimal newTemperature = null;
+        SensorFile file = sensorFile;
+        if (file == null || !file.getPath().equals(fProbe)) {
+            if (file != null) {
+                file.close();
+            }
+            file = new SensorFile(fProbe);
+            sensorFile = file;
+        }
 
         try {
-            br = new BufferedReader(new FileReader(fProbe));
-            String line = br.readLine();
-            
-            if (line == null || line.contains("NO")) {
-                // bad CRC, do nothing
-                this.currentError = "Bad CRC from " + fProbe;
-            } else if (line.contains("YES")) {
-                // good CRC
-                line = br.readLine();
-                // last value should be t=
-                int t = line.indexOf("t=");
-                temp = line.substring(t + 2);
-                BigDecimal tTemp = new BigDecimal(temp);
-                newTemperature = MathUtil.divide(tTemp, 1000);
+            if (file.read()) {
                 this.currentError = null;
-            } else {
-                // System Temperature
-                BigDecimal tTemp = new BigDecimal(line);
-                newTemperature = MathUtil.divide(tTemp, 1000);
+                return fromMilliDegrees(file.getMilliDegrees());
             }
-
+            // bad CRC, do nothing
+            this.currentError = "Bad CRC from " + fProbe;
         } catch (IOException ie) {
             if (loggingOn) {
                 this.currentError = "Couldn't find the device under: " + fProbe;
@@ -516,22 +670,31 @@ public final class Temp implements Runnable, Comparable<Temp> {
             }
             return ERROR_TEMP;
         } catch (NumberFormatException nfe) {
-            this.currentError = "Couldn't parse " + temp + " as a double";
-            nfe.printStackTrace();
-        } finally {
-            if (br != null) {
-                try {
-                    br.close();
-                } catch (IOException ie) {
-                    BrewServer.LOG.warning(ie.getLocalizedMessage());
-                }
-            }
+            this.currentError = "Couldn't parse the reading from " + fProbe;
+            BrewServer.LOG.warning(currentError);
         }
-        if( newTemperature == null )
-        {
-            newTemperature = getTempC();
+        repeatedReading = true;
+        return getTempC();
+    }
+
+    /**
+     * @param milliDegrees A file reading in thousandths of a degree.
+     * @return The reading in degrees, the last one is reused if it hasn't
+     *  changed.
+     */
+    private BigDecimal fromMilliDegrees(final int milliDegrees) {
+        if (fileTemp == null || milliDegrees != fileMilliDegrees) {
+            // Without trailing zeros, as dividing by 1000 gave
+            long unscaled = milliDegrees;
+            int decimals = 3;
+            while (decimals > 0 && unscaled % 10 == 0) {
+                unscaled /= 10;
+                decimals--;
+            }
+            fileTemp = BigDecimal.valueOf(unscaled, decimals);
+            fileMilliDegrees = milliDegrees;
         }
-        return newTemperature;
+        return fileTemp;
     }
 
     /**
@@ -554,6 +717,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
         this.volumeUnit = unit;
         this.volumeAddress = address.replace("-", ".");
         this.volumeOffset = offset.toUpperCase();
+        this.volumeFilter.reset();
 
         try {
             BrewServer.LOG.log(Level.INFO,
@@ -604,7 +768,9 @@ public final class Temp implements Runnable, Comparable<Temp> {
         this.volumeUnit = unit;
 
         try {
-            this.volumePin = new InPin(analogPin, Direction.ANALOGUE);
+            this.volumePin = Hardware.getInstance().getAnalogue(analogPin);
+            this.volumeAIN = analogPin;
+            this.volumeFilter.reset();
         } catch (InvalidGPIOException e) {
             this.volumeMeasurement = false;
             BrewServer.LOG.warning("Invalid Analog GPIO specified " + analogPin);
@@ -684,113 +850,108 @@ public final class Temp implements Runnable, Comparable<Temp> {
 
 
     /**
-     * @return The latest volume reading
+     * Read the volume input, oversampling it into the filter, and work out
+     * the volume from the filtered reading.
+     * @return The latest raw volume reading
      */
     public BigDecimal updateVolume() {
         try {
-            BigDecimal pinValue;
-            if (volumeAIN != -1) {
-                pinValue = new BigDecimal(volumePin.readValue());
-            } else if (volumeAddress != null && volumeOffset != null) {
-                try {
-                    pinValue = new BigDecimal(
-                        LaunchControl.readOWFSPath(
-                            volumeAddress + "/volt." + volumeOffset));
-                    if (this.stopVolumeLogging) {
-                        BrewServer.LOG.log(Level.SEVERE,
-                            "Recovered volume level reading for " + this.name);
-                        this.stopVolumeLogging = false;
-                    }
-                } catch (Exception e) {
-                    if (!this.stopVolumeLogging) {
-                        BrewServer.LOG.log(Level.SEVERE,
-                            "Could not update the volume reading from OWFS");
-                        this.stopVolumeLogging = true;
-                    }
-                    BrewServer.LOG.info("Reconnecting OWFS");
-                    LaunchControl.setupOWFS();
-
-                    return BigDecimal.ZERO;
+            BigDecimal pinValue = null;
+            // The I2C scanner has already oversampled its channel
+            int reads = Math.max(1, AnalogFilter.OVERSAMPLE);
+            if (volumeAIN == -1 && volumeAddress == null) {
+                reads = 1;
+            }
+            for (int i = reads; i > 0; i--) {
+                BigDecimal sample = readVolumeInput();
+                if (sample == null) {
+                    break;
                 }
-
-            } else {
+                pinValue = sample;
+                volumeFilter.sample(sample.doubleValue());
+            }
+            if (pinValue == null) {
                 return BigDecimal.ZERO;
             }
+            double reading = volumeFilter.update();
 
-            // Are we outside of the known range?
-            BigDecimal curKey = null, prevKey = null;
-            BigDecimal curValue = null, prevValue = null;
-            SortedSet<BigDecimal> keys = null;
-            try {
-                keys = Collections.synchronizedSortedSet(
-                    new TreeSet<>(volumeBase.keySet()));
-            } catch (NullPointerException npe) {
+            VolumeCalibration calibration = this.volumeCalibration;
+            if (calibration == null) {
                 // No VolumeBase setup, so we're probably calibrating
                 return pinValue;
-            } catch (Exception e) {
-                BrewServer.LOG.log(Level.SEVERE,
-                    "Uncaught exception when creating the volume set", e);
-                System.exit(-1);
             }
 
-            BigDecimal tVolume = null;
-
-            try  {
-                for (BigDecimal key: keys) {
-                    if (prevKey == null) {
-                        prevKey = key;
-                        prevValue = volumeBase.get(key);
-                        continue;
-                    } else if (curKey != null) {
-                        prevKey = curKey;
-                        prevValue = curValue;
-                    }
+            this.rawVolumeValue = toVolume(calibration, volumeFilter.getRaw());
+            double volume = toVolume(calibration, reading);
+            if (volume != this.currentVolumeValue) {
+                this.currentVolumeValue = volume;
+                this.currentVolume = new BigDecimal(volume,
+                        MathContext.DECIMAL32);
+                LaunchControl.statusChanged();
+            }
 
-                    curKey = key;
-                    curValue = volumeBase.get(key);
-
-                    if (pinValue.compareTo(prevValue) >= 0
-                            && pinValue.compareTo(curValue) <= 0) {
-                        // We have a set encompassing the values!
-                        // assume it's linear
-                        BigDecimal volRange = curKey.subtract(prevKey);
-                        BigDecimal readingRange = curValue.subtract(prevValue);
-                        BigDecimal ratio = MathUtil.divide(pinValue.subtract(prevValue),readingRange);
-                        BigDecimal volDiff = ratio.multiply(volRange);
-                        tVolume = volDiff.add(prevKey);
-                    }
+            return pinValue;
+        } catch (RuntimeException | IOException e) {
+            e.printStackTrace();
+        }
+        return BigDecimal.ZERO;
+    }
 
+    /**
+     * @return A reading of the volume input, or null if there's no input or
+     *  it couldn't be read.
+     * @throws IOException If the analogue pin couldn't be read.
+     */
+    private BigDecimal readVolumeInput() throws IOException {
+        if (volumeAIN != -1) {
+            return new BigDecimal(volumePin.readValue());
+        } else if (volumeAddress != null && volumeOffset != null) {
+            try {
+                BigDecimal pinValue = new BigDecimal(
+                    LaunchControl.readOWFSPath(
+                        volumeAddress + "/volt." + volumeOffset));
+                if (this.stopVolumeLogging) {
+                    BrewServer.LOG.log(Level.SEVERE,
+                        "Recovered volume level reading for " + this.name);
+                    this.stopVolumeLogging = false;
                 }
-
-                if (tVolume == null && curKey != null) {
-                    // Try to extrapolate
-                    BigDecimal volRange = curKey.subtract(prevKey);
-                    BigDecimal readingRange = curValue.subtract(prevValue);
-                    BigDecimal ratio = MathUtil.divide(pinValue.subtract(prevValue),readingRange);
-                    BigDecimal volDiff = ratio.multiply(volRange);
-                    tVolume = volDiff.add(prevKey);
+                return pinValue;
+            } catch (Exception e) {
+                if (!this.stopVolumeLogging) {
+                    BrewServer.LOG.log(Level.SEVERE,
+                        "Could not update the volume reading from OWFS");
+                    this.stopVolumeLogging = true;
                 }
-
-            } catch (NoSuchElementException e) {
-                // no more elements
-                BrewServer.LOG.info("Finished reading Volume Elements");
+                return null;
             }
-
-            if (tVolume == null) {
-                // try to assume the value
-                this.currentVolume = pinValue.subtract(volumeConstant)
-                        .multiply(volumeMultiplier);
-            } else {
-                this.currentVolume = tVolume;
+        } else if (i2cDevice != null && i2cChannel > -1) {
+            // The latest value the scanner read, it doesn't wait on the bus
+            float value = I2CScanner.forDevice(i2cDevice)
+                    .getValue(i2cChannel);
+            if (Float.isNaN(value)) {
+                return null;
             }
+            return new BigDecimal(value);
+        }
+        return null;
+    }
 
-            this.currentVolume = this.currentVolume.multiply(this.gravity);
-
-            return pinValue;
-        } catch (RuntimeException | IOException e) {
-            e.printStackTrace();
+    /**
+     * @param calibration The compiled volume base.
+     * @param reading The input reading.
+     * @return The volume at the reading, corrected for gravity.
+     */
+    private double toVolume(final VolumeCalibration calibration,
+            final double reading) {
+        double volume;
+        if (calibration.size() < 2) {
+            // try to assume the value
+            volume = new BigDecimal(reading).subtract(volumeConstant)
+                    .multiply(volumeMultiplier).doubleValue();
+        } else {
+            volume = calibration.getVolume(reading);
         }
-        return BigDecimal.ZERO;
+        return volume * this.gravity.doubleValue();
     }
 
     /**
@@ -816,6 +977,9 @@ public final class Temp implements Runnable, Comparable<Temp> {
                     if (this.volumePin != null) {
                         total = total.add(new BigDecimal(
                             this.volumePin.readValue()));
+                    } else if (this.i2cDevice != null) {
+                        total = total.add(new BigDecimal(
+                            this.i2cDevice.read(this.i2cChannel)));
                     } else {
                         try {
                             total = total.add(new BigDecimal(
@@ -868,6 +1032,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
             this.volumeBase = new ConcurrentHashMap<>();
         }
         this.volumeBase.put(key, value);
+        this.volumeCalibration = VolumeCalibration.compile(volumeBase);
     }
 
     /**
@@ -882,6 +1047,31 @@ public final class Temp implements Runnable, Comparable<Temp> {
         return BigDecimal.ONE.negate();
     }
 
+    /**
+     * @return The volume at the unfiltered reading, NaN if it hasn't been
+     *  read.
+     */
+    public double getRawVolume() {
+        if (this.volumeMeasurement) {
+            return this.rawVolumeValue;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @return The filtered volume, for the recorder.
+     */
+    public Sampled getVolumeSeries() {
+        return this.volumeSeries;
+    }
+
+    /**
+     * @return The unfiltered volume, for the recorder.
+     */
+    public Sampled getRawVolumeSeries() {
+        return this.rawVolumeSeries;
+    }
+
     /**
      * @return The current volume unit
      */
@@ -941,6 +1131,7 @@ public final class Temp implements Runnable, Comparable<Temp> {
         statusMap.put("scale", getScale());
         statusMap.put("cutoff", getCutoff());
         statusMap.put("calibration", getCalibration());
+        statusMap.put(POLL_INTERVAL, getPollInterval());
         statusMap.put("gravity", gravity);
         statusMap.put("position", this.position);
         statusMap.put("size", this.size);
@@ -954,9 +1145,10 @@ public final class Temp implements Runnable, Comparable<Temp> {
 
     public void shutdown() {
         // Graceful shutdown.
-        keepalive = false;
+        SensorScheduler.getInstance().remove(this);
+        OneWireBus.getInstance().remove(this);
+        OwfsBus.getInstance().remove(this);
         BrewServer.LOG.warning(this.getName() + " is shutting down");
-        Thread.currentThread().interrupt();
     }
 
     public void setCalibration(String calibration) {
@@ -1075,6 +1267,21 @@ public final class Temp implements Runnable, Comparable<Temp> {
         this.position = newPos;
     }
 
+    @Override
+    public String getSeriesName() {
+        return getProbe();
+    }
+
+    @Override
+    public String getSeriesType() {
+        return Sampled.TEMP;
+    }
+
+    @Override
+    public double getSampleValue() {
+        return getTemp().doubleValue();
+    }
+
     @Override
     public int compareTo(@Nonnull final Temp o) {
         if (o.getPosition() == this.position) {
@@ -1152,7 +1359,11 @@ public final class Temp implements Runnable, Comparable<Temp> {
     public boolean setupVolumeI2C(I2CDevice i2c_device, String i2c_channel, String volumeUnits) {
         this.i2cDevice = i2c_device;
         this.i2cChannel = Integer.parseInt(i2c_channel);
+        this.volumeFilter.reset();
         this.setVolumeUnit(volumeUnits);
+        if (i2cDevice != null) {
+            this.volumeMeasurement = true;
+        }
         return (i2cDevice != null);
     }
 }
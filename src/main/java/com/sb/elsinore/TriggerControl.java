@@ -273,12 +273,14 @@ public class TriggerControl implements Runnable {
                 // Do stuff with the active step
                 currentTrigger.waitForTrigger();
                 currentTrigger.deactivate(false);
+                LaunchControl.statusChanged();
                 currentTriggerPosition += 1;
                 if (currentTriggerPosition >= this.triggerCount()) {
                     return;
                 }
                 currentTrigger = getTrigger(currentTriggerPosition);
                 currentTrigger.setActive();
+                LaunchControl.statusChanged();
             }
             try {
                 // Sleep for 10 seconds
@@ -315,6 +317,7 @@ public class TriggerControl implements Runnable {
         }
 
         triggerEntry.setActive();
+        LaunchControl.statusChanged();
         return true;
     }
 
@@ -367,6 +370,7 @@ public class TriggerControl implements Runnable {
             }
         }
 
+        LaunchControl.statusChanged();
         return true;
     }
 
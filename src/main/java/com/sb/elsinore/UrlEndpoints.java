@@ -4,6 +4,7 @@ import ca.strangebrew.recipe.Recipe;
 import com.sb.common.CollectionsUtil;
 import com.sb.common.SBStringUtils;
 import com.sb.elsinore.devices.I2CDevice;
+import com.sb.elsinore.devices.I2CScanner;
 import com.sb.elsinore.html.*;
 import com.sb.elsinore.notificiations.Notifications;
 import jGPIO.InvalidGPIOException;
@@ -133,7 +134,7 @@ public class UrlEndpoints {
      * Parse the parameters to update the MashProfile.
      * @return True if the profile is updated successfully.
      */
-    @UrlEndpoint(url = "/triggerprofile")
+    @UrlEndpoint(url = "/triggerprofile", changesStatus = true)
     public final Response updateTriggerProfile() {
         String tempProbe = parameters.get("tempprobe");
         if (tempProbe == null) {
@@ -157,7 +158,7 @@ public class UrlEndpoints {
      * Reorder the triggers steps.
      * @return The Response object.
      */
-    @UrlEndpoint(url = "/reordertriggers")
+    @UrlEndpoint(url = "/reordertriggers", changesStatus = true)
     public final Response reorderMashProfile() {
         Map<String, String> params = this.parameters;
         JSONObject usage = new JSONObject();
@@ -206,7 +207,7 @@ public class UrlEndpoints {
      * Delete the specified trigger step.
      * @return The Response.
      */
-    @UrlEndpoint(url = "/deltriggerstep")
+    @UrlEndpoint(url = "/deltriggerstep", changesStatus = true)
     public Response delTriggerStep() {
         Map<String, String> params = this.parameters;
         // Parse the response
@@ -256,7 +257,7 @@ public class UrlEndpoints {
      * Toggle the state of the mash profile on/off.
      * @return True if set, false if there's an error
      */
-    @UrlEndpoint(url = "/toggleTrigger")
+    @UrlEndpoint(url = "/toggleTrigger", changesStatus = true)
     public Response toggleTriggerProfile() {
 
         String tempProbe;
@@ -336,7 +337,7 @@ public class UrlEndpoints {
      * @return True is success, false if failure.
      */
     @SuppressWarnings("ConstantConditions")
-    @UrlEndpoint(url = "/editdevice")
+    @UrlEndpoint(url = "/editdevice", changesStatus = true)
     public Response editVessel() {
         final Map<String, String> params = this.parameters;
         String auxpin = "", newName = "", heatgpio = "";
@@ -431,6 +432,15 @@ public class UrlEndpoints {
                 BrewServer.LOG.warning("Couldn't parse: " + parms.get("size") + " as an int.");
             }
         }
+
+        long pollInterval = -1;
+        if (parms.containsKey(Temp.POLL_INTERVAL)) {
+            try {
+                pollInterval = Long.parseLong(parms.get(Temp.POLL_INTERVAL));
+            } catch (NumberFormatException nfe) {
+                BrewServer.LOG.warning("Couldn't parse: " + parms.get(Temp.POLL_INTERVAL) + " as a long.");
+            }
+        }
         if (inputUnit.equals("")) {
             BrewServer.LOG.warning("No Valid input unit");
         }
@@ -464,6 +474,7 @@ public class UrlEndpoints {
             tProbe.setCalibration(calibration);
         }
         tProbe.setSize(size);
+        tProbe.setPollInterval(pollInterval);
 
         if (tPID != null && !newName.equals("")) {
             tPID.getTemp().setName(newName);
@@ -515,7 +526,7 @@ public class UrlEndpoints {
      *
      * @return True if added ok
      */
-    @UrlEndpoint(url = "/addtimer")
+    @UrlEndpoint(url = "/addtimer", changesStatus = true)
     public final Response addTimer() {
         String newName = "";
         String inputUnit = "";
@@ -582,7 +593,7 @@ public class UrlEndpoints {
      * 
      * @return True if added ok
      */
-    @UrlEndpoint(url = "/addswitch")
+    @UrlEndpoint(url = "/addswitch", changesStatus = true)
     public Response addSwitch() {
         String newName = "", gpio = "";
         String inputUnit = "";
@@ -661,7 +672,7 @@ public class UrlEndpoints {
      * @return True if success, false if failure
      */
     @SuppressWarnings("unchecked")
-    @UrlEndpoint(url = "/updatepid")
+    @UrlEndpoint(url = "/updatepid", changesStatus = true)
     public Response updatePID() {
         String temp, mode = "off";
         BigDecimal dTemp, duty = new BigDecimal(0),
@@ -671,7 +682,8 @@ public class UrlEndpoints {
                 max = new BigDecimal(0), time = new BigDecimal(0),
                 coolcycle = new BigDecimal(0), coolp= new BigDecimal(0),
                 cooli = new BigDecimal(0), coold = new BigDecimal(0),
-                cooldelay = new BigDecimal(0), cycle = new BigDecimal(0);
+                cooldelay = new BigDecimal(0), cycle = new BigDecimal(0),
+                heatslot = null;
 
         JSONObject sub_usage = new JSONObject();
         Map<String, String> parms = ParseParams(parameters);
@@ -729,6 +741,22 @@ public class UrlEndpoints {
             }
         }
 
+        sub_usage.put("heatslottime",
+                "The heat burst fire slot time in seconds, 0 to switch once per cycle");
+        if (parms.containsKey("heatslottime")) {
+            temp = parms.get("heatslottime");
+            try {
+                dTemp = new BigDecimal(temp.replace(",", "."));
+                heatslot = dTemp;
+                BrewServer.LOG.info("Slot time: " + heatslot);
+            } catch (NumberFormatException nfe) {
+                if (tPID.hasValidHeater()) {
+                    BrewServer.LOG.warning("Bad slot");
+                    errorValue = true;
+                }
+            }
+        }
+
         sub_usage.put("heatp", "The new proportional value to set");
         if (parms.containsKey("heatp")) {
             temp = parms.get("heatp");
@@ -926,6 +954,9 @@ public class UrlEndpoints {
         } else {
             BrewServer.LOG.info(mode + ":" + duty + ":" + heatcycle + ":"
                     + setpoint + ":" + heatp + ":" + heati + ":" + heatd);
+            if (heatslot != null) {
+                tPID.setHeatSlot(heatslot);
+            }
             tPID.updateValues(mode, duty, heatcycle, setpoint, heatp, heati, heatd);
             tPID.setCoolCycle(coolcycle);
             tPID.setCoolP(coolp);
@@ -946,7 +977,7 @@ public class UrlEndpoints {
      * Add a new data point for the volume reading.
      * @return A NanoHTTPD response
      */
-    @UrlEndpoint(url = "/addvolpoint")
+    @UrlEndpoint(url = "/addvolpoint", changesStatus = true)
     public Response addVolumePoint() {
         JSONObject usage = new JSONObject();
         Map<String, String> parms = ParseParams(this.parameters);
@@ -1099,7 +1130,7 @@ public class UrlEndpoints {
      * @return True if success, false if failure
      */
     @SuppressWarnings("unchecked")
-    @UrlEndpoint(url = "/setbreweryname")
+    @UrlEndpoint(url = "/setbreweryname", changesStatus = true)
     public Response updateBreweryName() {
 
         JSONObject usage = new JSONObject();
@@ -1172,7 +1203,7 @@ public class UrlEndpoints {
      * Update the switch order.
      * @return A HTTP Response
      */
-    @UrlEndpoint(url = "/updateswitchorder")
+    @UrlEndpoint(url = "/updateswitchorder", changesStatus = true)
     public Response updateSwitchOrder() {
         Map<String, String> params = ParseParams(this.parameters);
         JSONObject usage = new JSONObject();
@@ -1212,7 +1243,7 @@ public class UrlEndpoints {
      * Delete a switch.
      * @return a reponse
      */
-    @UrlEndpoint(url = "/deleteswitch")
+    @UrlEndpoint(url = "/deleteswitch", changesStatus = true)
     public Response deleteSwitch() {
         Map<String, String> params = ParseParams(this.parameters);
         JSONObject usage = new JSONObject();
@@ -1233,7 +1264,7 @@ public class UrlEndpoints {
      * Update the timer order.
      * @return A HTTP Response
      */
-    @UrlEndpoint(url = "/updatetimerorder")
+    @UrlEndpoint(url = "/updatetimerorder", changesStatus = true)
     public Response updateTimerOrder() {
         Map<String, String> params = ParseParams(this.parameters);
         JSONObject usage = new JSONObject();
@@ -1275,7 +1306,7 @@ public class UrlEndpoints {
      * Delete a timer.
      * @return a response
      */
-    @UrlEndpoint(url = "/deletetimer")
+    @UrlEndpoint(url = "/deletetimer", changesStatus = true)
     public Response deleteTimer() {
         Map<String, String> params = ParseParams(this.parameters);
         JSONObject usage = new JSONObject();
@@ -1292,7 +1323,7 @@ public class UrlEndpoints {
                 usage.toJSONString());
     }
 
-    @UrlEndpoint(url = "/setscale")
+    @UrlEndpoint(url = "/setscale", changesStatus = true)
     public Response setScale() {
         Map<String, String> parms = this.parameters;
         Map<String, String> params = ParseParams(parms);
@@ -1311,7 +1342,7 @@ public class UrlEndpoints {
                 usage.toJSONString());
     }
 
-    @UrlEndpoint(url = "/toggledevice")
+    @UrlEndpoint(url = "/toggledevice", changesStatus = true)
     public Response toggleDevice() {
         Map<String, String> parms = this.parameters;
         Map<String, String> params = ParseParams(parms);
@@ -1341,6 +1372,175 @@ public class UrlEndpoints {
         usage.put("recorderDiff", "The tolerance to record data changes.");
         usage.put("recorderTime",
                 "The time between sampling the data for recording.");
+        usage.put(StatusRecorder.RECORDER_FLUSH,
+                "The time between flushing the recorded data to the files.");
+        usage.put(StatusRecorder.RECORDER_SYNC,
+                "on to force the recorded data to disk on every flush.");
+        usage.put(BrewServer.SERVER_THREADS,
+                "The maximum number of web server request threads.");
+        usage.put(BrewServer.SERVER_QUEUE,
+                "The number of connections that can wait for a thread.");
+        usage.put(BrewServer.SERVER_STREAMS,
+                "The maximum number of open status event streams.");
+        usage.put(SensorScheduler.SENSOR_THREADS,
+                "The number of sensor polling threads for each bus.");
+        usage.put(OutputScheduler.OUTPUT_STAGGER,
+                "on to offset the cycles of each output.");
+        usage.put(OwfsBus.OWFS_UNCACHED,
+                "on to read OWFS devices through the uncached tree.");
+        usage.put(OwfsBus.OWFS_SIMULTANEOUS,
+                "on to convert every OWFS temperature probe at once.");
+        usage.put(I2CScanner.I2C_SCAN_INTERVAL,
+                "Milliseconds between reads of the I2C converter channels.");
+        usage.put(I2CScanner.I2C_CONTINUOUS,
+                "on to leave the I2C converters converting continuously.");
+        usage.put(AnalogFilter.FILTER_OVERSAMPLE,
+                "Readings averaged for each volume and pH sample.");
+        usage.put(AnalogFilter.FILTER_MEDIAN,
+                "Samples the volume and pH median is taken over, up to "
+                + AnalogFilter.MAX_MEDIAN + ".");
+        usage.put(AnalogFilter.FILTER_SMOOTHING,
+                "Weight of the newest volume and pH sample, 1 for none.");
+
+        // The server pool settings are used when the server is next started
+        if (params.containsKey(BrewServer.SERVER_THREADS)) {
+            try {
+                BrewServer.THREADS = Integer.parseInt(
+                        params.get(BrewServer.SERVER_THREADS));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse Server threads as an integer\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        if (params.containsKey(BrewServer.SERVER_QUEUE)) {
+            try {
+                BrewServer.QUEUE_SIZE = Integer.parseInt(
+                        params.get(BrewServer.SERVER_QUEUE));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse Server queue as an integer\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        if (params.containsKey(BrewServer.SERVER_STREAMS)) {
+            try {
+                BrewServer.STREAMS = Integer.parseInt(
+                        params.get(BrewServer.SERVER_STREAMS));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse Server streams as an integer\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        // Used when the sensor scheduler is next started
+        if (params.containsKey(SensorScheduler.SENSOR_THREADS)) {
+            try {
+                SensorScheduler.THREADS = Integer.parseInt(
+                        params.get(SensorScheduler.SENSOR_THREADS));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse Sensor threads as an integer\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        // Used when the output scheduler is next started
+        if (params.containsKey(OutputScheduler.OUTPUT_STAGGER)) {
+            OutputScheduler.STAGGER =
+                    params.get(OutputScheduler.OUTPUT_STAGGER).equals("on");
+        }
+
+        // Used from the next OWFS read
+        if (params.containsKey(OwfsBus.OWFS_UNCACHED)) {
+            OwfsBus.UNCACHED =
+                    params.get(OwfsBus.OWFS_UNCACHED).equals("on");
+        }
+
+        if (params.containsKey(OwfsBus.OWFS_SIMULTANEOUS)) {
+            OwfsBus.SIMULTANEOUS =
+                    params.get(OwfsBus.OWFS_SIMULTANEOUS).equals("on");
+        }
+
+        // Used from the next scan
+        if (params.containsKey(I2CScanner.I2C_SCAN_INTERVAL)) {
+            try {
+                I2CScanner.SCAN_INTERVAL = Long.parseLong(
+                        params.get(I2CScanner.I2C_SCAN_INTERVAL));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse I2C scan interval as a number\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        if (params.containsKey(I2CScanner.I2C_CONTINUOUS)) {
+            I2CScanner.CONTINUOUS =
+                    params.get(I2CScanner.I2C_CONTINUOUS).equals("on");
+        }
+
+        // Used from the next reading
+        if (params.containsKey(AnalogFilter.FILTER_OVERSAMPLE)) {
+            try {
+                AnalogFilter.OVERSAMPLE = Integer.parseInt(
+                        params.get(AnalogFilter.FILTER_OVERSAMPLE));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse filter oversample as a number\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        if (params.containsKey(AnalogFilter.FILTER_MEDIAN)) {
+            try {
+                AnalogFilter.MEDIAN = Integer.parseInt(
+                        params.get(AnalogFilter.FILTER_MEDIAN));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse filter median as a number\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        if (params.containsKey(AnalogFilter.FILTER_SMOOTHING)) {
+            try {
+                AnalogFilter.SMOOTHING = Double.parseDouble(
+                        params.get(AnalogFilter.FILTER_SMOOTHING));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse filter smoothing as a number\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        // The writer settings are used when the recorder is next started
+        if (params.containsKey(StatusRecorder.RECORDER_FLUSH)) {
+            try {
+                StatusRecorder.FLUSH_INTERVAL = Long.parseLong(
+                        params.get(StatusRecorder.RECORDER_FLUSH));
+            } catch (Exception e) {
+                LaunchControl.setMessage(
+                    "Failed to parse Recorder flush as a long\n"
+                            + e.getMessage()
+                            + LaunchControl.getMessage());
+            }
+        }
+
+        if (params.containsKey(StatusRecorder.RECORDER_SYNC)) {
+            StatusRecorder.SYNC_ON_FLUSH =
+                    params.get(StatusRecorder.RECORDER_SYNC).equals("on");
+        }
 
         if (params.containsKey("recorder")) {
             boolean recorderOn = params.get("recorder").equals("on");
@@ -1390,7 +1590,7 @@ public class UrlEndpoints {
      * Set the gravity for the specified device.
      * @return A response
      */
-    @UrlEndpoint(url = "/setgravity")
+    @UrlEndpoint(url = "/setgravity", changesStatus = true)
     public final Response setGravity() {
         Map<String, String> parms = this.parameters;
         Map<String, String> params = ParseParams(parms);
@@ -1449,7 +1649,7 @@ public class UrlEndpoints {
                 result);
     }
 
-    @UrlEndpoint(url = "/lockpage")
+    @UrlEndpoint(url = "/lockpage", changesStatus = true)
     public Response lockPage() {
         LaunchControl.pageLock = true;
         return new NanoHTTPD.Response(Status.OK,
@@ -1457,7 +1657,7 @@ public class UrlEndpoints {
                 "{status: \"locked\"}");
     }
 
-    @UrlEndpoint(url = "/unlockpage")
+    @UrlEndpoint(url = "/unlockpage", changesStatus = true)
     public Response unlockPage() {
         LaunchControl.listOneWireSys(false);
         LaunchControl.pageLock = false;
@@ -1489,7 +1689,7 @@ public class UrlEndpoints {
                 "{image: \"unavailable\"}");
     }
 
-    @UrlEndpoint(url = "/updateswitch")
+    @UrlEndpoint(url = "/updateswitch", changesStatus = true)
     public Response updateSwitch() {
 
         if (parameters.containsKey("toggle")) {
@@ -1519,7 +1719,7 @@ public class UrlEndpoints {
                         + " provided.");
     }
 
-    @UrlEndpoint(url = "/toggleaux")
+    @UrlEndpoint(url = "/toggleaux", changesStatus = true)
     public Response toggleAux() {
         JSONObject usage = new JSONObject();
         if (parameters.containsKey("toggle")) {
@@ -1540,7 +1740,7 @@ public class UrlEndpoints {
         return new Response(usage.toJSONString());
     }
 
-    @UrlEndpoint(url = "/updateday")
+    @UrlEndpoint(url = "/updateday", changesStatus = true)
     public Response updateDay() {
         // we're storing the data for the brew day
         String tempDateStamp;
@@ -1654,6 +1854,7 @@ public class UrlEndpoints {
             phSensor = new PhSensor();
             phSensor.setName(localParams.get("name"));
             LaunchControl.phSensorList.add(phSensor);
+            SensorScheduler.getInstance().add(phSensor);
         }
 
         // Update the pH Sensor
@@ -1728,7 +1929,7 @@ public class UrlEndpoints {
     }
 
     /**
-     * Update the specified pH Sensor reading.
+     * Get the latest reading of the specified pH Sensor.
      * @return a Response with the pH Sensor value.
      */
     @UrlEndpoint(url = "/readphsensor")
@@ -1740,7 +1941,7 @@ public class UrlEndpoints {
         if (phSensor == null) {
             result = "Couldn't find phSensor";
         } else {
-            result = phSensor.calcPhValue().toPlainString();
+            result = phSensor.getPhReading().toPlainString();
         }
         // return the value
         return new Response(Status.OK, MIME_HTML, result);
@@ -1806,7 +2007,7 @@ public class UrlEndpoints {
      * Add a new Trigger to the incoming tempProbe object.
      * @return A response for the user.
      */
-    @UrlEndpoint(url = "/addtriggertotemp")
+    @UrlEndpoint(url = "/addtriggertotemp", changesStatus = true)
     public final Response addNewTrigger() {
         Status status = Status.OK;
         int position = Integer.parseInt(parameters.get("position"));
@@ -1822,7 +2023,7 @@ public class UrlEndpoints {
      * Update the trigger.
      * @return The Edit form.
      */
-    @UrlEndpoint(url = "/updatetrigger")
+    @UrlEndpoint(url = "/updatetrigger", changesStatus = true)
     public final Response updateTrigger() {
         Status status = Status.OK;
         int position = Integer.parseInt(parameters.get("position"));
@@ -1837,7 +2038,7 @@ public class UrlEndpoints {
      * Reorder the devices in the UI.
      * @return A response object.
      */
-    @UrlEndpoint(url = "/reorderprobes")
+    @UrlEndpoint(url = "/reorderprobes", changesStatus = true)
     public final Response reorderProbes() {
         Map<String, String> params = this.parameters;
         JSONObject usage = new JSONObject();
@@ -1869,7 +2070,7 @@ public class UrlEndpoints {
     }
 
     @SuppressWarnings("unchecked")
-    @UrlEndpoint(url = "/uploadbeerxml")
+    @UrlEndpoint(url = "/uploadbeerxml", changesStatus = true)
     public Response uploadBeerXML() {
 
         final Map<String, String> files = this.files;
@@ -1959,7 +2160,7 @@ public class UrlEndpoints {
         return new Response(Status.OK, MIME_HTML, html.toHtml());
     }
 
-    @UrlEndpoint(url="/setprofile")
+    @UrlEndpoint(url = "/setprofile", changesStatus = true)
     public Response setProfile() {
         String profile = parameters.get("profile");
         if (profile == null || profile.equals("")) {
@@ -2047,7 +2248,7 @@ public class UrlEndpoints {
         return new Response("Recorder not enabled");
     }
 
-    @UrlEndpoint(url="/deleteprobe")
+    @UrlEndpoint(url = "/deleteprobe", changesStatus = true)
     public Response deleteTempProbe() {
         String probeName = parameters.get("probe");
         Status status = Status.OK;
@@ -2094,4 +2295,133 @@ public class UrlEndpoints {
 
         return new Response("Shutdown called");
     }
+
+    @UrlEndpoint(url = "/clearStatus")
+    public Response clearStatus() {
+        LaunchControl.setMessage("");
+        return new NanoHTTPD.Response(Status.OK, MIME_HTML,
+                "Status Cleared");
+    }
+
+    @UrlEndpoint(url = "/addsystem", changesStatus = true)
+    public Response addSystemTemp() {
+        LaunchControl.addSystemTemp();
+        return new NanoHTTPD.Response(Status.OK, MIME_HTML,
+                "Added system temperature");
+    }
+
+    @UrlEndpoint(url = "/delsystem", changesStatus = true)
+    public Response delSystemTemp() {
+        LaunchControl.delSystemTemp();
+        return new NanoHTTPD.Response(Status.OK, MIME_HTML,
+                "Deleted system temperature");
+    }
+
+    @UrlEndpoint(url = "/getstatus")
+    public Response getStatus() {
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                LaunchControl.getStatusSnapshot().getBytes());
+    }
+
+    /**
+     * Stream the status as Server-Sent Events, the full status first and
+     * then the changes as they happen.
+     * @return The event stream response.
+     */
+    @UrlEndpoint(url = "/events")
+    public Response getEvents() {
+        Response response = new NanoHTTPD.Response(Status.OK,
+                "text/event-stream",
+                StatusEvents.getInstance().subscribe());
+        response.addHeader("Cache-Control", "no-cache");
+        response.setChunkedTransfer(true);
+        response.setStreaming(true);
+        return response;
+    }
+
+    @UrlEndpoint(url = "/getsystemsettings")
+    public Response getSystemSettings() {
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                LaunchControl.getSystemStatus());
+    }
+
+    @UrlEndpoint(url = "/graph")
+    public Response getGraphPage() {
+        return BrewServer.serveFile("/templates/static/graph/graph.html",
+                this.header, rootDir);
+    }
+
+    @UrlEndpoint(url = "/checkgit")
+    public Response checkGit() {
+        LaunchControl.checkForUpdates();
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                "{Status:'OK'}");
+    }
+
+    @UrlEndpoint(url = "/restartupdate")
+    public Response restartUpdate() {
+        LaunchControl.updateFromGit();
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                "{Status:'OK'}");
+    }
+
+    @UrlEndpoint(url = "/settheme")
+    public Response setTheme() {
+        String newTheme = parameters.get("name");
+
+        if (newTheme == null) {
+            return new NanoHTTPD.Response(Status.BAD_REQUEST,
+                    MIME_TYPES.get("json"),
+                    "{Status:'No name provided'}");
+        }
+
+        String fileName = "/logos/" + newTheme + ".ico";
+        if (!(new File(rootDir, fileName).exists())) {
+            // It doesn't exist
+            LaunchControl.setMessage("Favicon for the new theme: "
+                    + newTheme + ", doesn't exist."
+                    + " Please add: " + fileName + " and try again");
+            return new NanoHTTPD.Response(Status.BAD_REQUEST,
+                    MIME_TYPES.get("json"),
+                    "{Status:'Favicon doesn\'t exist'}");
+        }
+
+        fileName = "/logos/" + newTheme + ".gif";
+        if (!(new File(rootDir, fileName).exists())) {
+            // It doesn't exist
+            LaunchControl.setMessage("Brewry image for the new theme: "
+                    + newTheme + ", doesn't exist."
+                    + " Please add: " + fileName + " and try again");
+            return new NanoHTTPD.Response(Status.BAD_REQUEST,
+                    MIME_TYPES.get("json"),
+                    "{Status:'Brewery Image doesn\'t exist'}");
+        }
+
+        LaunchControl.theme = newTheme;
+        return new NanoHTTPD.Response(Status.OK, MIME_TYPES.get("json"),
+                "{Status:'OK'}");
+    }
+
+    @UrlEndpoint(url = "/favicon.ico")
+    public Response getFavicon() {
+        String uri = "/favicon.ico";
+        // Has the favicon been overridden?
+        // Check to see if there's a theme set.
+        if (LaunchControl.theme != null
+                && !LaunchControl.theme.equals("")) {
+            if (new File(rootDir,
+                    "/logos/" + LaunchControl.theme + ".ico").exists()) {
+                return BrewServer.serveFile("/logos/" + LaunchControl.theme + ".ico",
+                        this.header, rootDir);
+            }
+        }
+
+        return BrewServer.serveFile(uri, this.header, rootDir);
+    }
+
+    @UrlEndpoint(url = "/stop")
+    public Response stop() {
+        System.exit(128);
+        return new Response("Stopping");
+    }
 }
@@ -0,0 +1,147 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.NanoHTTPD.Response;
+import com.sb.elsinore.annotations.UrlEndpoint;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Route table for the {@link UrlEndpoint} methods on {@link UrlEndpoints}.
+ * The endpoint class is scanned once when the router is created, every
+ * annotated method is turned into a {@link MethodHandle} and stored against
+ * its lower case URL. Dispatching a request is then a single map lookup.
+ */
+public final class UrlRouter {
+
+    /**
+     * The signature every handle is adapted to.
+     */
+    private static final MethodType HANDLER_TYPE =
+            MethodType.methodType(Response.class, UrlEndpoints.class);
+
+    /**
+     * Lower case URL to the endpoint handle.
+     */
+    private final Map<String, MethodHandle> routes;
+    /**
+     * Lower case URLs of the endpoints that can change the status.
+     */
+    private final Set<String> statusRoutes;
+
+    /**
+     * Build the route table for the given endpoint class.
+     * @param endpointClass The class holding the {@link UrlEndpoint} methods.
+     */
+    public UrlRouter(final Class<? extends UrlEndpoints> endpointClass) {
+        Map<String, MethodHandle> routeMap = new HashMap<>();
+        Set<String> statusRouteSet = new HashSet<>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+        for (java.lang.reflect.Method m : endpointClass.getMethods()) {
+            UrlEndpoint urlMethod = m.getAnnotation(UrlEndpoint.class);
+            if (urlMethod == null) {
+                continue;
+            }
+
+            if (m.getParameterTypes().length != 0
+                    || !Response.class.isAssignableFrom(m.getReturnType())) {
+                BrewServer.LOG.warning("Skipping endpoint " + m.getName()
+                        + ", it must take no arguments and return a Response");
+                continue;
+            }
+
+            String key = normalize(urlMethod.url());
+            try {
+                MethodHandle handle = lookup.unreflect(m).asType(HANDLER_TYPE);
+                if (routeMap.put(key, handle) != null) {
+                    BrewServer.LOG.warning("Duplicate endpoint for "
+                            + urlMethod.url() + ", using " + m.getName());
+                }
+                if (urlMethod.changesStatus()) {
+                    statusRouteSet.add(key);
+                } else {
+                    statusRouteSet.remove(key);
+                }
+            } catch (IllegalAccessException e) {
+                BrewServer.LOG.warning("Couldn't access endpoint "
+                        + m.getName() + ": " + e.getMessage());
+            }
+        }
+
+        this.routes = Collections.unmodifiableMap(routeMap);
+        this.statusRoutes = Collections.unmodifiableSet(statusRouteSet);
+        BrewServer.LOG.info("Registered " + routes.size() + " URL endpoints");
+    }
+
+    /**
+     * Check to see if the URL has a registered endpoint.
+     * @param uri The incoming URI.
+     * @return True if there is an endpoint for this URI.
+     */
+    public boolean hasRoute(final String uri) {
+        return uri != null && routes.containsKey(normalize(uri));
+    }
+
+    /**
+     * Check to see if the endpoint for this URI can change the status.
+     * @param uri The incoming URI.
+     * @return True if the endpoint is marked as changing the status.
+     */
+    public boolean changesStatus(final String uri) {
+        return uri != null && statusRoutes.contains(normalize(uri));
+    }
+
+    /**
+     * @return The set of registered (lower case) URLs.
+     */
+    public Set<String> getUrls() {
+        return routes.keySet();
+    }
+
+    /**
+     * Dispatch the request to the matching endpoint.
+     * @param uri The incoming URI.
+     * @param context The per request endpoint object, already populated
+     *                with the parameters, files, headers and root directory.
+     * @return The Response from the endpoint, or null if there is no
+     *         endpoint for this URI or the endpoint failed.
+     */
+    public Response route(final String uri, final UrlEndpoints context) {
+        if (uri == null) {
+            return null;
+        }
+
+        MethodHandle handle = routes.get(normalize(uri));
+        if (handle == null) {
+            return null;
+        }
+
+        try {
+            return (Response) handle.invokeExact(context);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            BrewServer.LOG.warning("Couldn't access URL: " + uri);
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Lower case the URI, this does not allocate if the URI is already lower
+     * case, which is the case for almost every request.
+     * @param uri The URI to normalize.
+     * @return The lower case URI.
+     */
+    private static String normalize(final String uri) {
+        return uri.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,113 @@
+package com.sb.elsinore;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The volume calibration points of a probe, compiled into arrays sorted by
+ * the reading with the slope of each segment worked out, so turning a
+ * reading into a volume is a binary search and doesn't allocate.
+ *
+ * Between two points the volume is interpolated along the line between
+ * them. Below the lowest reading the first segment is extended, above the
+ * highest the last is. Points with the same reading are averaged.
+ *
+ * A calibration is never changed once compiled, a new one is compiled when
+ * a point is added.
+ */
+public final class VolumeCalibration {
+
+    private final double[] readings;
+    private final double[] volumes;
+    /**
+     * The change in volume per unit of reading from each point to the next.
+     */
+    private final double[] slopes;
+
+    private VolumeCalibration(final double[] readings,
+            final double[] volumes) {
+        this.readings = readings;
+        this.volumes = volumes;
+        this.slopes = new double[Math.max(0, readings.length - 1)];
+        for (int i = 0; i < slopes.length; i++) {
+            slopes[i] = (volumes[i + 1] - volumes[i])
+                    / (readings[i + 1] - readings[i]);
+        }
+    }
+
+    /**
+     * Compile the calibration points.
+     * @param points The reading for each volume.
+     * @return The calibration.
+     */
+    public static VolumeCalibration compile(
+            final Map<BigDecimal, BigDecimal> points) {
+        int count = points.size();
+        double[] readings = new double[count];
+        double[] volumes = new double[count];
+        int size = 0;
+        for (Map.Entry<BigDecimal, BigDecimal> point : points.entrySet()) {
+            if (size == count) {
+                // Added to while we were copying
+                break;
+            }
+            double reading = point.getValue().doubleValue();
+            double volume = point.getKey().doubleValue();
+            // There are only ever a few points, insert them in order
+            int i = size;
+            while (i > 0 && readings[i - 1] > reading) {
+                readings[i] = readings[i - 1];
+                volumes[i] = volumes[i - 1];
+                i--;
+            }
+            readings[i] = reading;
+            volumes[i] = volume;
+            size++;
+        }
+
+        // Average the volumes of points with the same reading
+        int distinct = 0;
+        int same = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct > 0 && readings[distinct - 1] == readings[i]) {
+                same++;
+                volumes[distinct - 1] +=
+                        (volumes[i] - volumes[distinct - 1]) / same;
+                continue;
+            }
+            readings[distinct] = readings[i];
+            volumes[distinct] = volumes[i];
+            same = 1;
+            distinct++;
+        }
+        return new VolumeCalibration(Arrays.copyOf(readings, distinct),
+                Arrays.copyOf(volumes, distinct));
+    }
+
+    /**
+     * @return The number of distinct calibration points.
+     */
+    public int size() {
+        return readings.length;
+    }
+
+    /**
+     * @param reading The sensor reading.
+     * @return The volume at the reading, the only volume if there is only
+     *  one point, or NaN if there are none.
+     */
+    public double getVolume(final double reading) {
+        if (readings.length < 2) {
+            return readings.length == 0 ? Double.NaN : volumes[0];
+        }
+        int index = Arrays.binarySearch(readings, reading);
+        if (index < 0) {
+            // The point before the insertion point starts the segment
+            index = -index - 2;
+        }
+        int segment = Math.max(0, Math.min(index, slopes.length - 1));
+        return volumes[segment]
+                + (reading - readings[segment]) * slopes[segment];
+    }
+}
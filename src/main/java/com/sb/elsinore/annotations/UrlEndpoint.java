@@ -9,4 +9,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 public @interface UrlEndpoint {
     String url();
+
+    /**
+     * @return True if the endpoint can change the values in the status, so
+     *  the status is rebuilt after it runs.
+     */
+    boolean changesStatus() default false;
 }
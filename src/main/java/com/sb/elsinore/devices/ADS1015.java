@@ -1,6 +1,7 @@
 package com.sb.elsinore.devices;
 
 import com.sb.elsinore.BrewServer;
+import com.sun.jna.Native;
 
 /**
  * Read from an ADS1015 device on a specific channel
@@ -91,76 +92,186 @@ public int ADS1015_REG_POINTER_MASK        = (0x03);
     public int  ADS1015_REG_CONFIG_CQUE_NONE    =  0x0003;  // Disable the comparator and put ALERT/RDY in high state (default)
 /*=========================================================================*/
 
+    // The values written to the address pointer register to pick a register
+    protected static final int POINTER_CONVERSION = 0x00;
+    protected static final int POINTER_CONFIG = 0x01;
+
+    /**
+     * The channel being converted continuously, -1 if the converter powers
+     * down after each single shot.
+     */
+    protected int continuousChannel = -1;
+
     /**
-     * Read a single value from an ADS1015 device.
-     * @param channel
-     * @return
+     * Read a single value from an ADS1015 device. The configuration is
+     * built for the channel on each read, so reading several channels in
+     * turn through one instance reads each of them.
+     * @param channel The single ended channel.
+     * @return The value, or -1 if it couldn't be read.
      */
     public float readValue(int channel)
     {
         error = ads1015error.ADS1015_ERROR_OK;
+        continuousChannel = -1;
+
+        if (channel < 0 || channel > 3) {
+            error = ads1015error.ADS1015_ERROR_INVALIDCHANNEL;
+            return -1f;
+        }
 
         if (!(_adsInitialised)) {
-            ads1015Init();
+            error = ads1015Init();
+            if (error != ads1015error.ADS1015_ERROR_OK) return -1f;
         }
 
-        if (channel > 3) {
-            error = ads1015error.ADS1015_ERROR_INVALIDCHANNEL;
+        if (!writeRegister16(POINTER_CONFIG, singleShotConfig(channel))) {
             return -1f;
         }
 
-        // Start with default values
-        int config = ADS1015_REG_CONFIG_CQUE_NONE    | // Disable the comparator (default val)
-                ADS1015_REG_CONFIG_CLAT_NONLAT  | // Non-latching (default val)
-                ADS1015_REG_CONFIG_CPOL_ACTVLOW | // Alert/Rdy active low   (default val)
-                ADS1015_REG_CONFIG_CMODE_TRAD   | // Traditional comparator (default val)
-                ADS1015_REG_CONFIG_DR_1600SPS   | // 1600 samples per second (default)
-                ADS1015_REG_CONFIG_MODE_SINGLE;   // Single-shot mode (default)
-
-        // Set PGA/voltage range
-        config |= ADS1015_REG_CONFIG_PGA_6_144V;            // +/- 6.144V range (limited to VDD +0.3V max!)
+        // Wait for the conversion to complete
+        try {
+            Thread.sleep(settleTime());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1f;
+        }
 
-        // Set single-ended input channel
-        switch (channel)
-        {
-            case (0):
-                config |= ADS1015_REG_CONFIG_MUX_SINGLE_0;
-                break;
-            case (1):
-                config |= ADS1015_REG_CONFIG_MUX_SINGLE_1;
-                break;
-            case (2):
-                config |= ADS1015_REG_CONFIG_MUX_SINGLE_2;
-                break;
-            case (3):
-                config |= ADS1015_REG_CONFIG_MUX_SINGLE_3;
-                break;
+        Integer value = readRegister16(POINTER_CONVERSION);
+        if (value == null) {
+            BrewServer.LOG.warning("Failed to read " + getDevName());
+            return -1f;
         }
+        return convertReading(value);
+    }
 
-        // Set 'start single-conversion' bit
-        config |= ADS1015_REG_CONFIG_OS_SINGLE;
+    /**
+     * @param channel The single ended channel.
+     * @return The configuration to start a single conversion of the
+     *  channel, powering down after it.
+     */
+    protected int singleShotConfig(int channel)
+    {
+        return (continuousConfig(channel) & ~ADS1015_REG_CONFIG_MODE_MASK)
+                | ADS1015_REG_CONFIG_MODE_SINGLE
+                | ADS1015_REG_CONFIG_OS_SINGLE;
+    }
 
-        // Write config register to the ADC
-        error = ads1015WriteRegister(ADS1015_REG_POINTER_CONFIG, config);
-        if (error != ads1015error.ADS1015_ERROR_OK) return -1f;
+    /**
+     * Read the latest conversion, switching the converter to continuous
+     * conversion of the channel first if it isn't already.
+     * @param channel The channel to read.
+     * @return The value, as {@link #readValue(int)}.
+     */
+    @Override
+    protected float convertContinuous(int channel)
+    {
+        error = ads1015error.ADS1015_ERROR_OK;
 
-        // Wait for the conversion to complete
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            // Do nothing
+        if (channel < 0 || channel > 3) {
+            error = ads1015error.ADS1015_ERROR_INVALIDCHANNEL;
+            return -1f;
         }
 
-        // Read the conversion results
+        if (!_adsInitialised) {
+            error = ads1015Init();
+            if (error != ads1015error.ADS1015_ERROR_OK) return -1f;
+        }
+
+        if (channel != continuousChannel) {
+            continuousChannel = -1;
+            if (!writeRegister16(POINTER_CONFIG, continuousConfig(channel))) {
+                return -1f;
+            }
+            continuousChannel = channel;
+
+            // The conversion running when the channel changed is discarded
+            try {
+                Thread.sleep(settleTime());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1f;
+            }
+        }
 
-        int value = ina219Read16(ADS1015_REG_POINTER_CONVERT);
-        if (value == -1) {
-            BrewServer.LOG.warning("Failed to read ADS1015");
+        Integer value = readRegister16(POINTER_CONVERSION);
+        if (value == null) {
+            // Set the channel up again next time
+            continuousChannel = -1;
             return -1f;
         }
+        return convertReading(value);
+    }
+
+    /**
+     * @param channel The single ended channel.
+     * @return The configuration to convert the channel continuously.
+     */
+    protected int continuousConfig(int channel)
+    {
+        return ADS1015_REG_CONFIG_CQUE_NONE   |
+                ADS1015_REG_CONFIG_CLAT_NONLAT  |
+                ADS1015_REG_CONFIG_CPOL_ACTVLOW |
+                ADS1015_REG_CONFIG_CMODE_TRAD   |
+                ADS1015_REG_CONFIG_DR_1600SPS   |
+                ADS1015_REG_CONFIG_MODE_CONTIN  |
+                ADS1015_REG_CONFIG_PGA_6_144V   |
+                (ADS1015_REG_CONFIG_MUX_SINGLE_0 + (channel << 12));
+    }
+
+    /**
+     * @return How long after changing channel the first conversion is ready,
+     * two conversions at 1600 samples per second, in milliseconds. A single
+     * shot waits as long.
+     */
+    protected long settleTime()
+    {
+        return 2;
+    }
+
+    /**
+     * @param value The signed conversion register.
+     * @return The value, scaled as a single shot read is.
+     */
+    protected float convertReading(int value)
+    {
+        // The 12 bit result is left aligned
+        return value >> 4;
+    }
+
+    /**
+     * Write a 16 bit register.
+     * @param pointer The register.
+     * @param value The value to write.
+     * @return True if it was written.
+     */
+    protected boolean writeRegister16(int pointer, int value)
+    {
+        I2CMasterBuffer[0] = (byte) pointer;
+        I2CMasterBuffer[1] = (byte) (value >> 8);
+        I2CMasterBuffer[2] = (byte) (value & 0xFF);
+        int ret = libC.write(fd, I2CMasterBuffer, 3);
+        if (ret != 3)
+        {
+            BrewServer.LOG.warning(String.format("Failed to write to I2C Device %s. Error %s", ret, Native.getLastError()));
+            return false;
+        }
+        return true;
+    }
 
-        // Shift results 4-bits to the right
-        value = value >> 4;
-        return value;
+    /**
+     * Read a 16 bit register.
+     * @param pointer The register.
+     * @return The signed value, or null if it couldn't be read.
+     */
+    protected Integer readRegister16(int pointer)
+    {
+        I2CMasterBuffer[0] = (byte) pointer;
+        if (libC.write(fd, I2CMasterBuffer, 1) != 1
+                || libC.read(fd, I2CSlaveBuffer, 2) != 2)
+        {
+            BrewServer.LOG.warning(String.format("Error reading %s", Native.getLastError()));
+            return null;
+        }
+        return (int) (short) (((I2CSlaveBuffer[0] & 0xFF) << 8) | (I2CSlaveBuffer[1] & 0xFF));
     }
 }
@@ -14,6 +14,8 @@ public class ADS1115 extends ADS1015 {
         return DEV_NAME;
     }
 
+    // The bit numbers of the configuration register fields, not masks. The
+    // configuration is built from the ADS1015 masks.
     public static int OS 	= 15;
     public static int MUXX2 	= 14;
     public static int MUXX1 =	13;
@@ -72,8 +74,6 @@ public class ADS1115 extends ADS1015 {
     // 111 : AINP = AIN3 and AINN = GND
     public static int IM_IN3_GND 	= (MUXX2 | MUXX1 | MUXX0);
 
-    public int ADS1115_CFG_CH0 	= (OS | MODE | DR_8SPS | PGA_4_096 | COMP_QUE1 | COMP_QUE0);
-
     public static int ADS1115_REG_CONVERSION =	0x00;
     public static int ADS1115_REG_CONFIG =	0x01;
 
@@ -84,39 +84,43 @@ public class ADS1115 extends ADS1015 {
         super(deviceNo, address);
     }
 
+    /**
+     * The ADS1115 has the same configuration register as the ADS1015, but
+     * the data rates are slower, 0x0080 is 128 samples per second. A single
+     * shot read uses the same configuration in single shot mode.
+     * @param channel The single ended channel.
+     * @return The configuration to convert the channel continuously.
+     */
     @Override
-    public float readValue(int devChannel)
+    protected int continuousConfig(int channel)
     {
-        if (!(_adsInitialised)) {
-            ads1015Init();
-        }
-        // Set configuration
-        switch (devChannel)
-        {
-            case 0:
-                ADS1115_CFG_CH0 |= IM_IN0_GND;
-                break;
-            case 1:
-                ADS1115_CFG_CH0 |= IM_IN1_GND;
-                break;
-            case 2:
-                ADS1115_CFG_CH0 |= IM_IN2_GND;
-                break;
-            case 3:
-                ADS1115_CFG_CH0 |= IM_IN3_GND;
-                break;
-        }
-
-        if (ads1015WriteRegister(ADS1115_REG_CONFIG, ADS1115_CFG_CH0 ) != ads1015error.ADS1015_ERROR_OK)
-        {
-            return 0;
-        }
+        return ADS1015_REG_CONFIG_CQUE_NONE   |
+                ADS1015_REG_CONFIG_CLAT_NONLAT  |
+                ADS1015_REG_CONFIG_CPOL_ACTVLOW |
+                ADS1015_REG_CONFIG_CMODE_TRAD   |
+                ADS1015_REG_CONFIG_DR_1600SPS   |
+                ADS1015_REG_CONFIG_MODE_CONTIN  |
+                ADS1015_REG_CONFIG_PGA_4_096V   |
+                (ADS1015_REG_CONFIG_MUX_SINGLE_0 + (channel << 12));
+    }
 
-        // Read configuration
-        float value = (ina219Read16(ADS1115_REG_CONVERSION)*4096/32767);
-        BrewServer.LOG.warning("Read value: " + value);
+    /**
+     * @return Two conversions at 128 samples per second, in milliseconds.
+     */
+    @Override
+    protected long settleTime()
+    {
+        return 16;
+    }
 
-        return value;
+    /**
+     * @param value The signed 16 bit conversion.
+     * @return The value in millivolts at the 4.096V range.
+     */
+    @Override
+    protected float convertReading(int value)
+    {
+        return value * 4096 / 32767;
     }
 
     public boolean i2cInit()
@@ -23,31 +23,44 @@ public class CompressorDevice extends OutputDevice {
 
     
     /**
-     * Run through a cycle and turn the device on/off as appropriate based on the input duty.
-     * @param duty The percentage of time / power to run.  This will only run if the duty
-     *              is between 0 and 100 and not null.
+     * A compressor runs for whole cycles, and only at full duty.
+     * @param duty The percentage of time / power to run.
+     * @param cycleMillis The length of the cycle, in milliseconds.
+     * @return The whole cycle at 100, otherwise 0.
      */
     @Override
-    public void runCycle(BigDecimal duty) throws InterruptedException, InvalidGPIOException {
-        // Run if the duty is not null and is between 0 and 100 inclusive.
-        if (duty != null && 
-            duty.compareTo(BigDecimal.ZERO) > -1 &&
-            duty.compareTo(HUNDRED) < 1) {
-            initializeSSR();
+    public long getOnMillis(double duty, long cycleMillis) {
+        if (duty >= HUNDRED) {
+            return cycleMillis;
+        }
+        return 0;
+    }
+
+    /**
+     * A compressor can't be switched in short slots.
+     * @return 0, always switched once per cycle.
+     */
+    @Override
+    public long getSlotMillis() {
+        return 0;
+    }
 
-            if (duty.compareTo(HUNDRED) == 0) {
-                if (System.currentTimeMillis() - lastStopTime > delayBetweenRuns) {
-                    if (!running) {
-                        BrewServer.LOG.warning("Starting compressor device.");
-                        lastStartTime = System.currentTimeMillis();
-                    }
-                    running = true;
-                    setValue(true);
-                } else {
-                    BrewServer.LOG.warning("Need to wait before starting compressor again.: "+(delayBetweenRuns - (System.currentTimeMillis() - lastStopTime)));
-                }
+    /**
+     * Start the compressor, unless it stopped too recently.
+     * @throws InvalidGPIOException If the output couldn't be set up.
+     */
+    @Override
+    public void turnOn() throws InvalidGPIOException {
+        initializeSSR();
+        if (System.currentTimeMillis() - lastStopTime > delayBetweenRuns) {
+            if (!running) {
+                BrewServer.LOG.warning("Starting compressor device.");
+                lastStartTime = System.currentTimeMillis();
             }
-            Thread.sleep(cycleTime.intValue());
+            running = true;
+            setValue(true);
+        } else {
+            BrewServer.LOG.warning("Need to wait before starting compressor again.: "+(delayBetweenRuns - (System.currentTimeMillis() - lastStopTime)));
         }
     }
 
@@ -8,6 +8,7 @@ import org.w3c.dom.Element;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Wrap an I2C device to make it easy to read/write using standard paths and formats
@@ -56,6 +57,27 @@ public abstract class I2CDevice {
     private String devNumberString;
     private static String[] availableTypes;
 
+    /**
+     * One lock for each bus, every device on a bus is talked to in turn.
+     */
+    private static final ConcurrentHashMap<Integer, Object> busLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param deviceNo The I2C bus number.
+     * @return The lock held while talking to any device on the bus.
+     */
+    public static Object getBusLock(int deviceNo) {
+        Object lock = busLocks.get(deviceNo);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = busLocks.putIfAbsent(deviceNo, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
     public static I2CDevice create(String devNumber, String devAddress, String devType) {
         I2CDevice i2cDevice = null;
         int iDevAddress = 0;
@@ -321,6 +343,51 @@ public abstract class I2CDevice {
 
     public abstract float readValue(int devChannel);
 
+    /**
+     * Read a channel with the bus to ourselves.
+     * @param devChannel The channel to read.
+     * @return The value, as {@link #readValue(int)}.
+     */
+    public float read(int devChannel) {
+        synchronized (getBusLock(device_number)) {
+            return readValue(devChannel);
+        }
+    }
+
+    /**
+     * Read a channel with the bus to ourselves, leaving the device
+     * converting it so the next read of the same channel doesn't wait.
+     * @param devChannel The channel to read.
+     * @return The value, as {@link #readValue(int)}.
+     */
+    public float readContinuous(int devChannel) {
+        synchronized (getBusLock(device_number)) {
+            return convertContinuous(devChannel);
+        }
+    }
+
+    /**
+     * Devices that can't convert continuously do a single conversion.
+     * @param devChannel The channel to read.
+     * @return The value, as {@link #readValue(int)}.
+     */
+    protected float convertContinuous(int devChannel) {
+        return readValue(devChannel);
+    }
+
+    /**
+     * Close the device, it's opened again on the next read.
+     */
+    public void close() {
+        synchronized (getBusLock(device_number)) {
+            if (fd >= 0) {
+                libC.close(fd);
+                fd = -1;
+            }
+            _adsInitialised = false;
+        }
+    }
+
     public static I2CDevice parseElement(Element i2cElement) {
         String devType = LaunchControl.getFirstElement(i2cElement, DEV_ADDRESS).getNodeValue();
         if (devType == null) {
@@ -0,0 +1,236 @@
+package com.sb.elsinore.devices;
+
+import com.sb.elsinore.AnalogFilter;
+import com.sb.elsinore.SensorScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Owns an I2C analogue converter, reading its channels in turn from the
+ * sensor scheduler and keeping the latest value of each, so the volume and
+ * pH sensors that use the channels never wait on the bus.
+ *
+ * A channel is scanned once somebody has asked for its value, and dropped
+ * when nobody has for {@link #STALE_SCANS} scans. The device is talked to
+ * with its bus locked, and its file descriptor is kept open between scans.
+ *
+ * With {@link #CONTINUOUS} the converter is left converting the channel
+ * it last read, so a device with one channel in use is just read each
+ * scan, and one with several only waits for the first conversion after
+ * changing channel. Otherwise each channel is a single shot conversion.
+ *
+ * Each scan reads a channel {@link AnalogFilter#OVERSAMPLE} times and keeps
+ * the mean, the sensors filter it from there. Every read holds the bus and
+ * a single shot waits for its conversion, so a channel stops oversampling
+ * once it has had its share of {@link #SCAN_INTERVAL}, after at least one
+ * read. With a high oversample and several channels the scan gets fewer
+ * reads rather than falling behind.
+ */
+public final class I2CScanner implements SensorScheduler.Sensor {
+
+    public static final String I2C_SCAN_INTERVAL = "i2c_scan_interval";
+    public static final String I2C_CONTINUOUS = "i2c_continuous";
+
+    /**
+     * How often the channels are read, in milliseconds.
+     */
+    public static long SCAN_INTERVAL = 1000;
+    /**
+     * Leave the converters converting instead of taking single shots.
+     */
+    public static boolean CONTINUOUS = false;
+
+    /**
+     * The number of single ended channels on a converter.
+     */
+    public static final int CHANNELS = 4;
+    /**
+     * The number of scans a channel is read for after it was last asked for.
+     */
+    public static final int STALE_SCANS = 10;
+
+    private static final int NEVER = -1;
+
+    private static final Map<I2CDevice, I2CScanner> scanners =
+            new ConcurrentHashMap<>();
+
+    private final I2CDevice device;
+    /**
+     * The latest value of each channel, as float bits.
+     */
+    private final AtomicIntegerArray values = new AtomicIntegerArray(CHANNELS);
+    private final AtomicLongArray sampledAt = new AtomicLongArray(CHANNELS);
+    /**
+     * The scan each channel was last asked for in.
+     */
+    private final AtomicIntegerArray requested =
+            new AtomicIntegerArray(CHANNELS);
+    private volatile int scans = 0;
+
+    /**
+     * @param device The converter to scan.
+     */
+    public I2CScanner(final I2CDevice device) {
+        this.device = device;
+        for (int i = 0; i < CHANNELS; i++) {
+            values.set(i, Float.floatToIntBits(Float.NaN));
+            requested.set(i, NEVER);
+        }
+    }
+
+    /**
+     * @param device The converter.
+     * @return The scanner for the converter, scheduled the first time it's
+     *  asked for.
+     */
+    public static synchronized I2CScanner forDevice(final I2CDevice device) {
+        I2CScanner scanner = scanners.get(device);
+        if (scanner == null) {
+            scanner = new I2CScanner(device);
+            scanners.put(device, scanner);
+            SensorScheduler.getInstance().add(scanner);
+        }
+        return scanner;
+    }
+
+    /**
+     * Stop scanning every converter and close them.
+     */
+    public static synchronized void shutdownAll() {
+        for (I2CScanner scanner : scanners.values()) {
+            SensorScheduler.getInstance().remove(scanner);
+            scanner.device.close();
+        }
+        scanners.clear();
+    }
+
+    /**
+     * @param channel The channel.
+     * @return The latest value of the channel, as the device reads it, or
+     *  NaN if it hasn't been read yet. It's scanned from now on.
+     */
+    public float getValue(final int channel) {
+        if (channel < 0 || channel >= CHANNELS) {
+            return Float.NaN;
+        }
+        requested.set(channel, scans);
+        return Float.intBitsToFloat(values.get(channel));
+    }
+
+    /**
+     * @param channel The channel.
+     * @return When the channel was last read, in milliseconds since the
+     *  epoch, 0 if it never has been.
+     */
+    public long getSampleTime(final int channel) {
+        if (channel < 0 || channel >= CHANNELS) {
+            return 0;
+        }
+        return sampledAt.get(channel);
+    }
+
+    /**
+     * @return The channels being scanned.
+     */
+    public List<Integer> getChannels() {
+        List<Integer> channels = new ArrayList<>();
+        int scan = scans;
+        for (int i = 0; i < CHANNELS; i++) {
+            if (isWanted(i, scan)) {
+                channels.add(i);
+            }
+        }
+        return channels;
+    }
+
+    private boolean isWanted(final int channel, final int scan) {
+        int asked = requested.get(channel);
+        return asked != NEVER && scan - asked <= STALE_SCANS;
+    }
+
+    /**
+     * @return The converter's bus, so each bus is scanned on its own.
+     */
+    @Override
+    public String getBus() {
+        return "i2c-" + device.getDevNumber();
+    }
+
+    @Override
+    public long getPollInterval() {
+        return SCAN_INTERVAL;
+    }
+
+    /**
+     * Read each channel that's wanted.
+     * @return False if a channel couldn't be read.
+     */
+    @Override
+    public boolean poll() {
+        int scan = ++scans;
+        int wanted = 0;
+        for (int i = 0; i < CHANNELS; i++) {
+            if (isWanted(i, scan)) {
+                wanted++;
+            }
+        }
+        if (wanted == 0) {
+            return true;
+        }
+        long share = SCAN_INTERVAL / wanted;
+        boolean ok = true;
+        for (int i = 0; i < CHANNELS; i++) {
+            if (!isWanted(i, scan)) {
+                continue;
+            }
+            float value = readChannel(i,
+                    System.currentTimeMillis() + share);
+            if (Float.isNaN(value)) {
+                ok = false;
+                continue;
+            }
+            values.set(i, Float.floatToIntBits(value));
+            sampledAt.set(i, System.currentTimeMillis());
+        }
+        return ok;
+    }
+
+    /**
+     * @param channel The channel.
+     * @param deadline When to stop oversampling, in milliseconds since the
+     *  epoch.
+     * @return The mean of the channel's readings this scan, NaN if none of
+     *  them could be read.
+     */
+    private float readChannel(final int channel, final long deadline) {
+        double sum = 0;
+        int good = 0;
+        int reads = Math.max(1, AnalogFilter.OVERSAMPLE);
+        for (int n = 0; n < reads; n++) {
+            if (n > 0 && System.currentTimeMillis() >= deadline) {
+                break;
+            }
+            float value;
+            if (CONTINUOUS) {
+                value = device.readContinuous(channel);
+            } else {
+                value = device.read(channel);
+            }
+            // The devices only read single ended, negative is an error
+            if (Float.isNaN(value) || value < 0) {
+                continue;
+            }
+            sum += value;
+            good++;
+        }
+        if (good == 0) {
+            return Float.NaN;
+        }
+        return (float) (sum / good);
+    }
+}
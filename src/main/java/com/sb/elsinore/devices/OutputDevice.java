@@ -1,9 +1,8 @@
 package com.sb.elsinore.devices;
 
 import com.sb.elsinore.BrewServer;
-import com.sb.util.MathUtil;
+import com.sb.elsinore.hardware.Hardware;
 import jGPIO.InvalidGPIOException;
-import jGPIO.OutPin;
 import java.math.BigDecimal;
 
 /**
@@ -15,11 +14,12 @@ import java.math.BigDecimal;
 public class OutputDevice {
 
     protected boolean invertOutput = false;
-    protected static BigDecimal HUNDRED = new BigDecimal(100);
-    protected static BigDecimal THOUSAND = new BigDecimal(1000);
+    protected static final double HUNDRED = 100;
+    protected static final BigDecimal THOUSAND = new BigDecimal(1000);
 
-    protected BigDecimal cycleTime = new BigDecimal(5000);    //5 second default
-    protected OutPin ssr = null;    //The output pin.
+    protected long cycleTime = 5000;    //5 second default, in milliseconds
+    protected long slotTime = 0;    //Burst fire slot, 0 for the whole cycle
+    protected Hardware.OutputPin ssr = null;    //The output pin.
     protected String name;    //The name of this device
     private String gpio;    //The gpio pin
 
@@ -62,7 +62,7 @@ public class OutputDevice {
     protected void initializeSSR() throws InvalidGPIOException {
         if (ssr == null) {
             if (gpio != null && gpio.length() > 0) {
-                ssr = new OutPin(gpio);
+                ssr = Hardware.getInstance().getOutput(gpio);
                 turnOff();
             }
         }
@@ -74,33 +74,30 @@ public class OutputDevice {
 
     
     /**
-     * Run through a cycle and turn the device on/off as appropriate based on the input duty.
-     * @param duty The percentage of time / power to run.  This will only run if the duty
-     *              is between 0 and 100 and not null.
+     * Work out how long the device is on for in a cycle.
+     * @param duty The percentage of time / power to run.  The device is off
+     *              unless the duty is above 0, and on for the whole cycle
+     *              from 100.
+     * @param cycleMillis The length of the cycle, in milliseconds.
+     * @return The on time, in milliseconds.
      */
-    public void runCycle(BigDecimal duty) throws InterruptedException, InvalidGPIOException {
-        // Run if the duty is not null and is between 0 and 100 inclusive.
-        if (duty != null
-                && duty.compareTo(BigDecimal.ZERO) > 0
-                && duty.compareTo(HUNDRED) <= 0) {
-            initializeSSR();
-
-            duty = MathUtil.divide(duty, HUNDRED);
-            BigDecimal onTime = duty.multiply(cycleTime);
-            BigDecimal offTime = cycleTime.subtract(onTime);
-            BrewServer.LOG.info("On: " + onTime
-                    + " Off; " + offTime);
-
-            if (onTime.intValue() > 0) {
-                setValue(true);
-                Thread.sleep(onTime.intValue());
-            }
-
-            if (duty.abs().compareTo(HUNDRED) < 0 && offTime.intValue() > 0) {
-                setValue(false);
-                Thread.sleep(offTime.intValue());
-            }
+    public long getOnMillis(double duty, long cycleMillis) {
+        if (!(duty > 0)) {
+            return 0;
+        }
+        if (duty >= HUNDRED) {
+            return cycleMillis;
         }
+        return (long) (duty * cycleMillis / HUNDRED);
+    }
+
+    /**
+     * Turn the device on, setting up the output first if needed.
+     * @throws InvalidGPIOException If the output couldn't be set up.
+     */
+    public void turnOn() throws InvalidGPIOException {
+        initializeSSR();
+        setValue(true);
     }
 
     protected void setValue(boolean value) {
@@ -133,7 +130,14 @@ public class OutputDevice {
      * @return the cycleTime
      */
     public BigDecimal getCycleTime() {
-        return this.cycleTime.divide(THOUSAND);
+        return BigDecimal.valueOf(this.cycleTime).divide(THOUSAND);
+    }
+
+    /**
+     * @return the cycleTime in milliseconds
+     */
+    public long getCycleMillis() {
+        return this.cycleTime;
     }
 
     /**
@@ -141,7 +145,34 @@ public class OutputDevice {
      */
     public void setCycleTime(BigDecimal cycleTime) {
         if (cycleTime != null) {
-            this.cycleTime = cycleTime.multiply(THOUSAND);
+            this.cycleTime = cycleTime.multiply(THOUSAND).longValue();
+        }
+    }
+
+    /**
+     * @return the burst fire slot time, 0 when switched once per cycle.
+     */
+    public BigDecimal getSlotTime() {
+        return BigDecimal.valueOf(this.slotTime).divide(THOUSAND);
+    }
+
+    /**
+     * @return the burst fire slot time in milliseconds, 0 when switched once
+     *  per cycle.
+     */
+    public long getSlotMillis() {
+        return this.slotTime;
+    }
+
+    /**
+     * Switch the device in slots, spreading the on time of each cycle over
+     * it in whole slots.
+     * @param slotTime the slot time in seconds, 0 to switch once per cycle.
+     */
+    public void setSlotTime(BigDecimal slotTime) {
+        if (slotTime != null) {
+            this.slotTime = Math.max(0,
+                    slotTime.multiply(THOUSAND).longValue());
         }
     }
 
@@ -0,0 +1,110 @@
+package com.sb.elsinore.hardware;
+
+import com.sb.elsinore.devices.I2CDevice;
+import jGPIO.InvalidGPIOException;
+
+import java.io.IOException;
+
+/**
+ * The hardware the brewery runs on: the GPIO outputs and analogue inputs,
+ * the kernel One Wire devices and the I2C analogue converters.
+ *
+ * {@link SystemHardware} talks to the real thing on the board,
+ * {@link SimulatedBrewery} stands in for it so the rest of the server can
+ * run anywhere.
+ */
+public abstract class Hardware {
+
+    /**
+     * A digital output pin.
+     */
+    public interface OutputPin {
+        /**
+         * @param value True to switch the pin on.
+         */
+        void setValue(boolean value);
+
+        /**
+         * @return "1" when the pin is on, "0" when it's off.
+         */
+        String getValue();
+
+        /**
+         * @return The name of the GPIO.
+         */
+        String getGPIOName();
+
+        /**
+         * Release the pin.
+         */
+        void close();
+    }
+
+    /**
+     * An analogue input pin.
+     */
+    public interface AnalogueInput {
+        /**
+         * @return The raw reading.
+         * @throws IOException If the pin couldn't be read.
+         */
+        String readValue() throws IOException;
+
+        /**
+         * Release the pin.
+         */
+        void close();
+    }
+
+    private static Hardware instance = null;
+
+    /**
+     * @return The hardware in use, the system hardware unless another has
+     *  been set.
+     */
+    public static synchronized Hardware getInstance() {
+        if (instance == null) {
+            instance = new SystemHardware();
+        }
+        return instance;
+    }
+
+    /**
+     * Use different hardware, for anything set up from now on.
+     * @param hardware The hardware to use.
+     */
+    public static synchronized void setInstance(final Hardware hardware) {
+        instance = hardware;
+    }
+
+    /**
+     * @param gpio The name of the GPIO.
+     * @return The output, switched off.
+     * @throws InvalidGPIOException If the GPIO can't be used.
+     */
+    public abstract OutputPin getOutput(String gpio)
+            throws InvalidGPIOException;
+
+    /**
+     * @param pin The analogue pin number.
+     * @return The input.
+     * @throws InvalidGPIOException If the pin can't be used.
+     */
+    public abstract AnalogueInput getAnalogue(int pin)
+            throws InvalidGPIOException;
+
+    /**
+     * @return The directory listing the One Wire devices, ending with a
+     *  separator.
+     */
+    public abstract String getOneWireDevices();
+
+    /**
+     * @param devNumber The I2C bus number.
+     * @param devAddress The address of the device on the bus.
+     * @param devType The type of device.
+     * @return The device, or null if the type isn't known.
+     */
+    public abstract I2CDevice getI2CDevice(String devNumber,
+            String devAddress, String devType);
+}
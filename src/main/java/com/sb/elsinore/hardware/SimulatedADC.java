@@ -0,0 +1,48 @@
+package com.sb.elsinore.hardware;
+
+import com.sb.elsinore.devices.I2CDevice;
+
+/**
+ * An I2C analogue converter in a {@link SimulatedBrewery}, each channel
+ * reads the level sensor of one vessel.
+ */
+public final class SimulatedADC extends I2CDevice {
+
+    private final SimulatedBrewery brewery;
+    private final String devName;
+
+    /**
+     * @param brewery The brewery the vessels are in.
+     * @param deviceNo The I2C bus number.
+     * @param address The address of the converter on the bus.
+     * @param devName The type of converter it's standing in for.
+     */
+    public SimulatedADC(final SimulatedBrewery brewery, final int deviceNo,
+            final int address, final String devName) {
+        super(deviceNo, address);
+        this.brewery = brewery;
+        this.devName = devName;
+    }
+
+    @Override
+    public String getDevName() {
+        return devName;
+    }
+
+    /**
+     * @param devChannel The channel to read.
+     * @return The level of the vessel on the channel in millivolts, 0 if
+     *  there's no vessel on it.
+     */
+    @Override
+    public float readValue(final int devChannel) {
+        SimulatedVessel vessel = brewery.getVessel(
+                (address - SimulatedBrewery.I2C_ADDRESS)
+                * SimulatedBrewery.I2C_CHANNELS + devChannel);
+        if (vessel == null || devChannel < 0
+                || devChannel >= SimulatedBrewery.I2C_CHANNELS) {
+            return 0;
+        }
+        return vessel.getVolumeReading();
+    }
+}
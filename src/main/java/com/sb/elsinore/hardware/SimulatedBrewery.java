@@ -0,0 +1,367 @@
+package com.sb.elsinore.hardware;
+
+import com.sb.elsinore.BrewServer;
+import com.sb.elsinore.devices.I2CDevice;
+import jGPIO.InvalidGPIOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Hardware that simulates a brewery of {@link SimulatedVessel}s, so the
+ * server can run without a board, with as many vessels as needed.
+ *
+ * Each vessel's probe is written in the kernel's w1_slave format to a One
+ * Wire devices directory of its own, so the probes are read the same way
+ * as on the board. The heating element follows the vessel's heater GPIO,
+ * and the level and pH readings are on a pair of analogue pins, or on the
+ * channels of a simulated I2C converter.
+ *
+ * The vessels are moved on every {@link #STEP} milliseconds, by the time
+ * since the last step times the speed. The controls still run in real
+ * time, so at a speed of 10 a vessel heats ten times as fast as it would.
+ */
+public final class SimulatedBrewery extends Hardware {
+
+    /**
+     * How often the vessels are moved on, in milliseconds.
+     */
+    public static final long STEP = 100;
+    /**
+     * The I2C address of the first simulated converter.
+     */
+    public static final int I2C_ADDRESS = 0x48;
+    /**
+     * The channels on each simulated converter.
+     */
+    public static final int I2C_CHANNELS = 4;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * A simulated output pin, which keeps track of how long it's been on.
+     */
+    public static final class Pin implements OutputPin {
+        private final String gpio;
+        private boolean on = false;
+        private long onSince = 0;
+        private long onNanos = 0;
+        private long switches = 0;
+
+        private Pin(final String gpio) {
+            this.gpio = gpio;
+        }
+
+        @Override
+        public synchronized void setValue(final boolean value) {
+            if (value == on) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (on) {
+                onNanos += now - onSince;
+            } else {
+                onSince = now;
+                switches++;
+            }
+            on = value;
+        }
+
+        @Override
+        public synchronized String getValue() {
+            return on ? "1" : "0";
+        }
+
+        @Override
+        public String getGPIOName() {
+            return gpio;
+        }
+
+        @Override
+        public void close() {
+            setValue(false);
+        }
+
+        /**
+         * @return The number of times the pin has been switched on.
+         */
+        public synchronized long getSwitchCount() {
+            return switches;
+        }
+
+        /**
+         * @param now The current {@link System#nanoTime()}.
+         * @return How long the pin has been on since the last call, in
+         *  nanoseconds.
+         */
+        private synchronized long takeOnNanos(final long now) {
+            long total = onNanos;
+            if (on) {
+                total += now - onSince;
+                onSince = now;
+            }
+            onNanos = 0;
+            return total;
+        }
+    }
+
+    /**
+     * A vessel, its heater and the file its probe is written to.
+     */
+    private static final class Model {
+        private final SimulatedVessel vessel;
+        private final Pin heater;
+        private final FileChannel probe;
+        private final ByteBuffer reading = ByteBuffer.allocate(128);
+
+        private Model(final SimulatedVessel vessel, final Pin heater,
+                final FileChannel probe) {
+            this.vessel = vessel;
+            this.heater = heater;
+            this.probe = probe;
+        }
+
+        /**
+         * Write the temperature as the kernel would, the same length
+         * every time so a reader never sees a partial file.
+         */
+        private void writeProbe() throws IOException {
+            long milliDegrees = Math.round(vessel.getTemperature() * 1000);
+            String text = "4b 01 4b 46 7f ff 05 10 e1 : crc=e1 YES\n"
+                    + "4b 01 4b 46 7f ff 05 10 e1 t="
+                    + String.format("%06d", milliDegrees) + "\n";
+            reading.clear();
+            reading.put(text.getBytes(StandardCharsets.US_ASCII));
+            reading.flip();
+            long position = 0;
+            while (reading.hasRemaining()) {
+                position += probe.write(reading, position);
+            }
+        }
+    }
+
+    private final File devices;
+    private final double speed;
+    private final List<Model> models = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Pin> pins = new ConcurrentHashMap<>();
+    private ScheduledExecutorService stepper = null;
+    private long lastStep;
+
+    /**
+     * @param devices The directory to write the probes to.
+     * @param speed How much faster than real time the vessels change.
+     */
+    public SimulatedBrewery(final File devices, final double speed) {
+        this.devices = devices;
+        this.speed = speed;
+        this.lastStep = System.nanoTime();
+    }
+
+    /**
+     * Add a vessel, with its probe, heater and analogue pins numbered after
+     * the vessels already added.
+     * @param name The name of the vessel.
+     * @return The new vessel.
+     * @throws IOException If the probe couldn't be created.
+     */
+    public synchronized SimulatedVessel addVessel(final String name)
+            throws IOException {
+        int number = models.size();
+        SimulatedVessel vessel = new SimulatedVessel(name,
+                String.format("28-%012x", number + 1),
+                "GPIO" + (number + 1), number * 2, number * 2 + 1);
+
+        File probeDir = new File(devices, vessel.getProbe());
+        if (!probeDir.isDirectory() && !probeDir.mkdirs()) {
+            throw new IOException("Couldn't create " + probeDir);
+        }
+        FileChannel probe = FileChannel.open(
+                new File(probeDir, "w1_slave").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        Pin heater = getPin(vessel.getHeaterGpio());
+        Model model = new Model(vessel, heater, probe);
+        model.writeProbe();
+        models.add(model);
+        return vessel;
+    }
+
+    /**
+     * @return Every vessel, in the order they were added.
+     */
+    public List<SimulatedVessel> getVessels() {
+        List<SimulatedVessel> vessels = new ArrayList<>();
+        for (Model model : models) {
+            vessels.add(model.vessel);
+        }
+        return vessels;
+    }
+
+    /**
+     * @return How much faster than real time the vessels change.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param gpio The GPIO name.
+     * @return The pin, created off if it's not been used.
+     */
+    public Pin getPin(final String gpio) {
+        Pin pin = pins.get(gpio);
+        if (pin == null) {
+            pin = new Pin(gpio);
+            Pin existing = pins.putIfAbsent(gpio, pin);
+            if (existing != null) {
+                pin = existing;
+            }
+        }
+        return pin;
+    }
+
+    /**
+     * Start moving the vessels on.
+     */
+    public synchronized void start() {
+        if (stepper != null) {
+            return;
+        }
+        lastStep = System.nanoTime();
+        stepper = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("Simulated Brewery");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        stepper.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                step();
+            }
+        }, STEP, STEP, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Move every vessel on by the time since the last step and write out
+     * their probes.
+     */
+    public synchronized void step() {
+        long now = System.nanoTime();
+        double seconds = (now - lastStep) * speed / NANOS_PER_SECOND;
+        lastStep = now;
+        for (Model model : models) {
+            double heated = model.heater.takeOnNanos(now) * speed
+                    / NANOS_PER_SECOND;
+            model.vessel.step(seconds, heated);
+            try {
+                model.writeProbe();
+            } catch (IOException e) {
+                BrewServer.LOG.log(Level.WARNING,
+                        "Couldn't write the probe for " + model.vessel, e);
+            }
+        }
+    }
+
+    /**
+     * Stop moving the vessels on and close their probes.
+     */
+    public synchronized void shutdown() {
+        if (stepper != null) {
+            stepper.shutdownNow();
+            stepper = null;
+        }
+        for (Model model : models) {
+            try {
+                model.probe.close();
+            } catch (IOException e) {
+                BrewServer.LOG.warning("Couldn't close the probe for "
+                        + model.vessel);
+            }
+        }
+    }
+
+    @Override
+    public OutputPin getOutput(final String gpio) {
+        Pin pin = getPin(gpio);
+        pin.setValue(false);
+        return pin;
+    }
+
+    @Override
+    public AnalogueInput getAnalogue(final int pin)
+            throws InvalidGPIOException {
+        final SimulatedVessel vessel = getVessel(pin / 2);
+        if (vessel == null) {
+            throw new InvalidGPIOException(
+                    "No simulated analogue pin " + pin);
+        }
+        final boolean volume = pin % 2 == 0;
+        return new AnalogueInput() {
+            @Override
+            public String readValue() {
+                return Long.toString(volume ? vessel.getVolumeReading()
+                        : vessel.getPhReading());
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public String getOneWireDevices() {
+        return devices.getPath() + File.separator;
+    }
+
+    /**
+     * The vessels are on simulated converters at {@link #I2C_ADDRESS} on,
+     * four to a converter, each channel reading the vessel's volume.
+     * @param devNumber The I2C bus number.
+     * @param devAddress The address, decimal or starting 0x for hex.
+     * @param devType The type of converter.
+     * @return The converter.
+     */
+    @Override
+    public I2CDevice getI2CDevice(final String devNumber,
+            final String devAddress, final String devType) {
+        int address;
+        if (devAddress.startsWith("0x")) {
+            address = Integer.valueOf(devAddress.substring(2), 16);
+        } else {
+            address = Integer.valueOf(devAddress);
+        }
+        return new SimulatedADC(this, Integer.parseInt(devNumber), address,
+                devType);
+    }
+
+    /**
+     * @param index The position of the vessel.
+     * @return The vessel, or null if there isn't one there.
+     */
+    SimulatedVessel getVessel(final int index) {
+        if (index < 0 || index >= models.size()) {
+            return null;
+        }
+        return models.get(index).vessel;
+    }
+}
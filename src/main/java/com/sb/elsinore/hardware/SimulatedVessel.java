@@ -0,0 +1,196 @@
+package com.sb.elsinore.hardware;
+
+/**
+ * A vessel of water in a {@link SimulatedBrewery}, heated by an element and
+ * losing heat to the room.
+ *
+ * Over a step the element's average power is held, so the temperature
+ * settles exponentially towards where the element's power and the loss to
+ * the room balance. That's exact for any step length, so the brewery can
+ * run in accelerated time without the model going unstable.
+ */
+public final class SimulatedVessel {
+
+    /**
+     * The heat capacity of water, in J/kg/K, a litre is a kilogram.
+     */
+    public static final double WATER_HEAT_CAPACITY = 4186;
+    /**
+     * The temperature is held at the boil, in Celsius.
+     */
+    public static final double BOILING = 100;
+    /**
+     * The analogue volume reading when empty, in millivolts.
+     */
+    public static final double VOLUME_OFFSET = 200;
+    /**
+     * The analogue volume reading per litre, in millivolts.
+     */
+    public static final double VOLUME_SCALE = 20;
+    /**
+     * The pH probe amplifier's output per pH, in millivolts.
+     */
+    public static final double PH_SCALE = 1000 / 3.5;
+
+    private final String name;
+    private final String probe;
+    private final String heaterGpio;
+    private final int volumePin;
+    private final int phPin;
+
+    private double temperature;
+    private double ambient = 20;
+    private double litres = 30;
+    private double heaterWatts = 5500;
+    private double lossWatts = 10;
+    private double ph = 5.4;
+
+    /**
+     * @param name The name of the vessel.
+     * @param probe The One Wire address of the temperature probe.
+     * @param heaterGpio The GPIO the heating element is on.
+     * @param volumePin The analogue pin the level sensor is on.
+     * @param phPin The analogue pin the pH probe is on.
+     */
+    public SimulatedVessel(final String name, final String probe,
+            final String heaterGpio, final int volumePin, final int phPin) {
+        this.name = name;
+        this.probe = probe;
+        this.heaterGpio = heaterGpio;
+        this.volumePin = volumePin;
+        this.phPin = phPin;
+        this.temperature = ambient;
+    }
+
+    /**
+     * Move the vessel on in time.
+     * @param seconds How long to move on by, in simulated seconds.
+     * @param heatedSeconds How much of that the element was on for.
+     */
+    public synchronized void step(final double seconds,
+            final double heatedSeconds) {
+        if (!(seconds > 0)) {
+            return;
+        }
+        double capacity = litres * WATER_HEAT_CAPACITY;
+        double power = heaterWatts * Math.min(heatedSeconds, seconds)
+                / seconds;
+        double settled = ambient + power / lossWatts;
+        temperature = settled + (temperature - settled)
+                * Math.exp(-lossWatts * seconds / capacity);
+        if (temperature > BOILING) {
+            temperature = BOILING;
+        }
+    }
+
+    /**
+     * @return The name of the vessel.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The One Wire address of the temperature probe.
+     */
+    public String getProbe() {
+        return probe;
+    }
+
+    /**
+     * @return The GPIO the heating element is on.
+     */
+    public String getHeaterGpio() {
+        return heaterGpio;
+    }
+
+    /**
+     * @return The analogue pin the level sensor is on.
+     */
+    public int getVolumePin() {
+        return volumePin;
+    }
+
+    /**
+     * @return The analogue pin the pH probe is on.
+     */
+    public int getPhPin() {
+        return phPin;
+    }
+
+    /**
+     * @return The temperature of the water, in Celsius.
+     */
+    public synchronized double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * @param temperature The temperature of the water, in Celsius.
+     */
+    public synchronized void setTemperature(final double temperature) {
+        this.temperature = Math.min(temperature, BOILING);
+    }
+
+    /**
+     * @param ambient The temperature of the room, in Celsius.
+     */
+    public synchronized void setAmbient(final double ambient) {
+        this.ambient = ambient;
+    }
+
+    /**
+     * @return The volume of water, in litres.
+     */
+    public synchronized double getLitres() {
+        return litres;
+    }
+
+    /**
+     * @param litres The volume of water, in litres.
+     */
+    public synchronized void setLitres(final double litres) {
+        this.litres = Math.max(1, litres);
+    }
+
+    /**
+     * @param heaterWatts The power of the heating element, in watts.
+     */
+    public synchronized void setHeaterWatts(final double heaterWatts) {
+        this.heaterWatts = heaterWatts;
+    }
+
+    /**
+     * @param lossWatts The heat lost to the room, in watts per degree
+     *                  above it.
+     */
+    public synchronized void setLossWatts(final double lossWatts) {
+        this.lossWatts = Math.max(0.001, lossWatts);
+    }
+
+    /**
+     * @param ph The pH of the liquid.
+     */
+    public synchronized void setPh(final double ph) {
+        this.ph = ph;
+    }
+
+    /**
+     * @return The level sensor reading, in millivolts.
+     */
+    public synchronized long getVolumeReading() {
+        return Math.round(VOLUME_OFFSET + litres * VOLUME_SCALE);
+    }
+
+    /**
+     * @return The pH probe reading, in millivolts.
+     */
+    public synchronized long getPhReading() {
+        return Math.round(ph * PH_SCALE);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,90 @@
+package com.sb.elsinore.hardware;
+
+import com.sb.elsinore.devices.I2CDevice;
+import jGPIO.GPIO.Direction;
+import jGPIO.InPin;
+import jGPIO.InvalidGPIOException;
+import jGPIO.OutPin;
+
+import java.io.IOException;
+
+/**
+ * The board the server is running on, through the GPIO files in sysfs, the
+ * kernel One Wire driver and the I2C devices.
+ */
+public final class SystemHardware extends Hardware {
+
+    /**
+     * Where the kernel lists the One Wire devices.
+     */
+    public static final String W1_DEVICES = "/sys/bus/w1/devices/";
+
+    private final String oneWireDevices;
+
+    public SystemHardware() {
+        this(W1_DEVICES);
+    }
+
+    /**
+     * @param oneWireDevices The directory listing the One Wire devices,
+     *                       ending with a separator.
+     */
+    public SystemHardware(final String oneWireDevices) {
+        this.oneWireDevices = oneWireDevices;
+    }
+
+    @Override
+    public OutputPin getOutput(final String gpio)
+            throws InvalidGPIOException {
+        final OutPin pin = new OutPin(gpio);
+        return new OutputPin() {
+            @Override
+            public void setValue(final boolean value) {
+                pin.setValue(value);
+            }
+
+            @Override
+            public String getValue() {
+                return pin.getValue();
+            }
+
+            @Override
+            public String getGPIOName() {
+                return pin.getGPIOName();
+            }
+
+            @Override
+            public void close() {
+                pin.close();
+            }
+        };
+    }
+
+    @Override
+    public AnalogueInput getAnalogue(final int pinNumber)
+            throws InvalidGPIOException {
+        final InPin pin = new InPin(pinNumber, Direction.ANALOGUE);
+        return new AnalogueInput() {
+            @Override
+            public String readValue() throws IOException {
+                return pin.readValue();
+            }
+
+            @Override
+            public void close() {
+                pin.close();
+            }
+        };
+    }
+
+    @Override
+    public String getOneWireDevices() {
+        return oneWireDevices;
+    }
+
+    @Override
+    public I2CDevice getI2CDevice(final String devNumber,
+            final String devAddress, final String devType) {
+        return I2CDevice.create(devNumber, devAddress, devType);
+    }
+}
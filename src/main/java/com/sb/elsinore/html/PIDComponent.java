@@ -80,6 +80,7 @@ public class PIDComponent implements Renderable {
                 .input(type("hidden").name("auxgpio").id("auxgpio"))
                 .input(type("hidden").name("cutoff").id("cutoff"))
                 .input(type("hidden").name("calibration").id("calibration"))
+                .input(type("hidden").name("pollInterval").id("pollInterval"))
                 .input(type("hidden").name("hidden").id("hidden"))
                 .input(type("hidden").name("vol_ain").id("vol_ain"))
                 .input(type("hidden").name("vol_add").id("vol_add"))
@@ -162,6 +163,18 @@ public class PIDComponent implements Renderable {
                 .write(Messages.SECS)
                 ._td()
                 ._tr()
+                .tr(id(probe + "-heatSlot").class_("holo-field"))
+                .td(id(probe + "-labelSlot"))
+                .write(Messages.BURST_SLOT)
+                ._td()
+                .td(id(probe + "-slotTime"))
+                .input(class_("inputBox heatslottime").name("heatslottime")
+                        .type("number").add("step", "any").value(""))
+                ._td()
+                .td(id(probe + "-unitSlot"))
+                .write(Messages.SECS)
+                ._td()
+                ._tr()
                 .tr(id(probe + "-heatP").class_("holo-field"))
                 .td(id(probe + "-labelp"))
                 .write("P")
@@ -1,8 +1,8 @@
 package com.sb.elsinore.inputs;
 
 import com.sb.elsinore.devices.I2CDevice;
-import jGPIO.GPIO.Direction;
-import jGPIO.InPin;
+import com.sb.elsinore.devices.I2CScanner;
+import com.sb.elsinore.hardware.Hardware;
 import jGPIO.InvalidGPIOException;
 
 import java.lang.reflect.InvocationTargetException;
@@ -13,14 +13,17 @@ import java.util.logging.Level;
 
 import org.json.simple.JSONObject;
 
+import com.sb.elsinore.AnalogFilter;
 import com.sb.elsinore.BrewServer;
 import com.sb.elsinore.LaunchControl;
+import com.sb.elsinore.SensorScheduler;
 import com.sb.elsinore.NanoHTTPD.Response;
+import com.sb.elsinore.Sampled;
 import com.sb.elsinore.annotations.PhSensorType;
 import com.sb.elsinore.annotations.UrlEndpoint;
 import com.sb.util.MathUtil;
 
-public class PhSensor {
+public class PhSensor implements SensorScheduler.Sensor {
 
     private static final java.math.BigDecimal BIGDEC_THOUSAND = new BigDecimal(1000);
     public static final String DS_ADDRESS = "dsAddress";
@@ -28,14 +31,22 @@ public class PhSensor {
     public static final String AIN_PIN = "ainPin";
     public static final String OFFSET = "offset";
     public static final String MODEL = "model";
+    /**
+     * The time between readings, in milliseconds.
+     */
+    public static final long POLL_INTERVAL = 5000;
     private int ainPin = -1;
     private String dsAddress = "";
     private String dsOffset = "";
     private String model = "";
     private String name = "pH Sensor";
-    private BigDecimal phReading = new BigDecimal(0);
+    private volatile BigDecimal phReading = new BigDecimal(0);
+    private volatile BigDecimal rawPhReading = new BigDecimal(0);
+    private final AnalogFilter phFilter = new AnalogFilter();
+    private final Sampled phSeries = new PhSeries(Sampled.PH);
+    private final Sampled rawPhSeries = new PhSeries(Sampled.PH_RAW);
     private BigDecimal offset = new BigDecimal(0);
-    private InPin ainGPIO = null;
+    private Hardware.AnalogueInput ainGPIO = null;
     private boolean stopLogging = false;
     public I2CDevice i2cDevice = null;
     public int i2cChannel = -1;
@@ -53,7 +64,7 @@ public class PhSensor {
      */
     public PhSensor(final int newPin) throws InvalidGPIOException {
         this.ainPin = newPin;
-        ainGPIO = new InPin(this.ainPin, Direction.ANALOGUE);
+        ainGPIO = Hardware.getInstance().getAnalogue(this.ainPin);
     }
 
     /**
@@ -79,6 +90,7 @@ public class PhSensor {
      */
     public final void setModel(final String type) {
         this.model = type;
+        this.phFilter.reset();
     }
 
     /**
@@ -132,6 +144,7 @@ public class PhSensor {
                 .compareTo(tolerance) > 0) {
             // We're outside of the tolerance. So Set the offset.
             offset = targetRead.subtract(currentValue);
+            phFilter.reset();
         }
 
         // Verify we're good
@@ -150,11 +163,120 @@ public class PhSensor {
     public final JSONObject getJsonStatus() {
         JSONObject retVal = new JSONObject();
         retVal.put("phReading", phReading);
+        retVal.put("rawPhReading", rawPhReading);
         retVal.put("name", name);
         retVal.put("deviceType", model);
         return retVal;
     }
 
+    /**
+     * Take a new pH reading, called by the {@link SensorScheduler}.
+     * @return True if the input could be read.
+     */
+    @Override
+    public final boolean poll() {
+        BigDecimal raw = calcPhValue();
+        this.rawPhReading = raw;
+        // Nothing reads zero, it's a failed read
+        if (raw.signum() > 0) {
+            // Keep the history, so turning the filter on starts from it
+            double filtered = phFilter.add(raw.doubleValue());
+            if (AnalogFilter.isPassThrough()) {
+                this.phReading = raw;
+            } else {
+                this.phReading = BigDecimal.valueOf(filtered);
+            }
+        } else {
+            this.phReading = raw;
+        }
+        return !this.stopLogging;
+    }
+
+    /**
+     * @return The bus this sensor is read from.
+     */
+    @Override
+    public final String getBus() {
+        if (ainGPIO != null) {
+            return "analog";
+        }
+        if (i2cDevice != null) {
+            return "i2c";
+        }
+        return "owfs";
+    }
+
+    /**
+     * @return The time between readings, in milliseconds.
+     */
+    @Override
+    public final long getPollInterval() {
+        return POLL_INTERVAL;
+    }
+
+    /**
+     * @return The latest pH reading.
+     */
+    public final BigDecimal getPhReading() {
+        return this.phReading;
+    }
+
+    /**
+     * @return The latest pH reading, before it was filtered.
+     */
+    public final BigDecimal getRawPhReading() {
+        return this.rawPhReading;
+    }
+
+    /**
+     * @return The filtered pH, for the recorder.
+     */
+    public final Sampled getPhSeries() {
+        return this.phSeries;
+    }
+
+    /**
+     * @return The unfiltered pH, for the recorder.
+     */
+    public final Sampled getRawPhSeries() {
+        return this.rawPhSeries;
+    }
+
+    /**
+     * A pH series, named for the sensor.
+     */
+    private final class PhSeries implements Sampled {
+        private final String type;
+
+        PhSeries(final String type) {
+            this.type = type;
+        }
+
+        @Override
+        public String getSeriesName() {
+            return name.replace(" ", "_");
+        }
+
+        @Override
+        public String getSeriesType() {
+            return type;
+        }
+
+        @Override
+        public double getSampleValue() {
+            BigDecimal value;
+            if (Sampled.PH.equals(type)) {
+                value = phReading;
+            } else {
+                value = rawPhReading;
+            }
+            if (value == null || value.signum() <= 0) {
+                return Double.NaN;
+            }
+            return value.doubleValue();
+        }
+    }
+
     /**
      * Update the current reading.
      * @return the current Analog Value.
@@ -176,8 +298,6 @@ public class PhSensor {
                         "Could not update the pH reading from Analogue", e);
                     this.stopLogging = true;
                 }
-                BrewServer.LOG.info("Reconnecting OWFS");
-                LaunchControl.setupOWFS();
             }
         } else if (dsAddress != null && dsAddress.length() > 0
                 && dsOffset != null && dsOffset.length() > 0) {
@@ -196,17 +316,18 @@ public class PhSensor {
                         "Could not update the pH reading from OWFS", e);
                     this.stopLogging = true;
                 }
-                BrewServer.LOG.info("Reconnecting OWFS");
-                LaunchControl.setupOWFS();
             }
         }
         else if (i2cDevice != null && i2cChannel > -1)
         {
-            BrewServer.LOG.warning(String.format("Reading from %s channel %s", getI2CDevAddressString(), i2cChannel));
-            pinValue = new BigDecimal(i2cDevice.readValue(i2cChannel)).divide(BIGDEC_THOUSAND);
+            // The latest value the scanner read, it doesn't wait on the bus
+            float value = I2CScanner.forDevice(i2cDevice).getValue(i2cChannel);
+            if (!Float.isNaN(value)) {
+                pinValue = new BigDecimal(value).divide(BIGDEC_THOUSAND);
+            }
         }
 
-        BrewServer.LOG.warning("Read: " + pinValue);
+        BrewServer.LOG.info("Read: " + pinValue);
         return pinValue;
     }
 
@@ -310,7 +431,8 @@ public class PhSensor {
      */
     @PhSensorType(model = "SEN0161")
     public final BigDecimal calcSEN0161() {
-        BigDecimal readValue = this.getAverage(3);
+        BigDecimal readValue = this.getAverage(
+                Math.max(3, AnalogFilter.OVERSAMPLE));
         return MathUtil.multiply(readValue, 3.5).add(offset);
     }
 
@@ -323,7 +445,8 @@ public class PhSensor {
         BigDecimal readValue = new BigDecimal(0);
         BigDecimal t;
         int i = 0;
-        for ( i = 0; i < maxRead;) {
+        // Give up on an input that never reads, rather than spin forever
+        for (int attempt = 0; i < maxRead && attempt < maxRead * 3; attempt++) {
             t = this.updateReading();
             if (t.compareTo(BigDecimal.ZERO) > 0) {
                 readValue = readValue.add(t);
@@ -331,6 +454,9 @@ public class PhSensor {
             }
         }
 
+        if (i == 0) {
+            return BigDecimal.ZERO;
+        }
         return MathUtil.divide(readValue, new BigDecimal(i));
     }
 
@@ -356,6 +482,7 @@ public class PhSensor {
      */
     public final void setOffset(final BigDecimal attribute) {
         this.offset = attribute;
+        this.phFilter.reset();
     }
 
     public String getI2CDevNumberString() {
@@ -1,6 +1,7 @@
 package com.sb.elsinore.notificiations;
 
 import com.sb.elsinore.BrewServer;
+import com.sb.elsinore.LaunchControl;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
@@ -43,6 +44,7 @@ public class Notifications {
             return -1;
         }
         notificationsList.add(newNotification);
+        LaunchControl.statusChanged();
         if (newNotification.getMessage() != null) {
             BrewServer.LOG.info("Notification added with message: " + newNotification.getMessage());
         } else {
@@ -66,6 +68,7 @@ public class Notifications {
 
         toDelete.clearNotification();
         notificationsList.remove(index);
+        LaunchControl.statusChanged();
         BrewServer.LOG.info("Cleared notification: " + index);
         return true;
     }
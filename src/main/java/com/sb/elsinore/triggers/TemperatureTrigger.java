@@ -256,6 +256,8 @@ public class TemperatureTrigger implements TriggerInterface {
 
         setTargetTemperature();
         setStart(new Date());
+        // Check each new reading rather than polling
+        long seen = temperatureProbe.getSampleCount();
         if (this.mode == null) {
             // Just get to within 2F of the target Temp.
             BrewServer.LOG.warning(String.format("Waiting to be within 2F of %.2f", targetTemp));
@@ -264,7 +266,7 @@ public class TemperatureTrigger implements TriggerInterface {
                     .compareTo(new BigDecimal(2.0)) >= 0) {
                 try {
                     BrewServer.LOG.warning("" + temperatureProbe.convertF(temperatureProbe.getTemp().subtract(targetTemp).abs()));
-                    Thread.sleep(500);
+                    seen = temperatureProbe.awaitSample(seen, PID.SAMPLE_TIMEOUT);
                 } catch (InterruptedException ie) {
                     BrewServer.LOG.warning("Temperature Trigger interrupted.");
                 }
@@ -273,7 +275,7 @@ public class TemperatureTrigger implements TriggerInterface {
             while (this.temperatureProbe.getTemp().compareTo(
                     this.targetTemp) <= 0) {
                 try {
-                    Thread.sleep(500);
+                    seen = temperatureProbe.awaitSample(seen, PID.SAMPLE_TIMEOUT);
                 } catch (InterruptedException ie) {
                     BrewServer.LOG.warning("Temperature Trigger interrupted");
                     return;
@@ -283,7 +285,7 @@ public class TemperatureTrigger implements TriggerInterface {
             while (this.temperatureProbe.getTemp().compareTo(
                     this.targetTemp) >= 0) {
                 try {
-                    Thread.sleep(500);
+                    seen = temperatureProbe.awaitSample(seen, PID.SAMPLE_TIMEOUT);
                 } catch (InterruptedException ie) {
                     BrewServer.LOG.warning("Temperature Trigger interrupted");
                     return;
@@ -295,7 +297,7 @@ public class TemperatureTrigger implements TriggerInterface {
             while(temperatureProbe.convertF(temperatureProbe.getTemp().subtract(targetTemp).abs())
                     .compareTo(new BigDecimal(2.0)) >= 0) {
                 try {
-                    Thread.sleep(500);
+                    seen = temperatureProbe.awaitSample(seen, PID.SAMPLE_TIMEOUT);
                 } catch (InterruptedException ie) {
                     BrewServer.LOG.warning("Temperature Trigger interrupted.");
                 }
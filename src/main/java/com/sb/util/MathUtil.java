@@ -42,6 +42,14 @@ public final class MathUtil
         return a.multiply(BigDecimal.valueOf(multiplier));
     }
     
+    /**
+     * @param value A value worked out in doubles.
+     * @return The value to the same precision as the divisions.
+     */
+    public static BigDecimal valueOf(double value)
+    {
+        return BigDecimal.valueOf(value).round(context);
+    }
     
     
     
@@ -0,0 +1,115 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link AnalogFilter}.
+ */
+public class AnalogFilterTest {
+
+    private static final double DELTA = 1e-9;
+
+    @After
+    public void resetSettings() {
+        AnalogFilter.OVERSAMPLE = 1;
+        AnalogFilter.MEDIAN = 1;
+        AnalogFilter.SMOOTHING = 1;
+    }
+
+    @Test
+    public void theDefaultsPassTheInputThrough() {
+        AnalogFilter filter = new AnalogFilter();
+        assertTrue(Double.isNaN(filter.getFiltered()));
+
+        assertEquals(3.5, filter.add(3.5), DELTA);
+        assertEquals(100, filter.add(100), DELTA);
+        assertEquals(2, filter.add(2), DELTA);
+        assertEquals(2, filter.getRaw(), DELTA);
+    }
+
+    @Test
+    public void onlyTheMedianAndSmoothingFilter() {
+        AnalogFilter.OVERSAMPLE = 8;
+        assertTrue(AnalogFilter.isPassThrough());
+        AnalogFilter.SMOOTHING = 0.5;
+        assertFalse(AnalogFilter.isPassThrough());
+        AnalogFilter.SMOOTHING = 1;
+        AnalogFilter.MEDIAN = 3;
+        assertFalse(AnalogFilter.isPassThrough());
+    }
+
+    @Test
+    public void eachUpdateTakesTheMeanOfItsSamples() {
+        AnalogFilter filter = new AnalogFilter();
+        filter.sample(1);
+        filter.sample(2);
+        filter.sample(Double.NaN);
+        filter.sample(6);
+
+        assertEquals(3, filter.update(), DELTA);
+        assertEquals(3, filter.getRaw(), DELTA);
+        // Nothing new, so nothing changes
+        assertEquals(3, filter.update(), DELTA);
+    }
+
+    @Test
+    public void theMedianThrowsAwayASpike() {
+        AnalogFilter.MEDIAN = 3;
+        AnalogFilter filter = new AnalogFilter();
+
+        filter.add(10);
+        filter.add(11);
+        assertEquals(11, filter.add(500), DELTA);
+        assertEquals(500, filter.getRaw(), DELTA);
+        assertEquals(12, filter.add(12), DELTA);
+    }
+
+    @Test
+    public void theMedianOfAnEvenCountIsTheMiddlePair() {
+        AnalogFilter.MEDIAN = 4;
+        AnalogFilter filter = new AnalogFilter();
+
+        assertEquals(10, filter.add(10), DELTA);
+        assertEquals(15, filter.add(20), DELTA);
+    }
+
+    @Test
+    public void theMedianIsLimited() {
+        AnalogFilter.MEDIAN = 100;
+        AnalogFilter filter = new AnalogFilter();
+
+        for (int i = 0; i < AnalogFilter.MAX_MEDIAN * 2; i++) {
+            filter.add(i);
+        }
+        // The median of the last 15, 15 to 29
+        assertEquals(22, filter.getFiltered(), DELTA);
+    }
+
+    @Test
+    public void smoothingMovesPartWayToTheNewValue() {
+        AnalogFilter.SMOOTHING = 0.25;
+        AnalogFilter filter = new AnalogFilter();
+
+        assertEquals(8, filter.add(8), DELTA);
+        assertEquals(10, filter.add(16), DELTA);
+        assertEquals(11.5, filter.add(16), DELTA);
+    }
+
+    @Test
+    public void resetForgetsTheHistory() {
+        AnalogFilter.SMOOTHING = 0.5;
+        AnalogFilter filter = new AnalogFilter();
+        filter.add(100);
+        filter.sample(50);
+
+        filter.reset();
+        assertTrue(Double.isNaN(filter.getRaw()));
+        assertTrue(Double.isNaN(filter.update()));
+        assertEquals(4, filter.add(4), DELTA);
+    }
+}
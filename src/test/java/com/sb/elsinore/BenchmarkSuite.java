@@ -0,0 +1,121 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs every benchmark and compares the scores against the baseline in
+ * benchmarks/baseline.json, so a change to a hot path shows up as a
+ * percentage.
+ *
+ * It isn't part of the normal test run, run it with the bench profile:
+ *      mvn test -P bench
+ * and to save a new baseline:
+ *      mvn test -P bench -Dbench.output=benchmarks/baseline.json
+ *
+ * Settings, as system properties:
+ *  bench.include   A regular expression for the benchmarks to run,
+ *                  default all of them.
+ *  bench.baseline  The results to compare against, default
+ *                  benchmarks/baseline.json.
+ *  bench.output    The file to write the JMH results to, default
+ *                  target/jmh-result.json.
+ */
+public class BenchmarkSuite {
+
+    private final String include = System.getProperty("bench.include",
+            "com\\.sb\\..*Benchmark");
+    private final String baseline = System.getProperty("bench.baseline",
+            "benchmarks/baseline.json");
+    private final String output = System.getProperty("bench.output",
+            "target/jmh-result.json");
+
+    @Test
+    public void run() throws RunnerException, IOException, ParseException {
+        File outputFile = new File(output);
+        if (outputFile.getParentFile() != null) {
+            outputFile.getParentFile().mkdirs();
+        }
+        new Runner(new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(outputFile.getPath())
+                .build()).run();
+
+        File baselineFile = new File(baseline);
+        if (!baselineFile.isFile()
+                || baselineFile.getCanonicalFile().equals(
+                        outputFile.getCanonicalFile())) {
+            return;
+        }
+        Map<String, JSONObject> before = readScores(baselineFile);
+        Map<String, JSONObject> after = readScores(outputFile);
+        System.out.println();
+        System.out.println(String.format("%-60s %12s %12s %8s",
+                "Benchmark", "Baseline", "Now", "Change"));
+        for (Map.Entry<String, JSONObject> entry : after.entrySet()) {
+            double now = score(entry.getValue());
+            String unit = (String) entry.getValue().get("scoreUnit");
+            JSONObject old = before.get(entry.getKey());
+            if (old == null) {
+                System.out.println(String.format("%-60s %12s %12.3f %8s %s",
+                        entry.getKey(), "-", now, "new", unit));
+            } else {
+                double was = score(old);
+                System.out.println(String.format(
+                        "%-60s %12.3f %12.3f %+7.1f%% %s",
+                        entry.getKey(), was, now, (now - was) * 100 / was,
+                        unit));
+            }
+        }
+    }
+
+    /**
+     * @param file The JMH results, in JSON.
+     * @return The primary metric of each benchmark, by the benchmark name
+     *  and its parameters.
+     */
+    private static Map<String, JSONObject> readScores(final File file)
+            throws IOException, ParseException {
+        Map<String, JSONObject> scores = new LinkedHashMap<>();
+        try (Reader in = new FileReader(file)) {
+            JSONArray results = (JSONArray) new JSONParser().parse(in);
+            for (Object result : results) {
+                JSONObject benchmark = (JSONObject) result;
+                String name = (String) benchmark.get("benchmark");
+                name = name.substring(name.lastIndexOf('.',
+                        name.lastIndexOf('.') - 1) + 1);
+                JSONObject params = (JSONObject) benchmark.get("params");
+                if (params != null) {
+                    name += params.toJSONString();
+                }
+                scores.put(name, (JSONObject) benchmark.get("primaryMetric"));
+            }
+        }
+        return scores;
+    }
+
+    private static double score(final JSONObject metric) {
+        return ((Number) metric.get("score")).doubleValue();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new BenchmarkSuite().run();
+    }
+}
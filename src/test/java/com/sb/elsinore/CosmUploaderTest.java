@@ -0,0 +1,266 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.hardware.Hardware;
+import com.sb.elsinore.hardware.SystemHardware;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link CosmUploader} against a local stub HTTP server.
+ */
+public class CosmUploaderTest {
+
+    /**
+     * How long the stub takes to answer when it's being slow.
+     */
+    private static final long SLOW_RESPONSE = 3000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final List<String> received =
+            Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final CountDownLatch firstRequest = new CountDownLatch(1);
+    private volatile long responseDelay = 0;
+    private CosmUploader uploader;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange)
+                    throws IOException {
+                firstRequest.countDown();
+                String body = read(exchange.getRequestBody());
+                try {
+                    Thread.sleep(responseDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                int code = 200;
+                if (failuresLeft.getAndDecrement() > 0) {
+                    code = 500;
+                } else {
+                    received.add(exchange.getRequestURI().getPath()
+                            + "=" + body);
+                }
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        if (uploader != null) {
+            uploader.stop();
+        }
+        server.stop(0);
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Send the value as a PUT to the stub, the same as a datastream update.
+     */
+    private CosmUploader.Transport stubTransport() {
+        final int port = server.getAddress().getPort();
+        return new CosmUploader.Transport() {
+            @Override
+            public void push(final String datastream, final String value,
+                    final String scale) throws IOException {
+                URL url = new URL("http://127.0.0.1:" + port
+                        + "/v2/feeds/1/datastreams/" + datastream);
+                HttpURLConnection conn =
+                        (HttpURLConnection) url.openConnection();
+                conn.setRequestMethod("PUT");
+                conn.setDoOutput(true);
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write((value + scale).getBytes("UTF-8"));
+                }
+                int code = conn.getResponseCode();
+                conn.disconnect();
+                if (code != 200) {
+                    throw new IOException("HTTP " + code);
+                }
+            }
+        };
+    }
+
+    private static boolean waitFor(final Condition condition,
+            final long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < end) {
+            if (condition.isTrue()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return condition.isTrue();
+    }
+
+    private interface Condition {
+        boolean isTrue();
+    }
+
+    /**
+     * Write a w1_slave file reading the given temperature.
+     */
+    private static void writeProbe(final File probe, final int milliC)
+            throws IOException {
+        try (FileWriter out = new FileWriter(probe)) {
+            out.write("4b 01 4b 46 7f ff 05 10 e1 : crc=e1 YES\n"
+                    + "4b 01 4b 46 7f ff 05 10 e1 t=" + milliC + "\n");
+        }
+    }
+
+    @Test
+    public void statusLatencyDoesNotDependOnUploads() throws Exception {
+        File devices = folder.newFolder("devices");
+        File probeDir = new File(devices, "28-000000000001");
+        assertTrue(probeDir.mkdir());
+        File probe = new File(probeDir, "w1_slave");
+        writeProbe(probe, 65000);
+
+        Hardware oldHardware = Hardware.getInstance();
+        Hardware.setInstance(new SystemHardware(
+                devices.getPath() + File.separator));
+        Temp boil = new Temp("Boil", "28-000000000001");
+        Hardware.setInstance(oldHardware);
+
+        responseDelay = SLOW_RESPONSE;
+        uploader = new CosmUploader(stubTransport(), 16, 10, 1000);
+        LaunchControl.cosmUploader = uploader;
+        LaunchControl.tempList.add(boil);
+        try {
+            uploader.start();
+            boil.updateTemp();
+            assertEquals(1, uploader.getSubmitted());
+            assertTrue("The stub never saw an upload",
+                    firstRequest.await(2, TimeUnit.SECONDS));
+
+            // The uploader is now stuck waiting on the stub, every new
+            // reading still goes through the whole update path
+            long worst = 0;
+            for (int i = 1; i <= 20; i++) {
+                writeProbe(probe, 65000 + i * 100);
+                long start = System.nanoTime();
+                boil.updateTemp();
+                LaunchControl.getStatusSnapshot();
+                worst = Math.max(worst, System.nanoTime() - start);
+            }
+            long worstMs = TimeUnit.NANOSECONDS.toMillis(worst);
+            assertTrue("Status took " + worstMs + "ms with a "
+                    + SLOW_RESPONSE + "ms upload in flight",
+                    worstMs < SLOW_RESPONSE / 3);
+            // Readings past the full queue are dropped, not waited for
+            assertEquals(21, uploader.getSubmitted() + uploader.getDropped());
+            assertEquals(0, new BigDecimal("67.0").compareTo(boil.getTempC()));
+            assertTrue(LaunchControl.getStatusSnapshot().getJSON()
+                    .contains("\"Boil\""));
+        } finally {
+            LaunchControl.tempList.remove(boil);
+            LaunchControl.cosmUploader = null;
+        }
+    }
+
+    @Test
+    public void mergesValuesPerDatastream() throws Exception {
+        uploader = new CosmUploader(stubTransport(), 64, 10, 1000);
+        for (int i = 0; i < 10; i++) {
+            uploader.submit("Boil", Integer.toString(i), "F");
+            uploader.submit("Mash", Integer.toString(100 + i), "C");
+        }
+        uploader.start();
+
+        assertTrue(waitFor(new Condition() {
+            @Override
+            public boolean isTrue() {
+                return uploader.getUploaded() == 2;
+            }
+        }, 5000));
+        assertEquals(2, received.size());
+        assertTrue(received.contains("/v2/feeds/1/datastreams/Boil=9F"));
+        assertTrue(received.contains("/v2/feeds/1/datastreams/Mash=109C"));
+        assertEquals(20, uploader.getSubmitted());
+    }
+
+    @Test
+    public void backsOffAndRetriesWhenUploadsFail() throws Exception {
+        failuresLeft.set(3);
+        uploader = new CosmUploader(stubTransport(), 16, 50, 400);
+        uploader.submit("Boil", "150", "F");
+        uploader.start();
+
+        assertTrue(waitFor(new Condition() {
+            @Override
+            public boolean isTrue() {
+                return uploader.getFailures() == 3
+                        && uploader.getCurrentBackoff() == 400;
+            }
+        }, 5000));
+
+        // a newer value replaces the one that kept failing
+        uploader.submit("Boil", "151", "F");
+        assertTrue(waitFor(new Condition() {
+            @Override
+            public boolean isTrue() {
+                return uploader.getUploaded() == 1;
+            }
+        }, 5000));
+        assertEquals(Collections.singletonList(
+                "/v2/feeds/1/datastreams/Boil=151F"), received);
+        assertEquals(50, uploader.getCurrentBackoff());
+    }
+
+    @Test
+    public void dropsValuesWhenTheQueueIsFull() {
+        uploader = new CosmUploader(stubTransport(), 2, 10, 1000);
+        assertTrue(uploader.submit("Boil", "1", "F"));
+        assertTrue(uploader.submit("Mash", "2", "F"));
+        assertFalse(uploader.submit("HLT", "3", "F"));
+        assertEquals(2, uploader.getSubmitted());
+        assertEquals(1, uploader.getDropped());
+    }
+}
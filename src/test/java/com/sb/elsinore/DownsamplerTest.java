@@ -0,0 +1,149 @@
+package com.sb.elsinore;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the graph data {@link Downsampler}.
+ */
+public class DownsamplerTest {
+
+    private static final int COUNT = 10000;
+    private static final int SPIKE = 4321;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SeriesFile series;
+
+    /**
+     * A slow sine wave with a single spike in it.
+     */
+    @Before
+    public void writeSeries() throws IOException {
+        File file = new File(folder.getRoot(), "28-0001-temp.dat");
+        SeriesWriterPool pool = new SeriesWriterPool(60000, false);
+        for (int i = 0; i < COUNT; i++) {
+            float value = (float) (150 + 10 * Math.sin(i / 500.0));
+            if (i == SPIKE) {
+                value = 212;
+            }
+            pool.appendSample(file, 5000L * i, value);
+        }
+        pool.close();
+        series = SeriesFile.open(file);
+    }
+
+    private static void assertIncreasing(final int[] indices) {
+        for (int i = 1; i < indices.length; i++) {
+            assertTrue(indices[i] > indices[i - 1]);
+        }
+    }
+
+    private static boolean contains(final int[] indices, final int index) {
+        for (int i : indices) {
+            if (i == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void returnsEverythingUnderTheLimit() {
+        int[] indices = Downsampler.downsample(series, 100, 150, 500,
+                Downsampler.Method.LTTB);
+        assertEquals(50, indices.length);
+        assertEquals(100, indices[0]);
+        assertEquals(149, indices[49]);
+        assertEquals(0, Downsampler.downsample(series, 10, 10, 500,
+                Downsampler.Method.LTTB).length);
+    }
+
+    @Test
+    public void lttbKeepsTheEndsAndTheSpike() {
+        int[] indices = Downsampler.downsample(series, 0, COUNT, 200,
+                Downsampler.Method.LTTB);
+        assertEquals(200, indices.length);
+        assertEquals(0, indices[0]);
+        assertEquals(COUNT - 1, indices[199]);
+        assertIncreasing(indices);
+        assertTrue(contains(indices, SPIKE));
+    }
+
+    @Test
+    public void minMaxKeepsTheExtremes() {
+        int[] indices = Downsampler.downsample(series, 0, COUNT, 200,
+                Downsampler.Method.MINMAX);
+        assertTrue(indices.length <= 200);
+        assertIncreasing(indices);
+        assertTrue(contains(indices, SPIKE));
+
+        float min = Float.MAX_VALUE;
+        for (int i : indices) {
+            min = Math.min(min, series.getValue(i));
+        }
+        assertEquals(140f, min, 0.01f);
+    }
+
+    @Test
+    public void tooFewPointsKeepsTheEnds() {
+        for (int maxPoints = -1; maxPoints <= 2; maxPoints++) {
+            int[] indices = Downsampler.downsample(series, 0, COUNT,
+                    maxPoints, Downsampler.Method.LTTB);
+            assertEquals(2, indices.length);
+            assertEquals(0, indices[0]);
+            assertEquals(COUNT - 1, indices[1]);
+        }
+
+        // A single min/max bucket over the whole range
+        int[] indices = Downsampler.downsample(series, 0, COUNT, 1,
+                Downsampler.Method.MINMAX);
+        assertEquals(2, indices.length);
+        assertTrue(contains(indices, SPIKE));
+    }
+
+    @Test
+    public void resolutionSetsTheBucketWidth() {
+        long span = series.getTime(COUNT - 1) - series.getTime(0);
+        // Records are 5s apart, so 100 record buckets
+        long resolution = 500000;
+        assertEquals(100, Downsampler.pointsFor(span, resolution,
+                Downsampler.Method.LTTB));
+        assertEquals(200, Downsampler.pointsFor(span, resolution,
+                Downsampler.Method.MINMAX));
+        assertEquals(1, Downsampler.pointsFor(0, resolution,
+                Downsampler.Method.LTTB));
+
+        // Each min/max bucket is one resolution wide, not two
+        int[] indices = Downsampler.downsample(series, 0, COUNT,
+                Downsampler.pointsFor(span, resolution,
+                        Downsampler.Method.MINMAX),
+                Downsampler.Method.MINMAX);
+        assertTrue("Points: " + indices.length, indices.length > 150);
+        for (int i = 2; i < indices.length; i += 2) {
+            long width = series.getTime(indices[i])
+                    - series.getTime(indices[i - 2]);
+            assertTrue("Bucket gap: " + width, width < 2 * resolution);
+        }
+        assertTrue(contains(indices, SPIKE));
+    }
+
+    @Test
+    public void parsesTheMethodName() {
+        assertEquals(Downsampler.Method.MINMAX,
+                Downsampler.Method.fromString("minmax"));
+        assertEquals(Downsampler.Method.LTTB,
+                Downsampler.Method.fromString(null));
+        assertEquals(Downsampler.Method.LTTB,
+                Downsampler.Method.fromString("bogus"));
+    }
+}
@@ -0,0 +1,317 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.hardware.Hardware;
+import com.sb.elsinore.hardware.SimulatedBrewery;
+import com.sb.elsinore.hardware.SimulatedVessel;
+import com.sb.elsinore.triggers.TemperatureTrigger;
+import com.sb.elsinore.triggers.TriggerInterface;
+import org.json.simple.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * An end to end load test. N simulated vessels each get a probe, a PID and
+ * a mash step, and M clients poll /getstatus the way the dashboard does.
+ * The request latency, how late the outputs were switched, GC and threads
+ * are written out as JSON.
+ *
+ * It isn't part of the normal test run, run it with the load profile:
+ *      mvn test -P load -Dload.vessels=50 -Dload.clients=10
+ *
+ * Settings, as system properties:
+ *  load.vessels    The number of vessels, default 20.
+ *  load.clients    The number of polling clients, default 10.
+ *  load.seconds    How long to poll for, default 30.
+ *  load.interval   The time between each client's polls in milliseconds,
+ *                  0 to poll flat out, default 1000.
+ *  load.speed      How much faster than real time the vessels heat,
+ *                  default 10.
+ *  load.output     The file to write the results to, default
+ *                  target/load-harness.json.
+ */
+public class LoadHarness {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double MASH_TEMP = 66;
+    private static final long WARM_UP = 2000;
+
+    private final int vessels = Integer.getInteger("load.vessels", 20);
+    private final int clients = Integer.getInteger("load.clients", 10);
+    private final int seconds = Integer.getInteger("load.seconds", 30);
+    private final long interval = Long.getLong("load.interval", 1000);
+    private final double speed = Double.parseDouble(
+            System.getProperty("load.speed", "10"));
+    private final String output = System.getProperty("load.output",
+            "target/load-harness.json");
+
+    /**
+     * Polls the status, recording how long each request took.
+     */
+    private final class Client implements Runnable {
+        private final URL url;
+        private final long deadline;
+        private long[] latencies = new long[1024];
+        private int count = 0;
+        private final AtomicLong errors;
+
+        private Client(final URL url, final long deadline,
+                final AtomicLong errors) {
+            this.url = url;
+            this.deadline = deadline;
+            this.errors = errors;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[8192];
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                try {
+                    HttpURLConnection connection =
+                            (HttpURLConnection) url.openConnection();
+                    if (connection.getResponseCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                    try (InputStream in = connection.getInputStream()) {
+                        while (in.read(buffer) >= 0) {
+                            // Read the whole status, as a browser would
+                        }
+                    }
+                    record(System.nanoTime() - start);
+                } catch (IOException e) {
+                    errors.incrementAndGet();
+                }
+                long wait = interval
+                        - (long) ((System.nanoTime() - start) / NANOS_PER_MILLI);
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void record(final long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void run() throws Exception {
+        BrewServer.LOG.setLevel(Level.SEVERE);
+        SimulatedBrewery brewery = LaunchControl.simulate(vessels, speed);
+        List<TriggerInterface> steps = new ArrayList<>();
+        for (SimulatedVessel vessel : brewery.getVessels()) {
+            steps.add(addVessel(vessel));
+        }
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        BrewServer server = new BrewServer(port);
+        server.start();
+        BrewServer.LOG.setLevel(Level.SEVERE);
+        Thread.sleep(WARM_UP);
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount -= gc.getCollectionCount();
+            gcMillis -= gc.getCollectionTime();
+        }
+        long samples = -countSamples();
+
+        URL url = new URL("http://localhost:" + port + "/getstatus");
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1000000000L;
+        AtomicLong errors = new AtomicLong();
+        List<Client> polling = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(url, deadline, errors);
+            Thread thread = new Thread(client, "Load Client #" + (i + 1));
+            thread.setDaemon(true);
+            polling.add(client);
+            threads.add(thread);
+            thread.start();
+        }
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        int liveThreads = threadBean.getThreadCount();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        samples += countSamples();
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+            gcMillis += gc.getCollectionTime();
+        }
+
+        int total = 0;
+        for (Client client : polling) {
+            total += client.count;
+        }
+        long[] latencies = new long[total];
+        int filled = 0;
+        for (Client client : polling) {
+            System.arraycopy(client.latencies, 0, latencies, filled,
+                    client.count);
+            filled += client.count;
+        }
+        Arrays.sort(latencies);
+
+        int reached = 0;
+        for (TriggerInterface step : steps) {
+            if (!step.isActive()) {
+                reached++;
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("vessels", vessels);
+        result.put("clients", clients);
+        result.put("seconds", elapsed);
+        result.put("intervalMillis", interval);
+        result.put("speed", speed);
+
+        JSONObject requests = new JSONObject();
+        requests.put("count", total);
+        requests.put("errors", errors.get());
+        requests.put("perSecond", total / elapsed);
+        requests.put("p50Millis", percentile(latencies, 0.5));
+        requests.put("p90Millis", percentile(latencies, 0.9));
+        requests.put("p99Millis", percentile(latencies, 0.99));
+        requests.put("maxMillis", percentile(latencies, 1));
+        result.put("requests", requests);
+
+        OutputScheduler scheduler = OutputScheduler.getInstance();
+        JSONObject control = new JSONObject();
+        control.put("edges", scheduler.getEdgeCount());
+        control.put("lateP50Millis",
+                scheduler.getLatenessPercentile(0.5) / NANOS_PER_MILLI);
+        control.put("lateP99Millis",
+                scheduler.getLatenessPercentile(0.99) / NANOS_PER_MILLI);
+        control.put("lateMaxMillis",
+                scheduler.getMaxLateness() / NANOS_PER_MILLI);
+        control.put("readingsPerProbePerSecond",
+                samples / (double) vessels / elapsed);
+        control.put("mashStepsReached", reached);
+        result.put("control", control);
+
+        JSONObject jvm = new JSONObject();
+        jvm.put("gcCount", gcCount);
+        jvm.put("gcMillis", gcMillis);
+        jvm.put("threads", liveThreads);
+        jvm.put("peakThreads", threadBean.getPeakThreadCount());
+        jvm.put("heapUsedMB", ManagementFactory.getMemoryMXBean()
+                .getHeapMemoryUsage().getUsed() / (1024 * 1024));
+        result.put("jvm", jvm);
+
+        File outputFile = new File(output);
+        if (outputFile.getParentFile() != null) {
+            outputFile.getParentFile().mkdirs();
+        }
+        try (Writer out = new FileWriter(outputFile)) {
+            result.writeJSONString(out);
+        }
+        System.out.println(result.toJSONString());
+
+        server.stop();
+        OutputScheduler.getInstance().shutdown();
+        brewery.shutdown();
+        Hardware.setInstance(null);
+
+        assertTrue("No requests completed", total > 0);
+    }
+
+    /**
+     * Set up the probe, PID and a mash step for a vessel.
+     * @return The mash step.
+     */
+    @SuppressWarnings("unchecked")
+    private TriggerInterface addVessel(final SimulatedVessel vessel) {
+        Temp temp = new Temp(vessel.getName(), vessel.getProbe());
+        temp.setScale("C");
+        LaunchControl.tempList.add(temp);
+        LaunchControl.startPolling(temp);
+
+        PID pid = new PID(temp, temp.getName(), vessel.getHeaterGpio());
+        pid.setHeatCycle(new BigDecimal(2));
+        pid.setHeatP(new BigDecimal(10));
+        pid.setHeatI(new BigDecimal("0.05"));
+        pid.setHeatD(BigDecimal.ZERO);
+        LaunchControl.pidList.add(pid);
+        Thread pidThread = new Thread(pid, "PID " + temp.getName());
+        pidThread.setDaemon(true);
+        pidThread.start();
+
+        JSONObject parameters = new JSONObject();
+        parameters.put("method", "Infusion");
+        parameters.put("stepType", "Sacch");
+        parameters.put("tempprobe", temp.getName());
+        parameters.put("mode", TemperatureTrigger.INCREASE);
+        parameters.put("targetTemperature", Double.toString(MASH_TEMP));
+        TemperatureTrigger mash = new TemperatureTrigger(0, parameters);
+        TriggerControl triggers = temp.getTriggerControl();
+        triggers.addTrigger(mash);
+        triggers.activateTrigger(0);
+        Thread triggerThread = new Thread(triggers,
+                "Triggers " + temp.getName());
+        triggerThread.setDaemon(true);
+        triggerThread.start();
+        return mash;
+    }
+
+    private static long countSamples() {
+        long samples = 0;
+        for (Temp temp : LaunchControl.tempList) {
+            samples += temp.getSampleCount();
+        }
+        return samples;
+    }
+
+    /**
+     * @param sorted The latencies in nanoseconds, sorted.
+     * @param fraction The fraction of requests, 0.99 for the 99th
+     *                 percentile.
+     * @return The latency that fraction of requests finished within, in
+     *  milliseconds.
+     */
+    private static double percentile(final long[] sorted,
+            final double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / NANOS_PER_MILLI;
+    }
+}
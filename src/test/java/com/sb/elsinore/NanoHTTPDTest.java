@@ -0,0 +1,265 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link NanoHTTPD} connection handling.
+ */
+public class NanoHTTPDTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * A server that answers every request with the URI, waits on the latch
+     * for "/block" and holds "/stream" open until it's released.
+     */
+    private static final class TestServer extends NanoHTTPD {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch blocked;
+
+        private TestServer(final int blockers) {
+            super("127.0.0.1", 0);
+            this.blocked = new CountDownLatch(blockers);
+        }
+
+        @Override
+        public Response serve(final String uri, final Method method,
+                final Map<String, String> headers,
+                final Map<String, String> parms,
+                final Map<String, String> files) {
+            if (uri.equals("/block")) {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (uri.equals("/stream")) {
+                Response response = new Response(Response.Status.OK,
+                        "text/event-stream", new InputStream() {
+                            @Override
+                            public int read() throws IOException {
+                                try {
+                                    release.await(10, TimeUnit.SECONDS);
+                                } catch (InterruptedException e) {
+                                    throw new IOException("Interrupted");
+                                }
+                                return -1;
+                            }
+                        });
+                response.setChunkedTransfer(true);
+                response.setStreaming(true);
+                return response;
+            }
+            return new Response(Response.Status.OK, MIME_PLAINTEXT, uri);
+        }
+    }
+
+    private TestServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.release.countDown();
+            server.stop();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("127.0.0.1", server.getListeningPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static void request(final Socket socket, final String request)
+            throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(UTF8));
+        out.flush();
+    }
+
+    private static String readHeader(final InputStream in)
+            throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        while (!header.toString("UTF-8").endsWith("\r\n\r\n")) {
+            int read = in.read();
+            if (read == -1) {
+                break;
+            }
+            header.write(read);
+        }
+        return header.toString("UTF-8");
+    }
+
+    /**
+     * Read a single response, using the Content-Length to find the end.
+     */
+    private static String readResponse(final Socket socket)
+            throws IOException {
+        InputStream in = socket.getInputStream();
+        String head = readHeader(in);
+        if (!head.endsWith("\r\n\r\n")) {
+            return head;
+        }
+        int start = head.indexOf("Content-Length: ") + 16;
+        int length = Integer.parseInt(
+                head.substring(start, head.indexOf("\r\n", start)));
+        byte[] body = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            offset += in.read(body, offset, length - offset);
+        }
+        return head + new String(body, UTF8);
+    }
+
+    @Test
+    public void keepAliveServesManyRequestsOnOneSocket() throws IOException {
+        server = new TestServer(0);
+        server.setAsyncRunner(new NanoHTTPD.BoundedAsyncRunner(2, 2));
+        server.start();
+
+        try (Socket socket = connect()) {
+            for (int i = 0; i < 3; i++) {
+                request(socket, "GET /poll" + i + " HTTP/1.1\r\n"
+                        + "Host: localhost\r\n\r\n");
+                String response = readResponse(socket);
+                assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+                assertTrue(response.contains("Connection: keep-alive\r\n"));
+                assertTrue(response.endsWith("/poll" + i));
+            }
+        }
+    }
+
+    @Test
+    public void closesWhenAsked() throws IOException {
+        server = new TestServer(0);
+        server.start();
+
+        try (Socket socket = connect()) {
+            request(socket, "GET /once HTTP/1.1\r\nConnection: close\r\n\r\n");
+            assertTrue(readResponse(socket).contains("Connection: close\r\n"));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+
+        try (Socket socket = connect()) {
+            request(socket, "GET /old HTTP/1.0\r\n\r\n");
+            assertTrue(readResponse(socket).contains("Connection: close\r\n"));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void rejectsConnectionsWhenFull() throws Exception {
+        server = new TestServer(1);
+        NanoHTTPD.BoundedAsyncRunner workers =
+                new NanoHTTPD.BoundedAsyncRunner(1, 1);
+        server.setAsyncRunner(workers);
+        server.start();
+
+        try (Socket busy = connect();
+             Socket waiting = connect();
+             Socket rejected = connect()) {
+            request(busy, "GET /block HTTP/1.1\r\n\r\n");
+            assertTrue(server.blocked.await(5, TimeUnit.SECONDS));
+
+            String response = readResponse(rejected);
+            assertTrue(response.startsWith("HTTP/1.1 503 Service Unavailable"));
+            assertEquals(1, workers.getActive());
+            assertEquals(1, workers.getQueued());
+            assertEquals(1, workers.getRejected());
+
+            // The waiting connection is closed after one request so the
+            // queue can drain
+            server.release.countDown();
+            assertTrue(readResponse(busy).endsWith("/block"));
+            request(waiting, "GET /next HTTP/1.1\r\n\r\n");
+            response = readResponse(waiting);
+            assertTrue(response.endsWith("/next"));
+        }
+    }
+
+    @Test
+    public void streamsDoNotHoldRequestThreads() throws IOException {
+        server = new TestServer(0);
+        server.setAsyncRunner(new NanoHTTPD.BoundedAsyncRunner(1, 1));
+        NanoHTTPD.BoundedAsyncRunner streams =
+                new NanoHTTPD.BoundedAsyncRunner(2, 0);
+        server.setStreamRunner(streams);
+        server.start();
+
+        // Connect one at a time, so none are waiting for the request thread
+        try (Socket first = connect()) {
+            // More open streams than request threads
+            Socket second = connect();
+            for (Socket stream : new Socket[] {first, second}) {
+                request(stream, "GET /stream HTTP/1.1\r\n\r\n");
+                String header = readHeader(stream.getInputStream());
+                assertTrue(header.startsWith("HTTP/1.1 200 OK"));
+                assertTrue(header.contains("Transfer-Encoding: chunked"));
+                assertTrue(header.contains("Connection: close\r\n"));
+            }
+            assertEquals(2, streams.getActive());
+
+            Socket ordinary = connect();
+            request(ordinary, "GET /poll HTTP/1.1\r\n\r\n");
+            assertTrue(readResponse(ordinary).endsWith("/poll"));
+
+            ordinary.close();
+
+            // The stream threads are full
+            Socket refused = connect();
+            request(refused, "GET /stream HTTP/1.1\r\n\r\n");
+            assertTrue(readResponse(refused).startsWith(
+                    "HTTP/1.1 503 Service Unavailable"));
+            assertEquals(1, streams.getRejected());
+            refused.close();
+
+            // Ending the stream closes the connection
+            server.release.countDown();
+            String end = readHeader(first.getInputStream());
+            assertEquals("0\r\n\r\n", end);
+            assertEquals(-1, first.getInputStream().read());
+            second.close();
+        }
+    }
+
+    @Test
+    public void idleKeepAliveMakesWayForWaitingConnections()
+            throws IOException {
+        server = new TestServer(0);
+        server.setAsyncRunner(new NanoHTTPD.BoundedAsyncRunner(1, 1));
+        server.start();
+
+        try (Socket idle = connect()) {
+            request(idle, "GET /first HTTP/1.1\r\n\r\n");
+            assertTrue(readResponse(idle).contains(
+                    "Connection: keep-alive\r\n"));
+
+            // The only thread is waiting on the idle connection
+            long start = System.currentTimeMillis();
+            Socket waiting = connect();
+            request(waiting, "GET /second HTTP/1.1\r\n\r\n");
+            assertTrue(readResponse(waiting).endsWith("/second"));
+            long waited = System.currentTimeMillis() - start;
+            assertTrue("Waited " + waited + "ms",
+                    waited < NanoHTTPD.SOCKET_READ_TIMEOUT / 2);
+            assertEquals(-1, idle.getInputStream().read());
+            waiting.close();
+        }
+    }
+}
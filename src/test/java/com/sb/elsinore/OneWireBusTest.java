@@ -0,0 +1,199 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link OneWireBus} against a fake sysfs tree.
+ */
+public class OneWireBusTest {
+
+    /**
+     * The fake conversion time, shorter than a real probe's to keep the
+     * test quick.
+     */
+    private static final long CONVERSION = 300;
+    private static final int PROBES = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File devices;
+    private File bulkRead = null;
+    private final AtomicInteger conversions = new AtomicInteger();
+    private final List<FakeProbe> probes = new ArrayList<>();
+    private OneWireBus bus;
+    private Thread kernel = null;
+
+    private static String read(final File file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line = in.readLine();
+            return line == null ? "" : line.trim();
+        }
+    }
+
+    private static void write(final File file, final String text)
+            throws IOException {
+        try (FileWriter out = new FileWriter(file)) {
+            out.write(text);
+        }
+    }
+
+    /**
+     * A DS18B20 in the fake tree. Reading it does a conversion unless a
+     * bulk conversion has finished.
+     */
+    private final class FakeProbe implements SensorScheduler.Sensor {
+        private final File slave;
+        private volatile String reading = null;
+
+        private FakeProbe(final String address, final int milliC)
+                throws IOException {
+            File dir = new File(devices, address);
+            assertTrue(dir.mkdir());
+            slave = new File(dir, "w1_slave");
+            write(slave, "4b 01 4b 46 7f ff 05 10 e1 : crc=e1 YES\n"
+                    + "4b 01 4b 46 7f ff 05 10 e1 t=" + milliC + "\n");
+        }
+
+        @Override
+        public String getBus() {
+            return OneWireBus.BUS;
+        }
+
+        @Override
+        public long getPollInterval() {
+            return 500;
+        }
+
+        @Override
+        public boolean poll() {
+            try {
+                if (bulkRead == null || !read(bulkRead).equals("1")) {
+                    conversions.incrementAndGet();
+                    Thread.sleep(CONVERSION);
+                }
+                try (BufferedReader in = new BufferedReader(
+                        new FileReader(slave))) {
+                    in.readLine();
+                    String line = in.readLine();
+                    reading = line.substring(line.indexOf("t=") + 2);
+                }
+                return true;
+            } catch (IOException | InterruptedException e) {
+                return false;
+            }
+        }
+    }
+
+    @Before
+    public void createTree() throws IOException {
+        devices = folder.newFolder("devices");
+        assertTrue(new File(devices, "w1_bus_master1").mkdir());
+        bus = new OneWireBus(devices, CONVERSION);
+        for (int i = 0; i < PROBES; i++) {
+            FakeProbe probe = new FakeProbe("28-00000000000" + i,
+                    20000 + i * 1000);
+            probes.add(probe);
+            bus.add(probe);
+        }
+    }
+
+    @After
+    public void shutdown() {
+        bus.shutdown();
+        if (kernel != null) {
+            kernel.interrupt();
+        }
+    }
+
+    /**
+     * Act like the kernel, a trigger written to therm_bulk_read reads -1
+     * for a conversion time then 1.
+     */
+    private void startKernel() throws IOException {
+        bulkRead = new File(new File(devices, "w1_bus_master1"),
+                OneWireBus.BULK_READ);
+        write(bulkRead, "0\n");
+        kernel = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        if (read(bulkRead).equals("trigger")) {
+                            write(bulkRead, "-1\n");
+                            Thread.sleep(CONVERSION);
+                            write(bulkRead, "1\n");
+                        }
+                        Thread.sleep(5);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // Test over
+                }
+            }
+        });
+        kernel.setDaemon(true);
+        kernel.start();
+    }
+
+    private void assertAllRead() {
+        for (int i = 0; i < PROBES; i++) {
+            assertEquals(Integer.toString(20000 + i * 1000),
+                    probes.get(i).reading);
+        }
+    }
+
+    @Test
+    public void probesAreReadConcurrently() {
+        long start = System.currentTimeMillis();
+        assertTrue(bus.poll());
+        long time = System.currentTimeMillis() - start;
+
+        assertAllRead();
+        assertEquals(PROBES, conversions.get());
+        // One after another would take PROBES * CONVERSION
+        assertTrue("Took " + time + "ms", time < CONVERSION * 2);
+    }
+
+    @Test
+    public void bulkConversionConvertsOnce() throws IOException {
+        startKernel();
+        long start = System.currentTimeMillis();
+        assertTrue(bus.poll());
+        long time = System.currentTimeMillis() - start;
+
+        assertAllRead();
+        assertEquals(0, conversions.get());
+        assertTrue("Took " + time + "ms",
+                time >= CONVERSION && time < CONVERSION * 2);
+    }
+
+    @Test
+    public void noBulkReadWithoutTheMasterFile() {
+        assertFalse(bus.convertAll());
+        assertEquals(500, bus.getPollInterval());
+
+        for (FakeProbe probe : probes) {
+            bus.remove(probe);
+        }
+        assertFalse(bus.contains(probes.get(0)));
+        assertEquals(Temp.DEFAULT_POLL_INTERVAL, bus.getPollInterval());
+        assertTrue(bus.poll());
+    }
+}
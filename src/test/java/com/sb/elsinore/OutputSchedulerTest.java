@@ -0,0 +1,441 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.devices.OutputDevice;
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link OutputScheduler}, driven by a clock the tests move
+ * on by hand so the timings are exact.
+ */
+public class OutputSchedulerTest {
+
+    private static final long MILLI = 1000000L;
+
+    /**
+     * A clock that only moves when it's told to, running the tasks that
+     * come due on the test's thread. Every task can be run late by a fixed
+     * amount, as a busy scheduler thread would.
+     */
+    private static final class ManualClock implements OutputScheduler.Clock {
+        private long now = 0;
+        private long late = 0;
+        private long sequence = 0;
+        private boolean shutdown = false;
+        private final PriorityQueue<Timed> queue = new PriorityQueue<>();
+
+        /**
+         * A scheduled task, in the order it runs.
+         */
+        private static final class Timed implements Comparable<Timed> {
+            private final long at;
+            private final long order;
+            private final FutureTask<Void> task;
+
+            private Timed(final long at, final long order,
+                    final FutureTask<Void> task) {
+                this.at = at;
+                this.order = order;
+                this.task = task;
+            }
+
+            @Override
+            public int compareTo(final Timed o) {
+                if (at != o.at) {
+                    return at < o.at ? -1 : 1;
+                }
+                return Long.compare(order, o.order);
+            }
+        }
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public Future<?> schedule(final Runnable task,
+                final long delayNanos) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Shut down");
+            }
+            FutureTask<Void> future = new FutureTask<>(task, null);
+            queue.add(new Timed(now + delayNanos + late, sequence++, future));
+            return future;
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            queue.clear();
+        }
+
+        /**
+         * Move the time on, running every task due by then.
+         * @param millis The time to move on by.
+         */
+        private void advance(final long millis) {
+            long until = now + millis * MILLI;
+            while (!queue.isEmpty() && queue.peek().at <= until) {
+                Timed next = queue.poll();
+                now = next.at;
+                next.task.run();
+                if (!next.task.isCancelled()) {
+                    try {
+                        next.task.get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+            now = until;
+        }
+    }
+
+    /**
+     * An output that records when it was switched, by the clock or by
+     * {@link System#nanoTime()} if there isn't one.
+     */
+    private static final class TestOutput implements OutputScheduler.Output {
+        private final OutputScheduler.Clock clock;
+        private final long cycle;
+        private volatile double duty;
+        private volatile long slot = 0;
+        private boolean on = false;
+        private final List<Long> onTimes = new ArrayList<>();
+        private final List<Long> offTimes = new ArrayList<>();
+
+        private TestOutput(final OutputScheduler.Clock clock,
+                final long cycle, final double duty) {
+            this.clock = clock;
+            this.cycle = cycle;
+            this.duty = duty;
+        }
+
+        @Override
+        public long getCycleMillis() {
+            return cycle;
+        }
+
+        @Override
+        public long getOnMillis(final long cycleMillis) {
+            return (long) (duty * cycleMillis / 100);
+        }
+
+        @Override
+        public long getSlotMillis() {
+            return slot;
+        }
+
+        private long now() {
+            return clock == null ? System.nanoTime() : clock.nanoTime();
+        }
+
+        @Override
+        public synchronized void turnOn() {
+            if (!on) {
+                onTimes.add(now());
+            }
+            on = true;
+        }
+
+        @Override
+        public synchronized void turnOff() {
+            if (on) {
+                offTimes.add(now());
+            }
+            on = false;
+        }
+
+        private synchronized boolean isOn() {
+            return on;
+        }
+
+        private synchronized List<Long> getOnTimes() {
+            return new ArrayList<>(onTimes);
+        }
+
+        private synchronized List<Long> getOffTimes() {
+            return new ArrayList<>(offTimes);
+        }
+    }
+
+    /**
+     * A device that records its pin instead of switching a GPIO.
+     */
+    private static final class RecordingDevice extends OutputDevice {
+        private final OutputScheduler.Clock clock;
+        private boolean value = false;
+        private long changed;
+        private long onNanos = 0;
+        private int switchedOn = 0;
+
+        private RecordingDevice(final OutputScheduler.Clock clock,
+                final String cycle, final String slot) {
+            super("recorder", "", new BigDecimal(cycle));
+            setSlotTime(new BigDecimal(slot));
+            this.clock = clock;
+            this.changed = clock.nanoTime();
+        }
+
+        @Override
+        protected synchronized void setValue(final boolean newValue) {
+            if (newValue == value) {
+                return;
+            }
+            long now = clock.nanoTime();
+            if (value) {
+                onNanos += now - changed;
+            } else {
+                switchedOn++;
+            }
+            value = newValue;
+            changed = now;
+        }
+
+        private synchronized int getSwitchedOn() {
+            return switchedOn;
+        }
+
+        private synchronized long getOnNanos() {
+            return onNanos;
+        }
+    }
+
+    private ManualClock clock = new ManualClock();
+    private OutputScheduler scheduler;
+
+    @After
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void cyclesDoNotDrift() {
+        clock.late = 7 * MILLI;
+        scheduler = new OutputScheduler(false, clock);
+        TestOutput output = new TestOutput(clock, 50, 40);
+        scheduler.add(output);
+        clock.advance(1000);
+        scheduler.remove(output);
+
+        List<Long> onTimes = output.getOnTimes();
+        List<Long> offTimes = output.getOffTimes();
+        assertEquals(20, onTimes.size());
+        // The first cycle starts when its edge runs, 7ms late
+        assertEquals(7 * MILLI, (long) onTimes.get(0));
+        for (int i = 1; i < onTimes.size(); i++) {
+            // Each cycle is due one cycle after the last was due, so every
+            // edge is 7ms late and the lateness never adds up
+            assertEquals("Cycle " + i, (57 + (i - 1) * 50 + 7) * MILLI,
+                    (long) onTimes.get(i));
+        }
+        // The first cycle started late and its off edge runs late too
+        assertEquals(27 * MILLI, offTimes.get(0) - onTimes.get(0));
+        for (int i = 1; i < onTimes.size(); i++) {
+            assertEquals("Cycle " + i, 20 * MILLI,
+                    offTimes.get(i) - onTimes.get(i));
+        }
+        assertEquals(40, scheduler.getEdgeCount());
+        assertEquals(7 * MILLI, scheduler.getMaxLateness());
+        // Rounded up to a power of two microseconds
+        assertEquals(8192 * 1000L, scheduler.getLatenessPercentile(0.5));
+        assertTrue(scheduler.getLatenessPercentile(1)
+                >= scheduler.getMaxLateness());
+    }
+
+    @Test
+    public void lowerDutySwitchesOffStraightAway() {
+        scheduler = new OutputScheduler(false, clock);
+        TestOutput output = new TestOutput(clock, 1000, 100);
+        scheduler.add(output);
+        clock.advance(200);
+        assertTrue(output.isOn());
+
+        output.duty = 10;
+        scheduler.dutyChanged(output);
+        assertFalse(output.isOn());
+        assertEquals(200 * MILLI, (long) output.getOffTimes().get(0));
+    }
+
+    @Test
+    public void higherDutyStaysOnLonger() {
+        scheduler = new OutputScheduler(false, clock);
+        TestOutput output = new TestOutput(clock, 1000, 20);
+        scheduler.add(output);
+        clock.advance(100);
+        assertTrue(output.isOn());
+
+        output.duty = 50;
+        scheduler.dutyChanged(output);
+        clock.advance(250);
+        // Still on at 350ms, off by 500ms without waiting for the next cycle
+        assertTrue(output.isOn());
+        clock.advance(250);
+        assertFalse(output.isOn());
+
+        assertEquals(500 * MILLI,
+                output.getOffTimes().get(0) - output.getOnTimes().get(0));
+        assertEquals(1, output.getOnTimes().size());
+    }
+
+    @Test
+    public void zeroDutyStaysOff() {
+        scheduler = new OutputScheduler(false, clock);
+        TestOutput output = new TestOutput(clock, 20, 0);
+        scheduler.add(output);
+        clock.advance(200);
+        assertTrue(output.getOnTimes().isEmpty());
+    }
+
+    @Test
+    public void removeSwitchesOff() {
+        scheduler = new OutputScheduler(false, clock);
+        TestOutput output = new TestOutput(clock, 20, 100);
+        scheduler.add(output);
+        clock.advance(50);
+        assertTrue(output.isOn());
+
+        scheduler.remove(output);
+        assertFalse(scheduler.contains(output));
+        assertFalse(output.isOn());
+        clock.advance(50);
+        assertFalse(output.isOn());
+    }
+
+    @Test
+    public void staggeredOutputsStartApart() {
+        scheduler = new OutputScheduler(true, clock);
+        List<TestOutput> outputs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TestOutput output = new TestOutput(clock, 1000, 10);
+            outputs.add(output);
+            scheduler.add(output);
+        }
+
+        clock.advance(800);
+        List<Long> starts = new ArrayList<>();
+        for (TestOutput output : outputs) {
+            assertEquals(1, output.getOnTimes().size());
+            starts.add(output.getOnTimes().get(0));
+        }
+        Collections.sort(starts);
+        // Offsets of 0, 236 and 618ms
+        assertEquals(0, (long) starts.get(0));
+        assertEquals(236, starts.get(1) / MILLI);
+        assertEquals(618, starts.get(2) / MILLI);
+    }
+
+    @Test
+    public void burstSpreadsTheOnTimeOverTheCycle() {
+        scheduler = new OutputScheduler(false, clock);
+        TestOutput output = new TestOutput(clock, 200, 35);
+        output.slot = 10;
+        scheduler.add(output);
+        clock.advance(1000);
+        scheduler.remove(output);
+
+        List<Long> onTimes = output.getOnTimes();
+        List<Long> offTimes = output.getOffTimes();
+        // 7 of the 20 slots in each cycle, never two together
+        assertEquals(35, onTimes.size());
+        long onFor = 0;
+        for (int i = 0; i < onTimes.size(); i++) {
+            long slotOn = offTimes.get(i) - onTimes.get(i);
+            assertEquals("Slot " + i, 10 * MILLI, slotOn);
+            onFor += slotOn;
+        }
+        assertEquals(350 * MILLI, onFor);
+    }
+
+    @Test
+    public void burstAtFullAndZeroDuty() {
+        scheduler = new OutputScheduler(false, clock);
+        TestOutput full = new TestOutput(clock, 100, 100);
+        full.slot = 10;
+        TestOutput off = new TestOutput(clock, 100, 0);
+        off.slot = 10;
+        scheduler.add(full);
+        scheduler.add(off);
+        clock.advance(195);
+
+        // Stays on through every slot, and off
+        assertEquals(1, full.getOnTimes().size());
+        assertTrue(full.isOn());
+        assertTrue(off.getOnTimes().isEmpty());
+        assertEquals(40, scheduler.getEdgeCount());
+    }
+
+    @Test
+    public void burstFireSwitchesTheDeviceInSlots() {
+        scheduler = new OutputScheduler(false, clock);
+        RecordingDevice heater = new RecordingDevice(clock, "0.2", "0.01");
+        OutputControl control = new OutputControl();
+        control.setHeater(heater);
+        control.setDuty(25);
+        control.start(scheduler);
+        clock.advance(1000);
+        control.shutdown();
+
+        // 5 cycles at a 5% resolution, 5 slots of 20 in each
+        assertEquals(25, heater.getSwitchedOn());
+        assertEquals(250 * MILLI, heater.getOnNanos());
+
+        // The same duty switched once a cycle
+        scheduler.shutdown();
+        clock = new ManualClock();
+        scheduler = new OutputScheduler(false, clock);
+        heater = new RecordingDevice(clock, "0.2", "0");
+        control = new OutputControl();
+        control.setHeater(heater);
+        control.setDuty(25);
+        control.start(scheduler);
+        clock.advance(1000);
+        control.shutdown();
+
+        // The sixth cycle starts just as it's shut down
+        assertEquals(6, heater.getSwitchedOn());
+        assertEquals(250 * MILLI, heater.getOnNanos());
+    }
+
+    @Test
+    public void theDefaultClockSwitchesOnItsOwnThread()
+            throws InterruptedException {
+        scheduler = new OutputScheduler(false);
+        TestOutput output = new TestOutput(null, 50, 50);
+        scheduler.add(output);
+        Thread.sleep(500);
+        scheduler.remove(output);
+
+        // Wide bounds, the thread can be held up on a loaded machine
+        List<Long> onTimes = output.getOnTimes();
+        List<Long> offTimes = output.getOffTimes();
+        assertTrue("Cycles: " + onTimes.size(),
+                onTimes.size() >= 3 && onTimes.size() <= 11);
+        long onFor = 0;
+        for (int i = 0; i < offTimes.size(); i++) {
+            onFor += offTimes.get(i) - onTimes.get(i);
+        }
+        long elapsed = offTimes.get(offTimes.size() - 1) - onTimes.get(0);
+        // Roughly half the time on
+        assertTrue("On for " + onFor / MILLI + "ms of " + elapsed / MILLI,
+                onFor > elapsed / 4 && onFor <= elapsed);
+        assertFalse(output.isOn());
+    }
+}
@@ -0,0 +1,304 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Test;
+import org.owfs.jowfsclient.OwfsConnection;
+import org.owfs.jowfsclient.OwfsConnectionConfig;
+import org.owfs.jowfsclient.OwfsException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link OwfsBus}.
+ */
+public class OwfsBusTest {
+
+    private static final String PROBE = "28.0000000000A1";
+    private static final String ADC = "20.0000000000B2";
+
+    /**
+     * An owserver with a fixed set of values.
+     */
+    private static class FakeConnection implements OwfsConnection {
+        final Map<String, String> values = new HashMap<>();
+        final List<String> reads = new ArrayList<>();
+        final List<String> writes = new ArrayList<>();
+        List<String> directory = Arrays.asList("/" + PROBE, "/" + ADC,
+                "/simultaneous", "/uncached");
+        int lists = 0;
+        int exists = 0;
+        boolean broken = false;
+        boolean erroring = false;
+
+        @Override
+        public void setConfiguration(final OwfsConnectionConfig config) {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public synchronized String read(final String path)
+                throws IOException, OwfsException {
+            reads.add(path);
+            if (broken) {
+                throw new IOException("Connection reset");
+            }
+            if (erroring) {
+                throw new OwfsException("Error -5", -5);
+            }
+            String value = values.get(path);
+            if (value == null) {
+                throw new OwfsException("Error -1", -1);
+            }
+            return value;
+        }
+
+        @Override
+        public synchronized void write(final String path,
+                final String value) {
+            writes.add(path + "=" + value);
+        }
+
+        @Override
+        public Boolean exists(final String path) {
+            exists++;
+            return values.containsKey(path);
+        }
+
+        @Override
+        public List<String> listDirectoryAll(final String path) {
+            return listDirectory(path);
+        }
+
+        @Override
+        public synchronized List<String> listDirectory(final String path) {
+            lists++;
+            return directory;
+        }
+    }
+
+    /**
+     * Lends out the one connection, counting how it's handed back.
+     */
+    private static class FakeConnector implements OwfsBus.Connector {
+        final FakeConnection connection;
+        int lent = 0;
+        int released = 0;
+        int failed = 0;
+
+        FakeConnector(final FakeConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public OwfsConnection acquire() {
+            lent++;
+            return connection;
+        }
+
+        @Override
+        public void release(final OwfsConnection released,
+                final boolean failed) {
+            assertTrue(released == connection);
+            this.released++;
+            if (failed) {
+                this.failed++;
+            }
+        }
+    }
+
+    /**
+     * A probe that reads its paths through the bus.
+     */
+    private static class Probe implements SensorScheduler.Sensor {
+        final OwfsBus bus;
+        final String[] paths;
+        final List<String> values = new ArrayList<>();
+
+        Probe(final OwfsBus bus, final String... paths) {
+            this.bus = bus;
+            this.paths = paths;
+        }
+
+        @Override
+        public String getBus() {
+            return OwfsBus.BUS;
+        }
+
+        @Override
+        public long getPollInterval() {
+            return 1000;
+        }
+
+        @Override
+        public boolean poll() {
+            values.clear();
+            try {
+                for (String path : paths) {
+                    values.add(bus.read(path));
+                }
+                return true;
+            } catch (OwfsException | IOException e) {
+                return false;
+            }
+        }
+    }
+
+    @After
+    public void resetSettings() {
+        OwfsBus.UNCACHED = false;
+        OwfsBus.SIMULTANEOUS = false;
+    }
+
+    private static FakeConnection connection() {
+        FakeConnection connection = new FakeConnection();
+        connection.values.put("/" + PROBE + "/temperature", "  65.5");
+        connection.values.put("/" + PROBE + "/latesttemp", "  66.0");
+        connection.values.put("/" + ADC + "/volt.A", " 1.25");
+        connection.values.put("/uncached/" + PROBE + "/temperature", " 65.75");
+        return connection;
+    }
+
+    @Test
+    public void readsWithoutCheckingTheyExist() throws Exception {
+        FakeConnection connection = connection();
+        OwfsBus bus = new OwfsBus(new FakeConnector(connection), 0);
+
+        assertEquals("65.5", bus.read(PROBE + "/temperature"));
+        assertEquals("", bus.read(ADC + "/volt.B"));
+        assertEquals(0, connection.exists);
+        assertEquals(2, connection.reads.size());
+        assertEquals(1, connection.lists);
+    }
+
+    @Test
+    public void devicesMissingFromTheDirectoryAreNotRead() throws Exception {
+        FakeConnection connection = connection();
+        OwfsBus bus = new OwfsBus(new FakeConnector(connection), 0);
+
+        assertEquals("", bus.read("28.0000000000FF/temperature"));
+        assertEquals("", bus.read("/28.0000000000FF/temperature"));
+        assertTrue(connection.reads.isEmpty());
+        // Only listed once, it was only just listed
+        assertEquals(1, connection.lists);
+    }
+
+    @Test
+    public void eachCycleReadsThePathsInOnePass() throws Exception {
+        FakeConnection connection = connection();
+        OwfsBus bus = new OwfsBus(new FakeConnector(connection), 0);
+        Probe temp = new Probe(bus, PROBE + "/temperature", ADC + "/volt.A");
+        Probe ph = new Probe(bus, ADC + "/volt.A");
+        bus.add(temp);
+        bus.add(ph);
+
+        // The first cycle learns the paths
+        assertTrue(bus.poll());
+        assertEquals(3, connection.reads.size());
+
+        // Then each is read once, before the probes are polled
+        connection.reads.clear();
+        assertTrue(bus.poll());
+        assertEquals(2, connection.reads.size());
+        assertEquals(Arrays.asList("65.5", "1.25"), temp.values);
+        assertEquals(Arrays.asList("1.25"), ph.values);
+
+        // A probe that's removed stops being read
+        bus.remove(ph);
+        bus.remove(temp);
+        bus.add(new Probe(bus, ADC + "/volt.A"));
+        bus.poll();
+        connection.reads.clear();
+        bus.poll();
+        assertEquals(Arrays.asList("/" + ADC + "/volt.A"), connection.reads);
+    }
+
+    @Test
+    public void simultaneousConversionReadsTheLatestTemperature()
+            throws Exception {
+        OwfsBus.SIMULTANEOUS = true;
+        FakeConnection connection = connection();
+        OwfsBus bus = new OwfsBus(new FakeConnector(connection), 0);
+        Probe temp = new Probe(bus, PROBE + "/temperature");
+        bus.add(temp);
+
+        bus.poll();
+        assertTrue(connection.writes.isEmpty());
+        bus.poll();
+        assertEquals(Arrays.asList("/simultaneous/temperature=1"),
+                connection.writes);
+        assertEquals("66.0", temp.values.get(0));
+    }
+
+    @Test
+    public void uncachedReadsGoThroughTheUncachedTree() throws Exception {
+        OwfsBus.UNCACHED = true;
+        FakeConnection connection = connection();
+        OwfsBus bus = new OwfsBus(new FakeConnector(connection), 0);
+
+        assertEquals("65.75", bus.read(PROBE + "/temperature"));
+    }
+
+    @Test
+    public void aFailedConnectionIsHandedBackAsFailed() throws Exception {
+        FakeConnection connection = connection();
+        FakeConnector connector = new FakeConnector(connection);
+        OwfsBus bus = new OwfsBus(connector, 0);
+        assertEquals("65.5", bus.read(PROBE + "/temperature"));
+
+        connection.broken = true;
+        try {
+            bus.read(PROBE + "/temperature");
+            fail("The read should fail");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(2, connector.lent);
+        assertEquals(2, connector.released);
+        assertEquals(1, connector.failed);
+    }
+
+    @Test
+    public void serverErrorsKeepTheConnection() throws Exception {
+        FakeConnection connection = connection();
+        connection.erroring = true;
+        FakeConnector connector = new FakeConnector(connection);
+        OwfsBus bus = new OwfsBus(connector, 0);
+        Probe temp = new Probe(bus, PROBE + "/temperature");
+        bus.add(temp);
+
+        assertFalse(bus.poll());
+        assertFalse(bus.poll());
+        assertEquals(connector.lent, connector.released);
+        assertEquals(0, connector.failed);
+    }
+
+    @Test
+    public void aFailedPassIsHandedBackOnce() throws Exception {
+        FakeConnection connection = connection();
+        FakeConnector connector = new FakeConnector(connection);
+        OwfsBus bus = new OwfsBus(connector, 0);
+        bus.add(new Probe(bus, PROBE + "/temperature", ADC + "/volt.A"));
+        bus.poll();
+
+        connection.broken = true;
+        connection.reads.clear();
+        assertFalse(bus.poll());
+        // The pass stops at the first failure, then the probe's own read
+        assertEquals(2, connection.reads.size());
+        assertEquals(2, connector.failed);
+        assertEquals(connector.lent, connector.released);
+    }
+}
@@ -0,0 +1,227 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+import org.owfs.jowfsclient.OwfsConnection;
+import org.owfs.jowfsclient.OwfsConnectionConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link OwfsPool}.
+ */
+public class OwfsPoolTest {
+
+    /**
+     * A connection that only records whether it was closed.
+     */
+    private static class FakeConnection implements OwfsConnection {
+        final String server;
+        boolean closed = false;
+
+        FakeConnection(final String server) {
+            this.server = server;
+        }
+
+        @Override
+        public void setConfiguration(final OwfsConnectionConfig config) {
+        }
+
+        @Override
+        public void disconnect() {
+            closed = true;
+        }
+
+        @Override
+        public String read(final String path) {
+            return "";
+        }
+
+        @Override
+        public void write(final String path, final String value) {
+        }
+
+        @Override
+        public Boolean exists(final String path) {
+            return true;
+        }
+
+        @Override
+        public List<String> listDirectoryAll(final String path) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<String> listDirectory(final String path) {
+            return new ArrayList<>();
+        }
+    }
+
+    private static class FakeFactory implements OwfsPool.Factory {
+        final List<FakeConnection> connections = new ArrayList<>();
+
+        @Override
+        public synchronized OwfsConnection connect(final String server,
+                final int port) {
+            FakeConnection connection = new FakeConnection(server);
+            connections.add(connection);
+            return connection;
+        }
+    }
+
+    private static OwfsPool pool(final FakeFactory factory, final int size,
+            final long minBackoff) {
+        OwfsPool pool = new OwfsPool(factory, size, minBackoff, 5000);
+        pool.configure("owserver", 4304);
+        return pool;
+    }
+
+    private static void assertRefused(final OwfsPool pool) {
+        try {
+            pool.acquire();
+            fail("The pool should refuse while the server is down");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void nothingIsLentBeforeItsConfigured() throws Exception {
+        OwfsPool pool = new OwfsPool(new FakeFactory(), 2, 10, 100);
+        assertFalse(pool.isConfigured());
+        assertNull(pool.acquire());
+    }
+
+    @Test
+    public void eachConnectionIsLentToOneReader() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        OwfsPool pool = pool(factory, 2, 1000);
+
+        OwfsConnection first = pool.acquire();
+        OwfsConnection second = pool.acquire();
+        assertFalse(first == second);
+        pool.release(first, false);
+        assertSame(first, pool.acquire());
+
+        assertEquals(2, factory.connections.size());
+        assertEquals(3, pool.getAcquired());
+        assertEquals(2, pool.getOpen());
+        assertEquals(0, pool.getIdle());
+        assertEquals(2, pool.getInUse());
+
+        pool.release(second, false);
+        assertEquals(1, pool.getInUse());
+        assertEquals(3, pool.getAcquired());
+    }
+
+    @Test
+    public void waitsForAConnectionToBeHandedBack() throws Exception {
+        final OwfsPool pool = pool(new FakeFactory(), 1, 1000);
+        final OwfsConnection only = pool.acquire();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                pool.release(only, false);
+            }
+        }).start();
+        assertSame(only, pool.acquire());
+    }
+
+    @Test
+    public void aFailureOnlyClosesThatConnection() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        OwfsPool pool = pool(factory, 3, 1000);
+        OwfsConnection failing = pool.acquire();
+        OwfsConnection working = pool.acquire();
+        OwfsConnection idle = pool.acquire();
+        pool.release(idle, false);
+
+        pool.release(failing, true);
+        assertTrue(factory.connections.get(0).closed);
+        // Still in use by another reader
+        assertFalse(factory.connections.get(1).closed);
+        // Idle since before the failure
+        assertTrue(factory.connections.get(2).closed);
+
+        assertFalse(pool.isAvailable());
+        assertRefused(pool);
+        assertEquals(1, pool.getFailures());
+        assertEquals(1, pool.getRefused());
+        assertTrue(pool.getRetryIn() > 0);
+
+        // The server answered after all
+        pool.release(working, false);
+        assertTrue(pool.isAvailable());
+        assertSame(working, pool.acquire());
+    }
+
+    @Test
+    public void oneReaderTriesTheServerAfterTheBackoff() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        OwfsPool pool = pool(factory, 2, 20);
+        pool.release(pool.acquire(), true);
+        assertRefused(pool);
+
+        Thread.sleep(60);
+        OwfsConnection trial = pool.acquire();
+        assertEquals(2, factory.connections.size());
+        // Everyone else waits for the trial
+        assertRefused(pool);
+
+        pool.release(trial, false);
+        assertTrue(pool.isAvailable());
+        assertSame(trial, pool.acquire());
+        assertEquals(0, pool.getConsecutiveFailures());
+    }
+
+    @Test
+    public void theBackoffDoublesUpToTheLimit() throws Exception {
+        OwfsPool pool = pool(new FakeFactory(), 4, 1000);
+        List<OwfsConnection> lent = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            lent.add(pool.acquire());
+        }
+
+        pool.release(lent.get(0), true);
+        assertTrue(pool.getRetryIn() <= 1000);
+        pool.release(lent.get(1), true);
+        assertTrue(pool.getRetryIn() > 1000);
+        assertTrue(pool.getRetryIn() <= 2000);
+        pool.release(lent.get(2), true);
+        pool.release(lent.get(3), true);
+        // 8 seconds, but no more than the limit
+        assertTrue(pool.getRetryIn() > 4000);
+        assertTrue(pool.getRetryIn() <= 5000);
+        assertEquals(4, pool.getConsecutiveFailures());
+    }
+
+    @Test
+    public void configuringAgainClosesTheOldConnections() throws Exception {
+        FakeFactory factory = new FakeFactory();
+        OwfsPool pool = pool(factory, 2, 1000);
+        OwfsConnection lent = pool.acquire();
+        pool.release(pool.acquire(), false);
+
+        pool.configure("other", 4304);
+        assertTrue(factory.connections.get(1).closed);
+        assertFalse(factory.connections.get(0).closed);
+
+        pool.release(lent, false);
+        assertTrue(factory.connections.get(0).closed);
+        assertEquals(0, pool.getIdle());
+        assertEquals("other", ((FakeConnection) pool.acquire()).server);
+    }
+}
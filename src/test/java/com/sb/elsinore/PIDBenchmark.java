@@ -0,0 +1,147 @@
+package com.sb.elsinore;
+
+import com.sb.util.MathUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares one control step, adding a sample to the moving average and
+ * calculating the duty, in the old BigDecimal PID against the
+ * {@link PIDCore}. Run with the GC profiler, gc.alloc.rate.norm is the
+ * bytes allocated per step.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.sb.elsinore.PIDBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PIDBenchmark {
+
+    private static final BigDecimal THOUSAND = new BigDecimal(1000);
+    private static final double[] READINGS = {
+        148.25, 148.5, 148.75, 149.0, 149.125, 149.25, 149.5
+    };
+
+    private int reading = 0;
+
+    // The old state
+    private final List<BigDecimal> tempList = new ArrayList<>();
+    private final BigDecimal[] readings = new BigDecimal[READINGS.length];
+    private BigDecimal setPoint = new BigDecimal("150.00");
+    private BigDecimal proportional = new BigDecimal("2.5");
+    private BigDecimal integral = new BigDecimal("0.1");
+    private BigDecimal derivative = new BigDecimal("1.5");
+    private BigDecimal previousTime = BigDecimal.ZERO;
+    private BigDecimal totalError = BigDecimal.ZERO;
+    private BigDecimal previousError = BigDecimal.ZERO;
+    private BigDecimal oldDuty = BigDecimal.ZERO;
+
+    private final PIDCore core = new PIDCore();
+    private double newDuty = 0;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < READINGS.length; i++) {
+            readings[i] = BigDecimal.valueOf(READINGS[i]);
+        }
+        core.setGains(2.5, 0.1, 1.5);
+    }
+
+    private int nextReading() {
+        reading = (reading + 1) % READINGS.length;
+        return reading;
+    }
+
+    /**
+     * The same step in BigDecimal, the way PID.run, calcAverage and
+     * calculate did it.
+     * @return The duty.
+     */
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        if (tempList.size() >= 5) {
+            tempList.remove(0);
+        }
+        tempList.add(readings[nextReading()]);
+
+        BigDecimal total = new BigDecimal(0.0);
+        for (BigDecimal t : tempList) {
+            total = total.add(t);
+        }
+        BigDecimal avgTemp = MathUtil.divide(total, tempList.size());
+
+        BigDecimal currentTime = new BigDecimal(System.currentTimeMillis());
+        if (previousTime.compareTo(BigDecimal.ZERO) == 0) {
+            previousTime = currentTime.subtract(THOUSAND);
+        }
+        BigDecimal dt = MathUtil.divide(
+                currentTime.subtract(previousTime), THOUSAND);
+        if (dt.compareTo(BigDecimal.ZERO) == 0) {
+            dt = BigDecimal.ONE;
+        }
+
+        BigDecimal error = setPoint.subtract(avgTemp);
+        BigDecimal newTotal = totalError.add(error.multiply(dt));
+        if (newTotal.multiply(integral).abs()
+                .compareTo(new BigDecimal(100)) <= 0) {
+            totalError = newTotal;
+        }
+        BigDecimal output = proportional.multiply(error)
+                .add(integral.multiply(totalError))
+                .add(derivative.multiply(MathUtil.divide(
+                        error.subtract(previousError), dt)));
+        previousError = error;
+
+        if (output.compareTo(new BigDecimal(100)) > 0) {
+            output = new BigDecimal(100);
+        } else if (output.compareTo(new BigDecimal(-100)) < 0) {
+            output = new BigDecimal(-100);
+        }
+        previousTime = currentTime;
+
+        // OutputControl.setDuty
+        if (oldDuty.compareTo(output) != 0) {
+            oldDuty = output;
+        }
+        return oldDuty;
+    }
+
+    @Benchmark
+    public double primitive() {
+        core.addSample(READINGS[nextReading()]);
+        double output = core.calculate(150, core.getAverage(),
+                System.nanoTime(), true, true);
+        if (newDuty != output) {
+            newDuty = output;
+        }
+        return newDuty;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PIDBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,132 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the {@link PIDCore}.
+ */
+public class PIDCoreTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void averageIsOverTheLastSamples() {
+        PIDCore core = new PIDCore(3);
+        assertEquals(PIDCore.NO_AVERAGE, core.getAverage(), DELTA);
+
+        core.addSample(10);
+        assertEquals(10, core.getAverage(), DELTA);
+        core.addSample(20);
+        core.addSample(30);
+        assertEquals(20, core.getAverage(), DELTA);
+
+        // The oldest drops out
+        core.addSample(40);
+        core.addSample(50);
+        assertEquals(3, core.getSampleCount());
+        assertEquals(40, core.getAverage(), DELTA);
+    }
+
+    @Test
+    public void proportionalOnly() {
+        PIDCore core = new PIDCore();
+        core.setGains(2, 0, 0);
+        assertEquals(20, core.calculate(150, 140, 0, true, true), DELTA);
+        assertEquals(-10, core.calculate(150, 155, SECOND, true, true), DELTA);
+    }
+
+    @Test
+    public void dutyIsCappedAndGated() {
+        PIDCore core = new PIDCore();
+        core.setGains(10, 0, 0);
+        assertEquals(100, core.calculate(150, 100, 0, true, true), DELTA);
+        assertEquals(-100, core.calculate(100, 150, SECOND, true, true), DELTA);
+        // No cooler
+        assertEquals(0, core.calculate(100, 150, 2 * SECOND, true, false),
+                DELTA);
+        // No heater
+        assertEquals(0, core.calculate(150, 100, 3 * SECOND, false, true),
+                DELTA);
+    }
+
+    @Test
+    public void integralUsesTheTimeBetweenSteps() {
+        PIDCore core = new PIDCore();
+        core.setGains(0, 1, 0);
+        // The first step has nothing to integrate over
+        assertEquals(0, core.calculate(100, 90, 0, true, true), DELTA);
+        // 10 degrees for 2 seconds
+        assertEquals(20, core.calculate(100, 90, 2 * SECOND, true, true),
+                DELTA);
+        // and half a second more
+        assertEquals(25, core.calculate(100, 90, 5 * SECOND / 2, true, true),
+                DELTA);
+        assertEquals(25, core.getTotalError(), DELTA);
+    }
+
+    @Test
+    public void integralDoesNotWindUp() {
+        PIDCore core = new PIDCore();
+        core.setGains(0, 1, 0);
+        core.calculate(100, 0, 0, true, true);
+        for (int i = 1; i <= 10; i++) {
+            core.calculate(100, 60, i * SECOND, true, true);
+        }
+        // 40 + 40 = 80, the next 40 would take it past 100
+        assertEquals(80, core.getTotalError(), DELTA);
+
+        // So it comes back as soon as the error changes sign
+        assertEquals(70, core.calculate(100, 110, 11 * SECOND, true, true),
+                DELTA);
+    }
+
+    @Test
+    public void raisingTheIntegralGainDoesNotLockTheDuty() {
+        PIDCore core = new PIDCore();
+        core.setGains(0, 0, 0);
+        core.calculate(100, 0, 0, true, true);
+        for (int i = 1; i <= 10; i++) {
+            core.calculate(100, 60, i * SECOND, true, true);
+        }
+        // Nothing is integrated without an integral gain
+        assertEquals(0, core.getTotalError(), DELTA);
+
+        core.setGains(0, 1, 0);
+        for (int i = 11; i <= 20; i++) {
+            core.calculate(100, 60, i * SECOND, true, true);
+        }
+        assertEquals(80, core.getTotalError(), DELTA);
+
+        // A higher gain clamps what was integrated to the output range
+        core.setGains(0, 4, 0);
+        assertEquals(100, core.calculate(100, 60, 21 * SECOND, true, true),
+                DELTA);
+        assertEquals(25, core.getTotalError(), DELTA);
+
+        // and the duty recovers once the error changes sign
+        assertEquals(60, core.calculate(100, 110, 22 * SECOND, true, true),
+                DELTA);
+    }
+
+    @Test
+    public void derivativeUsesTheTimeBetweenSteps() {
+        PIDCore core = new PIDCore();
+        core.setGains(0, 0, 4);
+        assertEquals(0, core.calculate(100, 90, 0, true, true), DELTA);
+        // The error dropped by 2 over half a second
+        assertEquals(-16, core.calculate(100, 92, SECOND / 2, true, true),
+                DELTA);
+    }
+
+    @Test
+    public void noTimePassedKeepsTheLastDuty() {
+        PIDCore core = new PIDCore();
+        core.setGains(1, 0, 0);
+        assertEquals(10, core.calculate(100, 90, SECOND, true, true), DELTA);
+        assertEquals(10, core.calculate(100, 50, SECOND, true, true), DELTA);
+        assertEquals(10, core.getOutput(), DELTA);
+    }
+}
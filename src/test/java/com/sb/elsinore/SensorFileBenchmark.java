@@ -0,0 +1,95 @@
+package com.sb.elsinore;
+
+import com.sb.util.MathUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old w1_slave parsing in Temp.updateTempFromFile against the
+ * {@link SensorFile} reader. Run with the GC profiler, gc.alloc.rate.norm
+ * is the bytes allocated per read.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.sb.elsinore.SensorFileBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorFileBenchmark {
+
+    private File file;
+    private SensorFile sensorFile;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("w1_slave", ".bench");
+        try (FileWriter out = new FileWriter(file)) {
+            out.write("4b 01 4b 46 7f ff 05 10 e1 : crc=e1 YES\n"
+                    + "4b 01 4b 46 7f ff 05 10 e1 t=20687\n");
+        }
+        sensorFile = new SensorFile(file.getPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        sensorFile.close();
+        file.delete();
+    }
+
+    /**
+     * The parsing as it was in Temp.updateTempFromFile.
+     * @return The temperature in celsius.
+     */
+    @Benchmark
+    public BigDecimal bufferedReader() throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line = br.readLine();
+            if (line == null || line.contains("NO")) {
+                return null;
+            }
+            line = br.readLine();
+            int t = line.indexOf("t=");
+            BigDecimal tTemp = new BigDecimal(line.substring(t + 2));
+            return MathUtil.divide(tTemp, 1000);
+        }
+    }
+
+    @Benchmark
+    public int sensorFile() throws IOException {
+        if (!sensorFile.read()) {
+            return Integer.MIN_VALUE;
+        }
+        return sensorFile.getMilliDegrees();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SensorFileBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
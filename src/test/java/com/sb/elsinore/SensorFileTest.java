@@ -0,0 +1,106 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link SensorFile} parsing.
+ */
+public class SensorFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SensorFile sensorFile = null;
+
+    @After
+    public void close() {
+        if (sensorFile != null) {
+            sensorFile.close();
+        }
+    }
+
+    private static void write(final File file, final String text)
+            throws IOException {
+        try (FileWriter out = new FileWriter(file)) {
+            out.write(text);
+        }
+    }
+
+    private static String w1Slave(final String crc, final int milliC) {
+        return "4b 01 4b 46 7f ff 05 10 e1 : crc=e1 " + crc + "\n"
+                + "4b 01 4b 46 7f ff 05 10 e1 t=" + milliC + "\n";
+    }
+
+    @Test
+    public void readsW1Slave() throws IOException {
+        File file = folder.newFile("w1_slave");
+        write(file, w1Slave("YES", 20687));
+        sensorFile = new SensorFile(file.getPath());
+
+        assertTrue(sensorFile.read());
+        assertEquals(20687, sensorFile.getMilliDegrees());
+
+        // The same file is read again from the start
+        write(file, w1Slave("YES", -10125));
+        assertTrue(sensorFile.read());
+        assertEquals(-10125, sensorFile.getMilliDegrees());
+    }
+
+    @Test
+    public void badCrcKeepsTheLastReading() throws IOException {
+        File file = folder.newFile("w1_slave");
+        write(file, w1Slave("YES", 65000));
+        sensorFile = new SensorFile(file.getPath());
+        assertTrue(sensorFile.read());
+
+        write(file, w1Slave("NO", 85000));
+        assertFalse(sensorFile.read());
+        assertEquals(65000, sensorFile.getMilliDegrees());
+    }
+
+    @Test
+    public void readsThermalZone() throws IOException {
+        File file = folder.newFile("temp");
+        write(file, "48312\n");
+        sensorFile = new SensorFile(file.getPath());
+
+        assertTrue(sensorFile.read());
+        assertEquals(48312, sensorFile.getMilliDegrees());
+    }
+
+    @Test
+    public void missingFileIsOpenedAgain() throws IOException {
+        File file = new File(folder.getRoot(), "w1_slave");
+        sensorFile = new SensorFile(file.getPath());
+        try {
+            sensorFile.read();
+            fail("Read a missing file");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        write(file, w1Slave("YES", 1000));
+        assertTrue(sensorFile.read());
+        assertEquals(1000, sensorFile.getMilliDegrees());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void noReadingFails() throws IOException {
+        File file = folder.newFile("w1_slave");
+        write(file, "4b 01 4b 46 7f ff 05 10 e1 : crc=e1 YES\n");
+        sensorFile = new SensorFile(file.getPath());
+        sensorFile.read();
+    }
+}
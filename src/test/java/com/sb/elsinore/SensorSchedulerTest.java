@@ -0,0 +1,196 @@
+package com.sb.elsinore;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link SensorScheduler}.
+ */
+public class SensorSchedulerTest {
+
+    /**
+     * A sensor that records when it was read.
+     */
+    private static final class TestSensor implements SensorScheduler.Sensor {
+        private final String bus;
+        private final long interval;
+        private final List<Long> reads =
+                Collections.synchronizedList(new ArrayList<Long>());
+        private volatile boolean working = true;
+        private volatile boolean throwing = false;
+        private volatile long readTime = 0;
+
+        private TestSensor(final String bus, final long interval) {
+            this.bus = bus;
+            this.interval = interval;
+        }
+
+        @Override
+        public String getBus() {
+            return bus;
+        }
+
+        @Override
+        public long getPollInterval() {
+            return interval;
+        }
+
+        @Override
+        public boolean poll() {
+            reads.add(System.currentTimeMillis());
+            if (readTime > 0) {
+                try {
+                    Thread.sleep(readTime);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (throwing) {
+                throw new IllegalStateException("Broken sensor");
+            }
+            return working;
+        }
+    }
+
+    private SensorScheduler scheduler;
+
+    @After
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void readsAtTheSensorInterval() throws InterruptedException {
+        scheduler = new SensorScheduler(1, 1000, 0);
+        TestSensor fast = new TestSensor("w1", 20);
+        TestSensor slow = new TestSensor("owfs", 100);
+        scheduler.add(fast);
+        scheduler.add(slow);
+        scheduler.add(fast);
+
+        Thread.sleep(500);
+        int fastReads = fast.reads.size();
+        int slowReads = slow.reads.size();
+        assertTrue("Fast reads: " + fastReads,
+                fastReads >= 15 && fastReads <= 26);
+        assertTrue("Slow reads: " + slowReads,
+                slowReads >= 4 && slowReads <= 6);
+    }
+
+    @Test
+    public void failingSensorBacksOffAndRecovers() throws InterruptedException {
+        scheduler = new SensorScheduler(1, 80, 0);
+        TestSensor sensor = new TestSensor("w1", 10);
+        sensor.working = false;
+        scheduler.add(sensor);
+
+        // 10, 20, 40, 80 then every 80ms, rather than every 10ms
+        Thread.sleep(500);
+        int failedReads = sensor.reads.size();
+        assertTrue("Failed reads: " + failedReads,
+                failedReads >= 5 && failedReads <= 10);
+        assertEquals(failedReads, scheduler.getFailures(sensor));
+
+        sensor.working = true;
+        Thread.sleep(200);
+        assertEquals(0, scheduler.getFailures(sensor));
+        assertTrue(sensor.reads.size() - failedReads >= 8);
+    }
+
+    @Test
+    public void exceptionCountsAsAFailure() throws InterruptedException {
+        scheduler = new SensorScheduler(1, 1000, 0);
+        TestSensor sensor = new TestSensor("w1", 10);
+        sensor.throwing = true;
+        scheduler.add(sensor);
+
+        Thread.sleep(100);
+        assertTrue(scheduler.getFailures(sensor) > 0);
+        assertEquals(scheduler.getFailureCount(), scheduler.getReadCount());
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        scheduler = new SensorScheduler(1, 1000, 0);
+        assertEquals(100, scheduler.nextDelay(100, 0));
+        assertEquals(200, scheduler.nextDelay(100, 1));
+        assertEquals(800, scheduler.nextDelay(100, 3));
+        assertEquals(1000, scheduler.nextDelay(100, 4));
+        assertEquals(1000, scheduler.nextDelay(100, 100));
+        // An interval past the maximum isn't shortened
+        assertEquals(5000, scheduler.nextDelay(5000, 2));
+
+        SensorScheduler jittered = new SensorScheduler(1, 1000, 0.1);
+        for (int i = 0; i < 100; i++) {
+            long delay = jittered.nextDelay(100, 0);
+            assertTrue(delay >= 100 && delay <= 110);
+        }
+        jittered.shutdown();
+    }
+
+    @Test
+    public void sensorsOnABusAreSpreadOut() throws InterruptedException {
+        scheduler = new SensorScheduler(2, 1000, 0);
+        long start = System.currentTimeMillis();
+        List<TestSensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TestSensor sensor = new TestSensor("w1", 1000);
+            sensors.add(sensor);
+            scheduler.add(sensor);
+        }
+
+        Thread.sleep(800);
+        List<Long> firstReads = new ArrayList<>();
+        for (TestSensor sensor : sensors) {
+            assertEquals(1, sensor.reads.size());
+            firstReads.add(sensor.reads.get(0) - start);
+        }
+        Collections.sort(firstReads);
+        // Offsets of 0, 236 and 618ms
+        for (int i = 1; i < firstReads.size(); i++) {
+            assertTrue("First reads: " + firstReads,
+                    firstReads.get(i) - firstReads.get(i - 1) > 150);
+        }
+    }
+
+    @Test
+    public void removeStopsPolling() throws InterruptedException {
+        scheduler = new SensorScheduler(1, 1000, 0);
+        TestSensor sensor = new TestSensor("w1", 10);
+        scheduler.add(sensor);
+        Thread.sleep(100);
+
+        scheduler.remove(sensor);
+        assertFalse(scheduler.contains(sensor));
+        Thread.sleep(20);
+        int reads = sensor.reads.size();
+        Thread.sleep(100);
+        assertEquals(reads, sensor.reads.size());
+    }
+
+    @Test
+    public void slowBusDoesNotDelayOtherBuses() throws InterruptedException {
+        scheduler = new SensorScheduler(1, 1000, 0);
+        TestSensor slow = new TestSensor("owfs", 10);
+        slow.readTime = 300;
+        TestSensor fast = new TestSensor("w1", 20);
+        scheduler.add(slow);
+        scheduler.add(fast);
+        assertEquals(2, scheduler.getLaneCount());
+
+        Thread.sleep(500);
+        int fastReads = fast.reads.size();
+        assertTrue("Fast reads: " + fastReads, fastReads >= 15);
+        assertTrue(slow.reads.size() <= 2);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sb.elsinore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for reading the binary {@link SeriesFile} records.
+ */
+public class SeriesFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeSeries(final int count) throws IOException {
+        File file = new File(folder.getRoot(), "28-0001-temp.dat");
+        SeriesWriterPool pool = new SeriesWriterPool(60000, false);
+        for (int i = 0; i < count; i++) {
+            pool.appendSample(file, 1000L * i, 60f + i / 4f);
+        }
+        pool.close();
+        return file;
+    }
+
+    @Test
+    public void readsRecordsInOrder() throws IOException {
+        File file = writeSeries(100);
+        assertEquals(100 * SeriesFile.RECORD_SIZE, file.length());
+
+        SeriesFile series = SeriesFile.open(file);
+        assertEquals(100, series.size());
+        assertEquals(0, series.getTime(0));
+        assertEquals(60f, series.getValue(0), 0);
+        assertEquals(99000, series.getTime(99));
+        assertEquals(60f + 99 / 4f, series.getValue(99), 0);
+    }
+
+    @Test
+    public void findsTimesWithBinarySearch() throws IOException {
+        SeriesFile series = SeriesFile.open(writeSeries(100));
+
+        assertEquals(0, series.indexOf(-5));
+        assertEquals(0, series.indexOf(0));
+        assertEquals(42, series.indexOf(42000));
+        assertEquals(43, series.indexOf(42001));
+        assertEquals(100, series.indexOf(500000));
+    }
+
+    @Test
+    public void ignoresPartialRecordsAndMissingFiles() throws IOException {
+        File file = writeSeries(10);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] {1, 2, 3, 4, 5});
+        }
+        assertEquals(10, SeriesFile.open(file).size());
+        assertEquals(0, SeriesFile.open(
+                new File(folder.getRoot(), "missing.dat")).size());
+    }
+}
@@ -0,0 +1,65 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONArray;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link SeriesTail} ring buffer.
+ */
+public class SeriesTailTest {
+
+    @Test
+    public void returnsOnlyNewerSamples() {
+        SeriesTail tail = new SeriesTail(10);
+        for (int i = 1; i <= 5; i++) {
+            tail.add(i * 1000L, i);
+        }
+
+        JSONArray xArray = new JSONArray();
+        JSONArray dataArray = new JSONArray();
+        assertTrue(tail.addSince(3000, Long.MAX_VALUE, xArray, dataArray));
+        assertEquals(2, xArray.size());
+        assertEquals(4000L, xArray.get(0));
+        assertEquals(5f, dataArray.get(1));
+    }
+
+    @Test
+    public void stopsAtTheLimit() {
+        SeriesTail tail = new SeriesTail(10);
+        for (int i = 1; i <= 5; i++) {
+            tail.add(i * 1000L, i);
+        }
+
+        JSONArray xArray = new JSONArray();
+        JSONArray dataArray = new JSONArray();
+        assertTrue(tail.addSince(1000, 3000, xArray, dataArray));
+        assertEquals(2, xArray.size());
+        assertEquals(3000L, xArray.get(1));
+    }
+
+    @Test
+    public void wrapsAndReportsDroppedSamples() {
+        SeriesTail tail = new SeriesTail(4);
+        for (int i = 1; i <= 10; i++) {
+            tail.add(i * 1000L, i);
+        }
+        assertEquals(4, tail.size());
+
+        JSONArray xArray = new JSONArray();
+        JSONArray dataArray = new JSONArray();
+        // 7000 to 10000 are held, so anything from 6000 on can be answered
+        assertTrue(tail.addSince(6000, Long.MAX_VALUE, xArray, dataArray));
+        assertEquals(4, xArray.size());
+        assertEquals(7000L, xArray.get(0));
+        assertEquals(10f, dataArray.get(3));
+
+        xArray.clear();
+        dataArray.clear();
+        assertFalse(tail.addSince(2000, Long.MAX_VALUE, xArray, dataArray));
+        assertTrue(xArray.isEmpty());
+    }
+}
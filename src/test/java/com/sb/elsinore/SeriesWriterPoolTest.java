@@ -0,0 +1,85 @@
+package com.sb.elsinore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link SeriesWriterPool}.
+ */
+public class SeriesWriterPoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()),
+                Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void buffersUntilFlushed() throws IOException {
+        File temp = new File(folder.getRoot(), "28-0001-temp.csv");
+        File duty = new File(folder.getRoot(), "28-0001-duty.csv");
+        SeriesWriterPool pool = new SeriesWriterPool(60000, false);
+
+        pool.append(temp, "1000,65.5\r\n");
+        pool.append(temp, "6000,66.0\r\n");
+        pool.append(duty, "1000,100.0\r\n");
+        assertEquals(2, pool.size());
+        assertEquals("", read(temp));
+
+        pool.flush();
+        assertEquals("1000,65.5\r\n6000,66.0\r\n", read(temp));
+        assertEquals("1000,100.0\r\n", read(duty));
+        pool.close();
+    }
+
+    @Test
+    public void zeroIntervalFlushesEveryWrite() throws IOException {
+        File temp = new File(folder.getRoot(), "28-0001-temp.csv");
+        SeriesWriterPool pool = new SeriesWriterPool(0, true);
+
+        pool.append(temp, "1000,65.5\r\n");
+        assertEquals("1000,65.5\r\n", read(temp));
+        pool.close();
+    }
+
+    @Test
+    public void appendsToExistingFiles() throws IOException {
+        File temp = new File(folder.getRoot(), "28-0001-temp.csv");
+        SeriesWriterPool pool = new SeriesWriterPool(60000, false);
+        pool.append(temp, "1000,65.5\r\n");
+        pool.close();
+
+        pool = new SeriesWriterPool(60000, false);
+        pool.append(temp, "6000,66.0\r\n");
+        pool.close();
+        assertEquals("1000,65.5\r\n6000,66.0\r\n", read(temp));
+    }
+
+    @Test
+    public void closeWritesEverythingAndRejectsAppends() throws IOException {
+        File temp = new File(folder.getRoot(), "28-0001-temp.csv");
+        SeriesWriterPool pool = new SeriesWriterPool(60000, false);
+        pool.append(temp, "1000,65.5\r\n");
+        pool.close();
+
+        assertEquals("1000,65.5\r\n", read(temp));
+        assertEquals(0, pool.size());
+        try {
+            pool.append(temp, "6000,66.0\r\n");
+            fail("Appending to a closed pool should fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.hardware.Hardware;
+import com.sb.elsinore.hardware.SimulatedBrewery;
+import com.sb.elsinore.hardware.SimulatedVessel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The status every page polls and the recorder's sampling, with a probe
+ * and PID for each of the simulated vessels. The cached status is what
+ * most requests get, the rebuilt status is what follows a change.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.sb.elsinore.StatusBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusBenchmark {
+
+    @Param({"1", "10"})
+    public int vessels;
+
+    private File directory;
+    private SimulatedBrewery brewery;
+    private StatusRecorder recorder;
+    private SeriesWriterPool pool;
+    private String graphData;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("status-bench").toFile();
+        brewery = new SimulatedBrewery(new File(directory, "devices"), 1);
+        Hardware.setInstance(brewery);
+        for (int i = 0; i < vessels; i++) {
+            SimulatedVessel vessel = brewery.addVessel("Vessel" + i);
+            Temp temp = new Temp(vessel.getName(), vessel.getProbe());
+            temp.updateTemp();
+            LaunchControl.tempList.add(temp);
+            LaunchControl.pidList.add(new PID(temp, temp.getName(),
+                    vessel.getHeaterGpio()));
+        }
+
+        graphData = directory.getPath() + File.separator;
+        recorder = new StatusRecorder(graphData);
+        pool = new SeriesWriterPool(StatusRecorder.FLUSH_INTERVAL, false);
+        recorder.setWriterPool(pool);
+        // The first sample of each series is always saved
+        recorder.recordSamples(System.currentTimeMillis(), graphData);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.close();
+        LaunchControl.pidList.clear();
+        LaunchControl.tempList.clear();
+        brewery.shutdown();
+        Hardware.setInstance(null);
+        delete(directory);
+    }
+
+    private static void delete(final File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public String cachedStatus() {
+        return LaunchControl.getJSONStatus();
+    }
+
+    @Benchmark
+    public String rebuiltStatus() {
+        LaunchControl.statusChanged();
+        return LaunchControl.getJSONStatus();
+    }
+
+    /**
+     * Sample every probe and PID when nothing has moved enough to save.
+     */
+    @Benchmark
+    public void recordUnchanged() {
+        recorder.recordSamples(System.currentTimeMillis(), graphData);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StatusBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,164 @@
+package com.sb.elsinore;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link StatusEvents}.
+ */
+public class StatusEventsTest {
+
+    /**
+     * A status source whose status the test changes.
+     */
+    private static final class TestSource implements StatusEvents.Source {
+        private final AtomicLong version = new AtomicLong();
+        private volatile JSONObject status;
+        private int builds = 0;
+
+        private TestSource(final JSONObject status) {
+            this.status = status;
+        }
+
+        private void setStatus(final JSONObject newStatus) {
+            status = newStatus;
+            version.incrementAndGet();
+        }
+
+        @Override
+        public synchronized StatusSnapshot getSnapshot() {
+            builds++;
+            return new StatusSnapshot(version.get(), status);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject vessel(final String name, final double temp) {
+        JSONObject vessel = new JSONObject();
+        vessel.put("name", name);
+        vessel.put("temp", temp);
+        return vessel;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject status(final String breweryName,
+            final JSONObject... vessels) {
+        JSONObject status = new JSONObject();
+        status.put("breweryName", breweryName);
+        JSONArray vesselList = new JSONArray();
+        for (JSONObject vessel : vessels) {
+            vesselList.add(vessel);
+        }
+        status.put("vessels", vesselList);
+        return status;
+    }
+
+    /**
+     * Read a single event from the stream.
+     */
+    private static String readEvent(final InputStream stream)
+            throws IOException {
+        ByteArrayOutputStream event = new ByteArrayOutputStream();
+        int last = -1;
+        int read;
+        while ((read = stream.read()) != -1) {
+            if (read == '\n' && last == '\n') {
+                break;
+            }
+            event.write(read);
+            last = read;
+        }
+        return event.toString("UTF-8").trim();
+    }
+
+    private static JSONObject data(final String event) {
+        String data = event.substring(event.indexOf("data: ") + 6).trim();
+        return (JSONObject) JSONValue.parse(data);
+    }
+
+    @Test
+    public void deltaHasOnlyTheChanges() {
+        JSONObject previous = status("Brewery",
+                vessel("HLT", 150.0), vessel("MLT", 152.0));
+        JSONObject current = status("Brewery",
+                vessel("HLT", 151.0), vessel("MLT", 152.0));
+        previous.put("message", "Hello");
+
+        JSONObject delta = StatusEvents.delta(previous, current);
+        assertTrue(((JSONObject) delta.get("set")).isEmpty());
+        assertEquals(1, ((JSONArray) delta.get("remove")).size());
+        assertEquals("message", ((JSONArray) delta.get("remove")).get(0));
+        JSONArray vessels = (JSONArray) delta.get("vessels");
+        assertEquals(1, vessels.size());
+        assertEquals(vessel("HLT", 151.0), vessels.get(0));
+
+        assertNull(StatusEvents.delta(current, current));
+    }
+
+    @Test
+    public void changedVesselListIsSentWhole() {
+        JSONObject previous = status("Brewery", vessel("HLT", 150.0));
+        JSONObject current = status("Brewery",
+                vessel("HLT", 150.0), vessel("MLT", 152.0));
+
+        JSONObject delta = StatusEvents.delta(previous, current);
+        assertEquals(current.get("vessels"),
+                ((JSONObject) delta.get("set")).get("vessels"));
+        assertTrue(((JSONArray) delta.get("vessels")).isEmpty());
+    }
+
+    @Test
+    public void burstOfChangesIsCoalesced() throws Exception {
+        TestSource source = new TestSource(
+                status("Brewery", vessel("HLT", 150.0)));
+        StatusEvents events = new StatusEvents(source, 250, 60000);
+        StatusEvents.EventStream stream = events.subscribe();
+
+        String first = readEvent(stream);
+        assertTrue(first.startsWith("event: status"));
+        assertEquals("Brewery", data(first).get("breweryName"));
+
+        for (int i = 1; i <= 5; i++) {
+            source.setStatus(status("Brewery", vessel("HLT", 150.0 + i)));
+            events.statusChanged();
+            Thread.sleep(20);
+        }
+
+        String delta = readEvent(stream);
+        assertTrue(delta.startsWith("event: delta"));
+        JSONArray vessels = (JSONArray) data(delta).get("vessels");
+        assertEquals(vessel("HLT", 155.0), vessels.get(0));
+
+        // The whole burst went out as the one event
+        Thread.sleep(500);
+        assertEquals(0, stream.pending());
+        assertEquals(2, source.builds);
+
+        stream.close();
+        assertEquals(0, events.getSubscriberCount());
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void noChangesSendsKeepAlive() throws Exception {
+        TestSource source = new TestSource(status("Brewery"));
+        StatusEvents events = new StatusEvents(source, 10, 100);
+        StatusEvents.EventStream stream = events.subscribe();
+        readEvent(stream);
+
+        assertEquals(":", readEvent(stream));
+        assertEquals(":", readEvent(stream));
+        stream.close();
+    }
+}
@@ -0,0 +1,110 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.hardware.Hardware;
+import com.sb.elsinore.hardware.SystemHardware;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the readings {@link Temp} publishes.
+ */
+public class TempTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File probe;
+    private Temp temp;
+
+    @Before
+    public void createProbe() throws IOException {
+        File devices = folder.newFolder("devices");
+        File probeDir = new File(devices, "28-000000000001");
+        assertTrue(probeDir.mkdir());
+        probe = new File(probeDir, "w1_slave");
+        writeProbe("YES", 65000);
+
+        Hardware oldHardware = Hardware.getInstance();
+        Hardware.setInstance(new SystemHardware(
+                devices.getPath() + File.separator));
+        temp = new Temp("Boil", "28-000000000001");
+        Hardware.setInstance(oldHardware);
+    }
+
+    private void writeProbe(final String crc, final int milliC)
+            throws IOException {
+        try (FileWriter out = new FileWriter(probe)) {
+            out.write("4b 01 4b 46 7f ff 05 10 e1 : crc=e1 " + crc + "\n"
+                    + "4b 01 4b 46 7f ff 05 10 e1 t=" + milliC + "\n");
+        }
+    }
+
+    @Test
+    public void everyGoodReadingIsPublished() throws IOException {
+        long start = temp.getSampleCount();
+        temp.updateTemp();
+        assertEquals(start + 1, temp.getSampleCount());
+        assertEquals(65.0, temp.getLastSample(), 0.001);
+
+        // The same temperature is still a new reading
+        long before = System.nanoTime();
+        temp.updateTemp();
+        assertEquals(start + 2, temp.getSampleCount());
+        assertTrue(temp.getLastSampleTime() >= before);
+
+        // A bad CRC isn't
+        writeProbe("NO", 70000);
+        temp.updateTemp();
+        assertEquals(start + 2, temp.getSampleCount());
+        assertEquals(65.0, temp.getLastSample(), 0.001);
+    }
+
+    @Test
+    public void awaitSampleWakesOnANewReading() throws Exception {
+        final long seen = temp.getSampleCount();
+        final AtomicLong woken = new AtomicLong();
+        final AtomicLong latest = new AtomicLong();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latest.set(temp.awaitSample(seen, 5000));
+                    woken.set(System.nanoTime());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+
+        long read = System.nanoTime();
+        temp.updateTemp();
+        waiter.join(5000);
+        assertEquals(seen + 1, latest.get());
+        assertTrue("Woken after "
+                + (woken.get() - read) / 1000000 + "ms",
+                woken.get() - read < 1000000000L);
+    }
+
+    @Test
+    public void awaitSampleTimesOut() throws InterruptedException {
+        long seen = temp.getSampleCount();
+        long start = System.currentTimeMillis();
+        assertEquals(seen, temp.awaitSample(seen, 100));
+        assertTrue(System.currentTimeMillis() - start >= 90);
+
+        // An unseen reading returns straight away
+        assertEquals(seen, temp.awaitSample(seen - 1, 5000));
+    }
+}
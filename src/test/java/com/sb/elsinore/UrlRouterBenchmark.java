@@ -0,0 +1,106 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.NanoHTTPD.Response;
+import com.sb.elsinore.annotations.UrlEndpoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old reflective scan over {@link UrlEndpoints} against the
+ * {@link UrlRouter} route table.
+ *
+ * "/lockpage" is used as the hit since the endpoint itself is trivial, so the
+ * numbers are dominated by the dispatch. The miss is a static file request,
+ * which used to scan every endpoint before falling through.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.sb.elsinore.UrlRouterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlRouterBenchmark {
+
+    @Param({"/lockpage", "/static/pidFunctions.js"})
+    public String uri;
+
+    private UrlRouter router;
+    private Map<String, String> parms;
+    private Map<String, String> headers;
+    private Map<String, String> files;
+    private File rootDir;
+
+    @Setup
+    public void setup() {
+        router = new UrlRouter(UrlEndpoints.class);
+        parms = new HashMap<>();
+        headers = new HashMap<>();
+        files = new HashMap<>();
+        rootDir = new File(".");
+    }
+
+    private UrlEndpoints newContext() {
+        UrlEndpoints urlEndpoints = new UrlEndpoints();
+        urlEndpoints.parameters = parms;
+        urlEndpoints.files = files;
+        urlEndpoints.header = headers;
+        urlEndpoints.rootDir = rootDir;
+        return urlEndpoints;
+    }
+
+    /**
+     * The dispatch loop as it was in BrewServer.serve.
+     * @return The response, or null if there's no endpoint.
+     */
+    @Benchmark
+    public Response reflectiveScan() {
+        for (java.lang.reflect.Method m
+                : UrlEndpoints.class.getDeclaredMethods()) {
+            UrlEndpoint urlMethod = m.getAnnotation(UrlEndpoint.class);
+            if (urlMethod != null) {
+                if (urlMethod.url().equalsIgnoreCase(uri)) {
+                    try {
+                        return (Response) m.invoke(newContext());
+                    } catch (Exception e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Response routeTable() {
+        if (router.hasRoute(uri)) {
+            return router.route(uri, newContext());
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UrlRouterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,30 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link UrlRouter}.
+ */
+public class UrlRouterTest {
+
+    private final UrlRouter router = new UrlRouter(UrlEndpoints.class);
+
+    @Test
+    public void onlyMarkedEndpointsChangeTheStatus() {
+        assertTrue(router.changesStatus("/editdevice"));
+        assertTrue(router.changesStatus("/UpdatePID"));
+        assertTrue(router.changesStatus("/lockpage"));
+
+        assertTrue(router.hasRoute("/getstatus"));
+        assertFalse(router.changesStatus("/getstatus"));
+        assertFalse(router.changesStatus("/events"));
+        assertFalse(router.changesStatus("/graph-data"));
+        assertFalse(router.changesStatus("/getsystemsettings"));
+        assertFalse(router.changesStatus("/favicon.ico"));
+        assertFalse(router.changesStatus("/nosuchpage"));
+        assertFalse(router.changesStatus(null));
+    }
+}
@@ -0,0 +1,92 @@
+package com.sb.elsinore;
+
+import com.sb.elsinore.hardware.Hardware;
+import com.sb.elsinore.hardware.SimulatedBrewery;
+import com.sb.elsinore.hardware.SimulatedVessel;
+import jGPIO.InvalidGPIOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One volume reading, from the analogue pin through the calibration to
+ * litres, against a ten point calibration.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.sb.elsinore.VolumeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VolumeBenchmark {
+
+    private static final int CALIBRATION_POINTS = 10;
+    private static final int LITRES_PER_POINT = 5;
+
+    private File directory;
+    private SimulatedBrewery brewery;
+    private Temp temp;
+    private File probe;
+
+    @Setup
+    public void setup() throws IOException, InvalidGPIOException {
+        directory = Files.createTempDirectory("volume-bench").toFile();
+        brewery = new SimulatedBrewery(directory, 1);
+        Hardware.setInstance(brewery);
+        SimulatedVessel vessel = brewery.addVessel("Mash");
+        vessel.setLitres(23);
+        probe = new File(directory, vessel.getProbe());
+
+        temp = new Temp(vessel.getName(), vessel.getProbe());
+        temp.setupVolumes(vessel.getVolumePin(), "Litres");
+        for (int i = 0; i < CALIBRATION_POINTS; i++) {
+            int litres = i * LITRES_PER_POINT;
+            temp.addVolumeMeasurement(new BigDecimal(litres), BigDecimal.valueOf(
+                    SimulatedVessel.VOLUME_OFFSET
+                    + litres * SimulatedVessel.VOLUME_SCALE));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        brewery.shutdown();
+        Hardware.setInstance(null);
+        Files.deleteIfExists(new File(probe, "w1_slave").toPath());
+        Files.deleteIfExists(probe.toPath());
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    @Benchmark
+    public BigDecimal updateVolume() {
+        temp.updateVolume();
+        return temp.getVolume();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VolumeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
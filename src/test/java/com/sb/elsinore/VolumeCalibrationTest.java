@@ -0,0 +1,71 @@
+package com.sb.elsinore;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link VolumeCalibration}.
+ */
+public class VolumeCalibrationTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static VolumeCalibration compile(final double... points) {
+        Map<BigDecimal, BigDecimal> base = new HashMap<>();
+        for (int i = 0; i < points.length; i += 2) {
+            base.put(BigDecimal.valueOf(points[i]),
+                    BigDecimal.valueOf(points[i + 1]));
+        }
+        return VolumeCalibration.compile(base);
+    }
+
+    @Test
+    public void interpolatesBetweenPoints() {
+        // Litres against readings, in no particular order
+        VolumeCalibration calibration = compile(20, 700, 0, 200, 10, 400);
+        assertEquals(3, calibration.size());
+
+        assertEquals(0, calibration.getVolume(200), DELTA);
+        assertEquals(5, calibration.getVolume(300), DELTA);
+        assertEquals(10, calibration.getVolume(400), DELTA);
+        // The second segment is steeper
+        assertEquals(15, calibration.getVolume(550), DELTA);
+        assertEquals(20, calibration.getVolume(700), DELTA);
+    }
+
+    @Test
+    public void extendsTheEndSegments() {
+        VolumeCalibration calibration = compile(0, 200, 10, 400, 20, 700);
+        assertEquals(-5, calibration.getVolume(100), DELTA);
+        assertEquals(30, calibration.getVolume(1000), DELTA);
+    }
+
+    @Test
+    public void readingsCanFallAsTheVolumeRises() {
+        // A level sensor measuring the distance down to the liquid
+        VolumeCalibration calibration = compile(0, 900, 10, 600, 20, 300);
+        assertEquals(15, calibration.getVolume(450), DELTA);
+        assertEquals(25, calibration.getVolume(150), DELTA);
+    }
+
+    @Test
+    public void averagesPointsWithTheSameReading() {
+        VolumeCalibration calibration = compile(0, 200, 9, 400, 11, 400,
+                20, 600);
+        assertEquals(3, calibration.size());
+        assertEquals(10, calibration.getVolume(400), DELTA);
+        assertEquals(15, calibration.getVolume(500), DELTA);
+    }
+
+    @Test
+    public void oneOrNoPoints() {
+        assertEquals(12, compile(12, 400).getVolume(100), DELTA);
+        assertTrue(Double.isNaN(compile().getVolume(100)));
+    }
+}
@@ -0,0 +1,362 @@
+package com.sb.elsinore.devices;
+
+import com.sb.elsinore.AnalogFilter;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link I2CScanner} and the continuous conversion of the
+ * converters.
+ */
+public class I2CScannerTest {
+
+    private static final double DELTA = 1e-6;
+
+    /**
+     * A converter that reads ten times the channel, recording the reads.
+     */
+    private static class FakeConverter extends I2CDevice {
+        final List<String> reads = new ArrayList<>();
+        float failing = Float.NaN;
+
+        FakeConverter(final int deviceNo) {
+            super(deviceNo, 0x48);
+        }
+
+        @Override
+        public String getDevName() {
+            return "Fake";
+        }
+
+        @Override
+        public float readValue(final int devChannel) {
+            reads.add("single " + devChannel);
+            return devChannel == failing ? -1f : devChannel * 10f;
+        }
+
+        @Override
+        protected float convertContinuous(final int devChannel) {
+            reads.add("continuous " + devChannel);
+            return devChannel * 10f;
+        }
+    }
+
+    /**
+     * The C library, recording what's written to the device and answering
+     * reads with a fixed conversion.
+     */
+    private static class FakeLibC implements I2CDevice.Linux_C_lib {
+        final List<String> writes = new ArrayList<>();
+        byte[] conversion = {0x10, 0x00};
+
+        @Override
+        public int open(final String path, final int flags) {
+            return 3;
+        }
+
+        @Override
+        public int ioctl(final int fd, final int cmd, final int arg) {
+            return 0;
+        }
+
+        @Override
+        public int close(final int fd) {
+            return 0;
+        }
+
+        @Override
+        public int write(final int fd, final byte[] buffer, final int count) {
+            StringBuilder written = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                written.append(String.format("%02x", buffer[i] & 0xFF));
+            }
+            writes.add(written.toString());
+            return count;
+        }
+
+        @Override
+        public int read(final int fd, final byte[] buffer, final int count) {
+            System.arraycopy(conversion, 0, buffer, 0, count);
+            return count;
+        }
+
+        @Override
+        public long memcpy(final int[] dst, final short[] src, final long n) {
+            return 0;
+        }
+
+        @Override
+        public int memcpy(final int[] dst, final short[] src, final int n) {
+            return 0;
+        }
+
+        @Override
+        public int pipe(final int[] fds) {
+            return 0;
+        }
+
+        @Override
+        public int tcdrain(final int fd) {
+            return 0;
+        }
+
+        @Override
+        public int fcntl(final int fd, final int cmd, final int arg) {
+            return 0;
+        }
+
+        @Override
+        public long write(final int fd, final byte[] buffer, final long count) {
+            return write(fd, buffer, (int) count);
+        }
+
+        @Override
+        public long read(final int fd, final byte[] buffer, final long count) {
+            return read(fd, buffer, (int) count);
+        }
+
+        @Override
+        public int select(final int n, final int[] read, final int[] write,
+                final int[] error, final timeval timeout) {
+            return 0;
+        }
+
+        @Override
+        public int poll(final int[] fds, final int nfds, final int timeout) {
+            return 0;
+        }
+
+        @Override
+        public int tcflush(final int fd, final int qs) {
+            return 0;
+        }
+
+        @Override
+        public void perror(final String msg) {
+        }
+
+        @Override
+        public int tcsendbreak(final int fd, final int duration) {
+            return 0;
+        }
+    }
+
+    @After
+    public void resetSettings() {
+        I2CScanner.CONTINUOUS = false;
+        AnalogFilter.OVERSAMPLE = 1;
+        I2CScanner.SCAN_INTERVAL = 1000;
+    }
+
+    @Test
+    public void onlyChannelsAskedForAreScanned() {
+        FakeConverter converter = new FakeConverter(1);
+        I2CScanner scanner = new I2CScanner(converter);
+
+        assertTrue(Float.isNaN(scanner.getValue(1)));
+        assertEquals(0, scanner.getSampleTime(1));
+        assertTrue(scanner.poll());
+        assertEquals(Arrays.asList("single 1"), converter.reads);
+        assertEquals(10, scanner.getValue(1), DELTA);
+        assertTrue(scanner.getSampleTime(1) > 0);
+        assertEquals(Arrays.asList(1), scanner.getChannels());
+
+        // Reading the value doesn't touch the bus
+        scanner.getValue(1);
+        assertEquals(1, converter.reads.size());
+    }
+
+    @Test
+    public void channelsNobodyReadsAreDropped() {
+        FakeConverter converter = new FakeConverter(1);
+        I2CScanner scanner = new I2CScanner(converter);
+        scanner.getValue(2);
+
+        for (int i = 0; i < I2CScanner.STALE_SCANS + 5; i++) {
+            scanner.poll();
+        }
+        assertEquals(I2CScanner.STALE_SCANS, converter.reads.size());
+        assertTrue(scanner.getChannels().isEmpty());
+    }
+
+    @Test
+    public void aFailedReadKeepsTheLastValue() {
+        FakeConverter converter = new FakeConverter(1);
+        I2CScanner scanner = new I2CScanner(converter);
+        scanner.getValue(3);
+        scanner.poll();
+
+        converter.failing = 3;
+        assertFalse(scanner.poll());
+        assertEquals(30, scanner.getValue(3), DELTA);
+    }
+
+    @Test
+    public void eachScanAveragesTheOversampledReads() {
+        AnalogFilter.OVERSAMPLE = 3;
+        FakeConverter converter = new FakeConverter(1) {
+            private float next = 0;
+
+            @Override
+            public float readValue(final int devChannel) {
+                reads.add("single " + devChannel);
+                next += 1;
+                // The second read fails
+                return next == 2 ? -1f : next;
+            }
+        };
+        I2CScanner scanner = new I2CScanner(converter);
+        scanner.getValue(0);
+
+        assertTrue(scanner.poll());
+        assertEquals(3, converter.reads.size());
+        assertEquals(2, scanner.getValue(0), DELTA);
+    }
+
+    @Test
+    public void oversamplingStopsAtTheChannelsShareOfTheScan() {
+        AnalogFilter.OVERSAMPLE = 1000;
+        I2CScanner.SCAN_INTERVAL = 40;
+        FakeConverter converter = new FakeConverter(1) {
+            @Override
+            public float readValue(final int devChannel) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.readValue(devChannel);
+            }
+        };
+        I2CScanner scanner = new I2CScanner(converter);
+        scanner.getValue(0);
+        scanner.getValue(1);
+
+        assertTrue(scanner.poll());
+        // Each channel has 20ms, nowhere near 1000 reads
+        assertTrue(converter.reads.size() < 1000);
+        assertTrue(converter.reads.contains("single 1"));
+        assertEquals(10, scanner.getValue(1), DELTA);
+    }
+
+    @Test
+    public void continuousScansLeaveTheConverterRunning() {
+        I2CScanner.CONTINUOUS = true;
+        FakeConverter converter = new FakeConverter(1);
+        I2CScanner scanner = new I2CScanner(converter);
+        scanner.getValue(0);
+        scanner.getValue(2);
+
+        scanner.poll();
+        assertEquals(Arrays.asList("continuous 0", "continuous 2"),
+                converter.reads);
+        assertEquals(20, scanner.getValue(2), DELTA);
+        assertEquals("i2c-1", scanner.getBus());
+    }
+
+    @Test
+    public void devicesOnOneBusAreReadInTurn() throws Exception {
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        final List<I2CDevice> converters = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            converters.add(new FakeConverter(7) {
+                @Override
+                public float readValue(final int devChannel) {
+                    if (inside.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inside.decrementAndGet();
+                    return 1;
+                }
+            });
+        }
+
+        List<Thread> readers = new ArrayList<>();
+        for (final I2CDevice converter : converters) {
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20; i++) {
+                        converter.read(0);
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertFalse(overlapped.get());
+    }
+
+    @Test
+    public void theADS1115OnlyConfiguresAChannelOnce() {
+        FakeLibC libC = new FakeLibC();
+        ADS1115 adc = new ADS1115(1, 0x48);
+        adc.libC = libC;
+
+        // 0x1000 is a quarter of the 4.096V range
+        assertEquals(512, adc.readContinuous(1), DELTA);
+        assertEquals(512, adc.readContinuous(1), DELTA);
+        // Continuous, AIN1, 4.096V, 128 samples per second, no comparator
+        assertEquals(Arrays.asList("015283", "00", "00"), libC.writes);
+
+        libC.writes.clear();
+        adc.readContinuous(3);
+        assertEquals(Arrays.asList("017283", "00"), libC.writes);
+    }
+
+    @Test
+    public void singleShotScansReadEachChannelOfAnADS1115() {
+        FakeLibC libC = new FakeLibC();
+        ADS1115 adc = new ADS1115(1, 0x48);
+        adc.libC = libC;
+        I2CScanner scanner = new I2CScanner(adc);
+        scanner.getValue(1);
+        scanner.getValue(2);
+
+        assertTrue(scanner.poll());
+        assertTrue(scanner.poll());
+        // Start a single shot of AIN1 then AIN2, 4.096V, 128 samples per
+        // second, no comparator, then read each conversion
+        assertEquals(Arrays.asList("01d383", "00", "01e383", "00",
+                "01d383", "00", "01e383", "00"), libC.writes);
+        assertEquals(512, scanner.getValue(1), DELTA);
+        assertEquals(512, scanner.getValue(2), DELTA);
+    }
+
+    @Test
+    public void theADS1015ReadsTheLeftAlignedResult() {
+        FakeLibC libC = new FakeLibC();
+        libC.conversion = new byte[] {0x12, 0x30};
+        ADS1015 adc = new ADS1015(1, 0x49);
+        adc.libC = libC;
+
+        assertEquals(0x123, adc.readContinuous(0), DELTA);
+        // Continuous, AIN0, 6.144V, 1600 samples per second, no comparator
+        assertEquals("014083", libC.writes.get(0));
+        assertEquals(-1f, adc.readContinuous(4), DELTA);
+
+        // A single shot of AIN2 takes the converter out of continuous mode
+        libC.writes.clear();
+        assertEquals(0x123, adc.read(2), DELTA);
+        assertEquals(Arrays.asList("01e183", "00"), libC.writes);
+    }
+}
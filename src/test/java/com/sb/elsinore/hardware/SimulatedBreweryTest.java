@@ -0,0 +1,129 @@
+package com.sb.elsinore.hardware;
+
+import com.sb.elsinore.OutputControl;
+import com.sb.elsinore.OutputScheduler;
+import com.sb.elsinore.Temp;
+import com.sb.elsinore.devices.I2CDevice;
+import com.sb.elsinore.devices.OutputDevice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link SimulatedBrewery}.
+ */
+public class SimulatedBreweryTest {
+
+    private static final double DELTA = 0.01;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SimulatedBrewery brewery;
+    private Hardware oldHardware;
+
+    @Before
+    public void createBrewery() throws IOException {
+        brewery = new SimulatedBrewery(folder.newFolder("devices"), 100);
+        oldHardware = Hardware.getInstance();
+        Hardware.setInstance(brewery);
+    }
+
+    @After
+    public void shutdown() {
+        Hardware.setInstance(oldHardware);
+        brewery.shutdown();
+    }
+
+    @Test
+    public void vesselHeatsAndLosesHeat() {
+        SimulatedVessel vessel = new SimulatedVessel("HLT", "28-1", "GPIO1",
+                0, 1);
+        vessel.setLitres(30);
+        vessel.setHeaterWatts(5500);
+        vessel.setLossWatts(10);
+
+        // A minute at full power is 330kJ into 30 litres
+        vessel.step(60, 60);
+        assertEquals(20 + 330000.0 / (30 * 4186), vessel.getTemperature(),
+                DELTA);
+
+        // Held at the boil
+        vessel.step(100000, 100000);
+        assertEquals(SimulatedVessel.BOILING, vessel.getTemperature(), DELTA);
+
+        // And back to the room, however long the step
+        vessel.step(10000000, 0);
+        assertEquals(20, vessel.getTemperature(), DELTA);
+    }
+
+    @Test
+    public void probesAreReadByTemp() throws IOException {
+        SimulatedVessel vessel = brewery.addVessel("Boil");
+        // Hold the temperature between steps
+        vessel.setLossWatts(0);
+        vessel.setTemperature(65.5);
+        brewery.step();
+
+        Temp temp = new Temp("Boil", vessel.getProbe());
+        temp.updateTemp();
+        assertEquals(65.5, temp.getLastSample(), DELTA);
+
+        vessel.setTemperature(8.25);
+        brewery.step();
+        temp.updateTemp();
+        assertEquals(8.25, temp.getLastSample(), DELTA);
+    }
+
+    @Test
+    public void heaterFollowsTheOutput() throws Exception {
+        SimulatedVessel vessel = brewery.addVessel("Mash");
+        OutputScheduler scheduler = new OutputScheduler(false);
+        OutputControl control = new OutputControl();
+        control.setHeater(new OutputDevice("Mash", vessel.getHeaterGpio(),
+                BigDecimal.ONE));
+        control.setDuty(100);
+        control.start(scheduler);
+        brewery.start();
+
+        Thread.sleep(600);
+        control.shutdown();
+        scheduler.shutdown();
+        brewery.step();
+
+        // At least 40 simulated seconds at 5.5kW
+        assertTrue("Heated to " + vessel.getTemperature(),
+                vessel.getTemperature() > 20 + 5500 * 40 / (30 * 4186.0));
+        assertEquals(1, brewery.getPin(vessel.getHeaterGpio())
+                .getSwitchCount());
+        assertEquals("0", brewery.getPin(vessel.getHeaterGpio()).getValue());
+    }
+
+    @Test
+    public void levelAndPhAreOnAnaloguePins() throws Exception {
+        brewery.addVessel("HLT");
+        SimulatedVessel vessel = brewery.addVessel("Mash");
+        vessel.setLitres(25);
+        vessel.setPh(5.25);
+
+        assertEquals(2, vessel.getVolumePin());
+        assertEquals("700", Hardware.getInstance()
+                .getAnalogue(vessel.getVolumePin()).readValue());
+        assertEquals("1500", Hardware.getInstance()
+                .getAnalogue(vessel.getPhPin()).readValue());
+
+        // The second channel of the first converter
+        I2CDevice adc = Hardware.getInstance().getI2CDevice("1", "0x48",
+                "ADS1115");
+        assertEquals(700, adc.readValue(1), DELTA);
+        assertEquals(0, adc.readValue(2), DELTA);
+    }
+}
@@ -0,0 +1,81 @@
+package com.sb.elsinore.recipes;
+
+import ca.strangebrew.recipe.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathException;
+import javax.xml.xpath.XPathFactory;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a BeerXML recipe that's already been parsed, and recalculating
+ * its totals the way the reader does once it's read.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.sb.elsinore.recipes.RecipeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipeBenchmark {
+
+    private static final String RECIPE = "recipes/GreenHouseIPA.xml";
+
+    private Node recipeNode;
+    private Recipe recipe;
+
+    @Setup
+    public void setup() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder().parse(new File(RECIPE));
+        recipeNode = (Node) XPathFactory.newInstance().newXPath().evaluate(
+                "/RECIPES/RECIPE", document, XPathConstants.NODE);
+        recipe = BeerXMLReader.getInstance().readSingleRecipe(recipeNode);
+    }
+
+    @Benchmark
+    public Recipe readSingleRecipe() throws XPathException {
+        return BeerXMLReader.getInstance().readSingleRecipe(recipeNode);
+    }
+
+    @Benchmark
+    public double recalculate() {
+        recipe.calcMaltTotals();
+        recipe.calcHopsTotals();
+        recipe.calcFermentTotals();
+        recipe.calcKegPSI();
+        recipe.calcPrimeSugar();
+        if (recipe.getMash() != null) {
+            recipe.getMash().calcMashSchedule();
+        }
+        return recipe.getEstOg();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RecipeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -160,6 +160,14 @@ function waitForMsg() {
 	if (window.disableUpdates) {
 		return false;
 	}
+	if (window.EventSource && !window.pollStatus) {
+		if (window.statusEvents == null) {
+			openStatusEvents();
+		} else if (window.statusData != null) {
+			updateStatus(window.statusData);
+		}
+		return;
+	}
 	jQuery
 			.ajax({
 				type : 'GET',
@@ -169,233 +177,292 @@ function waitForMsg() {
 				cache : false,
 				timeout : 5000,
 				success : function(data) {
-					if (data == null)
-						return;
-
-					if ("breweryName" in data) {
-						val = data.breweryName;
-						if (val != null && val.length > 0 && val != "") {
-							window.breweryName = val;
-							jQuery("#breweryName").text(val);
-						} else {
-							window.breweryName = "Elsinore";
-							jQuery("#breweryName").text("Elsinore");
-						}
-					}
+					updateStatus(data);
+				}
+			});
+	setTimeout(waitForMsg, 1000);
 
-					// Check for an error message
-					if ("message" in data) {
-						val = data.message;
-
-						if (val.length > 0) {
-							val += "<br/><button id='clearMessage' class='btn modeclass' "
-									+ "onclick='clearStatus(); return false;'>"
-									+ $.i18n.prop("CLEAR") + "</button>";
-							jQuery("#messages-body").html(val);
-
-							if (!$("#messages").is(":visible")) {
-								jQuery("#messages").css('display', 'block');
-								jQuery("#messages").toggleClass("hidden", false);
-							}
-						} else {
-							if ($("#messages").is(":visible")) {
-								jQuery("#messages").toggleClass("hidden", true);;
-							}
-						}
-					}
+}
 
-					if ("brewday" in data) {
-						val = data.brewday;
-						$.each(val, function(timerName, timerStatus) {
-							checkTimer(timerStatus, timerName);
-						});
+/**
+ * Listen for the status events, the full status comes first and then the
+ * changes as they happen. Falls back to polling if the stream can't be used.
+ */
+function openStatusEvents() {
+	var source = new EventSource("/events");
+	window.statusEvents = source;
+
+	source.addEventListener("status", function(e) {
+		window.statusData = JSON.parse(e.data);
+		if (!window.disableUpdates) {
+			updateStatus(window.statusData);
+		}
+	}, false);
 
-					}
+	source.addEventListener("delta", function(e) {
+		if (window.statusData == null) {
+			return;
+		}
+		applyStatusDelta(window.statusData, JSON.parse(e.data));
+		if (!window.disableUpdates) {
+			updateStatus(window.statusData);
+		}
+	}, false);
+
+	source.onerror = function() {
+		// The browser reconnects by itself unless the stream was refused
+		if (source.readyState == EventSource.CLOSED) {
+			window.statusEvents = null;
+			window.pollStatus = true;
+			waitForMsg();
+		}
+	};
+}
 
-					if ("triggers" in data) {
-						val = sortObjectByKey(data.triggers);
-
-						$.each(val, function(triggerPID, triggerDetails) {
-							// Iterate the list of mash Lists
-							addTriggerTable(triggerPID);
-							$.each(triggerDetails, function(triggerStep,
-									triggerData) {
-								if (triggerStep != 'pid') {
-									addTriggerStep(triggerStep, triggerData,
-											triggerPID);
-								}
-							});
-
-							if ($("#triggerTable" + triggerPID).find(
-									'.success').length > 0) {
-								$("#triggerButton-" + triggerPID).text(
-										$.i18n.prop("DISABLE"));
-							} else {
-								$("#triggerButton-" + triggerPID).text(
-										$.i18n.prop("ACTIVATE"));
-							}
-
-						});
-					}
+/**
+ * Merge a status delta into the status.
+ */
+function applyStatusDelta(status, delta) {
+	jQuery.each(delta.set, function(key, value) {
+		status[key] = value;
+	});
+	jQuery.each(delta.remove, function(i, key) {
+		delete status[key];
+	});
+	jQuery.each(delta.vessels, function(i, vessel) {
+		jQuery.each(status.vessels, function(j, current) {
+			if (current.name == vessel.name) {
+				status.vessels[j] = vessel;
+				return false;
+			}
+		});
+	});
+}
 
-					if ("switches" in data) {
-						val = data.switches;
-						$.each(
-							val,
-							function(switchName, switchStatus) {
-								// enable or disable the switch as
-								// required
-								if (switchStatus) {
-									$('span[id^="' + switchName + '"]')[0].style.background = "red";
-									$('span[id^="'+ switchName + '"]')[0].innerHTML =
-									    unescape(switchName.replace("_", " ")) + " " + $.i18n.prop("SWITCH_ON");
-								} else {
-									$('span[id^="' + switchName + '"]')[0].style.background = "#666666";
-									$('span[id^="' + switchName + '"]')[0].innerHTML =
-									    unescape(switchName.replace("_", " ")) + " " + $.i18n.prop("SWITCH_OFF");
-								}
-							});
-					}
+function updateStatus(data) {
+	if (data == null)
+		return;
 
-					if (window.disableUpdates) {
-						return false;
-					}
+	if ("breweryName" in data) {
+		val = data.breweryName;
+		if (val != null && val.length > 0 && val != "") {
+			window.breweryName = val;
+			jQuery("#breweryName").text(val);
+		} else {
+			window.breweryName = "Elsinore";
+			jQuery("#breweryName").text("Elsinore");
+		}
+	}
 
-                    if ("notifications" in data) {
-                        showNotifications(data.notifications);
-                    }
+	// Check for an error message
+	if ("message" in data) {
+		val = data.message;
+
+		if (val.length > 0) {
+			val += "<br/><button id='clearMessage' class='btn modeclass' "
+					+ "onclick='clearStatus(); return false;'>"
+					+ $.i18n.prop("CLEAR") + "</button>";
+			jQuery("#messages-body").html(val);
+
+			if (!$("#messages").is(":visible")) {
+				jQuery("#messages").css('display', 'block');
+				jQuery("#messages").toggleClass("hidden", false);
+			}
+		} else {
+			if ($("#messages").is(":visible")) {
+				jQuery("#messages").toggleClass("hidden", true);;
+			}
+		}
+	}
 
-                    if ("recipeCount" in data && data.recipeCount > 1) {
-                        if ($("span[id='selectRecipe']").length == 0) {
-                            window.location.assign(window.location.href);
-                        }
-                    }
+	if ("brewday" in data) {
+		val = data.brewday;
+		$.each(val, function(timerName, timerStatus) {
+			checkTimer(timerStatus, timerName);
+		});
 
-                    if ("recipe" in data && data.recipe != "") {
-                        if ($("span[id='showCurrentRecipe']").length == 0) {
-                            window.location.assign(window.location.href);
-                        }
-                    }
+	}
 
-					if ("vessels" in data) {
-						val = data.vessels;
-
-						if (!("system" in data.vessels)
-								&& !("System" in data.vessels)) {
-							// No System temperature, add a header to add it in.
-							var sysTemp = $("[id=System]");
-							if (sysTemp.length == 0 && !data.locked) {
-								var sysHtml = '<div id="System" class="holo-content controller panel panel-primary Temp">'
-										+ '<div id="System-title" class="title panel-heading "'
-										+ 'onclick="enableSystem(this);" style="cursor: pointer;">'
-										+ $.i18n.prop("SYSTEM")
-										+ '</div>'
-										+ '</div>';
-
-								$("[id=Probes]").last().append(sysHtml)
-							}
-							if ($("[id=System] > div").length == 1
-									&& data.locked) {
-								sysTemp.remove();
-							}
-						}
-						$.each(val, function(vesselProbe, vesselStatus) {
-
-							// This should always be there
-							if ("name" in vesselStatus) {
-								vesselName = vesselStatus.name;
-								if (vesselName == $.i18n.prop("SYSTEM")
-										&& $('[id=System-tempGauge]').length == 0) {
-									return;
-								}
-							}
-
-							if ("deviceaddr" in vesselStatus) {
-							    vesselProbe = vesselStatus.deviceaddr;
-							}
-							addTriggerTable(vesselProbe);
-							if ("tempprobe" in vesselStatus) {
-								updateTempProbe(vesselProbe,
-										vesselStatus.tempprobe);
-							}
-
-							if ("pidstatus" in vesselStatus) {
-								updatePIDStatus(vesselProbe,
-										vesselStatus.pidstatus);
-
-								// Hide the gauge if needs be
-								if (vesselStatus.pidstatus.mode == "off") {
-									$('div[id^="' + vesselProbe + '-gage"]')
-											.toggleClass("hidden", true);
-								} else {
-									$('div[id^="' + vesselProbe + '-gage"]')
-											.toggleClass("hidden", false);
-									var duty = vesselStatus.pidstatus.duty;
-									if ("actualduty" in vesselStatus.pidstatus) {
-										duty = vesselStatus.pidstatus.actualduty;
-									}
-									var gauge = Gauges[vesselProbe]
-									if (duty < 0) {
-										if (Gauges[vesselProbe].config.textMax != "0") {
-											Gauges[vesselProbe].config.levelColors = [
-													"#a9d70b",
-													"#CC00CC",
-													"#0033CC" ];
-											Gauges[vesselProbe].config.title = "Cooling"
-											gauge.txtTitle[0].textContent = "Cooling"
-										}
-
-										Gauges[vesselProbe]
-												.refreshBoth(
-														Math.abs(duty),
-														"0",
-														"100");
-									} else if (duty > 0) {
-										if (Gauges[vesselProbe].config.textMax != "0") {
-											Gauges[vesselProbe].config.levelColors = [
-													"#a9d70b",
-													"#f9c802",
-													"#ff0000" ];
-											Gauges[vesselProbe].config.title = "Heating"
-											gauge.txtTitle[0].textContent = "Heating"
-										}
-
-										Gauges[vesselProbe].refreshBoth(duty, "0", 100);
-									} else {
-										Gauges[vesselProbe].config.title = "Off";
-										gauge.txtTitle[0].textContent = "Off"
-									}
-
-								}
-							} else {
-								hidePIDForm(vesselProbe);
-							}
-
-							if ("volume" in vesselStatus) {
-								updateVolumeStatus(vesselProbe,
-										vesselStatus.volume);
-							} else {
-								jQuery("#" + vesselProbe+ "-volumeAmount")
-									.text($.i18n.prop("NO_VOLUME"));
-							}
-						});
+	if ("triggers" in data) {
+		val = sortObjectByKey(data.triggers);
+
+		$.each(val, function(triggerPID, triggerDetails) {
+			// Iterate the list of mash Lists
+			addTriggerTable(triggerPID);
+			$.each(triggerDetails, function(triggerStep,
+					triggerData) {
+				if (triggerStep != 'pid') {
+					addTriggerStep(triggerStep, triggerData,
+							triggerPID);
+				}
+			});
+
+			if ($("#triggerTable" + triggerPID).find(
+					'.success').length > 0) {
+				$("#triggerButton-" + triggerPID).text(
+						$.i18n.prop("DISABLE"));
+			} else {
+				$("#triggerButton-" + triggerPID).text(
+						$.i18n.prop("ACTIVATE"));
+			}
+
+		});
+	}
+
+	if ("switches" in data) {
+		val = data.switches;
+		$.each(
+			val,
+			function(switchName, switchStatus) {
+				// enable or disable the switch as
+				// required
+				if (switchStatus) {
+					$('span[id^="' + switchName + '"]')[0].style.background = "red";
+					$('span[id^="'+ switchName + '"]')[0].innerHTML =
+					    unescape(switchName.replace("_", " ")) + " " + $.i18n.prop("SWITCH_ON");
+				} else {
+					$('span[id^="' + switchName + '"]')[0].style.background = "#666666";
+					$('span[id^="' + switchName + '"]')[0].innerHTML =
+					    unescape(switchName.replace("_", " ")) + " " + $.i18n.prop("SWITCH_OFF");
+				}
+			});
+	}
+
+	if (window.disableUpdates) {
+		return false;
+	}
+
+	if ("notifications" in data) {
+		showNotifications(data.notifications);
+	}
+
+	if ("recipeCount" in data && data.recipeCount > 1) {
+		if ($("span[id='selectRecipe']").length == 0) {
+			window.location.assign(window.location.href);
+		}
+	}
+
+	if ("recipe" in data && data.recipe != "") {
+		if ($("span[id='showCurrentRecipe']").length == 0) {
+			window.location.assign(window.location.href);
+		}
+	}
+
+	if ("vessels" in data) {
+		val = data.vessels;
+
+		if (!("system" in data.vessels)
+				&& !("System" in data.vessels)) {
+			// No System temperature, add a header to add it in.
+			var sysTemp = $("[id=System]");
+			if (sysTemp.length == 0 && !data.locked) {
+				var sysHtml = '<div id="System" class="holo-content controller panel panel-primary Temp">'
+						+ '<div id="System-title" class="title panel-heading "'
+						+ 'onclick="enableSystem(this);" style="cursor: pointer;">'
+						+ $.i18n.prop("SYSTEM")
+						+ '</div>'
+						+ '</div>';
+
+				$("[id=Probes]").last().append(sysHtml)
+			}
+			if ($("[id=System] > div").length == 1
+					&& data.locked) {
+				sysTemp.remove();
+			}
+		}
+		$.each(val, function(vesselProbe, vesselStatus) {
+
+			// This should always be there
+			if ("name" in vesselStatus) {
+				vesselName = vesselStatus.name;
+				if (vesselName == $.i18n.prop("SYSTEM")
+						&& $('[id=System-tempGauge]').length == 0) {
+					return;
+				}
+			}
+
+			if ("deviceaddr" in vesselStatus) {
+			    vesselProbe = vesselStatus.deviceaddr;
+			}
+			addTriggerTable(vesselProbe);
+			if ("tempprobe" in vesselStatus) {
+				updateTempProbe(vesselProbe,
+						vesselStatus.tempprobe);
+			}
+
+			if ("pidstatus" in vesselStatus) {
+				updatePIDStatus(vesselProbe,
+						vesselStatus.pidstatus);
+
+				// Hide the gauge if needs be
+				if (vesselStatus.pidstatus.mode == "off") {
+					$('div[id^="' + vesselProbe + '-gage"]')
+							.toggleClass("hidden", true);
+				} else {
+					$('div[id^="' + vesselProbe + '-gage"]')
+							.toggleClass("hidden", false);
+					var duty = vesselStatus.pidstatus.duty;
+					if ("actualduty" in vesselStatus.pidstatus) {
+						duty = vesselStatus.pidstatus.actualduty;
 					}
+					var gauge = Gauges[vesselProbe]
+					if (duty < 0) {
+						if (Gauges[vesselProbe].config.textMax != "0") {
+							Gauges[vesselProbe].config.levelColors = [
+									"#a9d70b",
+									"#CC00CC",
+									"#0033CC" ];
+							Gauges[vesselProbe].config.title = "Cooling"
+							gauge.txtTitle[0].textContent = "Cooling"
+						}
 
-					if ("locked" in data) {
-						if (window.locked == undefined) {
-							window.locked = !data.locked;
-							toggleEdit(false);
-							window.locked = data.locked;
+						Gauges[vesselProbe]
+								.refreshBoth(
+										Math.abs(duty),
+										"0",
+										"100");
+					} else if (duty > 0) {
+						if (Gauges[vesselProbe].config.textMax != "0") {
+							Gauges[vesselProbe].config.levelColors = [
+									"#a9d70b",
+									"#f9c802",
+									"#ff0000" ];
+							Gauges[vesselProbe].config.title = "Heating"
+							gauge.txtTitle[0].textContent = "Heating"
 						}
+
+						Gauges[vesselProbe].refreshBoth(duty, "0", 100);
+					} else {
+						Gauges[vesselProbe].config.title = "Off";
+						gauge.txtTitle[0].textContent = "Off"
 					}
 
-					vessel = null;
-					data = null;
-					fixWebkitHeightBug();
 				}
-			});
-	setTimeout(waitForMsg, 1000);
+			} else {
+				hidePIDForm(vesselProbe);
+			}
+
+			if ("volume" in vesselStatus) {
+				updateVolumeStatus(vesselProbe,
+						vesselStatus.volume);
+			} else {
+				jQuery("#" + vesselProbe+ "-volumeAmount")
+					.text($.i18n.prop("NO_VOLUME"));
+			}
+		});
+	}
 
+	if ("locked" in data) {
+		if (window.locked == undefined) {
+			window.locked = !data.locked;
+			toggleEdit(false);
+			window.locked = data.locked;
+		}
+	}
+
+	vessel = null;
+	data = null;
+	fixWebkitHeightBug();
 }
 
 function addTriggerTable(vesselProbe) {
@@ -461,6 +528,10 @@ function updateTempProbe(vessel, val) {
 		jQuery(vesselDiv + ' input[name="calibration"]').val(val.calibration);
 	}
 
+	if ("pollInterval" in val) {
+		jQuery(vesselDiv + ' input[name="pollInterval"]').val(val.pollInterval);
+	}
+
 	jQuery(vesselDiv + ' input[name="hidden"]').val(val.hidden);
 	jQuery("#" + vessel + "-tempStatus").text(temp);
 
@@ -599,6 +670,7 @@ function editDevice(element) {
 	var auxgpio = $('#' + vessel + ' input[name="auxgpio"]').val();
 	var cutoff = $('#' + vessel + ' input[name="cutoff"]').val();
 	var calibration = $('#' + vessel + ' input[name="calibration"]').val();
+	var pollInterval = $('#' + vessel + ' input[name="pollInterval"]').val();
 	var hidden = $('#' + vessel + ' input[name="hidden"]').val();
 
 	if (hidden == "true") {
@@ -631,6 +703,8 @@ function editDevice(element) {
                 + "value='" + cutoff + "' placeholder='" + $.i18n.prop("CUTOFF_TEMP") + "' /><br/>"
                 + "<input type='text' class='form-control' name='calibration' id='calibration' "
                 + "value='" + calibration + "' placeholder='" + $.i18n.prop("CALIBRATION") + "' /><br/>"
+                + "<input type='text' class='form-control' name='pollInterval' id='pollInterval' "
+                + "value='" + pollInterval + "' placeholder='" + $.i18n.prop("POLL_INTERVAL") + "' /><br/>"
                 + "<input type='radio' name='size' value='0'>" + $.i18n.prop("SMALL") + "</input>"
                 + "<input type='radio' name='size' value='1'>" + $.i18n.prop("MEDIUM") + "</input>"
                 + "<input type='radio' name='size' value='2'>" + $.i18n.prop("LARGE") + "</input>"
@@ -733,6 +807,8 @@ function updatePIDStatus(vessel, val) {
 	if ("heat" in val && val.heat.gpio != "") {
 		jQuery(vesselDiv + ' input[name="heatcycletime"]').val(
 				val.heat.cycle);
+		jQuery(vesselDiv + ' input[name="heatslottime"]').val(
+				val.heat.slot);
 		jQuery(vesselDiv + ' input[name="heatp"]').val(
 				val.heat.p);
 		jQuery(vesselDiv + ' input[name="heati"]').val(
@@ -776,6 +852,7 @@ function updatePIDStatus(vessel, val) {
 	jQuery(vesselDiv + ' input[name="setpoint"]').prop("disabled", true);
 	jQuery(vesselDiv + ' input[name="cycletime"]').prop("disabled", true);
 	jQuery(vesselDiv + ' input[name="heatcycletime"]').prop("disabled", true);
+	jQuery(vesselDiv + ' input[name="heatslottime"]').prop("disabled", true);
 	jQuery(vesselDiv + ' input[name="heatp"]').prop("disabled", true);
 	jQuery(vesselDiv + ' input[name="heati"]').prop("disabled", true);
 	jQuery(vesselDiv + ' input[name="heatd"]').prop("disabled", true);
@@ -988,6 +1065,10 @@ function submitForm(form) {
 			badInputs = addBadInput(badInputs, "Heat Duty Cycle");
 		}
 		
+		if (isNaN(preData.heatslottime)) {
+			badInputs = addBadInput(badInputs, "Heat Burst Slot");
+		}
+		
 		if (isNaN(preData.heatd)) {
 			badInputs = addBadInput(badInputs, "Heat D");
 		}
@@ -1430,6 +1511,7 @@ function disable(input) {
 	jQuery(vesselDiv + ' input[name="dutycycle"]').prop("disabled", false);
 	jQuery(vesselDiv + ' input[name="setpoint"]').prop("disabled", false);
 	jQuery(vesselDiv + ' input[name="heatcycletime"]').prop("disabled", false);
+	jQuery(vesselDiv + ' input[name="heatslottime"]').prop("disabled", false);
 	jQuery(vesselDiv + ' input[name="heatp"]').prop("disabled", false);
 	jQuery(vesselDiv + ' input[name="heati"]').prop("disabled", false);
 	jQuery(vesselDiv + ' input[name="heatd"]').prop("disabled", false);
@@ -2417,11 +2499,73 @@ function embedGraph(vessel) {
 				.prop("SHOW_GRAPH");
 	}
 
-	var alreadyFetched = {};
-	window.updateOnly = false;
 	var chart = null;
+	// The columns on the chart, updated with the new points on each fetch
+	var columns = null;
+	var cursor = null;
+	var lastNow = null;
+	var maxPoints = 1000;
 	$("#" + vessel + "-graph_body").width(300);
 	$("#" + vessel + "-graph_body").height(200);
+
+	function mergeColumns(update) {
+		var byName = {};
+		$.each(columns, function(i, column) {
+			byName[column[0]] = column;
+		});
+
+		// Drop the points that carried the last value on to the previous now
+		$.each(columns, function(i, column) {
+			var xColumn = byName["x" + column[0]];
+			if (xColumn !== undefined && xColumn.length > 1
+					&& xColumn[xColumn.length - 1] == lastNow) {
+				xColumn.pop();
+				column.pop();
+			}
+		});
+
+		// The columns come in pairs, the times then the values
+		for (var i = 0; i + 1 < update.columns.length; i += 2) {
+			var xNew = update.columns[i];
+			var dataNew = update.columns[i + 1];
+			var xCached = byName[xNew[0]];
+			var dataCached = byName[dataNew[0]];
+			if (xCached === undefined || dataCached === undefined) {
+				xCached = [xNew[0]];
+				dataCached = [dataNew[0]];
+				columns.push(xCached);
+				columns.push(dataCached);
+				byName[xNew[0]] = xCached;
+				byName[dataNew[0]] = dataCached;
+			}
+			var lastX = xCached.length > 1 ? xCached[xCached.length - 1] : null;
+			for (var j = 1; j < xNew.length; j++) {
+				// Skip anything the first full fetch already had
+				if (lastX == null || xNew[j] > lastX) {
+					xCached.push(xNew[j]);
+					dataCached.push(dataNew[j]);
+				}
+			}
+		}
+
+		$.each(columns, function(i, column) {
+			var xColumn = byName["x" + column[0]];
+			if (xColumn === undefined || column.length < 2) {
+				return;
+			}
+			// Keep the graph to a bounded number of points
+			var extra = column.length - 1 - maxPoints;
+			if (extra > 0) {
+				xColumn.splice(1, extra);
+				column.splice(1, extra);
+			}
+			// Carry the last value on to now
+			xColumn.push(update.now);
+			column.push(column[column.length - 1]);
+		});
+		lastNow = update.now;
+	}
+
 	function fetchData() {
 
 		function onDataReceived(series) {
@@ -2432,11 +2576,17 @@ function embedGraph(vessel) {
 				series["zoom"]["enabled"] = true;
 				series["axis"]["y"]["tick"] = {};
 				series["axis"]["y"]["tick"]["format"] = function(d) { return parseFloat(d).toFixed(2);}
+				columns = series["data"]["columns"];
+				cursor = series["data"]["cursor"];
+				lastNow = series["data"]["now"];
 				chart = c3.generate(series);
 			} else {
-				chart.load(series);
+				cursor = series["cursor"];
+				if (series["columns"].length > 0 || columns.length > 0) {
+					mergeColumns(series);
+					chart.load({columns : columns});
+				}
 			}
-			window.updateOnly = true;
 		}
 
 		// Normally we call the same URL - a script connected to a
@@ -2445,7 +2595,10 @@ function embedGraph(vessel) {
 		var updateParams = {};
 		updateParams["vessel"] = vessel;
 		updateParams["bindto"] = vessel + "-graph_body";
-		updateParams["updates"] = window.updateOnly;
+		if (cursor != null) {
+			// Only fetch the points since the last request
+			updateParams["since"] = cursor;
+		}
 		
 		$.ajax({
 			url : "/graph-data/",